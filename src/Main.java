@@ -1,13 +1,20 @@
 import scanner.Scanner;
+import scanner.SourceFile;
 import parser.Parser;
 import notifier.Notifier;
 import absyn.*;
 import symbol.*;
 import semant.Semant;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import cache.CompileCache;
+import optimization.PassManager;
 import intermediate.*;
 import mips32.CodeGen;
 import mips32.Optimizer;
+import mips32.Simulator;
 
 public class Main {
     public static String removeExtensionName(String filename) {
@@ -18,43 +25,210 @@ public class Main {
             return filename.substring(0, i);
     }
 
+    private static long parseSize(String s) {
+        long unit = 1;
+        char c = Character.toLowerCase(s.charAt(s.length() - 1));
+        if (c == 'k')
+            unit = 1L << 10;
+        else if (c == 'm')
+            unit = 1L << 20;
+        else if (c == 'g')
+            unit = 1L << 30;
+        if (unit != 1)
+            s = s.substring(0, s.length() - 1);
+        return Long.parseLong(s) * unit;
+    }
+
+    private static void printStats(Notifier notifier, CompileCache cache) throws IOException {
+        CompileCache.Stats stats = cache.stats();
+        notifier.message("cache: " + stats.entries + " entries, " + stats.size + " of " + cache.limit() + " bytes");
+        notifier.message("cache: " + stats.hits + " hits, " + stats.misses + " misses, "
+            + stats.stores + " stores, " + stats.evictions + " evictions");
+    }
+
+    // runs the program on our stdin and stdout, then reports its counts
+    private static void simulate(Notifier notifier, Simulator sim) throws IOException {
+        try {
+            sim.run(new BufferedInputStream(System.in), new BufferedOutputStream(System.out, 1 << 16));
+        } catch (Simulator.Fault e) {
+            notifier.error("simulation: " + e.getMessage());
+            return;
+        }
+        for (String line: sim.report())
+            notifier.message(line);
+    }
+
     public static void main(String[] args) {
         Notifier notifier = new Notifier(System.out);
-        if (args.length == 0) {
-            notifier.error("Missing filepath");
-            return;
+
+        // --cache-dir=DIR (or $TIGC_CACHE_DIR) enables the compile cache.
+        // -O0/-O1/-O2/-Os pick a preset pipeline and --passes=a,b,... gives
+        // one explicitly; the resulting pipeline goes into the cache key.
+        // --emit-ir stops after Semant and writes the IR to a .tir file,
+        // which can be given back as input to run the backend.
+        // --simulate runs the compiled program and reports its counts
+        String srcFile = null, cacheDir = System.getenv("TIGC_CACHE_DIR");
+        long cacheLimit = CompileCache.DEFAULT_LIMIT;
+        boolean showStats = false, emitIR = false, passStats = false, simulate = false;
+        PassManager passes = PassManager.defaults();
+        for (String arg: args) {
+            if (arg.startsWith("-O") || arg.startsWith("--passes=")) {
+                try {
+                    if (arg.startsWith("-O"))
+                        passes = PassManager.level(arg.substring(2));
+                    else
+                        passes = new PassManager(arg.substring("--passes=".length()));
+                } catch (IllegalArgumentException e) {
+                    notifier.error(e.getMessage());
+                    return;
+                }
+            } else if (arg.equals("--pass-stats"))
+                passStats = true;
+            else if (arg.startsWith("--cache-dir="))
+                cacheDir = arg.substring("--cache-dir=".length());
+            else if (arg.equals("--no-cache"))
+                cacheDir = null;
+            else if (arg.startsWith("--cache-size=")) {
+                try {
+                    cacheLimit = parseSize(arg.substring("--cache-size=".length()));
+                } catch (NumberFormatException e) {
+                    notifier.error("Bad cache size: " + arg);
+                    return;
+                }
+            } else if (arg.equals("--cache-stats"))
+                showStats = true;
+            else if (arg.equals("--emit-ir"))
+                emitIR = true;
+            else if (arg.equals("--simulate"))
+                simulate = true;
+            else if (arg.startsWith("-")) {
+                notifier.error("Unknown option " + arg);
+                return;
+            } else
+                srcFile = arg;
         }
 
-        String srcFile = args[0];
-        FileReader reader = null;
-        try {
-            reader = new FileReader(srcFile);
-        } catch (FileNotFoundException e) {
-            notifier.error(e.getMessage());
+        CompileCache cache = null;
+        if (cacheDir != null && cacheDir.length() > 0) {
+            try {
+                cache = new CompileCache(Paths.get(cacheDir), cacheLimit);
+            } catch (IOException e) {
+                notifier.warning("compile cache disabled: " + e.getMessage());
+            }
+        }
+
+        if (srcFile == null) {
+            if (showStats && cache != null) {
+                try {
+                    printStats(notifier, cache);
+                } catch (IOException e) {
+                    notifier.error(e.getMessage());
+                }
+            } else
+                notifier.error("Missing filepath");
             return;
         }
 
-        Parser parser = new Parser(new Scanner(reader), notifier);
+        String outFile = removeExtensionName(srcFile) + ".s";
+        String key = null;
+        if (cache != null && !emitIR) {
+            try {
+                key = cache.key(Paths.get(srcFile), passes.toString());
+                if (cache.fetch(key, Paths.get(outFile))) {
+                    if (showStats)
+                        printStats(notifier, cache);
+                    if (simulate) {
+                        InputStream in = new FileInputStream(outFile);
+                        try {
+                            simulate(notifier, Simulator.load(in));
+                        } finally {
+                            in.close();
+                        }
+                    }
+                    return;
+                }
+            } catch (NoSuchFileException e) {
+                notifier.error(srcFile + " (No such file or directory)");
+                return;
+            } catch (IOException e) {
+                notifier.warning("compile cache: " + e.getMessage());
+                key = null;
+            }
+        }
+
+        IR ir = null;
+        if (srcFile.endsWith(".tir")) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(srcFile);
+                ir = new IRReader(in).read();
+                in.close();
+            } catch (FileNotFoundException e) {
+                notifier.error(e.getMessage());
+                return;
+            } catch (IOException e) {
+                notifier.error(srcFile + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        SourceFile source = null;
+        if (ir == null) {
+            try {
+                source = SourceFile.load(srcFile);
+            } catch (IOException e) {
+                notifier.error(e.getMessage());
+                return;
+            }
+        }
+
         try {
-            java_cup.runtime.Symbol absyn = parser.parse();
-            if (!notifier.hasError()) {
-                Semant semant = new Semant(notifier);
-                IR ir = semant.translate((Expr) absyn.value);
+            if (ir == null) {
+                Parser parser = new Parser(new Scanner(source), notifier);
+                java_cup.runtime.Symbol absyn = parser.parse();
+                if (!notifier.hasError()) {
+                    Semant semant = new Semant(notifier);
+                    ir = semant.translate((Expr) absyn.value);
+                }
+            }
+
+            if (!notifier.hasError() && emitIR) {
+                OutputStream out = new FileOutputStream(removeExtensionName(srcFile) + ".tir");
+                try {
+                    new IRWriter(out).write(ir);
+                } finally {
+                    out.close();
+                }
+            } else if (!notifier.hasError()) {
+                Optimizer opt = new Optimizer(passes);
+                CodeGen cg = new CodeGen(notifier, ir, opt);
 
                 if (!notifier.hasError()) {
-                    Optimizer opt = new Optimizer();
-                    CodeGen cg = new CodeGen(notifier, ir, opt);
+                    FileChannel channel = new FileOutputStream(outFile).getChannel();
+                    boolean generated = cg.generate(channel);
+                    channel.close();
 
-                    if (!notifier.hasError()) {
-                        BufferedWriter writer = new BufferedWriter(new FileWriter(removeExtensionName(srcFile) + ".s"));
-                        cg.generate(writer);
-                        writer.close();
+                    // a failed generation may leave a partial .s behind
+                    if (key != null && generated && !notifier.hasError()) {
+                        try {
+                            cache.store(key, Paths.get(outFile));
+                        } catch (IOException e) {
+                            notifier.warning("compile cache: " + e.getMessage());
+                        }
                     }
+                    if (simulate)
+                        simulate(notifier, cg.simulator());
                 }
             }
             
             if (notifier.hasError()) {
                 notifier.printSummary();
+            } else {
+                if (passStats)
+                    for (String line: passes.report())
+                        notifier.message(line);
+                if (showStats && cache != null)
+                    printStats(notifier, cache);
             }
         }
         catch (Exception e) {
@@ -63,4 +237,3 @@ public class Main {
         }
     }
 }
-
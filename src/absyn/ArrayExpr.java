@@ -13,5 +13,8 @@ public class ArrayExpr extends Expr {
         this.size = size;
         this.init = init;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
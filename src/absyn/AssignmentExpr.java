@@ -9,4 +9,8 @@ public class AssignmentExpr extends Expr {
         this.lvalue = lvalue;
         this.e = e;
     }
+
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
 }
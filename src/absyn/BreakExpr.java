@@ -4,5 +4,8 @@ public class BreakExpr extends Expr {
     public BreakExpr(int pos) {
         super(pos);
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
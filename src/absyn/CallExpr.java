@@ -11,5 +11,8 @@ public class CallExpr extends Expr {
         this.func = func;
         this.args = args;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
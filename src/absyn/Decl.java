@@ -4,5 +4,6 @@ public abstract class Decl extends Absyn {
     public Decl(int pos) {
         super(pos);
     }
-}
 
+    public abstract <R> R accept(DeclVisitor<R> v);
+}
@@ -0,0 +1,8 @@
+package absyn;
+
+// Double dispatch over the declaration nodes, see Decl.accept
+public interface DeclVisitor<R> {
+    R visit(TypeDecl decl);
+    R visit(VarDecl decl);
+    R visit(FuncDecl decl);
+}
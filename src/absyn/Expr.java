@@ -4,5 +4,6 @@ public abstract class Expr extends Absyn {
     public Expr(int pos) {
         super(pos);
     }
-}
 
+    public abstract <R> R accept(ExprVisitor<R> v);
+}
@@ -0,0 +1,21 @@
+package absyn;
+
+// Double dispatch over the expression nodes, see Expr.accept
+public interface ExprVisitor<R> {
+    R visit(ArrayExpr expr);
+    R visit(AssignmentExpr expr);
+    R visit(BreakExpr expr);
+    R visit(CallExpr expr);
+    R visit(ForExpr expr);
+    R visit(IfExpr expr);
+    R visit(IntExpr expr);
+    R visit(LetExpr expr);
+    R visit(LValueExpr expr);
+    R visit(NegationExpr expr);
+    R visit(NilExpr expr);
+    R visit(OpExpr expr);
+    R visit(RecordExpr expr);
+    R visit(SeqExpr expr);
+    R visit(StringExpr expr);
+    R visit(WhileExpr expr);
+}
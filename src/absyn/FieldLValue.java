@@ -12,5 +12,8 @@ public class FieldLValue extends LValue {
         this.lvalue = lvalue;
         this.id = id;
     }
-}
 
+    public <R> R accept(LValueVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -13,5 +13,8 @@ public class ForExpr extends Expr {
         this.end = end;
         this.body = body;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
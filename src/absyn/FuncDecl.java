@@ -19,5 +19,8 @@ public class FuncDecl extends Decl {
     public FuncDecl(int pos, Symbol name, TypeFields params, Expr body) {
         this(pos, name, params, null, body);
     }
-}
 
+    public <R> R accept(DeclVisitor<R> v) {
+        return v.visit(this);
+    }
+}
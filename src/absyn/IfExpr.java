@@ -13,4 +13,8 @@ public class IfExpr extends Expr {
     public IfExpr(int pos, Expr condition, Expr thenClause) {
         this(pos, condition, thenClause, null);
     }
+
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
 }
@@ -4,5 +4,6 @@ public abstract class LValue extends Absyn {
     public LValue(int pos) {
         super(pos);
     }
-}
 
+    public abstract <R> R accept(LValueVisitor<R> v);
+}
@@ -7,5 +7,8 @@ public class LValueExpr extends Expr {
         super(pos);
         this.lvalue = lvalue;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -0,0 +1,8 @@
+package absyn;
+
+// Double dispatch over the lvalue nodes, see LValue.accept
+public interface LValueVisitor<R> {
+    R visit(VarLValue lvalue);
+    R visit(FieldLValue lvalue);
+    R visit(SubscriptLValue lvalue);
+}
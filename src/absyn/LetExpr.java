@@ -9,5 +9,8 @@ public class LetExpr extends Expr {
         this.decls = decls;
         this.exprs = exprs;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -7,4 +7,8 @@ public class NegationExpr extends Expr {
         super(pos);
         value = v;
     }
+
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
 }
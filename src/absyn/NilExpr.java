@@ -4,4 +4,8 @@ public class NilExpr extends Expr {
     public NilExpr(int pos) {
         super(pos);
     }
+
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
 }
@@ -16,4 +16,8 @@ public class OpExpr extends Expr {
         this.left = left;
         this.right = right;
     }
+
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
 }
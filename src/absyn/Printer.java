@@ -2,6 +2,7 @@ package absyn;
 
 import java.io.Writer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class Printer {
     public void print(Expr e, Writer writer) throws IOException {
@@ -18,39 +19,167 @@ public class Printer {
     private void ender(int level, Writer writer) throws IOException {
     }
 
+    // level and writer of the node being dispatched; the print methods
+    // take them as arguments, so nested calls may overwrite them
+    private int level;
+    private Writer writer;
+
+    private ExprVisitor<Void> exprPrinter = new ExprVisitor<Void>() {
+        public Void visit(ArrayExpr e) {
+            try {
+                printArrayExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(AssignmentExpr e) {
+            try {
+                printAssignmentExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(BreakExpr e) {
+            try {
+                printBreakExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(CallExpr e) {
+            try {
+                printCallExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(ForExpr e) {
+            try {
+                printForExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(IfExpr e) {
+            try {
+                printIfExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(IntExpr e) {
+            try {
+                printIntExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(LetExpr e) {
+            try {
+                printLetExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(LValueExpr e) {
+            try {
+                printLValueExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(NegationExpr e) {
+            try {
+                printNegationExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(NilExpr e) {
+            try {
+                printNilExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(OpExpr e) {
+            try {
+                printOpExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(RecordExpr e) {
+            try {
+                printRecordExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(SeqExpr e) {
+            try {
+                printSeqExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(StringExpr e) {
+            try {
+                printStringExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(WhileExpr e) {
+            try {
+                printWhileExpr(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+    };
+
     private void printExpr(Expr e, int level, Writer writer) throws IOException {
-        if (e instanceof ArrayExpr)
-            printArrayExpr((ArrayExpr) e, level, writer);
-        else if (e instanceof AssignmentExpr)
-            printAssignmentExpr((AssignmentExpr) e, level, writer);
-        else if (e instanceof BreakExpr)
-            printBreakExpr((BreakExpr) e, level, writer);
-        else if (e instanceof CallExpr)
-            printCallExpr((CallExpr) e, level, writer);
-        else if (e instanceof ForExpr)
-            printForExpr((ForExpr) e, level, writer);
-        else if (e instanceof IfExpr)
-            printIfExpr((IfExpr) e, level, writer);
-        else if (e instanceof IntExpr)
-            printIntExpr((IntExpr) e, level, writer);
-        else if (e instanceof LetExpr)
-            printLetExpr((LetExpr) e, level, writer);
-        else if (e instanceof LValueExpr)
-            printLValueExpr((LValueExpr) e, level, writer);
-        else if (e instanceof NegationExpr)
-            printNegationExpr((NegationExpr) e, level, writer);
-        else if (e instanceof NilExpr)
-            printNilExpr((NilExpr) e, level, writer);
-        else if (e instanceof OpExpr)
-            printOpExpr((OpExpr) e, level, writer);
-        else if (e instanceof RecordExpr)
-            printRecordExpr((RecordExpr) e, level, writer);
-        else if (e instanceof SeqExpr)
-            printSeqExpr((SeqExpr) e, level, writer);
-        else if (e instanceof StringExpr)
-            printStringExpr((StringExpr) e, level, writer);
-        else if (e instanceof WhileExpr)
-            printWhileExpr((WhileExpr) e, level, writer);
+        if (e == null)
+            return;
+        this.level = level;
+        this.writer = writer;
+        try {
+            e.accept(exprPrinter);
+        } catch (UncheckedIOException x) {
+            throw x.getCause();
+        }
     }
 
     private void printArrayExpr(ArrayExpr e, int level, Writer writer) throws IOException {
@@ -182,13 +311,45 @@ public class Printer {
         ender(level, writer);
     }
 
+    private LValueVisitor<Void> lvaluePrinter = new LValueVisitor<Void>() {
+        public Void visit(VarLValue e) {
+            try {
+                printVarLValue(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(FieldLValue e) {
+            try {
+                printFieldLValue(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(SubscriptLValue e) {
+            try {
+                printSubscriptLValue(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+    };
+
     private void printLValue(LValue e, int level, Writer writer) throws IOException {
-        if (e instanceof VarLValue)
-            printVarLValue((VarLValue) e, level, writer);
-        else if (e instanceof FieldLValue)
-            printFieldLValue((FieldLValue) e, level, writer);
-        else if (e instanceof SubscriptLValue)
-            printSubscriptLValue((SubscriptLValue) e, level, writer);
+        if (e == null)
+            return;
+        this.level = level;
+        this.writer = writer;
+        try {
+            e.accept(lvaluePrinter);
+        } catch (UncheckedIOException x) {
+            throw x.getCause();
+        }
     }
 
     private void printVarLValue(VarLValue e, int level, Writer writer) throws IOException {
@@ -234,13 +395,45 @@ public class Printer {
         ender(level, writer);
     }
 
+    private DeclVisitor<Void> declPrinter = new DeclVisitor<Void>() {
+        public Void visit(TypeDecl e) {
+            try {
+                printTypeDecl(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(VarDecl e) {
+            try {
+                printVarDecl(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+
+        public Void visit(FuncDecl e) {
+            try {
+                printFuncDecl(e, level, writer);
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            return null;
+        }
+    };
+
     private void printDecl(Decl e, int level, Writer writer) throws IOException {
-        if (e instanceof TypeDecl)
-            printTypeDecl((TypeDecl) e, level, writer);
-        else if (e instanceof VarDecl)
-            printVarDecl((VarDecl) e, level, writer);
-        else if (e instanceof FuncDecl)
-            printFuncDecl((FuncDecl) e, level, writer);
+        if (e == null)
+            return;
+        this.level = level;
+        this.writer = writer;
+        try {
+            e.accept(declPrinter);
+        } catch (UncheckedIOException x) {
+            throw x.getCause();
+        }
     }
 
     private void printTypeDecl(TypeDecl e, int level, Writer writer) throws IOException {
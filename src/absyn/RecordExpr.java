@@ -11,5 +11,8 @@ public class RecordExpr extends Expr {
         this.type = type;
         this.fields = fields;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -7,5 +7,8 @@ public class SeqExpr extends Expr {
         super(pos);
         this.exprList = list;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -6,5 +6,8 @@ public class StringExpr extends Expr {
         super(pos);
         value = v;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -9,5 +9,8 @@ public class SubscriptLValue extends LValue {
         this.lvalue = lvalue;
         this.expr = expr;
     }
-}
 
+    public <R> R accept(LValueVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -11,5 +11,8 @@ public class TypeDecl extends Decl {
         this.name = name;
         this.type = type;
     }
-}
 
+    public <R> R accept(DeclVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -16,5 +16,8 @@ public class VarDecl extends Decl {
     public VarDecl(int pos, Symbol id, Expr value) {
         this(pos, id, null, value);
     }
-}
 
+    public <R> R accept(DeclVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -9,5 +9,8 @@ public class VarLValue extends LValue {
         super(pos);
         this.name = name;
     }
-}
 
+    public <R> R accept(LValueVisitor<R> v) {
+        return v.visit(this);
+    }
+}
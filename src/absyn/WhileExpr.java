@@ -8,5 +8,8 @@ public class WhileExpr extends Expr {
         this.condition = condition;
         this.body = body;
     }
-}
 
+    public <R> R accept(ExprVisitor<R> v) {
+        return v.visit(this);
+    }
+}
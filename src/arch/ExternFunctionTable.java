@@ -4,8 +4,8 @@ import symbol.Symbol;
 import intermediate.*;
 import java.util.*;
 
-public class ExternFunctionTable {
-    private HashSet<Symbol> table = new HashSet<Symbol>();
+public class ExternFunctionTable implements Iterable<Symbol> {
+    private HashSet<Symbol> table = new LinkedHashSet<Symbol>();
     private int count = 0;
 
     public ExternFunctionTable() {
@@ -14,5 +14,9 @@ public class ExternFunctionTable {
     public void put(Symbol s) {
         table.add(s);
     }
+
+    public Iterator<Symbol> iterator() {
+        return table.iterator();
+    }
 }
 
@@ -11,7 +11,7 @@ public abstract class Instruction {
 
     public abstract List<Temp> useList();
     public Set<Temp> use() {
-        return new HashSet<Temp>(useList());
+        return new LinkedHashSet<Temp>(useList());
     }
     public abstract Set<Temp> def();
 
@@ -20,6 +20,8 @@ public abstract class Instruction {
     public abstract boolean isRedirectable();
     public abstract boolean isLoad();
     public abstract boolean isStore();
+    // a jump into a function that comes back to the next instruction
+    public abstract boolean isCall();
     // if isMove() returns true, then useList().get(0) must be the move source
     public abstract boolean isMove();
     public abstract boolean sameExceptTemps(Instruction i);
@@ -4,7 +4,7 @@ import intermediate.*;
 import java.util.*;
 
 public class StringTable implements Iterable<StringTable.StringPair> {
-    private HashMap<String, UnknownConstAccess> table = new HashMap<String, UnknownConstAccess>();
+    private HashMap<String, UnknownConstAccess> table = new LinkedHashMap<String, UnknownConstAccess>();
     private int count = 0;
 
     public StringTable() {
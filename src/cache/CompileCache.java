@@ -0,0 +1,312 @@
+package cache;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// On-disk cache of generated assembly, keyed by a hash of the source bytes,
+// the compiler's classes and the code generation flags. Entries live in
+// <dir>/xx/<key>.s; a hit refreshes the entry's modification time, which
+// is what eviction orders by. The counters and the total size are kept in
+// <dir>/stats and only touched while holding the lock on <dir>/lock, so
+// several compilers may share one cache directory.
+public class CompileCache {
+    public static final long DEFAULT_LIMIT = 256L << 20;
+
+    private static final int MAP_THRESHOLD = 1 << 16;
+
+    private Path dir;
+    private long limit;
+
+    public static class Stats {
+        public long hits, misses, stores, evictions;
+        public long entries, size;
+    }
+
+    public CompileCache(Path dir, long limit) throws IOException {
+        this.dir = dir;
+        this.limit = limit;
+        Files.createDirectories(dir);
+    }
+
+    // the packages whose classes make up the compiler, along with Main;
+    // the testers and the parser generator's runtime share the class root
+    // but cannot change the generated code
+    private static final List<String> packages = Arrays.asList("absyn", "arch", "cache", "flow", "frame",
+        "intermediate", "mips32", "notifier", "optimization", "parser", "regalloc", "scanner", "semant",
+        "symbol", "type", "util");
+
+    private static boolean isCompilerClass(String name) {
+        if (!name.endsWith(".class"))
+            return false;
+        int slash = name.indexOf('/');
+        return slash == -1 ? name.equals("Main.class") : packages.contains(name.substring(0, slash));
+    }
+
+    // the hash of the compiler's classes in the directory or jar it was
+    // loaded from, so that any rebuild that may change the generated code
+    // misses the old entries
+    private static String compilerVersion;
+
+    public static synchronized String compilerVersion() throws IOException {
+        if (compilerVersion != null)
+            return compilerVersion;
+        CodeSource code = CompileCache.class.getProtectionDomain().getCodeSource();
+        if (code == null)
+            throw new IOException("cannot locate the compiler's classes");
+        final Path root;
+        try {
+            root = Paths.get(code.getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+
+        MessageDigest md = sha256();
+        if (Files.isDirectory(root)) {
+            final ArrayList<String> classes = new ArrayList<String>();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path p, BasicFileAttributes attrs) {
+                    String name = root.relativize(p).toString().replace(File.separatorChar, '/');
+                    if (isCompilerClass(name))
+                        classes.add(name);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Collections.sort(classes);
+            for (String name: classes) {
+                md.update((name + '\0').getBytes("UTF-8"));
+                md.update(Files.readAllBytes(root.resolve(name)));
+            }
+        } else {
+            ZipFile jar = new ZipFile(root.toFile());
+            try {
+                ArrayList<String> classes = new ArrayList<String>();
+                for (Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                    String name = e.nextElement().getName();
+                    if (isCompilerClass(name))
+                        classes.add(name);
+                }
+                Collections.sort(classes);
+                for (String name: classes) {
+                    md.update((name + '\0').getBytes("UTF-8"));
+                    InputStream in = jar.getInputStream(jar.getEntry(name));
+                    try {
+                        byte[] buffer = new byte[1 << 16];
+                        for (int n; (n = in.read(buffer)) > 0; )
+                            md.update(buffer, 0, n);
+                    } finally {
+                        in.close();
+                    }
+                }
+            } finally {
+                jar.close();
+            }
+        }
+        compilerVersion = hex(md.digest());
+        return compilerVersion;
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder s = new StringBuilder();
+        for (byte b: digest)
+            s.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return s.toString();
+    }
+
+    public String key(Path source, String flags) throws IOException {
+        MessageDigest md = sha256();
+        md.update((compilerVersion() + '\0' + flags + '\0').getBytes("UTF-8"));
+
+        FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD)
+                md.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            else {
+                ByteBuffer bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0)
+                    ;
+                bytes.flip();
+                md.update(bytes);
+            }
+        } finally {
+            channel.close();
+        }
+        return hex(md.digest());
+    }
+
+    private Path entry(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + ".s");
+    }
+
+    // copies the cached output for key to output; false on a miss
+    public boolean fetch(String key, Path output) throws IOException {
+        Path entry = entry(key);
+        FileChannel lock = lock();
+        try {
+            Stats stats = readStats();
+            boolean hit = Files.isRegularFile(entry);
+            if (hit) {
+                Files.copy(entry, output, StandardCopyOption.REPLACE_EXISTING);
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                ++stats.hits;
+            } else
+                ++stats.misses;
+            writeStats(stats);
+            return hit;
+        } finally {
+            lock.close();
+        }
+    }
+
+    // copies output into the cache under key, then evicts least recently
+    // used entries until the cache fits in its limit
+    public void store(String key, Path output) throws IOException {
+        Path entry = entry(key);
+        Files.createDirectories(entry.getParent());
+        Path tmp = Files.createTempFile(dir, "store", ".tmp");
+        try {
+            Files.copy(output, tmp, StandardCopyOption.REPLACE_EXISTING);
+
+            FileChannel lock = lock();
+            try {
+                Stats stats = readStats();
+                if (Files.isRegularFile(entry))
+                    stats.size -= Files.size(entry);
+                else
+                    ++stats.entries;
+                stats.size += Files.size(tmp);
+                Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                ++stats.stores;
+
+                if (stats.size > limit)
+                    evict(stats);
+                writeStats(stats);
+            } finally {
+                lock.close();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Stats stats() throws IOException {
+        FileChannel lock = lock();
+        try {
+            return readStats();
+        } finally {
+            lock.close();
+        }
+    }
+
+    public long limit() {
+        return limit;
+    }
+
+    private void evict(Stats stats) throws IOException {
+        ArrayList<Path> entries = listEntries();
+        final HashMap<Path, Long> times = new HashMap<Path, Long>();
+        long size = 0;
+        for (Path p: entries) {
+            times.put(p, Long.valueOf(Files.getLastModifiedTime(p).toMillis()));
+            size += Files.size(p);
+        }
+        Collections.sort(entries, new Comparator<Path>() {
+            public int compare(Path a, Path b) {
+                return times.get(a).compareTo(times.get(b));
+            }
+        });
+
+        int i = 0;
+        while (size > limit && i < entries.size()) {
+            Path p = entries.get(i++);
+            size -= Files.size(p);
+            Files.delete(p);
+            ++stats.evictions;
+        }
+        stats.entries = entries.size() - i;
+        stats.size = size;
+    }
+
+    private ArrayList<Path> listEntries() throws IOException {
+        ArrayList<Path> entries = new ArrayList<Path>();
+        DirectoryStream<Path> subdirs = Files.newDirectoryStream(dir);
+        try {
+            for (Path sub: subdirs) {
+                if (!Files.isDirectory(sub))
+                    continue;
+                DirectoryStream<Path> files = Files.newDirectoryStream(sub, "*.s");
+                try {
+                    for (Path p: files)
+                        entries.add(p);
+                } finally {
+                    files.close();
+                }
+            }
+        } finally {
+            subdirs.close();
+        }
+        return entries;
+    }
+
+    // the returned channel holds an exclusive lock until it is closed
+    private FileChannel lock() throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private Stats readStats() throws IOException {
+        Stats stats = new Stats();
+        Path file = dir.resolve("stats");
+        try {
+            String[] f = new String(Files.readAllBytes(file), "UTF-8").trim().split("\\s+");
+            stats.hits = Long.parseLong(f[0]);
+            stats.misses = Long.parseLong(f[1]);
+            stats.stores = Long.parseLong(f[2]);
+            stats.evictions = Long.parseLong(f[3]);
+            stats.entries = Long.parseLong(f[4]);
+            stats.size = Long.parseLong(f[5]);
+        } catch (NoSuchFileException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            // missing or damaged: keep the counters at zero and recount the entries
+            stats = new Stats();
+            for (Path p: listEntries()) {
+                ++stats.entries;
+                stats.size += Files.size(p);
+            }
+        }
+        return stats;
+    }
+
+    private void writeStats(Stats stats) throws IOException {
+        String s = stats.hits + " " + stats.misses + " " + stats.stores + " " + stats.evictions
+            + " " + stats.entries + " " + stats.size + "\n";
+        Path tmp = Files.createTempFile(dir, "stats", ".tmp");
+        Files.write(tmp, s.getBytes("UTF-8"));
+        Files.move(tmp, dir.resolve("stats"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
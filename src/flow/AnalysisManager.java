@@ -0,0 +1,107 @@
+package flow;
+
+import arch.InstructionList;
+
+// Keeps the analyses of the current instruction list so that passes which
+// leave the control flow alone can share them instead of rebuilding the
+// flow graph each time. After a pass, update() is told which analyses the
+// pass preserved; the others are recomputed on the next request. Asking
+// about a different list drops everything.
+//
+// The flow graph connects calls to callees and returns to every call site,
+// so the unit of caching is the whole program's list, not a single function.
+public class AnalysisManager {
+    public static final int NONE = 0, FLOW = 1, LIFE = 2, DOMINATORS = 4, LOOPS = 8;
+    public static final int CFG = FLOW | DOMINATORS | LOOPS, ALL = CFG | LIFE;
+
+    public static final String[] names = { "flow", "life", "dominators", "loops" };
+
+    FlowGraphGenerator fg;
+    InstructionList list = null;
+
+    FlowGraph flow = null;
+    LifeAnalysis life = null;
+    DominatingSet dom = null;
+    LoopInfo loops = null;
+
+    int[] computed = new int[names.length], reused = new int[names.length];
+
+    public AnalysisManager(FlowGraphGenerator fg) {
+        this.fg = fg;
+    }
+
+    public FlowGraph flow(InstructionList list) {
+        select(list);
+        if (flow == null) {
+            flow = fg.build(list);
+            ++computed[0];
+        } else
+            ++reused[0];
+        return flow;
+    }
+
+    public LifeAnalysis life(InstructionList list) {
+        FlowGraph g = flow(list);
+        if (life == null) {
+            life = new LifeAnalysis(g);
+            ++computed[1];
+        } else
+            ++reused[1];
+        return life;
+    }
+
+    public DominatingSet dominators(InstructionList list) {
+        FlowGraph g = flow(list);
+        if (dom == null) {
+            dom = new DominatingSet(g);
+            ++computed[2];
+        } else
+            ++reused[2];
+        return dom;
+    }
+
+    public LoopInfo loops(InstructionList list) {
+        DominatingSet d = dominators(list);
+        if (loops == null) {
+            loops = new LoopInfo(flow, d);
+            ++computed[3];
+        } else
+            ++reused[3];
+        return loops;
+    }
+
+    // list is the result of a pass and preserved says which of the cached
+    // analyses still describe it. Every analysis is built on the flow graph,
+    // so without FLOW none survives; with it, life, dominators and loops
+    // each survive when their bit is set, and loops only with dominators
+    public void update(InstructionList list, int preserved) {
+        this.list = list;
+        if ((preserved & FLOW) == 0) {
+            flow = null;
+            preserved = NONE;
+        }
+        if ((preserved & LIFE) == 0)
+            life = null;
+        if ((preserved & DOMINATORS) == 0)
+            dom = null;
+        if ((preserved & LOOPS) == 0 || dom == null)
+            loops = null;
+    }
+
+    public void invalidate() {
+        update(list, NONE);
+    }
+
+    public int computed(int i) {
+        return computed[i];
+    }
+
+    public int reused(int i) {
+        return reused[i];
+    }
+
+    private void select(InstructionList list) {
+        if (list != this.list)
+            update(list, NONE);
+    }
+}
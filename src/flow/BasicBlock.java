@@ -8,17 +8,17 @@ import arch.Instruction;
 public class BasicBlock implements Iterable<Instruction> {
     public ArrayList<Label> labels = new ArrayList<Label>();
     private LinkedList<Instruction> list = new LinkedList<Instruction>();
-    private Map<Instruction, Integer> order = new HashMap<Instruction, Integer>();
+    private Map<Instruction, Integer> order = new LinkedHashMap<Instruction, Integer>();
     private int n = 0;
 
-    private Set<Temp> uses = new HashSet<Temp>();
-    private Set<Temp> defs = new HashSet<Temp>();
+    private Set<Temp> uses = new LinkedHashSet<Temp>();
+    private Set<Temp> defs = new LinkedHashSet<Temp>();
 
     public void add(Instruction ins) {
         list.add(ins);
         order.put(ins, new Integer(n++));
 
-        Set<Temp> t = new HashSet<Temp>(ins.use());
+        Set<Temp> t = new LinkedHashSet<Temp>(ins.use());
         t.removeAll(defs);
         uses.addAll(t);
         defs.addAll(ins.def());
@@ -37,9 +37,9 @@ public class BasicBlock implements Iterable<Instruction> {
 
     private void replace(List<Instruction> insList) {
         list = new LinkedList<Instruction>();
-        uses = new HashSet<Temp>();
-        defs = new HashSet<Temp>();
-        order = new HashMap<Instruction, Integer>();
+        uses = new LinkedHashSet<Temp>();
+        defs = new LinkedHashSet<Temp>();
+        order = new LinkedHashMap<Instruction, Integer>();
         n = 0;
         for (Instruction i: insList)
             add(i);
@@ -51,6 +51,15 @@ public class BasicBlock implements Iterable<Instruction> {
         replace(newList);
     }
 
+    // removes exactly the instructions in ins, compared by identity
+    public void removeAll(Set<Instruction> ins) {
+        List<Instruction> newList = new LinkedList<Instruction>();
+        for (Instruction i: list)
+            if (!ins.contains(i))
+                newList.add(i);
+        replace(newList);
+    }
+
     public void add(Label label) {
         labels.add(label);
     }
@@ -2,66 +2,144 @@ package flow;
 
 import java.util.*;
 
+// Dominators of the blocks reachable from the entry, computed as an
+// immediate dominator tree (Cooper, Harvey and Kennedy) and numbered in
+// preorder/postorder so dominates() is a constant time check.
+// Blocks that cannot be reached from the entry are treated as dominated by
+// every reachable block, and dominate only themselves.
 public class DominatingSet {
     FlowGraph g;
-    Map<BasicBlock, Set<BasicBlock>> dominating = new HashMap<BasicBlock, Set<BasicBlock>>();
+    Map<BasicBlock, Set<BasicBlock>> dominating = new LinkedHashMap<BasicBlock, Set<BasicBlock>>();
+
+    private LinkedHashMap<BasicBlock, Integer> rpo = new LinkedHashMap<BasicBlock, Integer>();
+    private ArrayList<BasicBlock> order = new ArrayList<BasicBlock>();
+    private int[] idom, pre, post;
 
     public DominatingSet(FlowGraph g) {
         this.g = g;
         analysis();
     }
 
+    // blocks dominated by b (including b), in flow graph order
     public Set<BasicBlock> get(BasicBlock b) {
-        return dominating.get(b);
+        if (g.entry == null || !g.has(b))
+            return null;
+
+        Set<BasicBlock> s = dominating.get(b);
+        if (s == null) {
+            s = new LinkedHashSet<BasicBlock>();
+            for (BasicBlock x: g.nodes())
+                if (dominates(b, x))
+                    s.add(x);
+            dominating.put(b, s);
+        }
+        return s;
     }
 
-    private void explore(BasicBlock b, Set<BasicBlock> visited) {
-        if (visited.contains(b))
-            return;
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        Integer x = rpo.get(a), y = rpo.get(b);
+        if (x == null)
+            return a == b;
+        if (y == null)
+            return true;
+        int i = x.intValue(), j = y.intValue();
+        return pre[i] <= pre[j] && post[j] <= post[i];
+    }
 
-        visited.add(b);
-        for (BasicBlock s: g.succ(b))
-            explore(s, visited);
+    public BasicBlock idom(BasicBlock b) {
+        Integer x = rpo.get(b);
+        if (x == null || x.intValue() == 0)
+            return null;
+        return order.get(idom[x.intValue()]);
     }
 
     private void analysis() {
         if (g.entry == null)
             return;
 
-        Map<BasicBlock, Set<BasicBlock>> dominated = new HashMap<BasicBlock, Set<BasicBlock>>();
-        Set<BasicBlock> full = new HashSet<BasicBlock>();
-        explore(g.entry, full);
-
-        for (BasicBlock b: g.nodes()) {
-            dominating.put(b, new HashSet<BasicBlock>());
-
-            if (b != g.entry)
-                dominated.put(b, new HashSet<BasicBlock>(full));
-            else {
-                dominated.put(b, new HashSet<BasicBlock>());
-                dominated.get(b).add(b);
+        // reverse postorder of the reachable blocks
+        ArrayList<BasicBlock> postorder = new ArrayList<BasicBlock>();
+        LinkedHashSet<BasicBlock> visited = new LinkedHashSet<BasicBlock>();
+        ArrayDeque<BasicBlock> stack = new ArrayDeque<BasicBlock>();
+        ArrayDeque<Iterator<BasicBlock>> iters = new ArrayDeque<Iterator<BasicBlock>>();
+        visited.add(g.entry);
+        stack.push(g.entry);
+        iters.push(g.succ(g.entry).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> it = iters.peek();
+            if (it.hasNext()) {
+                BasicBlock s = it.next();
+                if (visited.add(s)) {
+                    stack.push(s);
+                    iters.push(g.succ(s).iterator());
+                }
+            } else {
+                postorder.add(stack.pop());
+                iters.pop();
             }
         }
+        int n = postorder.size();
+        for (int i = n - 1; i >= 0; --i) {
+            rpo.put(postorder.get(i), Integer.valueOf(order.size()));
+            order.add(postorder.get(i));
+        }
 
+        idom = new int[n];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
         boolean change = false;
         do {
             change = false;
-            for (BasicBlock b: g.nodes()) {
-                Set<BasicBlock> t = new HashSet<BasicBlock>(dominated.get(b));
-                for (BasicBlock p: g.pred(b))
-                    t.retainAll(dominated.get(p));
-                t.add(b);
-                if (!t.equals(dominated.get(b))) {
+            for (int i = 1; i < n; ++i) {
+                int d = -1;
+                for (BasicBlock p: g.pred(order.get(i))) {
+                    Integer j = rpo.get(p);
+                    if (j == null || idom[j.intValue()] == -1)
+                        continue;
+                    d = d == -1 ? j.intValue() : intersect(d, j.intValue());
+                }
+                if (d != idom[i]) {
+                    idom[i] = d;
                     change = true;
-                    dominated.put(b, t);
                 }
             }
         } while (change);
 
-        for (BasicBlock b: g.nodes()) {
-            for (BasicBlock d: dominated.get(b))
-                dominating.get(d).add(b);
+        // number the dominator tree
+        int[] firstChild = new int[n], nextSibling = new int[n];
+        Arrays.fill(firstChild, -1);
+        for (int i = n - 1; i > 0; --i) {
+            nextSibling[i] = firstChild[idom[i]];
+            firstChild[idom[i]] = i;
+        }
+        pre = new int[n];
+        post = new int[n];
+        int[] path = new int[n], next = new int[n];
+        int depth = 0, counter = 0;
+        path[0] = 0;
+        next[0] = firstChild[0];
+        pre[0] = counter++;
+        while (depth >= 0) {
+            int c = next[depth];
+            if (c == -1) {
+                post[path[depth]] = counter++;
+                --depth;
+            } else {
+                next[depth] = nextSibling[c];
+                path[++depth] = c;
+                next[depth] = firstChild[c];
+                pre[c] = counter++;
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b)
+                a = idom[a];
+            while (b > a)
+                b = idom[b];
         }
+        return a;
     }
 }
-
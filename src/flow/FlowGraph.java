@@ -5,7 +5,7 @@ import java.util.*;
 
 public class FlowGraph {
     public Graph<BasicBlock> graph = new Graph<BasicBlock>();
-    Map<BasicBlock, BasicBlock> next = new HashMap<BasicBlock, BasicBlock>();
+    Map<BasicBlock, BasicBlock> next = new LinkedHashMap<BasicBlock, BasicBlock>();
     public BasicBlock entry = null;
 
     public void add(BasicBlock block, boolean entry) {
@@ -47,7 +47,7 @@ public class FlowGraph {
         do
         {
             change = false;
-            for (BasicBlock b: new HashSet<BasicBlock>(graph.heads()))
+            for (BasicBlock b: new LinkedHashSet<BasicBlock>(graph.heads()))
                 if (b != entry) {
                     graph.removeNode(b);
                     next.remove(b);
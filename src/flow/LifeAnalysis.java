@@ -8,16 +8,16 @@ import arch.Instruction;
 public class LifeAnalysis {
     FlowGraph g;
 
-    Map<BasicBlock, HashSet<Temp>> inBlock = new HashMap<BasicBlock, HashSet<Temp>>(),
-        outBlock = new HashMap<BasicBlock, HashSet<Temp>>();
-    Map<Instruction, HashSet<Temp>> inIns = new HashMap<Instruction, HashSet<Temp>>(),
-        outIns = new HashMap<Instruction, HashSet<Temp>>();
+    Map<BasicBlock, HashSet<Temp>> inBlock = new LinkedHashMap<BasicBlock, HashSet<Temp>>(),
+        outBlock = new LinkedHashMap<BasicBlock, HashSet<Temp>>();
+    Map<Instruction, HashSet<Temp>> inIns = new LinkedHashMap<Instruction, HashSet<Temp>>(),
+        outIns = new LinkedHashMap<Instruction, HashSet<Temp>>();
 
     Set<Temp> liveDisplays = null;
 
     public LifeAnalysis(FlowGraph g) {
         this.g = g;
-        liveDisplays = new HashSet<Temp>();
+        liveDisplays = new LinkedHashSet<Temp>();
         analysis();
     }
 
@@ -25,28 +25,28 @@ public class LifeAnalysis {
         if (inBlock.containsKey(b))
             return inBlock.get(b);
         else
-            return new HashSet<Temp>();
+            return new LinkedHashSet<Temp>();
     }
 
     public Set<Temp> out(BasicBlock b) {
         if (outBlock.containsKey(b))
             return outBlock.get(b);
         else
-            return new HashSet<Temp>();
+            return new LinkedHashSet<Temp>();
     }
 
     public Set<Temp> in(Instruction i) {
         if (inIns.containsKey(i))
             return inIns.get(i);
         else
-            return new HashSet<Temp>();
+            return new LinkedHashSet<Temp>();
     }
 
     public Set<Temp> out(Instruction i) {
         if (outIns.containsKey(i))
             return outIns.get(i);
         else
-            return new HashSet<Temp>();
+            return new LinkedHashSet<Temp>();
     }
 
 
@@ -57,7 +57,7 @@ public class LifeAnalysis {
         blocks.add(b);
         visited.add(b);
 
-        Set<Temp> displays = new HashSet<Temp>();
+        Set<Temp> displays = new LinkedHashSet<Temp>();
         for (Instruction i: b)
             if (i.frame != null && i.frame.display != null)
                 displays.add(i.frame.display);
@@ -76,15 +76,15 @@ public class LifeAnalysis {
 
     private void analysis() {
         LinkedList<BasicBlock> blocks = new LinkedList<BasicBlock>();
-        Set<BasicBlock> visited = new HashSet<BasicBlock>();
+        Set<BasicBlock> visited = new LinkedHashSet<BasicBlock>();
         Set<BasicBlock> tails = g.tails();
         Set<BasicBlock> nodes = g.nodes();
         for (BasicBlock b: tails)
             explore(b, visited, blocks);
         for (BasicBlock b: nodes) {
             explore(b, visited, blocks);
-            inBlock.put(b, new HashSet<Temp>());
-            outBlock.put(b, new HashSet<Temp>(liveDisplays));
+            inBlock.put(b, new LinkedHashSet<Temp>());
+            outBlock.put(b, new LinkedHashSet<Temp>(liveDisplays));
         }
 
         boolean change = false;
@@ -95,7 +95,7 @@ public class LifeAnalysis {
                     if (outBlock.get(b).addAll(inBlock.get(n)))
                         change = true;
                 
-                HashSet<Temp> t = new HashSet<Temp>(outBlock.get(b));
+                HashSet<Temp> t = new LinkedHashSet<Temp>(outBlock.get(b));
                 t.removeAll(b.def());
                 t.addAll(b.use());
                 inBlock.put(b, t);
@@ -103,16 +103,16 @@ public class LifeAnalysis {
         } while (change);
 
         for (BasicBlock b: blocks) {
-            HashSet<Temp> current = new HashSet<Temp> (outBlock.get(b));
+            HashSet<Temp> current = new LinkedHashSet<Temp> (outBlock.get(b));
 
             Iterator<Instruction> iter = b.descendingIterator();
             Instruction ins = null;
             while (iter.hasNext()) {
                 ins = iter.next();
-                outIns.put(ins, new HashSet<Temp>(current));
+                outIns.put(ins, new LinkedHashSet<Temp>(current));
                 current.removeAll(ins.def());
                 current.addAll(ins.use());
-                inIns.put(ins, new HashSet<Temp>(current));
+                inIns.put(ins, new LinkedHashSet<Temp>(current));
             }
         }
     }
@@ -0,0 +1,49 @@
+package flow;
+
+import java.util.*;
+
+// Back edges of a flow graph, i.e. edges tail -> head where head dominates
+// tail. Each back edge is one loop; loops are ordered by head, then by tail,
+// both in flow graph order.
+public class LoopInfo implements Iterable<LoopInfo.Loop> {
+    public static class Loop {
+        public BasicBlock head, tail;
+
+        Loop(BasicBlock head, BasicBlock tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+    }
+
+    private ArrayList<Loop> loops = new ArrayList<Loop>();
+
+    public LoopInfo(FlowGraph g, DominatingSet dom) {
+        final LinkedHashMap<BasicBlock, Integer> index = new LinkedHashMap<BasicBlock, Integer>();
+        for (BasicBlock b: g.nodes())
+            index.put(b, Integer.valueOf(index.size()));
+
+        Comparator<BasicBlock> byIndex = new Comparator<BasicBlock>() {
+            public int compare(BasicBlock a, BasicBlock b) {
+                return index.get(a).compareTo(index.get(b));
+            }
+        };
+
+        for (BasicBlock head: g.nodes()) {
+            ArrayList<BasicBlock> tails = new ArrayList<BasicBlock>();
+            for (BasicBlock p: g.pred(head))
+                if (dom.dominates(head, p))
+                    tails.add(p);
+            Collections.sort(tails, byIndex);
+            for (BasicBlock tail: tails)
+                loops.add(new Loop(head, tail));
+        }
+    }
+
+    public int size() {
+        return loops.size();
+    }
+
+    public Iterator<Loop> iterator() {
+        return loops.iterator();
+    }
+}
@@ -9,9 +9,9 @@ public class ReachingDefinition {
 
     FlowGraph g;
 
-    Map<BasicBlock, Set<Instruction>> inBlock = new HashMap<BasicBlock, Set<Instruction>>(),
-        outBlock = new HashMap<BasicBlock, Set<Instruction>>();
-    Map<Instruction, Set<Instruction>> inIns = new HashMap<Instruction, Set<Instruction>>();
+    Map<BasicBlock, Set<Instruction>> inBlock = new LinkedHashMap<BasicBlock, Set<Instruction>>(),
+        outBlock = new LinkedHashMap<BasicBlock, Set<Instruction>>();
+    Map<Instruction, Set<Instruction>> inIns = new LinkedHashMap<Instruction, Set<Instruction>>();
 
     public ReachingDefinition(FlowGraph g) {
         this.g = g;
@@ -22,21 +22,21 @@ public class ReachingDefinition {
         if (inBlock.containsKey(b))
             return inBlock.get(b);
         else
-            return new HashSet<Instruction>();
+            return new LinkedHashSet<Instruction>();
     }
 
     public Set<Instruction> out(BasicBlock b) {
         if (outBlock.containsKey(b))
             return outBlock.get(b);
         else
-            return new HashSet<Instruction>();
+            return new LinkedHashSet<Instruction>();
     }
 
     public Set<Instruction> in(Instruction i) {
         if (inIns.containsKey(i))
             return inIns.get(i);
         else
-            return new HashSet<Instruction>();
+            return new LinkedHashSet<Instruction>();
     }
 
     private void explore(BasicBlock b, Set<BasicBlock> visited, LinkedList<BasicBlock> blocks) {
@@ -52,31 +52,31 @@ public class ReachingDefinition {
 
     private void analysis() {
         LinkedList<BasicBlock> blocks = new LinkedList<BasicBlock>();
-        Set<BasicBlock> visited = new HashSet<BasicBlock>();
-        Map<Temp, Set<Instruction>> def = new HashMap<Temp, Set<Instruction>>();
+        Set<BasicBlock> visited = new LinkedHashSet<BasicBlock>();
+        Map<Temp, Set<Instruction>> def = new LinkedHashMap<Temp, Set<Instruction>>();
 
         for (BasicBlock b: g.heads())
             explore(b, visited, blocks);
         for (BasicBlock b: g.nodes()) {
             explore(b, visited, blocks);
 
-            inBlock.put(b, new HashSet<Instruction>());
-            outBlock.put(b, new HashSet<Instruction>());
+            inBlock.put(b, new LinkedHashSet<Instruction>());
+            outBlock.put(b, new LinkedHashSet<Instruction>());
 
             for (Instruction i: b) {
                 for (Temp t: i.def()) {
                     if (!def.containsKey(t))
-                        def.put(t, new HashSet<Instruction>());
+                        def.put(t, new LinkedHashSet<Instruction>());
                     def.get(t).add(i);
                 }
             }
         }
 
-        Map<BasicBlock, Set<Instruction>> kill = new HashMap<BasicBlock, Set<Instruction>>(),
-            gen = new HashMap<BasicBlock, Set<Instruction>>();
+        Map<BasicBlock, Set<Instruction>> kill = new LinkedHashMap<BasicBlock, Set<Instruction>>(),
+            gen = new LinkedHashMap<BasicBlock, Set<Instruction>>();
         for (BasicBlock b: blocks) {
-            kill.put(b, new HashSet<Instruction>());
-            gen.put(b, new HashSet<Instruction>());
+            kill.put(b, new LinkedHashSet<Instruction>());
+            gen.put(b, new LinkedHashSet<Instruction>());
             for (Instruction i: b) {
                 for (Temp t: i.def())
                     if (def.containsKey(t))
@@ -97,7 +97,7 @@ public class ReachingDefinition {
                     if (inBlock.get(b).addAll(outBlock.get(p)))
                         change = true;
 
-                Set<Instruction> t = new HashSet<Instruction>(inBlock.get(b));
+                Set<Instruction> t = new LinkedHashSet<Instruction>(inBlock.get(b));
                 t.removeAll(kill.get(b));
                 t.addAll(gen.get(b));
                 outBlock.put(b, t);
@@ -107,9 +107,9 @@ public class ReachingDefinition {
 
 
         for (BasicBlock b: blocks) {
-            Set<Instruction> current = new HashSet<Instruction>(inBlock.get(b));
+            Set<Instruction> current = new LinkedHashSet<Instruction>(inBlock.get(b));
             for (Instruction i: b) {
-                inIns.put(i, new HashSet<Instruction>(current));
+                inIns.put(i, new LinkedHashSet<Instruction>(current));
 
                 for (Temp t: i.def())
                     if (def.containsKey(t))
@@ -12,7 +12,7 @@ public class Frame {
     public Label place;
     public Temp display;
     public Const frameSize = new Const(0), minusFrameSize = new Const(0);
-    private Map<Temp, Integer> spilledLocals = new HashMap<Temp, Integer>();
+    private Map<Temp, Integer> spilledLocals = new LinkedHashMap<Temp, Integer>();
     public boolean global = false;
 
     public Frame(Label place, Temp display, boolean global) {
@@ -29,30 +29,26 @@ public class Frame {
         return spilledLocals.size();
     }
 
+    // $fp, $ra and the display are saved in the first three words of a
+    // frame and the spilled temps follow in the order they were spilled;
+    // params and the return value are temps like any other and only take
+    // a word when they are spilled
     public void updateFrameSize(int wordLength) {
-        int l = params.size() + 4 + spilledLocals.size();
+        int l = 3 + spilledLocals.size();
         frameSize.bind(l * wordLength);
         minusFrameSize.bind(-l * wordLength);
     }
 
     public int spill(Temp t, int wordLength) {
-        if (t == returnValue)
-            return -(3 + params.size()) * wordLength;
-
-        int i = params.indexOf(t);
-        if (i != -1)
-            return -(3 + i) * wordLength;
-
-        int index = spilledLocals.size();
-        if (!spilledLocals.containsKey(t)) {
+        Integer i = spilledLocals.get(t);
+        if (i == null) {
             if (!global)
-                i = -(4 + params.size() + index);
+                i = -(3 + spilledLocals.size());
             else
-                i = index;
-            spilledLocals.put(t, new Integer(i));
-            return i * wordLength;
-        } else
-            return spilledLocals.get(t).intValue() * wordLength;
+                i = spilledLocals.size();
+            spilledLocals.put(t, i);
+        }
+        return i.intValue() * wordLength;
     }
 
     public Temp addLocal() {
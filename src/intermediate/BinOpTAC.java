@@ -67,5 +67,8 @@ public class BinOpTAC extends OpTAC {
         }
         return dst.toString() + " := " + op1.toString() + " " + s + " " + op2.toString();
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -52,5 +52,8 @@ public class BranchTAC extends ThreeAddressCode {
         }
         return "if " + op1.toString() + s + op2.toString() + " then goto " + place.toString();
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
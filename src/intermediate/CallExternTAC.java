@@ -33,5 +33,8 @@ public class CallExternTAC extends ThreeAddressCode {
         else
             return dst.toString() + " := " + s;
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
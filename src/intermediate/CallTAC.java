@@ -40,5 +40,8 @@ public class CallTAC extends ThreeAddressCode {
             s = actualReturn.toString() + " := " + s;
         return s;
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -0,0 +1,43 @@
+package intermediate;
+
+// A visitor for the passes that only tell a few kinds of code apart: every
+// case it does not override goes to otherwise()
+public abstract class DefaultTACVisitor<R> implements TACVisitor<R> {
+    protected abstract R otherwise(ThreeAddressCode tac);
+
+    public R visit(MoveTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(BinOpTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(UniOpTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(CallTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(CallExternTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(ReturnTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(GotoTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(BranchTAC tac) {
+        return otherwise(tac);
+    }
+
+    public R visit(PhiTAC tac) {
+        return otherwise(tac);
+    }
+}
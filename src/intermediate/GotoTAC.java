@@ -20,5 +20,8 @@ public class GotoTAC extends ThreeAddressCode {
     public String toString() {
         return "goto " + place.toString();
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
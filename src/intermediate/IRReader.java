@@ -0,0 +1,281 @@
+package intermediate;
+
+import frame.Frame;
+import symbol.Symbol;
+import java.io.*;
+import java.util.*;
+import static intermediate.IRWriter.*;
+
+// Reads the format written by IRWriter. Temps and labels come back under
+// their original ids, so the backend produces the same output as it
+// would have straight after Semant.
+public class IRReader {
+    private InputStream in;
+    private IR ir;
+    private ArrayList<Frame> frames = new ArrayList<Frame>();
+    private HashMap<Integer, Temp> temps = new HashMap<Integer, Temp>();
+    private HashMap<Integer, Label> labels = new HashMap<Integer, Label>();
+    private ArrayList<String> strings = new ArrayList<String>();
+    private HashMap<String, UnknownConstAccess> constants = new HashMap<String, UnknownConstAccess>();
+
+    public IRReader(InputStream in) {
+        this.in = new BufferedInputStream(in, 1 << 16);
+    }
+
+    public IR read() throws IOException {
+        for (byte b: MAGIC)
+            if (readByte() != b)
+                throw new IOException("Not an IR file");
+        int version = readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported IR version " + version);
+
+        int n = readInt();
+        for (int i = 0; i < n; ++i) {
+            Label place = readLabel();
+            boolean global = readByte() != 0;
+            frames.add(new Frame(place, null, global));
+        }
+        for (Frame f: frames) {
+            f.display = readTemp();
+            f.returnValue = readTemp();
+            readTemps(f.params);
+            readTemps(f.locals);
+            int m = readInt();
+            for (int i = 0; i < m; ++i)
+                f.returns.add(readLabel());
+        }
+
+        ir = new IR(frames.get(0));
+        for (int i = 1; i < frames.size(); ++i)
+            ir.funcFrames.add(frames.get(i));
+
+        n = readInt();
+        for (int i = 0; i < n; ++i) {
+            UnknownConstAccess a = ir.stringTable.get(readString());
+            constants.put(a.name, a);
+        }
+
+        n = readInt();
+        for (int i = 0; i < n; ++i)
+            ir.funcTable.put(Symbol.symbol(readString()));
+
+        n = readInt();
+        ArrayList<Frame> nodes = new ArrayList<Frame>();
+        for (int i = 0; i < n; ++i) {
+            Frame f = readFrame();
+            nodes.add(f);
+            ir.callingGraph.addNode(f);
+        }
+        for (Frame f: nodes) {
+            int m = readInt();
+            for (int i = 0; i < m; ++i)
+                ir.callingGraph.addEdge(f, readFrame());
+        }
+
+        readTemps(ir.displays);
+
+        while (readCode())
+            ;
+        return ir;
+    }
+
+    private boolean readCode() throws IOException {
+        int op = readByte();
+        if (op == END)
+            return false;
+
+        Label label = (op & HAS_LABEL) != 0 ? readLabel() : null;
+        String comment = (op & HAS_COMMENT) != 0 ? readString() : null;
+        ThreeAddressCode tac = null;
+        Frame frame = null;
+        if ((op & OPCODE) != LABEL)
+            frame = readFrame();
+
+        switch (op & OPCODE) {
+            case LABEL:
+                break;
+
+            case MOVE: {
+                Access src = readAccess();
+                tac = new MoveTAC(frame, src, (AssignableAccess) readAccess());
+                break;
+            }
+
+            case BINOP: {
+                BinOpTAC.BinOp bop = BinOpTAC.BinOp.values()[readByte()];
+                Access op1 = readAccess(), op2 = readAccess();
+                tac = new BinOpTAC(frame, bop, op1, op2, (AssignableAccess) readAccess());
+                break;
+            }
+
+            case UNIOP: {
+                UniOpTAC.UniOp uop = UniOpTAC.UniOp.values()[readByte()];
+                Access op1 = readAccess();
+                tac = new UniOpTAC(frame, uop, op1, (AssignableAccess) readAccess());
+                break;
+            }
+
+            case CALL: {
+                Label place = readLabel();
+                CallTAC call = new CallTAC(frame, place, readTemp());
+                int n = readInt();
+                for (int i = 0; i < n; ++i)
+                    call.addParam(readAccess());
+                tac = call;
+                break;
+            }
+
+            case CALL_EXTERN: {
+                Symbol place = Symbol.symbol(readString());
+                Access p1 = readAccess(), p2 = readAccess(), p3 = readAccess();
+                tac = new CallExternTAC(frame, place, p1, p2, p3, (AssignableAccess) readAccess());
+                break;
+            }
+
+            case RETURN:
+                tac = new ReturnTAC(frame);
+                break;
+
+            case GOTO:
+                tac = new GotoTAC(frame, readLabel());
+                break;
+
+            case BRANCH: {
+                BranchTAC.BranchType type = BranchTAC.BranchType.values()[readByte()];
+                Access op1 = readAccess(), op2 = readAccess();
+                tac = new BranchTAC(frame, type, op1, op2, readLabel());
+                break;
+            }
+
+            default:
+                throw new IOException("Bad opcode " + op);
+        }
+
+        ir.codes.add(label, tac, comment);
+        return true;
+    }
+
+    private Access readAccess() throws IOException {
+        switch (readByte()) {
+            case A_NULL:
+                return null;
+
+            case A_TEMP:
+                return readTemp();
+
+            case A_CONST:
+                return new ConstAccess(readSignedInt());
+
+            case A_WORD_LENGTH:
+                return ir.wordLength;
+
+            case A_UNKNOWN_CONST: {
+                String name = readString();
+                UnknownConstAccess a = constants.get(name);
+                if (a == null) {
+                    a = new UnknownConstAccess(name);
+                    constants.put(name, a);
+                }
+                return a;
+            }
+
+            case A_MEM: {
+                SimpleAccess base = (SimpleAccess) readAccess();
+                return new MemAccess(base, (SimpleAccess) readAccess());
+            }
+
+            default:
+                throw new IOException("Bad access tag");
+        }
+    }
+
+    private Frame readFrame() throws IOException {
+        int i = readInt();
+        if (i >= frames.size())
+            throw new IOException("Bad frame index " + i);
+        return frames.get(i);
+    }
+
+    private void readTemps(List<Temp> list) throws IOException {
+        int n = readInt();
+        for (int i = 0; i < n; ++i)
+            list.add(readTemp());
+    }
+
+    private Temp readTemp() throws IOException {
+        int ref = readInt();
+        if (ref == 0)
+            return null;
+        Integer id = Integer.valueOf((ref >>> 1) - 1);
+        if ((ref & 1) != 0) {
+            Frame frame = readFrame();
+            Temp t = Temp.restore(id.intValue(), frame, readByte() != 0);
+            temps.put(id, t);
+            return t;
+        }
+        Temp t = temps.get(id);
+        if (t == null)
+            throw new IOException("Undefined temp t" + id);
+        return t;
+    }
+
+    private Label readLabel() throws IOException {
+        int ref = readInt();
+        if (ref == 0)
+            return null;
+        Integer id = Integer.valueOf((ref >>> 1) - 1);
+        if ((ref & 1) != 0) {
+            Label l = Label.restore(id.intValue(), readString());
+            labels.put(id, l);
+            return l;
+        }
+        Label l = labels.get(id);
+        if (l == null)
+            throw new IOException("Undefined label L" + id);
+        return l;
+    }
+
+    private String readString() throws IOException {
+        int ref = readInt();
+        if (ref == 0)
+            return null;
+        int id = (ref >>> 1) - 1;
+        if ((ref & 1) != 0) {
+            byte[] bytes = new byte[readInt()];
+            int off = 0;
+            while (off < bytes.length) {
+                int r = in.read(bytes, off, bytes.length - off);
+                if (r < 0)
+                    throw new EOFException("Unexpected end of IR");
+                off += r;
+            }
+            strings.add(new String(bytes, "UTF-8"));
+        }
+        if (id >= strings.size())
+            throw new IOException("Undefined string " + id);
+        return strings.get(id);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("Unexpected end of IR");
+        return b;
+    }
+
+    private int readSignedInt() throws IOException {
+        int v = readInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private int readInt() throws IOException {
+        int v = 0, shift = 0, b;
+        do {
+            b = readByte();
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
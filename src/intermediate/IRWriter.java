@@ -0,0 +1,284 @@
+package intermediate;
+
+import frame.Frame;
+import symbol.Symbol;
+import arch.StringTable;
+import java.io.*;
+import java.util.*;
+
+// Binary form of the IR as produced by Semant.translate, i.e. before any
+// code generation has happened (no spills, frame sizes not yet computed).
+//
+//   magic "TIR" version
+//   frames     n, then per frame: place label, global flag
+//              then per frame: display, return value, params, locals, returns
+//   strings    n, then the string table values in table order
+//   externs    n, then symbol names
+//   calls      n nodes (frame indices), then per node its successors
+//   displays   n, then temps
+//   codes      records until END: opcode byte | HAS_LABEL | HAS_COMMENT,
+//              [label] [comment] [frame index and operands]
+//
+// Integers are LEB128 varints, signed values zigzag encoded. Temps, labels
+// and strings are written as references: 0 is null, otherwise
+// (id + 1) << 1 | defined, and the first reference to an id carries its
+// definition (the frame and inMem flag of a temp, the tag of a label, the
+// UTF-8 bytes of a string). Strings are numbered in order of first use.
+public class IRWriter {
+    static final byte[] MAGIC = { 'T', 'I', 'R' };
+    static final int VERSION = 1;
+
+    static final int END = 0, LABEL = 1, MOVE = 2, BINOP = 3, UNIOP = 4,
+              CALL = 5, CALL_EXTERN = 6, RETURN = 7, GOTO = 8, BRANCH = 9;
+    static final int HAS_LABEL = 0x40, HAS_COMMENT = 0x80, OPCODE = 0x3f;
+
+    static final int A_NULL = 0, A_TEMP = 1, A_CONST = 2, A_WORD_LENGTH = 3,
+              A_UNKNOWN_CONST = 4, A_MEM = 5;
+
+    private OutputStream out;
+    private IR ir;
+    private HashMap<Frame, Integer> frames = new LinkedHashMap<Frame, Integer>();
+    private HashSet<Temp> temps = new LinkedHashSet<Temp>();
+    private HashSet<Label> labels = new LinkedHashSet<Label>();
+    private HashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+    public IRWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    public void write(IR ir) throws IOException {
+        this.ir = ir;
+        out.write(MAGIC);
+        writeInt(VERSION);
+
+        ArrayList<Frame> all = new ArrayList<Frame>();
+        all.add(ir.globalFrame);
+        all.addAll(ir.funcFrames);
+        writeInt(all.size());
+        for (Frame f: all) {
+            if (f.getSpilledLocalCount() > 0)
+                throw new IOException("IR has already been through code generation");
+            frames.put(f, Integer.valueOf(frames.size()));
+            writeLabel(f.place);
+            out.write(f.global ? 1 : 0);
+        }
+        for (Frame f: all) {
+            writeTemp(f.display);
+            writeTemp(f.returnValue);
+            writeTemps(f.params);
+            writeTemps(f.locals);
+            writeInt(f.returns.size());
+            for (Label l: f.returns)
+                writeLabel(l);
+        }
+
+        ArrayList<String> values = new ArrayList<String>();
+        for (StringTable.StringPair pair: ir.stringTable)
+            values.add(pair.value);
+        writeInt(values.size());
+        for (String s: values)
+            writeString(s);
+
+        ArrayList<Symbol> externs = new ArrayList<Symbol>();
+        for (Symbol s: ir.funcTable)
+            externs.add(s);
+        writeInt(externs.size());
+        for (Symbol s: externs)
+            writeString(s.toString());
+
+        Set<Frame> nodes = ir.callingGraph.nodes();
+        writeInt(nodes.size());
+        for (Frame f: nodes)
+            writeFrame(f);
+        for (Frame f: nodes) {
+            Set<Frame> succ = ir.callingGraph.succ(f);
+            writeInt(succ.size());
+            for (Frame g: succ)
+                writeFrame(g);
+        }
+
+        writeTemps(ir.displays);
+
+        for (IntermediateCode ic: ir.codes)
+            writeCode(ic);
+        out.write(END);
+        out.flush();
+    }
+
+    private void writeCode(IntermediateCode ic) throws IOException {
+        ThreeAddressCode tac = ic.tac;
+        int op;
+        if (tac == null)
+            op = LABEL;
+        else if (tac instanceof MoveTAC)
+            op = MOVE;
+        else if (tac instanceof BinOpTAC)
+            op = BINOP;
+        else if (tac instanceof UniOpTAC)
+            op = UNIOP;
+        else if (tac instanceof CallTAC)
+            op = CALL;
+        else if (tac instanceof CallExternTAC)
+            op = CALL_EXTERN;
+        else if (tac instanceof ReturnTAC)
+            op = RETURN;
+        else if (tac instanceof GotoTAC)
+            op = GOTO;
+        else if (tac instanceof PhiTAC)
+            throw new IOException("cannot write phi functions, leave SSA form first");
+        else
+            op = BRANCH;
+
+        if (ic.label != null)
+            op |= HAS_LABEL;
+        if (ic.comment != null)
+            op |= HAS_COMMENT;
+        out.write(op);
+        if (ic.label != null)
+            writeLabel(ic.label);
+        if (ic.comment != null)
+            writeString(ic.comment);
+        if (tac == null)
+            return;
+
+        writeFrame(tac.frame);
+        switch (op & OPCODE) {
+            case MOVE:
+                writeAccess(tac.op1);
+                writeAccess(tac.dst);
+                break;
+
+            case BINOP:
+                out.write(((BinOpTAC) tac).op.ordinal());
+                writeAccess(tac.op1);
+                writeAccess(tac.op2);
+                writeAccess(tac.dst);
+                break;
+
+            case UNIOP:
+                out.write(((UniOpTAC) tac).op.ordinal());
+                writeAccess(tac.op1);
+                writeAccess(tac.dst);
+                break;
+
+            case CALL:
+                CallTAC call = (CallTAC) tac;
+                writeLabel(call.place);
+                writeTemp(call.actualReturn);
+                writeInt(call.params.size());
+                for (Access a: call.params)
+                    writeAccess(a);
+                break;
+
+            case CALL_EXTERN:
+                CallExternTAC ext = (CallExternTAC) tac;
+                writeString(ext.place.toString());
+                writeAccess(ext.param1);
+                writeAccess(ext.param2);
+                writeAccess(ext.param3);
+                writeAccess(ext.dst);
+                break;
+
+            case GOTO:
+                writeLabel(((GotoTAC) tac).place);
+                break;
+
+            case BRANCH:
+                BranchTAC branch = (BranchTAC) tac;
+                out.write(branch.type.ordinal());
+                writeAccess(branch.op1);
+                writeAccess(branch.op2);
+                writeLabel(branch.place);
+                break;
+        }
+    }
+
+    private void writeAccess(Access a) throws IOException {
+        if (a == null)
+            out.write(A_NULL);
+        else if (a instanceof Temp) {
+            out.write(A_TEMP);
+            writeTemp((Temp) a);
+        } else if (a == ir.wordLength)
+            out.write(A_WORD_LENGTH);
+        else if (a instanceof UnknownConstAccess) {
+            out.write(A_UNKNOWN_CONST);
+            writeString(((UnknownConstAccess) a).name);
+        } else if (a instanceof ConstAccess) {
+            out.write(A_CONST);
+            writeSignedInt(((ConstAccess) a).value);
+        } else {
+            MemAccess m = (MemAccess) a;
+            out.write(A_MEM);
+            writeAccess(m.base);
+            writeAccess(m.offset);
+        }
+    }
+
+    private void writeFrame(Frame f) throws IOException {
+        Integer i = frames.get(f);
+        if (i == null)
+            throw new IOException("Frame " + f.place + " is not part of the IR");
+        writeInt(i.intValue());
+    }
+
+    private void writeTemps(List<Temp> list) throws IOException {
+        writeInt(list.size());
+        for (Temp t: list)
+            writeTemp(t);
+    }
+
+    private void writeTemp(Temp t) throws IOException {
+        if (t == null) {
+            writeInt(0);
+            return;
+        }
+        boolean define = temps.add(t);
+        writeInt((t.index() + 1) << 1 | (define ? 1 : 0));
+        if (define) {
+            writeFrame(t.frame);
+            out.write(t.inMem() ? 1 : 0);
+        }
+    }
+
+    private void writeLabel(Label l) throws IOException {
+        if (l == null) {
+            writeInt(0);
+            return;
+        }
+        boolean define = labels.add(l);
+        writeInt((l.index() + 1) << 1 | (define ? 1 : 0));
+        if (define)
+            writeString(l.tag);
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeInt(0);
+            return;
+        }
+        Integer i = strings.get(s);
+        if (i != null) {
+            writeInt((i.intValue() + 1) << 1);
+            return;
+        }
+        int id = strings.size();
+        strings.put(s, Integer.valueOf(id));
+        writeInt((id + 1) << 1 | 1);
+        byte[] bytes = s.getBytes("UTF-8");
+        writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeSignedInt(int v) throws IOException {
+        writeInt((v << 1) ^ (v >> 31));
+    }
+
+    private void writeInt(int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
@@ -7,7 +7,7 @@ public class IntermediateCodeList implements Iterable<IntermediateCode> {
     private SimpleLinkedList<IntermediateCode> codes = new SimpleLinkedList<IntermediateCode>();
 
     public IntermediateCodeList duplicate() {
-        Map<Label, Label> labelMap = new HashMap<Label, Label>();
+        Map<Label, Label> labelMap = new LinkedHashMap<Label, Label>();
         for (IntermediateCode ic: this) {
             if (ic.label != null && !labelMap.containsKey(ic.label))
                 labelMap.put(ic.label, Label.newLabel());
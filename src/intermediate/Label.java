@@ -3,6 +3,7 @@ package intermediate;
 public class Label {
     private int id;
     String tag;
+    private String name = null;
 
     private Label(int id, String tag) {
         this.id = id;
@@ -19,11 +20,25 @@ public class Label {
         return newLabel("");
     }
 
+    // recreates a label read back from a serialized IR under its old id
+    static Label restore(int id, String tag) {
+        if (count <= id)
+            count = id + 1;
+        return new Label(id, tag);
+    }
+
+    public int index() {
+        return id;
+    }
+
     public String toString() {
-        String s = "L" + new Integer(id).toString();
-        if (tag.length() > 0)
-            s += "_" + tag;
-        return s;
+        if (name == null) {
+            String s = "L" + new Integer(id).toString();
+            if (tag.length() > 0)
+                s += "_" + tag;
+            name = s;
+        }
+        return name;
     }
 }
 
@@ -17,5 +17,8 @@ public class MoveTAC extends ThreeAddressCode {
     public MoveTAC clone() {
         return new MoveTAC(frame, op1, (AssignableAccess) dst);
     }
+
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
 }
- 
@@ -0,0 +1,66 @@
+package intermediate;
+
+import frame.Frame;
+import java.util.ArrayList;
+
+// dst := phi(L1: a1, L2: a2, ...) at the top of a block, taking the
+// argument of the predecessor block labeled Li. Only exists while a
+// function is in SSA form (see optimization.SSA).
+public class PhiTAC extends ThreeAddressCode {
+    public ArrayList<Label> preds = new ArrayList<Label>();
+    public ArrayList<Access> args = new ArrayList<Access>();
+
+    public PhiTAC(Frame frame, Temp dst) {
+        super(frame);
+        this.op1 = null;
+        this.op2 = null;
+        this.dst = dst;
+    }
+
+    public void addArg(Label pred, Access arg) {
+        preds.add(pred);
+        args.add(arg);
+    }
+
+    public Access arg(Label pred) {
+        int i = preds.indexOf(pred);
+        return i == -1 ? null : args.get(i);
+    }
+
+    public void setArg(Label pred, Access arg) {
+        int i = preds.indexOf(pred);
+        if (i == -1)
+            addArg(pred, arg);
+        else
+            args.set(i, arg);
+    }
+
+    public void removeArg(Label pred) {
+        int i = preds.indexOf(pred);
+        if (i != -1) {
+            preds.remove(i);
+            args.remove(i);
+        }
+    }
+
+    public PhiTAC clone() {
+        PhiTAC ret = new PhiTAC(frame, (Temp) dst);
+        ret.preds = new ArrayList<Label>(preds);
+        ret.args = new ArrayList<Access>(args);
+        return ret;
+    }
+
+    public String toString() {
+        String s = "";
+        for (int i = 0; i < preds.size(); ++i) {
+            if (i > 0)
+                s += ", ";
+            s += preds.get(i).toString() + ": " + args.get(i).toString();
+        }
+        return dst.toString() + " := phi(" + s + ")";
+    }
+
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -17,5 +17,8 @@ public class ReturnTAC extends ThreeAddressCode {
     public String toString() {
         return "return";
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
@@ -0,0 +1,14 @@
+package intermediate;
+
+// Double dispatch over the three address codes, see ThreeAddressCode.accept
+public interface TACVisitor<R> {
+    R visit(MoveTAC tac);
+    R visit(BinOpTAC tac);
+    R visit(UniOpTAC tac);
+    R visit(CallTAC tac);
+    R visit(CallExternTAC tac);
+    R visit(ReturnTAC tac);
+    R visit(GotoTAC tac);
+    R visit(BranchTAC tac);
+    R visit(PhiTAC tac);
+}
@@ -18,10 +18,27 @@ public class Temp implements AssignableAccess, SimpleAccess {
         return new Temp(count++, frame);
     }
 
+    // recreates a temp read back from a serialized IR under its old id
+    static Temp restore(int id, Frame frame, boolean inMem) {
+        Temp t = new Temp(id, frame);
+        t.inMem = inMem;
+        if (count <= id)
+            count = id + 1;
+        return t;
+    }
+
     public String toString() {
         return "t" + new Integer(id).toString();
     }
 
+    public int index() {
+        return id;
+    }
+
+    public static int count() {
+        return count;
+    }
+
     public int spill(int wordLength) {
         inMem = true;
         return frame.spill(this, wordLength);
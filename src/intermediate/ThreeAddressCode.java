@@ -11,5 +11,7 @@ public abstract class ThreeAddressCode {
     }
 
     abstract public ThreeAddressCode clone();
+
+    abstract public <R> R accept(TACVisitor<R> v);
 }
 
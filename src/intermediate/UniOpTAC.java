@@ -30,5 +30,8 @@ public class UniOpTAC extends OpTAC {
         }
         return dst.toString() + " := " + s + op1.toString();
     }
-}
 
+    public <R> R accept(TACVisitor<R> v) {
+        return v.visit(this);
+    }
+}
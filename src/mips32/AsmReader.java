@@ -0,0 +1,269 @@
+package mips32;
+
+import java.io.*;
+import java.util.*;
+import static mips32.Simulator.*;
+
+// Assembles SPIM source, as written by SpimAsm, into a Simulator. Besides
+// the instructions the simulator executes directly it accepts the branch
+// and immediate forms SPIM expands (b, beqz, add $d, $s, imm, ...), and the
+// directives .text, .data, .globl, .align, .word, .byte, .space, .ascii and
+// .asciiz. The file is read as ISO-8859-1 so string bytes pass unchanged.
+class AsmReader {
+    private BufferedReader in;
+    private Simulator sim;
+    private int lineNumber = 0;
+    private boolean text = true;
+
+    // three register forms with an immediate counterpart
+    private static final HashMap<Integer, Integer> immediateForms = new HashMap<Integer, Integer>();
+    static {
+        immediateForms.put(ADD, ADDI);
+        immediateForms.put(ADDU, ADDIU);
+        immediateForms.put(AND, ANDI);
+        immediateForms.put(OR, ORI);
+        immediateForms.put(XOR, XORI);
+        immediateForms.put(SLT, SLTI);
+        immediateForms.put(SLTU, SLTIU);
+        immediateForms.put(SLLV, SLL);
+        immediateForms.put(SRLV, SRL);
+        immediateForms.put(SRAV, SRA);
+    }
+
+    AsmReader(InputStream in, Simulator sim) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(in, "ISO-8859-1"), 1 << 16);
+        this.sim = sim;
+    }
+
+    void read() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            ++lineNumber;
+            try {
+                line(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void line(String line) throws IOException {
+        int i = 0, n = line.length();
+        while (true) {
+            while (i < n && Character.isWhitespace(line.charAt(i)))
+                ++i;
+            int j = i;
+            while (j < n && isSymbolChar(line.charAt(j)))
+                ++j;
+            if (j == i || j == n || line.charAt(j) != ':')
+                break;
+            if (text)
+                sim.textLabel(line.substring(i, j));
+            else
+                sim.dataLabel(line.substring(i, j));
+            i = j + 1;
+        }
+        if (i == n || line.charAt(i) == '#')
+            return;
+
+        int j = i;
+        while (j < n && !Character.isWhitespace(line.charAt(j)))
+            ++j;
+        String name = line.substring(i, j);
+        if (name.startsWith("."))
+            directive(name, line.substring(j));
+        else
+            instruction(name, operands(line.substring(j)));
+    }
+
+    private static boolean isSymbolChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+    }
+
+    private static List<String> operands(String s) {
+        int hash = s.indexOf('#');
+        if (hash != -1)
+            s = s.substring(0, hash);
+        ArrayList<String> ops = new ArrayList<String>();
+        if (s.trim().length() == 0)
+            return ops;
+        for (String op: s.split(","))
+            ops.add(op.trim());
+        return ops;
+    }
+
+    private void directive(String name, String rest) throws IOException {
+        if (name.equals(".text")) {
+            text = true;
+        } else if (name.equals(".data")) {
+            text = false;
+            List<String> ops = operands(rest);
+            if (ops.size() > 0)
+                sim.origin(number(ops.get(0)));
+        } else if (name.equals(".globl") || name.equals(".align") && text) {
+            // nothing to lay out
+        } else if (text) {
+            throw new IllegalArgumentException(name + " in the text segment");
+        } else if (name.equals(".align")) {
+            sim.align(number(operands(rest).get(0)));
+        } else if (name.equals(".word")) {
+            for (String op: operands(rest)) {
+                if (isNumber(op))
+                    sim.word(number(op));
+                else
+                    sim.word(op);
+            }
+        } else if (name.equals(".byte")) {
+            for (String op: operands(rest))
+                sim.bytes(new byte[] { (byte) number(op) });
+        } else if (name.equals(".space")) {
+            sim.reserve(number(operands(rest).get(0)));
+        } else if (name.equals(".ascii") || name.equals(".asciiz")) {
+            sim.bytes(string(rest));
+            if (name.equals(".asciiz"))
+                sim.bytes(new byte[1]);
+        } else
+            throw new IllegalArgumentException("unknown directive " + name);
+    }
+
+    // the one quoted operand of .ascii and .asciiz; only a comment may
+    // follow it, so an unescaped quote inside the string is an error rather
+    // than the end of a shorter one
+    private static byte[] string(String s) {
+        int i = 0, n = s.length();
+        while (i < n && Character.isWhitespace(s.charAt(i)))
+            ++i;
+        if (i == n || s.charAt(i) != '"')
+            throw new IllegalArgumentException("missing string");
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (++i; i < n; ++i) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                for (++i; i < n && Character.isWhitespace(s.charAt(i)); ++i)
+                    ;
+                if (i < n && s.charAt(i) != '#')
+                    throw new IllegalArgumentException("text after string: " + s.substring(i).trim());
+                return b.toByteArray();
+            }
+            if (c == '\\' && i + 1 < n) {
+                c = s.charAt(++i);
+                if (c == 'n')
+                    c = '\n';
+                else if (c == 't')
+                    c = '\t';
+                else if (c == '0')
+                    c = 0;
+            }
+            b.write(c);
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    private void instruction(String name, List<String> ops) {
+        if (!text)
+            throw new IllegalArgumentException(name + " in the data segment");
+
+        // pseudo instructions with a direct equivalent
+        if (name.equals("nop")) {
+            sim.emit(SLL, 0, 0, 0, 0, null);
+            return;
+        } else if (name.equals("b")) {
+            expect(name, ops, 1);
+            sim.emit(BEQ, 0, 0, 0, 0, ops.get(0));
+            return;
+        } else if (name.equals("beqz") || name.equals("bnez") || name.equals("bltz")
+                || name.equals("bgtz") || name.equals("blez") || name.equals("bgez")) {
+            expect(name, ops, 2);
+            // beqz -> beq $s, $zero, ...
+            sim.emit(opcode(name.substring(0, 3)), 0, reg(ops.get(0)), 0, 0, ops.get(1));
+            return;
+        }
+
+        int o = opcode(name);
+        if (o == -1)
+            throw new IllegalArgumentException("unknown instruction " + name);
+
+        if (o <= SRAV) {
+            expect(name, ops, 3);
+            int d = reg(ops.get(0)), s = reg(ops.get(1));
+            String t = ops.get(2);
+            if (!t.startsWith("$")) {
+                if (o == SUB || o == SUBU)
+                    sim.emit(o == SUB ? ADDI : ADDIU, d, s, 0, -number(t), null);
+                else if (immediateForms.containsKey(o))
+                    sim.emit(immediateForms.get(o), d, s, 0, number(t), null);
+                else
+                    throw new IllegalArgumentException(name + " takes no immediate");
+            } else
+                sim.emit(o, d, s, reg(t), 0, null);
+        } else if (o <= SRA) {
+            expect(name, ops, 3);
+            sim.emit(o, reg(ops.get(0)), reg(ops.get(1)), 0, number(ops.get(2)), null);
+        } else if (o <= ABS) {
+            expect(name, ops, 2);
+            sim.emit(o, reg(ops.get(0)), reg(ops.get(1)), 0, 0, null);
+        } else if (o == LA) {
+            expect(name, ops, 2);
+            String a = ops.get(1);
+            if (isNumber(a))
+                sim.emit(LI, reg(ops.get(0)), 0, 0, number(a), null);
+            else
+                sim.emit(LA, reg(ops.get(0)), 0, 0, 0, a);
+        } else if (o <= LUI) {
+            expect(name, ops, 2);
+            sim.emit(o, reg(ops.get(0)), 0, 0, number(ops.get(1)), null);
+        } else if (o <= SB) {
+            expect(name, ops, 2);
+            String m = ops.get(1);
+            int open = m.indexOf('('), close = m.indexOf(')');
+            if (open == -1 || close < open)
+                throw new IllegalArgumentException("bad address " + m);
+            String offset = m.substring(0, open).trim();
+            int base = reg(m.substring(open + 1, close).trim());
+            sim.emit(o, reg(ops.get(0)), base, 0, offset.length() == 0 ? 0 : number(offset), null);
+        } else if (o == J || o == JAL) {
+            expect(name, ops, 1);
+            sim.emit(o, 0, 0, 0, 0, ops.get(0));
+        } else if (o == JR) {
+            expect(name, ops, 1);
+            sim.emit(o, 0, reg(ops.get(0)), 0, 0, null);
+        } else if (o == JALR) {
+            if (ops.size() == 1)
+                sim.emit(o, 31, reg(ops.get(0)), 0, 0, null);
+            else {
+                expect(name, ops, 2);
+                sim.emit(o, reg(ops.get(0)), reg(ops.get(1)), 0, 0, null);
+            }
+        } else if (o <= BGE) {
+            expect(name, ops, 3);
+            sim.emit(o, 0, reg(ops.get(0)), reg(ops.get(1)), 0, ops.get(2));
+        } else {
+            expect(name, ops, 0);
+            sim.emit(o, 0, 0, 0, 0, null);
+        }
+    }
+
+    private static void expect(String name, List<String> ops, int n) {
+        if (ops.size() != n)
+            throw new IllegalArgumentException(name + " takes " + n + " operands");
+    }
+
+    private static int reg(String s) {
+        int r = register(s);
+        if (r == -1)
+            throw new IllegalArgumentException("bad register " + s);
+        return r;
+    }
+
+    private static boolean isNumber(String s) {
+        return s.length() > 0 && (Character.isDigit(s.charAt(0)) || s.charAt(0) == '-' || s.charAt(0) == '+');
+    }
+
+    private static int number(String s) {
+        try {
+            return Long.decode(s).intValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number " + s);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package mips32;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Buffered UTF-8 sink for the assembly output. Characters are encoded
+// straight into a direct buffer which is handed to the channel in large
+// chunks, so emitting an instruction does not create any strings.
+class AsmWriter implements Appendable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private char[] digits = new char[11];
+    private char highSurrogate = 0;
+
+    public AsmWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public AsmWriter append(char c) throws IOException {
+        if (buffer.remaining() < 4)
+            flush();
+
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xc0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+            int cp = Character.toCodePoint(highSurrogate, c);
+            highSurrogate = 0;
+            buffer.put((byte) (0xf0 | (cp >> 18)));
+            buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (cp & 0x3f)));
+        } else {
+            buffer.put((byte) (0xe0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+        return this;
+    }
+
+    public AsmWriter append(CharSequence s) throws IOException {
+        return append(s, 0, s.length());
+    }
+
+    public AsmWriter append(CharSequence s, int start, int end) throws IOException {
+        for (int i = start; i < end; ++i)
+            append(s.charAt(i));
+        return this;
+    }
+
+    public AsmWriter append(int value) throws IOException {
+        if (value == Integer.MIN_VALUE)
+            return append("-2147483648");
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0)
+            append(digits[--n]);
+        return this;
+    }
+
+    public AsmWriter newLine() throws IOException {
+        return append('\n');
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
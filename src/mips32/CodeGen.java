@@ -9,7 +9,7 @@ import regalloc.*;
 import arch.Const;
 import symbol.Symbol;
 import flow.*;
-import java.io.BufferedWriter;
+import java.nio.channels.WritableByteChannel;
 
 public class CodeGen {
     static class MipsMemStyle {
@@ -24,7 +24,7 @@ public class CodeGen {
 
     Notifier notifier;
 
-    HashMap<Label, ThreeAddressCode> labelMap;
+    LinkedHashMap<Label, ThreeAddressCode> labelMap;
     IR ir;
     Optimizer opt;
     Temp zero, gp, fp, sp, ra, v0, a0, a1;
@@ -35,30 +35,47 @@ public class CodeGen {
     static class SavePlace {
         LabeledInstruction save, restore;
         LabeledInstruction ret;
-        Frame frame;
-        Temp calleeReturnValue;
+        Frame frame, callee;
+        // the $sp adjustments of the call, which make room for the saves
+        Instruction push, pop;
 
-        public SavePlace(Frame frame, LabeledInstruction save, LabeledInstruction restore,
-                LabeledInstruction ret, Temp calleeReturnValue) {
+        public SavePlace(Frame frame, Frame callee, LabeledInstruction save, LabeledInstruction restore,
+                LabeledInstruction ret, Instruction push, Instruction pop) {
             this.save = save;
             this.restore = restore;
             this.frame = frame;
+            this.callee = callee;
             this.ret = ret;
-            this.calleeReturnValue = calleeReturnValue;
+            this.push = push;
+            this.pop = pop;
         }
     }
 
     ArrayList<SavePlace> callSaves;
 
+    // static measures of the last generate()
+    public static class Stats {
+        public int instructions = 0, moves = 0;
+        public int spills = 0, spillRounds = 0;
+        public int frameSize = 0, maxFrameSize = 0;
+    }
+
+    Stats stats = new Stats();
+
+    // the final code of the last generate(), kept for simulator()
+    InstructionList output = null;
+    Map<Temp, Register> outputMap = null;
+
     public CodeGen(Notifier notifier, IR ir, Optimizer opt) {
         this.notifier = notifier;
         this.ir = ir;
         this.opt = opt;
         ir.wordLength.bind(wordLength);
-        labelMap = new HashMap<Label, ThreeAddressCode>();
-        usedDisplays = new HashSet<Temp>();
+        opt.optimize(ir);
+        labelMap = new LinkedHashMap<Label, ThreeAddressCode>();
+        usedDisplays = new LinkedHashSet<Temp>();
         
-        HashSet<Label> labels = new HashSet<Label>();
+        LinkedHashSet<Label> labels = new LinkedHashSet<Label>();
         for (IntermediateCode ic: ir.codes) {
             if (ic.label != null)
                 labels.add(ic.label);
@@ -119,69 +136,95 @@ public class CodeGen {
         }
     }
 
-    void fillCallSaves(InstructionList list, LifeAnalysis life) {
-        for (SavePlace place: callSaves) {
-            LabeledInstruction p = place.ret;
-            Instruction i = null;
-            while (p != null) {
-                if (p.instruction != null) {
-                    i = p.instruction;
-                    break;
-                }
-                p = p.next;
+    // The temps of the callee's frame that are live after the call returns.
+    // Only a new activation of a frame writes its params and locals while
+    // an older one waits, and each activation starts at a call into the
+    // frame, so those calls save what the older one still needs. Saving
+    // at calls out of the frame instead would also undo the writes that
+    // its nested functions make to it before they call back in.
+    ArrayList<Temp> callSaves(SavePlace place, LifeAnalysis life) {
+        ArrayList<Temp> saves = new ArrayList<Temp>();
+        LabeledInstruction p = place.ret;
+        Instruction i = null;
+        while (p != null) {
+            if (p.instruction != null) {
+                i = p.instruction;
+                break;
             }
-            if (i != null) {
-                Set<Temp> s = new HashSet<Temp>(life.in(i));
-                if (place.calleeReturnValue != null)
-                    s.remove(place.calleeReturnValue);
-                ArrayList<Temp> saves = new ArrayList<Temp>();
-                for (Temp t: place.frame.params)
-                    if (s.contains(t))
-                        saves.add(t);
-                for (Temp t: place.frame.locals)
-                    if (s.contains(t))
-                        saves.add(t);
-                if (place.frame.returnValue != null && s.contains(place.frame.returnValue))
-                    saves.add(place.frame.returnValue);
-
-                LabeledInstruction o = place.save.next;
-                LabeledInstruction tail = place.save;
-                int len = saves.size() * wordLength, off = 0;
-
-                tail.next = new LabeledInstruction(null,
-                        Instruction.ADDI(place.frame, sp, sp, new Const(-len)),
-                        null);
-                tail = tail.next;
-                off = len - wordLength;
-                for (Temp t: saves) {
-                    tail.next = new LabeledInstruction(null,
-                            Instruction.SW(place.frame, t, sp, new Const(off)),
-                            null);
-                    tail = tail.next;
-                    off -= wordLength;
-                }
-                tail.next = o;
-
-                o = place.restore.next;
-                tail = place.restore;
-                off = len - wordLength;
-                for (Temp t: saves) {
-                    tail.next = new LabeledInstruction(null,
-                            Instruction.LW(place.frame, t, sp, new Const(off)),
-                            null);
-                    tail = tail.next;
-                    off -= wordLength;
+            p = p.next;
+        }
+        if (i != null) {
+            Set<Temp> s = new LinkedHashSet<Temp>(life.in(i));
+            for (Temp t: place.callee.params)
+                if (s.contains(t))
+                    saves.add(t);
+            for (Temp t: place.callee.locals)
+                if (s.contains(t))
+                    saves.add(t);
+            // the return value is read as the result first, so it only
+            // needs saving when it is still live once that is done
+            Temp rv = place.callee.returnValue;
+            if (rv != null && life.in(place.pop).contains(rv))
+                saves.add(rv);
+        }
+        return saves;
+    }
+
+    // A save reads the temps it saves, which keeps them live back to the
+    // return of an earlier call that may not have saved them yet, so the
+    // saves are recomputed with the stores in the list until they stop
+    // growing.
+    void fillCallSaves(InstructionList list, FlowGraphGenerator fg) {
+        LinkedHashMap<SavePlace, ArrayList<Temp>> saves = new LinkedHashMap<SavePlace, ArrayList<Temp>>();
+        boolean grown = !callSaves.isEmpty();
+        while (grown) {
+            ArrayList<LabeledInstruction> stores = new ArrayList<LabeledInstruction>();
+            for (SavePlace place: callSaves)
+                if (saves.containsKey(place))
+                    for (Temp t: saves.get(place))
+                        stores.add(list.insertAfter(place.save, null, Instruction.SW(place.frame, t, sp, new Const(0))));
+            LifeAnalysis life = new LifeAnalysis(fg.build(list));
+            for (LabeledInstruction li: stores)
+                list.remove(li);
+
+            grown = false;
+            for (SavePlace place: callSaves) {
+                ArrayList<Temp> s = callSaves(place, life);
+                if (!s.equals(saves.get(place))) {
+                    saves.put(place, s);
+                    grown = true;
                 }
-                tail.next = new LabeledInstruction(null,
-                        Instruction.ADDI(place.frame, sp, sp, new Const(len)),
-                        null);
-                tail = tail.next;
-                tail.next = o;
+            }
+        }
+
+        for (SavePlace place: callSaves) {
+            ArrayList<Temp> s = saves.get(place);
+            if (s.isEmpty())
+                continue;
+            // the saves go in the words above the ones the call keeps $fp,
+            // $ra and the display in, so its own push and pop cover them
+            int len = s.size() * wordLength, off;
+            place.push.imm = new Const(-len - wordLength);
+            place.pop.imm = new Const(len + wordLength);
+
+            LabeledInstruction at = place.save;
+            off = len;
+            for (Temp t: s) {
+                at = list.insertAfter(at, null, Instruction.SW(place.frame, t, sp, new Const(off)));
+                off -= wordLength;
+            }
+
+            at = place.restore;
+            off = len;
+            for (Temp t: s) {
+                at = list.insertAfter(at, null, Instruction.LW(place.frame, t, sp, new Const(off)));
+                off -= wordLength;
             }
         }
     }
 
-    public boolean generate(BufferedWriter writer) throws java.io.IOException {
+    public boolean generate(WritableByteChannel channel) throws java.io.IOException {
+        stats = new Stats();
         InstructionList list = new InstructionList();
         for (IntermediateCode ic: ir.codes) {
             if (ic.label != null)
@@ -191,17 +234,14 @@ public class CodeGen {
             }
         }
 
-        FlowGraphGenerator fg = new FlowGraphGenerator();
-        FlowGraph graph = fg.build(list);
-        LifeAnalysis life = new LifeAnalysis(graph);
-        fillCallSaves(list, life);
+        fillCallSaves(list, new FlowGraphGenerator());
 
-        InstructionList nlist = new InstructionList();
-        for (LabeledInstruction ins: list) {
-            if (ins.label != null || ins.instruction != null)
-                nlist.add(ins.label, ins.instruction);
+        // drop the placeholders of calls that save nothing
+        for (Iterator<LabeledInstruction> iter = list.iterator(); iter.hasNext(); ) {
+            LabeledInstruction ins = iter.next();
+            if (ins.label == null && ins.instruction == null)
+                iter.remove();
         }
-        list = nlist;
 
 
         list = opt.optimize(list, zero);
@@ -235,7 +275,7 @@ public class CodeGen {
         registers.add(new Register("$fp"));
         registers.add(new Register("$sp"));
         registers.add(new Register("$ra"));
-        Map<Temp, Register> preColor = new HashMap<Temp, Register>();
+        Map<Temp, Register> preColor = new LinkedHashMap<Temp, Register>();
         preColor.put(v0, new Register("$v0"));
         preColor.put(a0, new Register("$a0"));
         preColor.put(a1, new Register("$a1"));
@@ -243,7 +283,7 @@ public class CodeGen {
         preColor.put(sp, new Register("$sp"));
         preColor.put(ra, new Register("$ra"));
 
-        Set<Temp> candidates = new HashSet<Temp>();
+        Set<Temp> candidates = new LinkedHashSet<Temp>();
         for (LabeledInstruction i: list) {
             if (i.instruction != null) {
                 if (i.instruction.dst != null)
@@ -260,11 +300,11 @@ public class CodeGen {
 
         Map<Temp, Register> map = null;
 
+        AnalysisManager analyses = opt.analyses();
         while (true) {
-            graph = fg.build(list);
-            life = new LifeAnalysis(graph);
+            LifeAnalysis life = analyses.life(list);
             Graph<Temp> ig = buildInterferenceGraph(list, life);
-            RegAlloc regAlloc = new RegAlloc(ig, registers, new HashMap<Temp, Register>(preColor), candidates);
+            RegAlloc regAlloc = new RegAlloc(ig, registers, new LinkedHashMap<Temp, Register>(preColor), candidates);
             if (!regAlloc.color()) {
                 notifier.error("Not enough registers");
                 return false;
@@ -277,50 +317,102 @@ public class CodeGen {
 
             if (spills.size() == 0)
                 break;
+            stats.spills += spills.size();
+            ++stats.spillRounds;
 
-            nlist = new InstructionList();
+            // rewrite the spilled temps in place, loading them into fresh
+            // temps in front of each use and storing them after each def
+            InstructionList code = new InstructionList();
             for (LabeledInstruction li : list) {
-                if (li.label != null)
-                    nlist.add(li.label);
                 if (li.instruction != null) {
                     if (li.instruction.src1 != null && spills.contains(li.instruction.src1)) {
                         li.instruction.src1.spill(wordLength);
-                        Temp t = generateLoadSpill(nlist, li.instruction, li.instruction.src1);
+                        Temp t = generateLoadSpill(code, li.instruction, li.instruction.src1);
                         candidates.remove(li.instruction.src1);
                         li.instruction.src1 = t;
                     }
                     if (li.instruction.src2 != null && spills.contains(li.instruction.src2)) {
                         li.instruction.src2.spill(wordLength);
-                        Temp t = generateLoadSpill(nlist, li.instruction, li.instruction.src2);
+                        Temp t = generateLoadSpill(code, li.instruction, li.instruction.src2);
                         candidates.remove(li.instruction.src2);
                         li.instruction.src2 = t;
                     }
+                    if (code.size() > 0) {
+                        list.splitLabel(li);
+                        list.insertBefore(li, code);
+                    }
                     if (li.instruction.dst != null && spills.contains(li.instruction.dst)) {
                         Temp old = li.instruction.dst;
                         old.spill(wordLength);
                         Temp t = li.instruction.frame.addLocal();
                         li.instruction.dst = t;
-                        nlist.add(li.instruction);
-                        generateStoreSpill(nlist, li.instruction, old, t);
+                        generateStoreSpill(code, li.instruction, old, t);
+                        list.insertAfter(li, code);
                         candidates.remove(old);
-                    } else
-                        nlist.add(li.instruction);
+                    }
                 }
             }
             ir.globalFrame.updateFrameSize(wordLength);
             for (Frame f: ir.funcFrames)
                 f.updateFrameSize(wordLength);
-            list = nlist;
+            // the instructions changed behind the cached analyses' back
+            analyses.invalidate();
         }
         
-        list = opt.finalOptimize(list, map, usedDisplays);
+        // $fp is dead in a leaf that never reads it, so the leaf's temps may
+        // be colored onto it; the caller's $fp then has to be restored
+        Set<Frame> clobbersFp = new LinkedHashSet<Frame>();
+        Register fpRegister = map.get(fp);
+        for (LabeledInstruction li: list)
+            if (li.instruction != null && li.instruction.leaf == null)
+                for (Temp t: li.instruction.def())
+                    if (t != fp && fpRegister.equals(map.get(t)))
+                        clobbersFp.add(li.instruction.frame);
+
+        // a leaf that spilled nothing, whose display no one reads and that
+        // leaves $fp alone keeps no words on the stack and runs on its
+        // caller's $fp
+        Set<Frame> frameless = new LinkedHashSet<Frame>();
+        for (Frame f: ir.funcFrames)
+            if (ir.callingGraph.outDegree(f) == 0 && f.getSpilledLocalCount() == 0
+                    && !usedDisplays.contains(f.display) && !clobbersFp.contains(f)) {
+                frameless.add(f);
+                f.frameSize.bind(0);
+                f.minusFrameSize.bind(0);
+            }
+
+        list = opt.finalOptimize(list, map, usedDisplays, frameless);
+
+        for (LabeledInstruction li: list)
+            if (li.instruction != null) {
+                ++stats.instructions;
+                if (li.instruction.isMove())
+                    ++stats.moves;
+            }
+        for (Frame f: ir.funcFrames) {
+            stats.frameSize += f.frameSize.value();
+            stats.maxFrameSize = Math.max(stats.maxFrameSize, f.frameSize.value());
+        }
 
+        output = list;
+        outputMap = map;
         SpimAsm asm = new SpimAsm(list, map, ir);
-        asm.output(writer);
+        asm.output(new AsmWriter(channel));
 
         return true;
     }
 
+    public Stats stats() {
+        return stats;
+    }
+
+    // a simulator loaded with the code of the last generate()
+    public Simulator simulator() throws java.io.IOException {
+        if (output == null)
+            return null;
+        return Simulator.load(output, outputMap, ir);
+    }
+
     Temp generateLoadSpill(InstructionList list, Instruction ins, Temp src) {
         int offset = src.spill(wordLength);
         Temp t = ins.frame.addLocal();
@@ -390,21 +482,60 @@ public class CodeGen {
         }
     }
 
+    // list the dispatched code is generated into
+    private InstructionList target;
+
+    private TACVisitor<Void> generator = new TACVisitor<Void>() {
+        public Void visit(MoveTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(BinOpTAC tac) {
+            generate(target, (OpTAC) tac);
+            return null;
+        }
+
+        public Void visit(UniOpTAC tac) {
+            generate(target, (OpTAC) tac);
+            return null;
+        }
+
+        public Void visit(CallTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(CallExternTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(ReturnTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(GotoTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(BranchTAC tac) {
+            generate(target, tac);
+            return null;
+        }
+
+        public Void visit(PhiTAC tac) {
+            throw new IllegalStateException("phi function left in the IR: " + tac);
+        }
+    };
+
     public void generate(InstructionList list, ThreeAddressCode tac) {
-        if (tac instanceof MoveTAC)
-            generate(list, (MoveTAC) tac);
-        else if (tac instanceof OpTAC)
-            generate(list, (OpTAC) tac);
-        else if (tac instanceof CallTAC)
-            generate(list, (CallTAC) tac);
-        else if (tac instanceof CallExternTAC)
-            generate(list, (CallExternTAC) tac);
-        else if (tac instanceof ReturnTAC)
-            generate(list, (ReturnTAC) tac);
-        else if (tac instanceof GotoTAC)
-            generate(list, (GotoTAC) tac);
-        else /*if (tac instanceof BranchTAC)*/
-            generate(list, (BranchTAC) tac);
+        InstructionList saved = target;
+        target = list;
+        tac.accept(generator);
+        target = saved;
     }
 
     public void generate(InstructionList list, MoveTAC tac) {
@@ -570,6 +701,18 @@ public class CodeGen {
         }
     }
 
+    static boolean reads(Access a, List<Temp> temps) {
+        if (a instanceof MemAccess)
+            return reads(((MemAccess) a).base, temps) || reads(((MemAccess) a).offset, temps);
+        else
+            return temps.contains(a);
+    }
+
+    Instruction leaf(Instruction ins, Frame callee) {
+        ins.leaf = callee;
+        return ins;
+    }
+
     public void generate(InstructionList list, CallTAC tac) {
         Frame callee = labelMap.get(tac.place).frame;
         callee.updateFrameSize(wordLength);
@@ -577,49 +720,69 @@ public class CodeGen {
         Label retLabel = Label.newLabel();
         callee.returns.add(retLabel);
 
-        boolean needsave = false;
+        // a function that calls nothing leaves $ra alone, so the caller's
+        // can wait in a temp, and the instructions that give it a frame
+        // are tagged to be dropped once it turns out to need none
+        Frame leaf = ir.callingGraph.outDegree(callee) == 0 ? callee : null;
+        Temp savedRa = null;
+
+        boolean needsave = ir.callingGraph.isLoopEdge(tac.frame, callee);
         LabeledInstruction save = null, restore = null;
-        if (ir.callingGraph.isLoopEdge(tac.frame, callee)) {
-            needsave = true;
-            save = list.addPlaceHolder();
-        }
 
-        list.add(addSideEffect(Instruction.ADDIU(tac.frame, sp, sp, new Const(-wordLength))));
+        Instruction push = leaf(addSideEffect(Instruction.ADDIU(tac.frame, sp, sp, new Const(-wordLength))), leaf);
+        list.add(push);
+        if (needsave)
+            save = list.addPlaceHolder();
 
-        List<Temp> tParams = new ArrayList<Temp>();
-        for (Access t: tac.params) {
-            Temp v = tac.frame.addLocal();
-            generate(list, new MoveTAC(tac.frame, t, v));
-            tParams.add(v);
-        }
-        Iterator<Temp> iter = tParams.iterator();
+        // an argument goes straight to its param unless it reads a param
+        // of the callee that a move before it has changed; those are read
+        // into new locals first
+        List<Access> args = new ArrayList<Access>(tac.params);
+        for (int i = 0; i < args.size(); ++i)
+            if (reads(args.get(i), callee.params.subList(0, i))) {
+                Temp v = tac.frame.addLocal();
+                generate(list, new MoveTAC(tac.frame, args.get(i), v));
+                args.set(i, v);
+            }
+        Iterator<Access> iter = args.iterator();
         for (Temp t: callee.params)
             addSpecialInstruction(list, tac.frame, t, iter.next(), 1);
 
-        list.add(Instruction.SW(tac.frame, fp, sp, new Const(0)));
-        list.add(Instruction.SW(tac.frame, ra, sp, new Const(-wordLength)));
-        list.add(Instruction.SW(tac.frame, callee.display, sp, new Const(-2 * wordLength), callee.display));
-        list.add(Instruction.MOVE(tac.frame, callee.display, sp, callee.display));
-        list.add(Instruction.MOVE(tac.frame, fp, sp));
-        list.add(addSideEffect(Instruction.ADDIU(callee, sp, sp, callee.minusFrameSize)));
+        list.add(leaf(Instruction.SW(tac.frame, fp, sp, new Const(0)), leaf));
+        if (leaf == null)
+            list.add(Instruction.SW(tac.frame, ra, sp, new Const(-wordLength)));
+        else if (tac.frame != ir.globalFrame) {
+            savedRa = tac.frame.addLocal();
+            list.add(Instruction.MOVE(tac.frame, savedRa, ra));
+        }
+        list.add(leaf(Instruction.SW(tac.frame, callee.display, sp, new Const(-2 * wordLength), callee.display), leaf));
+        list.add(leaf(Instruction.MOVE(tac.frame, callee.display, sp, callee.display), leaf));
+        // the callee's spilled temps are read through $fp by spill code
+        // that only appears after the passes, so dce must keep this
+        list.add(leaf(addSideEffect(Instruction.MOVE(tac.frame, fp, sp)), leaf));
+        list.add(leaf(addSideEffect(Instruction.ADDIU(callee, sp, sp, callee.minusFrameSize)), leaf));
 
         list.add(Instruction.JAL(callee, tac.place, ra));
 
         LabeledInstruction retPlace = list.add(retLabel);
-        list.add(addSideEffect(Instruction.ADDIU(callee, sp, sp, callee.frameSize)));
-        list.add(addSideEffect(Instruction.LW(callee, fp, sp, new Const(0))));
-        list.add(Instruction.LW(tac.frame, callee.display, sp, new Const(-2 * wordLength), callee.display));
-        list.add(Instruction.LW(tac.frame, ra, sp, new Const(-wordLength)));
+        list.add(leaf(addSideEffect(Instruction.ADDIU(callee, sp, sp, callee.frameSize)), leaf));
+        list.add(leaf(addSideEffect(Instruction.LW(callee, fp, sp, new Const(0))), leaf));
+        list.add(leaf(Instruction.LW(tac.frame, callee.display, sp, new Const(-2 * wordLength), callee.display), leaf));
+        if (leaf == null)
+            list.add(Instruction.LW(tac.frame, ra, sp, new Const(-wordLength)));
+        else if (savedRa != null)
+            list.add(Instruction.MOVE(tac.frame, ra, savedRa));
 
         if (callee.returnValue != null)
             addSpecialInstruction(list, tac.frame, tac.actualReturn, callee.returnValue, 2);
 
-        list.add(Instruction.ADDIU(tac.frame, sp, sp, new Const(wordLength)));
-
-        if (needsave) {
+        if (needsave)
             restore = list.addPlaceHolder();
-            callSaves.add(new SavePlace(tac.frame, save, restore, retPlace, callee.returnValue));
-        }
+        Instruction pop = leaf(Instruction.ADDIU(tac.frame, sp, sp, new Const(wordLength)), leaf);
+        list.add(pop);
+
+        if (needsave)
+            callSaves.add(new SavePlace(tac.frame, callee, save, restore, retPlace, push, pop));
     }
 
     public void generate(InstructionList list, CallExternTAC tac) {
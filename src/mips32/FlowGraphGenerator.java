@@ -11,8 +11,8 @@ public class FlowGraphGenerator extends flow.FlowGraphGenerator {
             return null;
 
         InstructionList list = (InstructionList) olist;
-        HashMap<Label, BasicBlock> labelMap = new HashMap<Label, BasicBlock>();
-        HashMap<BasicBlock, BasicBlock> next = new HashMap<BasicBlock, BasicBlock>();
+        HashMap<Label, BasicBlock> labelMap = new LinkedHashMap<Label, BasicBlock>();
+        HashMap<BasicBlock, BasicBlock> next = new LinkedHashMap<BasicBlock, BasicBlock>();
         BasicBlock current = new BasicBlock(), t = null;
         ArrayList<Label> labels = new ArrayList<Label>();
         FlowGraph graph = new FlowGraph();
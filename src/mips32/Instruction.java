@@ -26,6 +26,9 @@ public class Instruction extends arch.Instruction {
 
     Temp ra = null;
     Temp display = null;
+    // set on the frame keeping instructions of a call to a function that
+    // calls nothing, which go when that function needs no frame
+    Frame leaf = null;
 
     static enum Type {
         MOVE, ADD, ADDI, ADDIU,
@@ -44,6 +47,12 @@ public class Instruction extends arch.Instruction {
             LI, LA, SYSCALL
     }
 
+    static final String[] mnemonics = new String[Type.values().length];
+    static {
+        for (Type t: Type.values())
+            mnemonics[t.ordinal()] = t.name().toLowerCase();
+    }
+
     public Instruction(Frame frame, Type type, Temp dst, Temp src1, Temp src2, Const imm, Label target) {
         this.frame = frame;
         this.type = type;
@@ -244,7 +253,7 @@ public class Instruction extends arch.Instruction {
     }
 
     public String toString() {
-        Map<Temp, Temp> map = new HashMap<Temp, Temp>();
+        Map<Temp, Temp> map = new LinkedHashMap<Temp, Temp>();
         if (src1 != null)
             map.put(src1, src1);
         if (src2 != null)
@@ -395,6 +404,74 @@ public class Instruction extends arch.Instruction {
         return s;
     }
 
+    // Writes the instruction to out without building intermediate strings;
+    // regNames is indexed by Temp.index()
+    void emit(AsmWriter out, String[] regNames) throws java.io.IOException {
+        out.append(mnemonics[type.ordinal()]);
+        switch (type) {
+            case MOVE:
+            case NEG:
+                out.append(' ').append(regNames[dst.index()]).append(", ").append(regNames[src1.index()]);
+                break;
+
+            case ADD: case SUB: case MUL: case DIV: case REM:
+            case SLT: case SLE: case SEQ: case SNE: case SGT: case SGE:
+                out.append(' ').append(regNames[dst.index()]).append(", ").append(regNames[src1.index()])
+                    .append(", ").append(regNames[src2.index()]);
+                break;
+
+            case ADDI: case ADDIU: case SLL: case SRL: case SLTI:
+                out.append(' ').append(regNames[dst.index()]).append(", ").append(regNames[src1.index()])
+                    .append(", ");
+                emitConst(out);
+                break;
+
+            case J:
+            case JAL:
+                out.append(' ').append(target.toString());
+                break;
+
+            case JR:
+                out.append(' ').append(regNames[src1.index()]);
+                break;
+
+            case LW:
+            case LB:
+                out.append(' ').append(regNames[dst.index()]).append(", ");
+                emitConst(out);
+                out.append('(').append(regNames[src1.index()]).append(')');
+                break;
+
+            case SW:
+            case SB:
+                out.append(' ').append(regNames[src2.index()]).append(", ");
+                emitConst(out);
+                out.append('(').append(regNames[src1.index()]).append(')');
+                break;
+
+            case BEQ: case BNE: case BLT: case BLE: case BGT: case BGE:
+                out.append(' ').append(regNames[src1.index()]).append(", ").append(regNames[src2.index()])
+                    .append(", ").append(target.toString());
+                break;
+
+            case LI:
+            case LA:
+                out.append(' ').append(regNames[dst.index()]).append(", ");
+                emitConst(out);
+                break;
+
+            case SYSCALL:
+                break;
+        }
+    }
+
+    private void emitConst(AsmWriter out) throws java.io.IOException {
+        if (imm.isBinded())
+            out.append(imm.value());
+        else
+            out.append(imm.toString());
+    }
+
     public List<Temp> useList() {
         LinkedList<Temp> ret = new LinkedList<Temp>();
         if (type != Type.SYSCALL) {
@@ -408,7 +485,7 @@ public class Instruction extends arch.Instruction {
     }
 
     public Set<Temp> def() {
-        HashSet<Temp> ret = new HashSet<Temp>();
+        HashSet<Temp> ret = new LinkedHashSet<Temp>();
         if (type == Type.SYSCALL) {
             if (syscallDef != null)
                 ret.add(syscallDef);
@@ -466,6 +543,7 @@ public class Instruction extends arch.Instruction {
         ret.ra = this.ra;
         ret.sideEffects = this.sideEffects;
         ret.display = this.display;
+        ret.leaf = this.leaf;
         ret.exit = this.exit;
         if (this.type != Type.SYSCALL) {
             if (params.size() >= 1)
@@ -481,6 +559,7 @@ public class Instruction extends arch.Instruction {
         ret.sideEffects = sideEffects;
         ret.special = special;
         ret.display = display;
+        ret.leaf = leaf;
         ret.exit = exit;
         return ret;
     }
@@ -499,6 +578,10 @@ public class Instruction extends arch.Instruction {
             return false;
     }
 
+    public boolean isCall() {
+        return type == Type.JAL;
+    }
+
     public boolean isMove() {
         if (type == Type.MOVE)
             return true;
@@ -517,7 +600,7 @@ public class Instruction extends arch.Instruction {
         return (type == mi.type && frame == mi.frame && (imm == null ? mi.imm == null : imm.equals(mi.imm))
                 && target == mi.target && special == mi.special && syscallUse.equals(mi.syscallUse)
                 && syscallDef == mi.syscallDef && ra == mi.ra && sideEffects == mi.sideEffects && exit == mi.exit
-                && display == mi.display);
+                && display == mi.display && leaf == mi.leaf);
     }
 
     public boolean isExit() {
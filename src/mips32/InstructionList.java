@@ -3,37 +3,17 @@ package mips32;
 import intermediate.*;
 import java.util.*;
 
-class LabeledInstruction {
-    Label label;
-    Instruction instruction;
-    LabeledInstruction next;
-
-    public LabeledInstruction(Label label, Instruction instruction, LabeledInstruction next) {
-        this.label = label;
-        this.instruction = instruction;
-        this.next = next;
-    }
-
-    public String toString(Map map) {
-        String s = "";
-        if (label != null)
-            s += label.toString() + ":";
-        if (instruction != null) {
-            if (map == null)
-                s += "\t" + instruction.toString();
-            else
-                s += "\t" + instruction.toString(map);
-        }
-        return s;
-    }
-
-    public String toString() {
-        return toString(null);
-    }
-}
-
+// Doubly linked list of (label, instruction) nodes. A node doubles as a
+// cursor: passes can insert around it, remove it or swap its instruction
+// in constant time while walking the list. The list keeps indexes from
+// labels and from instructions to the nodes carrying them, so labels must
+// only be changed through setLabel() and instructions through replace().
 class InstructionList extends arch.InstructionList implements Iterable<LabeledInstruction> {
     LabeledInstruction head, tail;
+    private int size = 0;
+    private Map<Label, LabeledInstruction> labels = new HashMap<Label, LabeledInstruction>();
+    // by identity, as equal instructions may sit at several places
+    private Map<Instruction, LabeledInstruction> nodes = new IdentityHashMap<Instruction, LabeledInstruction>();
 
     public InstructionList() {
         head = null;
@@ -45,15 +25,7 @@ class InstructionList extends arch.InstructionList implements Iterable<LabeledIn
     }
 
     public LabeledInstruction add(Label label, Instruction ins) {
-        LabeledInstruction r = new LabeledInstruction(label, ins, null);
-        if (head == null) {
-            head = r;
-            tail = head;
-        } else {
-            tail.next = r;
-            tail = tail.next;
-        }
-        return r;
+        return insertAfter(tail, label, ins);
     }
 
     public LabeledInstruction add(Instruction ins) {
@@ -64,85 +36,212 @@ class InstructionList extends arch.InstructionList implements Iterable<LabeledIn
         return add(label, null);
     }
 
-    public void addAllBefore(List<Label> frontLabels, List<arch.Instruction> list, Label beforeLabel) {
-        InstructionList ret = new InstructionList();
-
-        boolean added = false;
-        for (LabeledInstruction i: this) {
-            if (i.label == beforeLabel && !added) {
-                for (Label l: frontLabels)
-                    ret.add(l);
-                for (arch.Instruction j: list)
-                    if (j instanceof Instruction)
-                        ret.add((Instruction) j);
-                added = true;
-            }
-            ret.add(i);
+    public LabeledInstruction addPlaceHolder() {
+        return add(null, null);
+    }
+
+    // at == null inserts at the front
+    public LabeledInstruction insertAfter(LabeledInstruction at, Label label, Instruction ins) {
+        LabeledInstruction r = new LabeledInstruction(label, ins);
+        link(r, at, at == null ? head : at.next);
+        return r;
+    }
+
+    // at == null appends
+    public LabeledInstruction insertBefore(LabeledInstruction at, Label label, Instruction ins) {
+        LabeledInstruction r = new LabeledInstruction(label, ins);
+        link(r, at == null ? tail : at.prev, at);
+        return r;
+    }
+
+    // moves all nodes of code in front of at, leaving code empty
+    public void insertBefore(LabeledInstruction at, InstructionList code) {
+        splice(code, at == null ? tail : at.prev, at);
+    }
+
+    // moves all nodes of code behind at, leaving code empty
+    public void insertAfter(LabeledInstruction at, InstructionList code) {
+        splice(code, at, at == null ? head : at.next);
+    }
+
+    public void remove(LabeledInstruction li) {
+        if (li.label != null && labels.get(li.label) == li)
+            labels.remove(li.label);
+        if (li.instruction != null && nodes.get(li.instruction) == li)
+            nodes.remove(li.instruction);
+        if (li.prev == null)
+            head = li.next;
+        else
+            li.prev.next = li.next;
+        if (li.next == null)
+            tail = li.prev;
+        else
+            li.next.prev = li.prev;
+        --size;
+    }
+
+    // a null instruction on an unlabeled node removes the node
+    public void replace(LabeledInstruction li, Instruction ins) {
+        if (ins == null && li.label == null) {
+            remove(li);
+            return;
         }
+        if (li.instruction != null && nodes.get(li.instruction) == li)
+            nodes.remove(li.instruction);
+        li.instruction = ins;
+        if (ins != null)
+            nodes.put(ins, li);
+    }
 
-        head = ret.head;
-        tail = ret.tail;
+    // a null label on a node without instruction removes the node
+    public void setLabel(LabeledInstruction li, Label label) {
+        if (li.label != null && labels.get(li.label) == li)
+            labels.remove(li.label);
+        if (label == null && li.instruction == null) {
+            li.label = null;
+            remove(li);
+            return;
+        }
+        li.label = label;
+        if (label != null)
+            labels.put(label, li);
     }
 
-    public void replaceLabel(List<Label> oldLabels, Label newLabel) {
-        InstructionList ret = new InstructionList();
-
-        boolean replaced = false;
-        for (LabeledInstruction li: this) {
-            if (li.label != null && oldLabels.contains(li.label)) {
-                if (!replaced) {
-                    replaced = true;
-                    ret.add(newLabel);
-                }
-            } else
-                ret.add(li);
+    // if li has both a label and an instruction, moves the label to a node
+    // of its own in front of li, so code can be inserted between the two
+    public void splitLabel(LabeledInstruction li) {
+        if (li.label != null && li.instruction != null) {
+            Label l = li.label;
+            setLabel(li, null);
+            insertBefore(li, l, null);
         }
+    }
 
-        head = ret.head;
-        tail = ret.tail;
+    public LabeledInstruction find(Label label) {
+        return labels.get(label);
     }
 
-    public LabeledInstruction addPlaceHolder() {
-        return add(null, null);
+    public int size() {
+        return size;
+    }
+
+    private void link(LabeledInstruction r, LabeledInstruction prev, LabeledInstruction next) {
+        r.prev = prev;
+        r.next = next;
+        if (prev == null)
+            head = r;
+        else
+            prev.next = r;
+        if (next == null)
+            tail = r;
+        else
+            next.prev = r;
+        if (r.label != null)
+            labels.put(r.label, r);
+        if (r.instruction != null)
+            nodes.put(r.instruction, r);
+        ++size;
+    }
+
+    private void splice(InstructionList code, LabeledInstruction prev, LabeledInstruction next) {
+        if (code.head == null)
+            return;
+        code.head.prev = prev;
+        code.tail.next = next;
+        if (prev == null)
+            head = code.head;
+        else
+            prev.next = code.head;
+        if (next == null)
+            tail = code.tail;
+        else
+            next.prev = code.tail;
+        labels.putAll(code.labels);
+        nodes.putAll(code.nodes);
+        size += code.size;
+
+        code.head = code.tail = null;
+        code.labels.clear();
+        code.nodes.clear();
+        code.size = 0;
+    }
+
+    public void addAllBefore(List<Label> frontLabels, List<arch.Instruction> list, Label beforeLabel) {
+        LabeledInstruction at = labels.get(beforeLabel);
+        if (at == null)
+            return;
+        for (Label l: frontLabels)
+            insertBefore(at, l, null);
+        for (arch.Instruction j: list)
+            if (j instanceof Instruction)
+                insertBefore(at, null, (Instruction) j);
+    }
+
+    // the old labels are dropped and the first of them in list order is
+    // replaced by newLabel
+    public void replaceLabel(List<Label> oldLabels, Label newLabel) {
+        LabeledInstruction first = null;
+        for (Label l: oldLabels) {
+            LabeledInstruction li = labels.get(l);
+            if (li != null && (first == null || before(li, first)))
+                first = li;
+        }
+        for (Label l: oldLabels) {
+            LabeledInstruction li = labels.get(l);
+            if (li != null && li != first)
+                setLabel(li, null);
+        }
+        if (first != null)
+            setLabel(first, newLabel);
+    }
+
+    // walks on from both nodes at once, so this costs the distance between
+    // them rather than the rest of the list
+    private boolean before(LabeledInstruction a, LabeledInstruction b) {
+        for (LabeledInstruction p = a, q = b; ; p = p.next, q = q.next) {
+            if (p == b)
+                return true;
+            if (q == a || p == null)
+                return false;
+            if (q == null)
+                return true;
+        }
     }
 
     public Iterator<LabeledInstruction> iterator() {
         return new Iterator<LabeledInstruction>() {
-            LabeledInstruction p = head;
+            LabeledInstruction p = head, last = null;
 
             public boolean hasNext() {
                 return p != null;
             }
 
             public LabeledInstruction next() {
-                LabeledInstruction t = p;
+                last = p;
                 p = p.next;
-                return t;
+                return last;
             }
 
-            public void remove() throws UnsupportedOperationException {
-                throw new UnsupportedOperationException();
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                InstructionList.this.remove(last);
+                last = null;
             }
         };
     }
 
     public String toString() {
-        String ret = "";
+        StringBuilder ret = new StringBuilder();
         for (LabeledInstruction li: this)
-            ret += li.toString() + "\n";
-        return ret;
+            ret.append(li.toString()).append("\n");
+        return ret.toString();
     }
 
     private LabeledInstruction find(Instruction ins) {
-        LabeledInstruction p = head;
-        while (p != null) {
-            if (p.instruction != null && p.instruction == ins)
-                return p;
-            p = p.next;
-        }
-        return null;
+        return nodes.get(ins);
     }
-    
+
     public void redirect(arch.Instruction ins, List<Label> oldPlace, Label newPlace) {
         if (!(ins instanceof Instruction))
             return;
@@ -153,10 +252,7 @@ class InstructionList extends arch.InstructionList implements Iterable<LabeledIn
 
         if (oldPlace.contains(o.instruction.target))
             o.instruction.target = newPlace;
-        else {
-            Instruction j = Instruction.J(o.instruction.frame, newPlace);
-            o.next = new LabeledInstruction(null, j, o.next);
-        }
+        else
+            insertAfter(o, null, Instruction.J(o.instruction.frame, newPlace));
     }
 }
-
@@ -22,7 +22,7 @@ public class InstructionRewriter extends flow.InstructionRewriter {
             return;
         }
 
-        Set<BasicBlock> remaining = new HashSet<BasicBlock>();
+        Set<BasicBlock> remaining = new LinkedHashSet<BasicBlock>();
         while (true) {
             visited.add(current);
             putCode(res, current);
@@ -40,12 +40,12 @@ public class InstructionRewriter extends flow.InstructionRewriter {
     }
 
     public InstructionList rewrite(FlowGraph flow) {
-        Map<BasicBlock, BasicBlock> prev = new HashMap<BasicBlock, BasicBlock>();
+        Map<BasicBlock, BasicBlock> prev = new LinkedHashMap<BasicBlock, BasicBlock>();
         for (BasicBlock b: flow.nodes())
             if (flow.next(b) != null)
                 prev.put(flow.next(b), b);
 
-        Map<BasicBlock, BasicBlock> head = new HashMap<BasicBlock, BasicBlock>();
+        Map<BasicBlock, BasicBlock> head = new LinkedHashMap<BasicBlock, BasicBlock>();
         for (BasicBlock b: flow.nodes()) {
             if (prev.containsKey(b)) {
                 BasicBlock h = prev.get(b);
@@ -59,7 +59,7 @@ public class InstructionRewriter extends flow.InstructionRewriter {
 
         InstructionList ret = new InstructionList();
         BasicBlock current = flow.entry;
-        Set<BasicBlock> visited = new HashSet<BasicBlock>();
+        Set<BasicBlock> visited = new LinkedHashSet<BasicBlock>();
         rewriteRecursive(flow, current, head, ret, visited);
         return ret;
     }
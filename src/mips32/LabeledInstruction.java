@@ -0,0 +1,32 @@
+package mips32;
+
+import intermediate.*;
+import java.util.*;
+
+class LabeledInstruction {
+    Label label;
+    Instruction instruction;
+    LabeledInstruction prev, next;
+
+    LabeledInstruction(Label label, Instruction instruction) {
+        this.label = label;
+        this.instruction = instruction;
+    }
+
+    public String toString(Map map) {
+        String s = "";
+        if (label != null)
+            s += label.toString() + ":";
+        if (instruction != null) {
+            if (map == null)
+                s += "\t" + instruction.toString();
+            else
+                s += "\t" + instruction.toString(map);
+        }
+        return s;
+    }
+
+    public String toString() {
+        return toString(null);
+    }
+}
@@ -5,7 +5,17 @@ import java.util.*;
 import intermediate.Label;
 import intermediate.IR;
 import optimization.BasicBlockOptimizer;
+import optimization.ConstantPropagation;
+import optimization.GlobalValueNumbering;
+import optimization.InductionVariables;
+import optimization.Inliner;
+import optimization.LazyCodeMotion;
+import optimization.LoopUnroller;
+import optimization.TailRecursion;
+import optimization.IRFunction;
+import optimization.SSA;
 import optimization.LoopInvariantCodeMotion;
+import optimization.PassManager;
 import intermediate.Temp;
 import arch.Const;
 import frame.Frame;
@@ -13,36 +23,164 @@ import regalloc.Register;
 
 public class Optimizer {
     Temp zero = null;
-    InstructionList optimize(InstructionList list, Temp zero) {
-        this.zero = zero;
+    PassManager passes;
+    AnalysisManager analyses = new AnalysisManager(new FlowGraphGenerator());
 
-        // Peephole optimize
-        list = peepHoleOptimize(list);
+    public Optimizer() {
+        this(PassManager.defaults());
+    }
 
-        // Jump zipping
-        list = jumpZipping(list);
+    public Optimizer(PassManager passes) {
+        this.passes = passes;
+    }
+
+    // Runs the IR passes of the pipeline on the three address code. The
+    // functions are split out of ir.codes before the first pass and laid
+    // out again after the last. Each pass gets them in SSA form or out of
+    // it as it needs; the translations are recorded under "ssa".
+    void optimize(IR ir) {
+        ArrayList<IRFunction> functions = null;
+        SSA ssa = null;
+        boolean inSSA = false;
+        for (String name: passes.pipeline()) {
+            if (!PassManager.isIRPass(name))
+                continue;
+            if (functions == null) {
+                functions = IRFunction.split(ir);
+                ssa = new SSA(ir, functions);
+            }
+            if (PassManager.needsSSA(name) != inSSA) {
+                inSSA = !inSSA;
+                translate(ssa, functions, inSSA);
+            }
+
+            long start = System.nanoTime();
+            int before = size(functions);
+            boolean changed = runPass(name, ir, ssa, functions);
+            long time = System.nanoTime() - start;
+            passes.record(name, time, before, size(functions), changed);
+        }
+        if (functions != null) {
+            if (inSSA)
+                translate(ssa, functions, false);
+            IRFunction.join(ir, functions);
+        }
+    }
+
+    private void translate(SSA ssa, List<IRFunction> functions, boolean construct) {
+        long start = System.nanoTime();
+        int before = size(functions);
+        for (IRFunction f: functions)
+            if (construct)
+                ssa.construct(f);
+            else
+                ssa.destruct(f);
+        passes.record(PassManager.SSA, System.nanoTime() - start, before, size(functions), true);
+    }
+
+    private boolean runPass(String name, IR ir, SSA ssa, ArrayList<IRFunction> functions) {
+        if (name.equals(PassManager.INLINE))
+            return Inliner.optimize(ir, functions);
+        else if (name.equals(PassManager.SCCP))
+            return ConstantPropagation.optimize(ir, ssa, functions);
+        else if (name.equals(PassManager.GVN))
+            return GlobalValueNumbering.optimize(ssa, functions);
+        else if (name.equals(PassManager.LCM))
+            return LazyCodeMotion.optimize(ssa, functions);
+        else if (name.equals(PassManager.IV))
+            return InductionVariables.optimize(ir, ssa, functions);
+        else if (name.equals(PassManager.UNROLL))
+            return LoopUnroller.optimize(functions);
+        else if (name.equals(PassManager.TAIL))
+            return TailRecursion.optimize(functions);
+        else /* if (name.equals(PassManager.SSA)) */
+            return false;
+    }
 
-        // Basic Block Optimize
-        list = basicBlockOptimize(list);
+    private int size(List<IRFunction> functions) {
+        int n = 0;
+        for (IRFunction f: functions)
+            n += f.size();
+        return n;
+    }
 
-        // Loop invariant code motion
-        list = loopInvariantCodeMotion(list);
+    InstructionList optimize(InstructionList list, Temp zero) {
+        this.zero = zero;
 
-        // Basic Block Optimize again
-        list = basicBlockOptimize(list);
+        for (String name: passes.pipeline()) {
+            if (PassManager.isIRPass(name))
+                continue;
 
-        // Remove dead code
-        list = removeDeadCode(list);
+            long start = System.nanoTime();
+            int before = size(list), hash = fingerprint(list);
+            list = runPass(name, list);
+            long time = System.nanoTime() - start;
+            passes.record(name, time, before, size(list), hash != fingerprint(list));
+        }
         
         return list;
     }
 
-    InstructionList finalOptimize(InstructionList list, Map<Temp, Register> map, Set<Temp> usedDisplays) {
-        InstructionList ret = new InstructionList();
-        for (LabeledInstruction i: list) {
-            if (i.label != null)
-                ret.add(i.label);
+    // analyses of the optimized list, for the register allocation loop
+    AnalysisManager analyses() {
+        return analyses;
+    }
 
+    // Each pass leaves the analyses manager describing the list it returns.
+    // dce deletes non-jump instructions from the cached blocks and so keeps
+    // the control flow; peephole rewrites operands behind the back of the
+    // blocks' use/def sets and the others build a new list.
+    private InstructionList runPass(String name, InstructionList list) {
+        if (name.equals(PassManager.PEEPHOLE)) {
+            list = peepHoleOptimize(list);
+            analyses.invalidate();
+            return list;
+        }
+        else if (name.equals(PassManager.JUMP_ZIP))
+            return jumpZipping(list);
+        else if (name.equals(PassManager.BB_OPT))
+            return basicBlockOptimize(list);
+        else if (name.equals(PassManager.LICM))
+            return loopInvariantCodeMotion(list);
+        else /* if (name.equals(PassManager.DCE)) */
+            return removeDeadCode(list);
+    }
+
+    private int size(InstructionList list) {
+        int n = 0;
+        for (LabeledInstruction li: list)
+            if (li.instruction != null)
+                ++n;
+        return n;
+    }
+
+    // cheap structural hash, used to tell whether a pass changed anything
+    private int fingerprint(InstructionList list) {
+        int h = 0;
+        for (LabeledInstruction li: list) {
+            if (li.label != null)
+                h = 31 * h + li.label.index();
+            Instruction i = li.instruction;
+            if (i != null) {
+                h = 31 * h + i.type.ordinal();
+                h = 31 * h + (i.dst == null ? -1 : i.dst.index());
+                h = 31 * h + (i.src1 == null ? -1 : i.src1.index());
+                h = 31 * h + (i.src2 == null ? -1 : i.src2.index());
+                h = 31 * h + (i.imm == null ? 0 : i.imm.toString().hashCode());
+                h = 31 * h + (i.target == null ? -1 : i.target.index());
+            }
+        }
+        return h;
+    }
+
+    InstructionList finalOptimize(InstructionList list, Map<Temp, Register> map, Set<Temp> usedDisplays,
+            Set<Frame> frameless) {
+        // register allocation was the last user of the cached analyses
+        for (int i = 0; i < AnalysisManager.names.length; ++i)
+            passes.recordAnalysis(AnalysisManager.names[i], analyses.computed(i), analyses.reused(i));
+        analyses.invalidate();
+
+        for (LabeledInstruction i: list) {
             if (i.instruction != null) {
                 boolean dead = false;
                 if (i.instruction.type == Instruction.Type.MOVE
@@ -51,12 +189,14 @@ public class Optimizer {
                 else if (i.instruction.display != null
                         && !usedDisplays.contains(i.instruction.display))
                     dead = true;
+                else if (i.instruction.leaf != null && frameless.contains(i.instruction.leaf))
+                    dead = true;
 
-                if (!dead)
-                    ret.add(i.instruction);
+                if (dead)
+                    list.replace(i, null);
             }
         }
-        return ret;
+        return list;
     }
 
     private boolean isPowerOfTwo(int x){
@@ -80,24 +220,33 @@ public class Optimizer {
 
     private InstructionList peepHoleOptimize(InstructionList list) {
         LabeledInstruction li1 = list.head, li2 = null;
-        Map<Label, LabeledInstruction> labelMap = buildLabelMap(list);
         while (li1 != null) {
             while (li1 != null && li1.instruction == null)
                 li1 = li1.next;
             if (li1 == null)
                 break;
 
+            boolean labeled = false;
             li2 = li1.next;
-            while (li2 != null && li2.instruction == null)
+            while (li2 != null && li2.instruction == null) {
+                labeled |= li2.label != null;
                 li2 = li2.next;
+            }
             if (li2 == null)
                 break;
+            labeled |= li2.label != null;
+
+            // a jump may reach i2 without running i1
+            if (labeled) {
+                li1 = li2;
+                continue;
+            }
 
             Instruction i1 = li1.instruction, i2 = li2.instruction;
 
             /*
             if (i1.type == Instruction.Type.LI) {
-                LabeledInstruction next = nextInstruction(labelMap, li1);
+                LabeledInstruction next = nextInstruction(list, li1);
                 if (next != null && next.instruction.type == Instruction.Type.MOVE
                         && next.instruction.src1 == i1.dst) {
                     next.instruction.type = Instruction.Type.LI;
@@ -186,12 +335,12 @@ public class Optimizer {
         return list;
     }
 
-    private LabeledInstruction nextInstruction(Map<Label, LabeledInstruction> labelMap, LabeledInstruction i) {
-        Set<LabeledInstruction> visited = new HashSet<LabeledInstruction>();
-        return nextInstructionWorker(labelMap, i, visited);
+    private LabeledInstruction nextInstruction(InstructionList list, LabeledInstruction i) {
+        Set<LabeledInstruction> visited = new LinkedHashSet<LabeledInstruction>();
+        return nextInstructionWorker(list, i, visited);
     }
 
-    private LabeledInstruction nextInstructionWorker(Map<Label, LabeledInstruction> labelMap,
+    private LabeledInstruction nextInstructionWorker(InstructionList list,
             LabeledInstruction i, Set<LabeledInstruction> visited) {
         if (visited.contains(i))
             return i;
@@ -201,11 +350,11 @@ public class Optimizer {
             if (i.instruction.type != Instruction.Type.J)
                 return i;
             else
-                return nextInstruction(labelMap, labelMap.get(i.instruction.target));
+                return nextInstruction(list, list.find(i.instruction.target));
         } else {
             while (i != null) {
                 if (i.instruction != null)
-                    return nextInstruction(labelMap, i);
+                    return nextInstruction(list, i);
                 else
                     i = i.next;
             }
@@ -213,16 +362,16 @@ public class Optimizer {
         }
     }
 
-    private Label findZip(Map<Label, LabeledInstruction> labelMap, Label target) {
-        Set<Label> visited = new HashSet<Label>();
-        return findZipWorker(labelMap, target, visited);
+    private Label findZip(InstructionList list, Label target) {
+        Set<Label> visited = new LinkedHashSet<Label>();
+        return findZipWorker(list, target, visited);
     }
 
-    private Label findBranchZip(Map<Label, LabeledInstruction> labelMap, LabeledInstruction li) {
+    private Label findBranchZip(InstructionList list, LabeledInstruction li) {
         if (li.instruction == null)
             return null;
 
-        LabeledInstruction q = nextInstruction(labelMap, li.next);
+        LabeledInstruction q = nextInstruction(list, li.next);
         if (q == null || !q.instruction.isBranch())
             return null;
 
@@ -264,27 +413,27 @@ public class Optimizer {
             return null;
     }
 
-    private Label findZipWorker(Map<Label, LabeledInstruction> labelMap, Label target, Set<Label> visited) {
+    private Label findZipWorker(InstructionList list, Label target, Set<Label> visited) {
         if (visited.contains(target))
             return target;
         visited.add(target);
 
-        LabeledInstruction p = labelMap.get(target);
+        LabeledInstruction p = list.find(target);
         while (p != null) {
             if (p.label != null)
                 target = p.label;
             if (p.instruction == null)
                 p = p.next;
             else if (p.instruction.type == Instruction.Type.J)
-                return findZipWorker(labelMap, p.instruction.target, visited);
+                return findZipWorker(list, p.instruction.target, visited);
             else if (p.instruction.type == Instruction.Type.LI
                     && p.instruction.imm.isBinded()) {
                 
-                Label newTarget = findBranchZip(labelMap, p);
+                Label newTarget = findBranchZip(list, p);
                 if (newTarget == null)
                     break;
 
-                return findZipWorker(labelMap, newTarget, visited);
+                return findZipWorker(list, newTarget, visited);
             } else
                 break;
         }
@@ -293,9 +442,7 @@ public class Optimizer {
 
     private InstructionList addBranchLabels(InstructionList list) {
         LabeledInstruction i = list.head;
-        InstructionList ret = new InstructionList();
         while (i != null) {
-            ret.add(i);
             if (i.instruction != null && i.instruction.isBranch()) {
                 LabeledInstruction p = i.next;
                 boolean nolabel = false;
@@ -310,42 +457,28 @@ public class Optimizer {
                     p = p.next;
                 }
                 if (nolabel)
-                    ret.add(Label.newLabel());
+                    list.insertAfter(i, Label.newLabel(), null);
             }
 
             i = i.next;
         }
-        return ret;
-    }
-
-    Map<Label, LabeledInstruction> buildLabelMap(InstructionList list) {
-        Map<Label, LabeledInstruction> labelMap = new HashMap<Label, LabeledInstruction>();
-        for (LabeledInstruction li: list) {
-            if (li.label != null)
-                labelMap.put(li.label, li);
-        }
-        return labelMap;
+        return list;
     }
 
     private InstructionList jumpZipping(InstructionList list) {
         // Add branch labels
         list = addBranchLabels(list);
 
-        // Build label map
-        Map<Label, LabeledInstruction> labelMap = buildLabelMap(list);
-
         // Jump zipping
         LabeledInstruction li = list.head;
         while (li != null) {
             if (li.instruction != null) {
                 if (li.instruction.target != null)
-                    li.instruction.target = findZip(labelMap, li.instruction.target);
+                    li.instruction.target = findZip(list, li.instruction.target);
                 else if (li.instruction.type == Instruction.Type.LI) {
-                    Label t = findBranchZip(labelMap, li);
-                    if (t != null) {
-                        LabeledInstruction on = li.next;
-                        li.next = new LabeledInstruction(null, Instruction.J(li.instruction.frame, t), on);
-                    }
+                    Label t = findBranchZip(list, li);
+                    if (t != null)
+                        list.insertAfter(li, null, Instruction.J(li.instruction.frame, t));
                 }
             }
             li = li.next;
@@ -358,11 +491,7 @@ public class Optimizer {
 
         // Remove direct jumps
         li = list.head;
-        InstructionList nlist = new InstructionList();
         while (li != null) {
-            if (li.label != null)
-                nlist.add(li.label);
-            
             boolean direct = false;
             if (li.instruction != null && li.instruction.type == Instruction.Type.J) {
                 LabeledInstruction p = li.next;
@@ -376,16 +505,15 @@ public class Optimizer {
                 }
             }
 
-            if (!direct && li.instruction != null)
-                nlist.add(li.instruction);
-
-            li = li.next;
+            LabeledInstruction next = li.next;
+            if (direct)
+                list.replace(li, null);
+            li = next;
         }
-        list = nlist;
 
         // Remove useless labels
-        Set<Label> usedLabels = new HashSet<Label>();
-        Set<Frame> usedFrames = new HashSet<Frame>();
+        Set<Label> usedLabels = new LinkedHashSet<Label>();
+        Set<Frame> usedFrames = new LinkedHashSet<Frame>();
         for (LabeledInstruction lii: list) {
             if (lii.instruction != null) {
                 if (lii.instruction.target != null)
@@ -395,23 +523,19 @@ public class Optimizer {
         }
         for (Frame f: usedFrames)
             usedLabels.addAll(f.returns);
-        nlist = new InstructionList();
-        for (LabeledInstruction lii: list) {
-            if (lii.label != null && usedLabels.contains(lii.label))
-                nlist.add(lii.label);
-            if (lii.instruction != null)
-                nlist.add(lii.instruction);
-        }
-        list = nlist;
+        for (LabeledInstruction lii: list)
+            if (lii.label != null && !usedLabels.contains(lii.label))
+                list.setLabel(lii, null);
+        analyses.update(list, AnalysisManager.NONE);
 
         return list;
     }
 
     private InstructionList basicBlockOptimize(InstructionList list) {
-        FlowGraphGenerator fg = new FlowGraphGenerator();
-        FlowGraph flow = fg.build(list);
+        FlowGraph flow = analyses.flow(list);
         flow.removeUnreachableNodes();
-        LifeAnalysis life = new LifeAnalysis(flow);
+        analyses.update(list, AnalysisManager.FLOW);
+        LifeAnalysis life = analyses.life(list);
         InstructionGenerator gen = new InstructionGenerator();
         for (BasicBlock b: flow.nodes()) {
 /*            String s = "";
@@ -437,43 +561,55 @@ public class Optimizer {
             Scanner input = new Scanner(System.in);
             s = input.next();*/
         }
-        return rewrite(flow);
+        list = rewrite(flow);
+        analyses.update(list, AnalysisManager.NONE);
+        return list;
     }
 
     private InstructionList loopInvariantCodeMotion(InstructionList list) {
         LoopInvariantCodeMotion opt = new LoopInvariantCodeMotion(new FlowGraphGenerator(), new InstructionRewriter());
-        return (InstructionList) opt.optimize(list);
+        return (InstructionList) opt.optimize(list, analyses);
     }
 
     private InstructionList removeDeadCode(InstructionList list) {
-        FlowGraph flow = null;
+        FlowGraph flow = analyses.flow(list);
+        Map<arch.Instruction, BasicBlock> blockOf = new IdentityHashMap<arch.Instruction, BasicBlock>();
+        for (BasicBlock b: flow.nodes())
+            for (arch.Instruction i: b)
+                blockOf.put(i, b);
+
         LifeAnalysis life = null;
-        InstructionList nlist = null;
         boolean change = false;
         do {
             change = false;
-            FlowGraphGenerator fg = new FlowGraphGenerator();
-            flow = fg.build(list);
-            life = new LifeAnalysis(flow);
-            nlist = new InstructionList();
+            life = analyses.life(list);
+            Map<BasicBlock, Set<arch.Instruction>> dead = new LinkedHashMap<BasicBlock, Set<arch.Instruction>>();
             for (LabeledInstruction i: list) {
-                if (i.label != null)
-                    nlist.add(i.label);
                 if (i.instruction != null) {
-                    boolean dead = true;
+                    boolean isDead = true;
                     for (Temp t: i.instruction.def())
                         if (life.out(i.instruction).contains(t)) {
-                            dead = false;
+                            isDead = false;
                             break;
                         }
-                    if (!dead || i.instruction.isJump()
-                            || i.instruction.isStore() || i.instruction.hasSideEffects())
-                        nlist.add(i.instruction);
-                    else
+                    if (isDead && !i.instruction.isJump()
+                            && !i.instruction.isStore() && !i.instruction.hasSideEffects()) {
+                        BasicBlock b = blockOf.get(i.instruction);
+                        if (!dead.containsKey(b))
+                            dead.put(b, Collections.newSetFromMap(new IdentityHashMap<arch.Instruction, Boolean>()));
+                        dead.get(b).add(i.instruction);
+                        list.replace(i, null);
                         change = true;
+                    }
                 }
             }
-            list = nlist;
+
+            // Removing the dead instructions from their blocks keeps the flow
+            // graph in step with the list, so only liveness is redone.
+            // Blocks may be left empty; that does not change any liveness.
+            for (Map.Entry<BasicBlock, Set<arch.Instruction>> e: dead.entrySet())
+                e.getKey().removeAll(e.getValue());
+            analyses.update(list, change ? AnalysisManager.CFG : AnalysisManager.ALL);
         } while (change);
         return list;
     }
@@ -0,0 +1,675 @@
+package mips32;
+
+import intermediate.*;
+import regalloc.Register;
+import java.io.*;
+import java.util.*;
+
+// Runs MIPS32 programs in the SPIM environment our output targets: the
+// instructions Instruction.Type emits plus the usual SPIM pseudo
+// instructions, and syscalls 1, 4, 5, 8, 9 and 10. Programs come either from
+// the .s text written by SpimAsm (see AsmReader) or straight from the
+// allocated instruction list.
+//
+// Loading decodes every instruction into parallel int arrays (opcode,
+// register numbers, immediate or target pc), so the interpreter loop never
+// looks at strings or objects. It counts executions per pc; loads, stores,
+// branches and label counts are derived from those counts afterwards.
+public class Simulator {
+    // three registers
+    static final int ADD = 0, ADDU = 1, SUB = 2, SUBU = 3, MUL = 4, DIV = 5, REM = 6,
+        AND = 7, OR = 8, XOR = 9, NOR = 10, SLT = 11, SLTU = 12, SLE = 13, SEQ = 14,
+        SNE = 15, SGT = 16, SGE = 17, SLLV = 18, SRLV = 19, SRAV = 20;
+    // two registers and an immediate
+    static final int ADDI = 21, ADDIU = 22, ANDI = 23, ORI = 24, XORI = 25, SLTI = 26,
+        SLTIU = 27, SLL = 28, SRL = 29, SRA = 30;
+    // two registers
+    static final int MOVE = 31, NEG = 32, NOT = 33, ABS = 34;
+    // a register and an immediate
+    static final int LI = 35, LA = 36, LUI = 37;
+    // memory, the value register is rd
+    static final int LW = 38, LB = 39, LBU = 40, SW = 41, SB = 42;
+    static final int J = 43, JAL = 44, JR = 45, JALR = 46;
+    static final int BEQ = 47, BNE = 48, BLT = 49, BGT = 50, BLE = 51, BGE = 52;
+    static final int SYSCALL = 53;
+
+    static final String[] names = {
+        "add", "addu", "sub", "subu", "mul", "div", "rem",
+        "and", "or", "xor", "nor", "slt", "sltu", "sle", "seq",
+        "sne", "sgt", "sge", "sllv", "srlv", "srav",
+        "addi", "addiu", "andi", "ori", "xori", "slti",
+        "sltiu", "sll", "srl", "sra",
+        "move", "neg", "not", "abs",
+        "li", "la", "lui",
+        "lw", "lb", "lbu", "sw", "sb",
+        "j", "jal", "jr", "jalr",
+        "beq", "bne", "blt", "bgt", "ble", "bge",
+        "syscall"
+    };
+
+    static final String[] registers = {
+        "zero", "at", "v0", "v1", "a0", "a1", "a2", "a3",
+        "t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7",
+        "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
+        "t8", "t9", "k0", "k1", "gp", "sp", "fp", "ra"
+    };
+
+    static final int TEXT = 0x00400000, DATA = 0x10000000;
+    static final int GP = 0x10008000, SP = 0x7fffeffc;
+    // the stack grows down from 0x80000000 to STACK_LIMIT
+    static final int STACK_LIMIT = 0x70000000;
+
+    private static final HashMap<String, Integer> opcodes = new HashMap<String, Integer>();
+    private static final HashMap<String, Integer> regNumbers = new HashMap<String, Integer>();
+    static {
+        for (int i = 0; i < names.length; ++i)
+            opcodes.put(names[i], i);
+        for (int i = 0; i < registers.length; ++i) {
+            regNumbers.put("$" + registers[i], i);
+            regNumbers.put("$" + i, i);
+        }
+        regNumbers.put("$s8", 30);
+    }
+
+    // thrown when the program does something SPIM would stop on
+    public static class Fault extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Fault(String message) {
+            super(message);
+        }
+    }
+
+    // decoded program; op, rd, rs, rt and imm are indexed by pc, and imm is
+    // the target pc of jumps and branches
+    int size = 0;
+    int[] op = new int[256], rd = new int[256], rs = new int[256], rt = new int[256], imm = new int[256];
+    int entry = 0;
+
+    // symbols (text ones hold TEXT + 4 * pc) and text labels by pc
+    LinkedHashMap<String, Integer> symbols = new LinkedHashMap<String, Integer>();
+    LinkedHashMap<String, Integer> textLabels = new LinkedHashMap<String, Integer>();
+
+    // references to resolve in link(): pc or data offset -> symbol
+    private HashMap<Integer, String> textRefs = new HashMap<Integer, String>();
+    private HashMap<Integer, String> dataRefs = new HashMap<Integer, String>();
+
+    byte[] data = new byte[1 << 12];
+    int dataSize = 0, brk = 0;
+    byte[] stack = new byte[1 << 16];
+    int stackBase = (int) (0x80000000L - stack.length);
+
+    int[] reg = new int[32];
+    long[] hits;
+    long taken = 0, limit = Long.MAX_VALUE;
+    boolean exited = false;
+
+    private InputStream in;
+    private OutputStream out;
+
+    Simulator() {
+    }
+
+    // Loads the .s file written by SpimAsm
+    public static Simulator load(InputStream in) throws IOException {
+        Simulator sim = new Simulator();
+        new AsmReader(in, sim).read();
+        sim.link();
+        return sim;
+    }
+
+    // Loads the allocated instruction list directly, laying out the data
+    // segment the way SpimAsm does
+    static Simulator load(InstructionList list, Map<Temp, Register> map, IR ir) throws IOException {
+        Simulator sim = new Simulator();
+        sim.textLabel("main");
+        for (LabeledInstruction li: list) {
+            if (li.label != null)
+                sim.textLabel(li.label.toString());
+            if (li.instruction != null)
+                sim.add(li.instruction, map);
+        }
+
+        for (int i = 0; i < ir.globalFrame.getSpilledLocalCount(); ++i)
+            sim.word(0);
+        for (arch.StringTable.StringPair pair: ir.stringTable) {
+            sim.dataLabel(pair.name);
+            sim.bytes(pair.value.getBytes("UTF-8"));
+            sim.bytes(new byte[1]);
+        }
+        sim.link();
+        return sim;
+    }
+
+    private void add(Instruction ins, Map<Temp, Register> map) throws IOException {
+        int o = opcode(Instruction.mnemonics[ins.type.ordinal()]);
+        int d = 0, s = 0, t = 0, i = 0;
+        String symbol = null;
+        switch (ins.type) {
+            case SW:
+            case SB:
+                d = register(map, ins.src2);
+                s = register(map, ins.src1);
+                i = ins.imm.value();
+                break;
+
+            case J:
+            case JAL:
+                symbol = ins.target.toString();
+                break;
+
+            case BEQ: case BNE: case BLT: case BLE: case BGT: case BGE:
+                s = register(map, ins.src1);
+                t = register(map, ins.src2);
+                symbol = ins.target.toString();
+                break;
+
+            case SYSCALL:
+                break;
+
+            default:
+                d = register(map, ins.dst);
+                s = register(map, ins.src1);
+                t = register(map, ins.src2);
+                if (ins.imm != null) {
+                    if (ins.imm.isBinded())
+                        i = ins.imm.value();
+                    else
+                        symbol = ins.imm.toString();
+                }
+        }
+        emit(o, d, s, t, i, symbol);
+    }
+
+    private static int register(Map<Temp, Register> map, Temp t) throws IOException {
+        if (t == null)
+            return 0;
+        Register r = map.get(t);
+        if (r == null)
+            throw new IOException("unallocated temp " + t);
+        return register(r.toString());
+    }
+
+    static int opcode(String name) {
+        Integer o = opcodes.get(name);
+        return o == null ? -1 : o.intValue();
+    }
+
+    static int register(String name) {
+        Integer r = regNumbers.get(name);
+        return r == null ? -1 : r.intValue();
+    }
+
+    // -- building
+
+    void textLabel(String name) throws IOException {
+        define(name, TEXT + 4 * size);
+        textLabels.put(name, size);
+    }
+
+    void dataLabel(String name) throws IOException {
+        define(name, DATA + dataSize);
+    }
+
+    private void define(String name, int address) throws IOException {
+        if (symbols.put(name, address) != null)
+            throw new IOException("label " + name + " defined twice");
+    }
+
+    // symbol, if not null, is resolved into imm: a pc for jumps and
+    // branches, an address otherwise
+    void emit(int o, int d, int s, int t, int i, String symbol) {
+        if (size == op.length) {
+            op = Arrays.copyOf(op, size * 2);
+            rd = Arrays.copyOf(rd, size * 2);
+            rs = Arrays.copyOf(rs, size * 2);
+            rt = Arrays.copyOf(rt, size * 2);
+            imm = Arrays.copyOf(imm, size * 2);
+        }
+        op[size] = o;
+        rd[size] = d;
+        rs[size] = s;
+        rt[size] = t;
+        imm[size] = i;
+        if (symbol != null)
+            textRefs.put(size, symbol);
+        ++size;
+    }
+
+    void origin(int address) throws IOException {
+        if (address < DATA + dataSize || address >= STACK_LIMIT)
+            throw new IOException("bad data address " + Integer.toHexString(address));
+        reserve(address - DATA - dataSize);
+    }
+
+    void align(int n) {
+        int a = 1 << n;
+        reserve((a - dataSize % a) % a);
+    }
+
+    void reserve(int n) {
+        dataSize += n;
+        if (dataSize > data.length)
+            data = Arrays.copyOf(data, Math.max(dataSize, data.length * 2));
+    }
+
+    void bytes(byte[] b) {
+        int at = dataSize;
+        reserve(b.length);
+        System.arraycopy(b, 0, data, at, b.length);
+    }
+
+    void word(int w) {
+        align(2);
+        reserve(4);
+        setWord(data, dataSize - 4, w);
+    }
+
+    void word(String symbol) {
+        word(0);
+        dataRefs.put(dataSize - 4, symbol);
+    }
+
+    private void link() throws IOException {
+        op = Arrays.copyOf(op, size);
+        rd = Arrays.copyOf(rd, size);
+        rs = Arrays.copyOf(rs, size);
+        rt = Arrays.copyOf(rt, size);
+        imm = Arrays.copyOf(imm, size);
+        hits = new long[size];
+
+        for (Map.Entry<Integer, String> e: textRefs.entrySet()) {
+            int pc = e.getKey(), address = resolve(e.getValue());
+            if (op[pc] == LA || op[pc] == LI)
+                imm[pc] += address;
+            else if ((address - TEXT) % 4 == 0 && address >= TEXT && address <= TEXT + 4 * size)
+                imm[pc] = (address - TEXT) / 4;
+            else
+                throw new IOException(e.getValue() + " is not a text label");
+        }
+        for (Map.Entry<Integer, String> e: dataRefs.entrySet())
+            setWord(data, e.getKey(), resolve(e.getValue()));
+        textRefs = null;
+        dataRefs = null;
+
+        Integer main = symbols.get("main");
+        if (main != null && main >= TEXT && main < TEXT + 4 * size)
+            entry = (main - TEXT) / 4;
+
+        // the heap starts behind the static data
+        align(2);
+        brk = dataSize;
+    }
+
+    private int resolve(String symbol) throws IOException {
+        Integer address = symbols.get(symbol);
+        if (address == null)
+            throw new IOException("undefined label " + symbol);
+        return address;
+    }
+
+    // -- running
+
+    // instructions after which run() gives up
+    public void setLimit(long limit) {
+        this.limit = limit;
+    }
+
+    // Runs from main until exit, or until control leaves the program through
+    // the initial $ra or by falling off the end
+    public void run(InputStream in, OutputStream out) throws IOException {
+        this.in = in;
+        this.out = out;
+        Arrays.fill(reg, 0);
+        Arrays.fill(hits, 0);
+        taken = 0;
+        exited = false;
+        reg[28] = GP;
+        reg[29] = SP;
+        reg[31] = TEXT + 4 * size;
+
+        final int[] op = this.op, rd = this.rd, rs = this.rs, rt = this.rt, imm = this.imm;
+        final int[] r = reg;
+        final long[] hits = this.hits;
+        long steps = 0;
+        int pc = entry;
+        try {
+            while (pc >= 0 && pc < size) {
+                if (++steps > limit)
+                    throw fault(pc, "instruction limit of " + limit + " reached");
+                ++hits[pc];
+                int next = pc + 1;
+                switch (op[pc]) {
+                    case ADD: {
+                        int x = r[rs[pc]], y = r[rt[pc]], z = x + y;
+                        if (((x ^ z) & (y ^ z)) < 0)
+                            throw fault(pc, "arithmetic overflow");
+                        r[rd[pc]] = z;
+                        break;
+                    }
+                    case ADDU: r[rd[pc]] = r[rs[pc]] + r[rt[pc]]; break;
+                    case SUB: {
+                        int x = r[rs[pc]], y = r[rt[pc]], z = x - y;
+                        if (((x ^ y) & (x ^ z)) < 0)
+                            throw fault(pc, "arithmetic overflow");
+                        r[rd[pc]] = z;
+                        break;
+                    }
+                    case SUBU: r[rd[pc]] = r[rs[pc]] - r[rt[pc]]; break;
+                    case MUL: r[rd[pc]] = r[rs[pc]] * r[rt[pc]]; break;
+                    case DIV:
+                        if (r[rt[pc]] == 0)
+                            throw fault(pc, "division by zero");
+                        r[rd[pc]] = r[rs[pc]] / r[rt[pc]];
+                        break;
+                    case REM:
+                        if (r[rt[pc]] == 0)
+                            throw fault(pc, "division by zero");
+                        r[rd[pc]] = r[rs[pc]] % r[rt[pc]];
+                        break;
+                    case AND: r[rd[pc]] = r[rs[pc]] & r[rt[pc]]; break;
+                    case OR: r[rd[pc]] = r[rs[pc]] | r[rt[pc]]; break;
+                    case XOR: r[rd[pc]] = r[rs[pc]] ^ r[rt[pc]]; break;
+                    case NOR: r[rd[pc]] = ~(r[rs[pc]] | r[rt[pc]]); break;
+                    case SLT: r[rd[pc]] = r[rs[pc]] < r[rt[pc]] ? 1 : 0; break;
+                    case SLTU: r[rd[pc]] = Integer.compareUnsigned(r[rs[pc]], r[rt[pc]]) < 0 ? 1 : 0; break;
+                    case SLE: r[rd[pc]] = r[rs[pc]] <= r[rt[pc]] ? 1 : 0; break;
+                    case SEQ: r[rd[pc]] = r[rs[pc]] == r[rt[pc]] ? 1 : 0; break;
+                    case SNE: r[rd[pc]] = r[rs[pc]] != r[rt[pc]] ? 1 : 0; break;
+                    case SGT: r[rd[pc]] = r[rs[pc]] > r[rt[pc]] ? 1 : 0; break;
+                    case SGE: r[rd[pc]] = r[rs[pc]] >= r[rt[pc]] ? 1 : 0; break;
+                    case SLLV: r[rd[pc]] = r[rs[pc]] << r[rt[pc]]; break;
+                    case SRLV: r[rd[pc]] = r[rs[pc]] >>> r[rt[pc]]; break;
+                    case SRAV: r[rd[pc]] = r[rs[pc]] >> r[rt[pc]]; break;
+
+                    case ADDI: {
+                        int x = r[rs[pc]], z = x + imm[pc];
+                        if (((x ^ z) & (imm[pc] ^ z)) < 0)
+                            throw fault(pc, "arithmetic overflow");
+                        r[rd[pc]] = z;
+                        break;
+                    }
+                    case ADDIU: r[rd[pc]] = r[rs[pc]] + imm[pc]; break;
+                    case ANDI: r[rd[pc]] = r[rs[pc]] & (imm[pc] & 0xffff); break;
+                    case ORI: r[rd[pc]] = r[rs[pc]] | (imm[pc] & 0xffff); break;
+                    case XORI: r[rd[pc]] = r[rs[pc]] ^ (imm[pc] & 0xffff); break;
+                    case SLTI: r[rd[pc]] = r[rs[pc]] < imm[pc] ? 1 : 0; break;
+                    case SLTIU: r[rd[pc]] = Integer.compareUnsigned(r[rs[pc]], imm[pc]) < 0 ? 1 : 0; break;
+                    case SLL: r[rd[pc]] = r[rs[pc]] << imm[pc]; break;
+                    case SRL: r[rd[pc]] = r[rs[pc]] >>> imm[pc]; break;
+                    case SRA: r[rd[pc]] = r[rs[pc]] >> imm[pc]; break;
+
+                    case MOVE: r[rd[pc]] = r[rs[pc]]; break;
+                    case NEG: r[rd[pc]] = -r[rs[pc]]; break;
+                    case NOT: r[rd[pc]] = ~r[rs[pc]]; break;
+                    case ABS: r[rd[pc]] = Math.abs(r[rs[pc]]); break;
+
+                    case LI: case LA: r[rd[pc]] = imm[pc]; break;
+                    case LUI: r[rd[pc]] = imm[pc] << 16; break;
+
+                    case LW: r[rd[pc]] = loadWord(pc, r[rs[pc]] + imm[pc]); break;
+                    case LB: r[rd[pc]] = loadByte(pc, r[rs[pc]] + imm[pc]); break;
+                    case LBU: r[rd[pc]] = loadByte(pc, r[rs[pc]] + imm[pc]) & 0xff; break;
+                    case SW: storeWord(pc, r[rs[pc]] + imm[pc], r[rd[pc]]); break;
+                    case SB: storeByte(pc, r[rs[pc]] + imm[pc], r[rd[pc]]); break;
+
+                    case J: next = imm[pc]; break;
+                    case JAL: r[31] = TEXT + 4 * next; next = imm[pc]; break;
+                    case JR: next = textPc(pc, r[rs[pc]]); break;
+                    case JALR: {
+                        int target = textPc(pc, r[rs[pc]]);
+                        r[rd[pc]] = TEXT + 4 * next;
+                        next = target;
+                        break;
+                    }
+
+                    case BEQ: if (r[rs[pc]] == r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+                    case BNE: if (r[rs[pc]] != r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+                    case BLT: if (r[rs[pc]] < r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+                    case BGT: if (r[rs[pc]] > r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+                    case BLE: if (r[rs[pc]] <= r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+                    case BGE: if (r[rs[pc]] >= r[rt[pc]]) { next = imm[pc]; ++taken; } break;
+
+                    case SYSCALL:
+                        if (!syscall(pc)) {
+                            exited = true;
+                            next = -1;
+                        }
+                        break;
+                }
+                r[0] = 0;
+                pc = next;
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    private int textPc(int pc, int address) {
+        if (address < TEXT || address > TEXT + 4 * size || (address & 3) != 0)
+            throw fault(pc, "jump to bad address 0x" + Integer.toHexString(address));
+        return (address - TEXT) >> 2;
+    }
+
+    // returns false on exit
+    private boolean syscall(int pc) throws IOException {
+        int[] r = reg;
+        switch (r[2]) {
+            case 1:
+                out.write(Integer.toString(r[4]).getBytes("US-ASCII"));
+                return true;
+
+            case 4:
+                for (int a = r[4]; ; ++a) {
+                    int c = loadByte(pc, a);
+                    if (c == 0)
+                        break;
+                    out.write(c);
+                }
+                return true;
+
+            case 5: {
+                out.flush();
+                String line = readLine(Integer.MAX_VALUE).trim();
+                try {
+                    r[2] = line.length() == 0 ? 0 : Integer.parseInt(line);
+                } catch (NumberFormatException e) {
+                    r[2] = 0;
+                }
+                return true;
+            }
+
+            case 8: {
+                // like fgets: at most a1 - 1 characters, the newline included
+                out.flush();
+                int a = r[4], n = r[5];
+                if (n <= 0)
+                    return true;
+                String line = readLine(n - 1);
+                for (int i = 0; i < line.length(); ++i)
+                    storeByte(pc, a + i, line.charAt(i));
+                storeByte(pc, a + line.length(), 0);
+                return true;
+            }
+
+            case 9: {
+                int n = r[4];
+                if (n < 0 || n > STACK_LIMIT - DATA - brk)
+                    throw fault(pc, "sbrk of " + n + " bytes");
+                r[2] = DATA + brk;
+                brk += (n + 3) & ~3;
+                if (brk > data.length)
+                    data = Arrays.copyOf(data, Math.max(brk, data.length * 2));
+                return true;
+            }
+
+            case 10:
+                return false;
+
+            default:
+                throw fault(pc, "unknown syscall " + r[2]);
+        }
+    }
+
+    private String readLine(int max) throws IOException {
+        StringBuilder s = new StringBuilder();
+        while (s.length() < max) {
+            int c = in.read();
+            if (c == -1)
+                break;
+            s.append((char) c);
+            if (c == '\n')
+                break;
+        }
+        return s.toString();
+    }
+
+    // -- memory, little endian like SPIM on the usual hosts
+
+    private int loadWord(int pc, int a) {
+        if ((a & 3) != 0)
+            throw fault(pc, "unaligned load from 0x" + Integer.toHexString(a));
+        if (a >= stackBase)
+            return getWord(stack, a - stackBase);
+        if (a >= DATA && a - DATA < brk)
+            return getWord(data, a - DATA);
+        growStack(pc, a);
+        return getWord(stack, a - stackBase);
+    }
+
+    private int loadByte(int pc, int a) {
+        if (a >= stackBase)
+            return stack[a - stackBase];
+        if (a >= DATA && a - DATA < brk)
+            return data[a - DATA];
+        growStack(pc, a);
+        return stack[a - stackBase];
+    }
+
+    private void storeWord(int pc, int a, int v) {
+        if ((a & 3) != 0)
+            throw fault(pc, "unaligned store to 0x" + Integer.toHexString(a));
+        if (a >= stackBase)
+            setWord(stack, a - stackBase, v);
+        else if (a >= DATA && a - DATA < brk)
+            setWord(data, a - DATA, v);
+        else {
+            growStack(pc, a);
+            setWord(stack, a - stackBase, v);
+        }
+    }
+
+    private void storeByte(int pc, int a, int v) {
+        if (a >= stackBase)
+            stack[a - stackBase] = (byte) v;
+        else if (a >= DATA && a - DATA < brk)
+            data[a - DATA] = (byte) v;
+        else {
+            growStack(pc, a);
+            stack[a - stackBase] = (byte) v;
+        }
+    }
+
+    private void growStack(int pc, int a) {
+        if (a < STACK_LIMIT || a < DATA + brk)
+            throw fault(pc, "bad address 0x" + Integer.toHexString(a));
+        long top = 0x80000000L;
+        int n = stack.length;
+        while (top - n > a)
+            n *= 2;
+        byte[] s = new byte[n];
+        System.arraycopy(stack, 0, s, n - stack.length, stack.length);
+        stack = s;
+        stackBase = (int) (top - n);
+    }
+
+    private static int getWord(byte[] m, int i) {
+        return (m[i] & 0xff) | (m[i + 1] & 0xff) << 8 | (m[i + 2] & 0xff) << 16 | m[i + 3] << 24;
+    }
+
+    private static void setWord(byte[] m, int i, int v) {
+        m[i] = (byte) v;
+        m[i + 1] = (byte) (v >> 8);
+        m[i + 2] = (byte) (v >> 16);
+        m[i + 3] = (byte) (v >> 24);
+    }
+
+    private Fault fault(int pc, String message) {
+        String where = "0x" + Integer.toHexString(TEXT + 4 * pc);
+        String label = null;
+        for (Map.Entry<String, Integer> e: textLabels.entrySet()) {
+            if (e.getValue() > pc)
+                break;
+            label = e.getKey();
+        }
+        if (label != null)
+            where += " (" + label + "+" + 4 * (pc - textLabels.get(label)) + ")";
+        return new Fault(where + ": " + message);
+    }
+
+    // -- statistics of the last run
+
+    public boolean exited() {
+        return exited;
+    }
+
+    public long instructions() {
+        long n = 0;
+        for (long h: hits)
+            n += h;
+        return n;
+    }
+
+    public long loads() {
+        return count(LW, LBU);
+    }
+
+    public long stores() {
+        return count(SW, SB);
+    }
+
+    public long branches() {
+        return count(BEQ, BGE);
+    }
+
+    public long takenBranches() {
+        return taken;
+    }
+
+    public long calls() {
+        return count(JAL, JAL) + count(JALR, JALR);
+    }
+
+    // executions of each text label, in program order
+    public LinkedHashMap<String, Long> labelCounts() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Integer> e: textLabels.entrySet()) {
+            int pc = e.getValue();
+            counts.put(e.getKey(), pc < size ? hits[pc] : 0);
+        }
+        return counts;
+    }
+
+    private long count(int first, int last) {
+        long n = 0;
+        for (int pc = 0; pc < size; ++pc)
+            if (op[pc] >= first && op[pc] <= last)
+                n += hits[pc];
+        return n;
+    }
+
+    public List<String> report() {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add(String.format("%-12s %12d", "instructions", instructions()));
+        lines.add(String.format("%-12s %12d", "loads", loads()));
+        lines.add(String.format("%-12s %12d", "stores", stores()));
+        lines.add(String.format("%-12s %12d", "branches", branches()));
+        lines.add(String.format("%-12s %12d", "taken", takenBranches()));
+        lines.add(String.format("%-12s %12d", "calls", calls()));
+        lines.add(String.format("%-12s %12s", "label", "count"));
+        for (Map.Entry<String, Long> e: labelCounts().entrySet())
+            if (e.getValue() > 0)
+                lines.add(String.format("%-12s %12d", e.getKey(), e.getValue()));
+        return lines;
+    }
+}
@@ -16,66 +16,65 @@ class SpimAsm {
         this.map = regMap;
     }
 
-    public void output(BufferedWriter writer) throws IOException {
+    public void output(AsmWriter writer) throws IOException {
         writeTextSeg(writer);
         writer.newLine();
         writer.newLine();
         writeDataSeg(writer);
+        writer.flush();
     }
 
-    private void writeTextSeg(BufferedWriter writer) throws IOException {
-        writer.write("\t.text");
-        writer.newLine();
-        writer.write("\t.align 2");
-        writer.newLine();
-        writer.write("\t.globl main");
-        writer.newLine();
-        writer.write("main:");
-        writer.newLine();
+    private String[] buildRegNames() {
+        String[] names = new String[Temp.count()];
+        for (Map.Entry<Temp, Register> e: map.entrySet())
+            names[e.getKey().index()] = e.getValue().toString();
+        return names;
+    }
+
+    private void writeTextSeg(AsmWriter writer) throws IOException {
+        writer.append("\t.text\n");
+        writer.append("\t.align 2\n");
+        writer.append("\t.globl main\n");
+        writer.append("main:\n");
 
+        String[] regNames = buildRegNames();
         for (LabeledInstruction li: list) {
-            if (li.label != null) {
-                writer.write(li.label.toString() + ":");
-                writer.newLine();
-            }
+            if (li.label != null)
+                writer.append(li.label.toString()).append(':').newLine();
             if (li.instruction != null) {
-                writer.write("\t" + li.instruction.toString(map));
+                writer.append('\t');
+                li.instruction.emit(writer, regNames);
                 writer.newLine();
             }
         }
     }
 
-    private void writeDataSeg(BufferedWriter writer) throws IOException {
-        writer.write("\t.data 0x10000000");
-        writer.newLine();
-        writer.write("\t.align 2");
-        writer.newLine();
-        for (int i = 0; i < ir.globalFrame.getSpilledLocalCount(); ++i) {
-            writer.write("\t.word 0");
-            writer.newLine();
-        }
+    private void writeDataSeg(AsmWriter writer) throws IOException {
+        writer.append("\t.data 0x10000000\n");
+        writer.append("\t.align 2\n");
+        for (int i = 0; i < ir.globalFrame.getSpilledLocalCount(); ++i)
+            writer.append("\t.word 0\n");
         for (arch.StringTable.StringPair pair: ir.stringTable) {
-            writer.write(pair.name + ":");
-            writer.newLine();
-            writer.write("\t.asciiz \"" + escape(pair.value) + "\"");
-            writer.newLine();
+            writer.append(pair.name).append(":\n");
+            writer.append("\t.asciiz \"");
+            escape(pair.value, writer);
+            writer.append("\"\n");
         }
     }
 
-    public String escape(String s) {
-        StringBuffer ret = new StringBuffer();
+    private void escape(String s, AsmWriter writer) throws IOException {
         for (int i = 0; i < s.length(); ++i) {
             char c = s.charAt(i);
             if (c == '\t')
-                ret.append("\\t");
+                writer.append("\\t");
             else if (c == '\n')
-                ret.append("\\n");
+                writer.append("\\n");
             else if (c == '\\')
-                ret.append("\\\\");
+                writer.append("\\\\");
+            else if (c == '"')
+                writer.append("\\\"");
             else
-                ret.append(c);
+                writer.append(c);
         }
-        return ret.toString();
     }
 }
-
@@ -46,14 +46,14 @@ public class BasicBlockOptimizer {
         }
     }
 
-    Map<Temp, VersionedTemp> map = new HashMap<Temp, VersionedTemp>();
-    Map<VersionedTemp, Node> vnMap = new HashMap<VersionedTemp, Node>();
-    Map<List<Node>, List<Node>> uMap = new HashMap<List<Node>, List<Node>>();
+    Map<Temp, VersionedTemp> map = new LinkedHashMap<Temp, VersionedTemp>();
+    Map<VersionedTemp, Node> vnMap = new LinkedHashMap<VersionedTemp, Node>();
+    Map<List<Node>, List<Node>> uMap = new LinkedHashMap<List<Node>, List<Node>>();
 
     void newMap() {
-        map = new HashMap<Temp, VersionedTemp>();
-        vnMap = new HashMap<VersionedTemp, Node>();
-        uMap = new HashMap<List<Node>, List<Node>>();
+        map = new LinkedHashMap<Temp, VersionedTemp>();
+        vnMap = new LinkedHashMap<VersionedTemp, Node>();
+        uMap = new LinkedHashMap<List<Node>, List<Node>>();
     }
 
     List<Temp> use(Instruction ins) {
@@ -123,7 +123,7 @@ public class BasicBlockOptimizer {
     }
 
     void rewrite(BasicBlock ret, Graph<Node> dag, Set<Temp> out, Frame frame) {
-        out = new HashSet<Temp>(out);
+        out = new LinkedHashSet<Temp>(out);
         out.add(mem);
         for (Temp t: out) {
             if (!map.containsKey(t))
@@ -196,16 +196,16 @@ public class BasicBlockOptimizer {
     }
 
     int copyPropagation(BasicBlock block, List<Integer> moveFrom, List<Integer> moveAfter) {
-        Map<Temp, Instruction> alias = new HashMap<Temp, Instruction>();
-        Map<Instruction, Map<Temp, Instruction>> reaching = new HashMap<Instruction, Map<Temp, Instruction>>();
-        Map<Temp, Instruction> now = new HashMap<Temp, Instruction>();
+        Map<Temp, Instruction> alias = new LinkedHashMap<Temp, Instruction>();
+        Map<Instruction, Map<Temp, Instruction>> reaching = new LinkedHashMap<Instruction, Map<Temp, Instruction>>();
+        Map<Temp, Instruction> now = new LinkedHashMap<Temp, Instruction>();
 
         int count = 0;
         Integer index = new Integer(0);
 
         BasicBlock ret = new BasicBlock();
         for (Instruction i: block) {
-            reaching.put(i, new HashMap<Temp, Instruction>(now));
+            reaching.put(i, new LinkedHashMap<Temp, Instruction>(now));
 
             List<Temp> newUse = new ArrayList<Temp>();
             List<Integer> expect = new ArrayList<Integer>();
@@ -251,7 +251,10 @@ public class BasicBlockOptimizer {
                 moveAfter.add(index);
             }
 
-            if (i.isMove())
+            // the moves of a call sequence read and write the callee's temps
+            // where its frame is in place, so other uses must not read
+            // through them
+            if (i.isMove() && !i.hasSideEffects())
                 alias.put(def(i), i);
             else {
                 for (Temp t: i.def())
@@ -268,10 +271,10 @@ public class BasicBlockOptimizer {
 
     boolean codeMotion(BasicBlock block, int from, int after) {
         int index = 0, state = 0;
-        Set<Temp> use1 = new HashSet<Temp>(),
-            def1 = new HashSet<Temp>(),
-            use2 = new HashSet<Temp>(),
-            def2 = new HashSet<Temp>();
+        Set<Temp> use1 = new LinkedHashSet<Temp>(),
+            def1 = new LinkedHashSet<Temp>(),
+            use2 = new LinkedHashSet<Temp>(),
+            def2 = new LinkedHashSet<Temp>();
         for (Instruction i: block) {
             if (index == from) {
                 if (i.hasSideEffects() || i.isJump())
@@ -291,15 +294,15 @@ public class BasicBlockOptimizer {
             ++index;
         }
 
-        Set<Temp> t = new HashSet<Temp>(use1);
+        Set<Temp> t = new LinkedHashSet<Temp>(use1);
         t.retainAll(def2);
         if (t.size() > 0)
             return false;
-        t = new HashSet<Temp>(use2);
+        t = new LinkedHashSet<Temp>(use2);
         t.retainAll(def1);
         if (t.size() > 0)
             return false;
-        t = new HashSet<Temp>(def1);
+        t = new LinkedHashSet<Temp>(def1);
         t.retainAll(def2);
         if (t.size() > 0)
             return false;
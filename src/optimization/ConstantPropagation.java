@@ -0,0 +1,326 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Sparse conditional constant propagation (Wegman and Zadeck) over the
+// functions of an IR in SSA form. A temp is unknown until a definition
+// reaches it, then a constant, then varying; only the edges a branch can
+// take are followed, so a constant condition also keeps the code it skips
+// from spoiling the values after the join. Afterwards constant temps are
+// replaced by their value, branches on constants become gotos or go away
+// and the blocks that never run are deleted.
+//
+// Temps that keep their names in SSA form (see SSA) have definitions all
+// over the program. Such a temp is a constant when every definition of it
+// in the whole program stores that constant: Tiger initializes a variable
+// where it is declared, before anything can read it. A parameter is also
+// set by every call, so it never is.
+public class ConstantPropagation {
+    // the value of a varying temp
+    private static final Integer VARYING = null;
+
+    IR ir;
+    SSA ssa;
+    IRFunction fn;
+    // the constants outside of SSA form
+    Map<Temp, Integer> globals;
+
+    // temps missing here are unknown, mapped to VARYING are varying
+    LinkedHashMap<Temp, Integer> value = new LinkedHashMap<Temp, Integer>();
+    LinkedHashMap<Temp, ArrayList<ThreeAddressCode>> users = new LinkedHashMap<Temp, ArrayList<ThreeAddressCode>>();
+    LinkedHashMap<ThreeAddressCode, Block> blockOf = new LinkedHashMap<ThreeAddressCode, Block>();
+    LinkedHashSet<Block> executable = new LinkedHashSet<Block>();
+    LinkedHashMap<Block, LinkedHashSet<Block>> edges = new LinkedHashMap<Block, LinkedHashSet<Block>>();
+
+    ArrayDeque<Block[]> flowWork = new ArrayDeque<Block[]>();
+    ArrayDeque<ThreeAddressCode> ssaWork = new ArrayDeque<ThreeAddressCode>();
+
+    ConstantPropagation(IR ir, SSA ssa, IRFunction fn, Map<Temp, Integer> globals) {
+        this.ir = ir;
+        this.ssa = ssa;
+        this.fn = fn;
+        this.globals = globals;
+    }
+
+    // returns true if any function changed
+    public static boolean optimize(IR ir, SSA ssa, List<IRFunction> functions) {
+        boolean changed = false;
+        Map<Temp, Integer> globals = globals(ssa, functions);
+        while (true) {
+            for (IRFunction f: functions)
+                changed |= new ConstantPropagation(ir, ssa, f, globals).run();
+
+            // the rewritten functions may store new constants
+            Map<Temp, Integer> more = globals(ssa, functions);
+            if (more.size() == globals.size())
+                return changed;
+            globals = more;
+        }
+    }
+
+    // the temps outside of SSA form that are only ever set to one constant
+    static Map<Temp, Integer> globals(SSA ssa, List<IRFunction> functions) {
+        LinkedHashMap<Temp, Integer> c = new LinkedHashMap<Temp, Integer>();
+        LinkedHashSet<Temp> varying = new LinkedHashSet<Temp>();
+        for (IRFunction f: functions)
+            varying.addAll(f.frame.params);
+        for (IRFunction f: functions)
+            for (Block b: f.blocks)
+                for (ThreeAddressCode tac: b.codes) {
+                    Temp t = IRFunction.def(tac);
+                    if (t == null || ssa.isVersion(t) || varying.contains(t))
+                        continue;
+                    if (tac instanceof MoveTAC && tac.op1 instanceof ConstAccess
+                            && !(tac.op1 instanceof UnknownConstAccess)) {
+                        int v = ((ConstAccess) tac.op1).value;
+                        if (!c.containsKey(t) || c.get(t) == v) {
+                            c.put(t, v);
+                            continue;
+                        }
+                    }
+                    c.remove(t);
+                    varying.add(t);
+                }
+        return c;
+    }
+
+    boolean run() {
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes) {
+                blockOf.put(tac, b);
+                ArrayList<Temp> used = new ArrayList<Temp>();
+                IRFunction.uses(tac, used);
+                for (Temp t: used) {
+                    ArrayList<ThreeAddressCode> u = users.get(t);
+                    if (u == null) {
+                        u = new ArrayList<ThreeAddressCode>();
+                        users.put(t, u);
+                    }
+                    if (!u.contains(tac))
+                        u.add(tac);
+                }
+            }
+
+        flowWork.add(new Block[] {null, fn.entry()});
+        while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+            while (!flowWork.isEmpty()) {
+                Block[] e = flowWork.poll();
+                if (e[0] != null && !edges.get(e[0]).add(e[1]))
+                    continue;
+                Block b = e[1];
+                if (executable.add(b)) {
+                    edges.put(b, new LinkedHashSet<Block>());
+                    for (ThreeAddressCode tac: b.codes)
+                        visit(tac);
+                    if (!(b.last() instanceof BranchTAC))
+                        for (Block s: b.succ)
+                            flowWork.add(new Block[] {b, s});
+                } else {
+                    for (ThreeAddressCode tac: b.codes)
+                        if (tac instanceof PhiTAC)
+                            visit(tac);
+                }
+            }
+            while (!ssaWork.isEmpty()) {
+                ThreeAddressCode tac = ssaWork.poll();
+                if (executable.contains(blockOf.get(tac)))
+                    visit(tac);
+            }
+        }
+        return rewrite();
+    }
+
+    boolean known(Temp t) {
+        return ssa.isVersion(t) ? value.containsKey(t) : true;
+    }
+
+    // the value of a known access, VARYING if it varies
+    Integer valueOf(Access a) {
+        if (a instanceof Temp) {
+            Temp t = (Temp) a;
+            return ssa.isVersion(t) ? value.get(t) : globals.get(t);
+        } else if (a instanceof UnknownConstAccess)
+            return a == ir.wordLength ? Integer.valueOf(((ConstAccess) a).value) : VARYING;
+        else if (a instanceof ConstAccess)
+            return ((ConstAccess) a).value;
+        else
+            return VARYING;
+    }
+
+    boolean known(Access a) {
+        return !(a instanceof Temp) || known((Temp) a);
+    }
+
+    void visit(ThreeAddressCode tac) {
+        tac.accept(evaluator);
+    }
+
+    // evaluates a code with the values known so far
+    private final TACVisitor<Void> evaluator = new DefaultTACVisitor<Void>() {
+        public Void visit(BranchTAC tac) {
+            if (!known(tac.op1) || !known(tac.op2))
+                return null;
+            Block b = blockOf.get(tac);
+            Integer x = valueOf(tac.op1), y = valueOf(tac.op2);
+            Block target = fn.block(tac.place);
+            for (Block s: b.succ)
+                if (x == VARYING || y == VARYING || (s == target) == taken(tac.type, x, y))
+                    flowWork.add(new Block[] {b, s});
+            return null;
+        }
+
+        public Void visit(PhiTAC phi) {
+            Block b = blockOf.get(phi);
+            boolean isKnown = false;
+            Integer v = VARYING;
+            for (int i = 0; i < phi.preds.size() && (!isKnown || v != VARYING); ++i) {
+                Block p = fn.block(phi.preds.get(i));
+                Access a = phi.args.get(i);
+                if (!executable.contains(p) || !edges.get(p).contains(b) || !known(a))
+                    continue;
+                Integer x = valueOf(a);
+                if (!isKnown) {
+                    isKnown = true;
+                    v = x;
+                } else if (x == VARYING || !x.equals(v))
+                    v = VARYING;
+            }
+            lower(phi, isKnown, v);
+            return null;
+        }
+
+        public Void visit(MoveTAC tac) {
+            lower(tac, known(tac.op1), valueOf(tac.op1));
+            return null;
+        }
+
+        public Void visit(BinOpTAC tac) {
+            Integer x = valueOf(tac.op1), y = valueOf(tac.op2);
+            lower(tac, known(tac.op1) && known(tac.op2),
+                x != VARYING && y != VARYING ? fold(tac.op, x, y) : VARYING);
+            return null;
+        }
+
+        public Void visit(UniOpTAC tac) {
+            Integer x = valueOf(tac.op1);
+            lower(tac, known(tac.op1), x != VARYING ? Integer.valueOf(-x) : VARYING);
+            return null;
+        }
+
+        protected Void otherwise(ThreeAddressCode tac) {
+            lower(tac, true, VARYING);
+            return null;
+        }
+    };
+
+    // moves the temp tac defines down to v, once v is known
+    void lower(ThreeAddressCode tac, boolean isKnown, Integer v) {
+        Temp t = IRFunction.def(tac);
+        if (t == null || !ssa.isVersion(t) || value.containsKey(t) && value.get(t) == VARYING)
+            return;
+        if (!isKnown || value.containsKey(t) && equal(value.get(t), v))
+            return;
+
+        // a value only goes down
+        if (value.containsKey(t))
+            v = VARYING;
+        value.put(t, v);
+        if (users.containsKey(t))
+            ssaWork.addAll(users.get(t));
+    }
+
+    static boolean equal(Integer x, Integer y) {
+        return x == null ? y == null : x.equals(y);
+    }
+
+    // null where the operation does not fold
+    static Integer fold(BinOpTAC.BinOp op, int x, int y) {
+        switch (op) {
+            case ADD:
+                return x + y;
+            case SUB:
+                return x - y;
+            case MUL:
+                return x * y;
+            case DIV:
+                return y == 0 ? null : Integer.valueOf(x / y);
+            case EQ:
+                return x == y ? 1 : 0;
+            case NEQ:
+                return x != y ? 1 : 0;
+            case GT:
+                return x > y ? 1 : 0;
+            case GEQ:
+                return x >= y ? 1 : 0;
+            case LT:
+                return x < y ? 1 : 0;
+            default: /* LEQ */
+                return x <= y ? 1 : 0;
+        }
+    }
+
+    static boolean taken(BranchTAC.BranchType type, int x, int y) {
+        switch (type) {
+            case EQ:
+                return x == y;
+            case NEQ:
+                return x != y;
+            case LT:
+                return x < y;
+            case LEQ:
+                return x <= y;
+            case GT:
+                return x > y;
+            default: /* GEQ */
+                return x >= y;
+        }
+    }
+
+    private boolean rewrite() {
+        boolean changed = false;
+        IRFunction.Renamer constants = new IRFunction.Renamer() {
+            public Access rename(Temp t) {
+                Integer v = valueOf(t);
+                return v == VARYING ? t : new ConstAccess(v);
+            }
+        };
+
+        for (Iterator<Block> it = fn.blocks.iterator(); it.hasNext(); ) {
+            Block b = it.next();
+            if (!executable.contains(b)) {
+                it.remove();
+                changed = true;
+                continue;
+            }
+            for (ListIterator<ThreeAddressCode> ci = b.codes.listIterator(); ci.hasNext(); ) {
+                ThreeAddressCode tac = ci.next();
+                Temp t = IRFunction.def(tac);
+                if (t != null && ssa.isVersion(t) && valueOf(t) != VARYING && IRFunction.isPure(tac)) {
+                    ci.remove();
+                    changed = true;
+                    continue;
+                }
+
+                String before = tac.toString();
+                IRFunction.renameAll(tac, constants);
+                if (!before.equals(tac.toString()))
+                    changed = true;
+
+                if (tac instanceof BranchTAC && tac.op1 instanceof ConstAccess && tac.op2 instanceof ConstAccess
+                        && valueOf(tac.op1) != VARYING && valueOf(tac.op2) != VARYING) {
+                    BranchTAC branch = (BranchTAC) tac;
+                    if (taken(branch.type, valueOf(tac.op1), valueOf(tac.op2)))
+                        ci.set(new GotoTAC(tac.frame, branch.place));
+                    else
+                        ci.remove();
+                    changed = true;
+                }
+            }
+        }
+        if (changed)
+            fn.rebuild();
+        return changed;
+    }
+}
@@ -0,0 +1,237 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Dominator-based global value numbering (Briggs, Cooper and Simpson) over
+// the functions of an IR in SSA form. The blocks are walked down the
+// dominator tree with a scoped hash table of the expressions computed on
+// the way from the entry. A pure computation found in the table is deleted
+// and its temp renamed to the one holding the value; so are copies and
+// phis whose arguments are all one temp.
+//
+// Fixed temps (see SSA) may change under a call, so expressions reading
+// them are not numbered. Loads are numbered together with a memory
+// version, which every store and call moves on; a block starts a new
+// version unless its only predecessor is its immediate dominator.
+public class GlobalValueNumbering {
+    SSA ssa;
+    IRFunction fn;
+
+    // the value of a temp: the temp that holds it or a constant
+    LinkedHashMap<Temp, String> number = new LinkedHashMap<Temp, String>();
+    // the temps of deleted codes and the temps that hold their values
+    LinkedHashMap<Temp, Temp> replace = new LinkedHashMap<Temp, Temp>();
+    // phi arguments are only renamed at the end, so a replacement may
+    // itself have been replaced
+    IRFunction.Renamer renamer = new IRFunction.Renamer() {
+        public Access rename(Temp t) {
+            for (Temp r = replace.get(t); r != null; r = replace.get(t))
+                t = r;
+            return t;
+        }
+    };
+    // expressions available in the current block and their temps
+    LinkedHashMap<String, Temp> table = new LinkedHashMap<String, Temp>();
+    LinkedHashMap<Block, Integer> memoryOut = new LinkedHashMap<Block, Integer>();
+    int memory, versions;
+    // the block being numbered
+    Block block;
+
+    GlobalValueNumbering(SSA ssa, IRFunction fn) {
+        this.ssa = ssa;
+        this.fn = fn;
+    }
+
+    // returns true if any function changed
+    public static boolean optimize(SSA ssa, List<IRFunction> functions) {
+        boolean changed = false;
+        for (IRFunction f: functions)
+            changed |= new GlobalValueNumbering(ssa, f).run();
+        return changed;
+    }
+
+    boolean run() {
+        boolean changed = false;
+        ArrayDeque<Block> walk = new ArrayDeque<Block>();
+        ArrayDeque<ArrayList<String>> added = new ArrayDeque<ArrayList<String>>();
+        LinkedHashSet<Block> done = new LinkedHashSet<Block>();
+        walk.push(fn.entry());
+        while (!walk.isEmpty()) {
+            Block b = walk.peek();
+            if (done.contains(b)) {
+                walk.pop();
+                for (String k: added.pop())
+                    table.remove(k);
+                continue;
+            }
+            done.add(b);
+
+            ArrayList<String> keys = new ArrayList<String>();
+            changed |= number(b, keys);
+            added.push(keys);
+            for (int i = b.children.size() - 1; i >= 0; --i)
+                walk.push(b.children.get(i));
+        }
+        if (!changed)
+            return false;
+
+        // uses the walk has not seen yet: phi arguments along back edges
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                IRFunction.renameAll(tac, renamer);
+        return true;
+    }
+
+    // numbers the codes of b, deleting the redundant ones; the keys it
+    // adds to the table go to keys
+    private boolean number(Block b, ArrayList<String> keys) {
+        boolean changed = false;
+        block = b;
+        if (b.pred.size() == 1 && b.pred.get(0) == b.idom)
+            memory = memoryOut.get(b.idom);
+        else
+            memory = versions++;
+
+        for (Iterator<ThreeAddressCode> it = b.codes.iterator(); it.hasNext(); ) {
+            ThreeAddressCode tac = it.next();
+            if (!(tac instanceof PhiTAC))
+                IRFunction.renameUses(tac, renamer);
+            if (tac.dst instanceof MemAccess || IRFunction.isCall(tac))
+                memory = versions++;
+
+            Temp t = IRFunction.def(tac);
+            if (t == null || ssa.isFixed(t) || tac instanceof CallTAC)
+                continue;
+
+            Temp same = tac.accept(copy);
+            if (same != null) {
+                replace.put(t, same);
+                number.put(t, key(same));
+                it.remove();
+                changed = true;
+                continue;
+            }
+
+            String k = tac.accept(expression);
+            if (k == null) {
+                number.put(t, tac instanceof MoveTAC && tac.op1 instanceof ConstAccess
+                        ? tac.op1.toString() : t.toString());
+                continue;
+            }
+            Temp leader = table.get(k);
+            if (leader != null) {
+                replace.put(t, leader);
+                number.put(t, key(leader));
+                it.remove();
+                changed = true;
+            } else {
+                table.put(k, t);
+                keys.add(k);
+                number.put(t, t.toString());
+            }
+        }
+        memoryOut.put(b, memory);
+        return changed;
+    }
+
+    // the temp a copy, or a phi of one temp, copies
+    private final TACVisitor<Temp> copy = new DefaultTACVisitor<Temp>() {
+        public Temp visit(MoveTAC tac) {
+            return tac.op1 instanceof Temp && !ssa.isFixed((Temp) tac.op1) ? (Temp) tac.op1 : null;
+        }
+
+        public Temp visit(PhiTAC tac) {
+            return onlyArg(tac);
+        }
+
+        protected Temp otherwise(ThreeAddressCode tac) {
+            return null;
+        }
+    };
+
+    // the argument of a phi that gets the same temp on every edge, other
+    // than the phi itself
+    private Temp onlyArg(PhiTAC phi) {
+        Temp only = null;
+        for (Access a: phi.args) {
+            if (a == phi.dst)
+                continue;
+            if (!(a instanceof Temp) || ssa.isFixed((Temp) a) || only != null && a != only)
+                return null;
+            only = (Temp) a;
+        }
+        return only;
+    }
+
+    // the value of an operand, null for one that may change
+    private String key(Access a) {
+        if (a instanceof Temp) {
+            Temp t = (Temp) a;
+            if (ssa.isFixed(t))
+                return null;
+            String n = number.get(t);
+            return n == null ? t.toString() : n;
+        } else if (a instanceof ConstAccess)
+            return a.toString();
+        else
+            return null;
+    }
+
+    // the expression a code of the current block computes, null if it is
+    // not one to number
+    private final TACVisitor<String> expression = new DefaultTACVisitor<String>() {
+        public String visit(BinOpTAC tac) {
+            BinOpTAC.BinOp op = tac.op;
+            String x = key(tac.op1), y = key(tac.op2);
+            if (x == null || y == null)
+                return null;
+            // x > y is y < x, and the operands of the commutative
+            // operators go in one order
+            switch (op) {
+                case GT:
+                    return BinOpTAC.BinOp.LT + " " + y + " " + x;
+                case GEQ:
+                    return BinOpTAC.BinOp.LEQ + " " + y + " " + x;
+                case ADD:
+                case MUL:
+                case EQ:
+                case NEQ:
+                    return x.compareTo(y) > 0 ? op + " " + y + " " + x : op + " " + x + " " + y;
+                default:
+                    return op + " " + x + " " + y;
+            }
+        }
+
+        public String visit(UniOpTAC tac) {
+            String x = key(tac.op1);
+            return x == null ? null : tac.op + " " + x;
+        }
+
+        public String visit(MoveTAC tac) {
+            if (!(tac.op1 instanceof MemAccess))
+                return null;
+            MemAccess m = (MemAccess) tac.op1;
+            String base = key(m.base), offset = key(m.offset);
+            if (base == null || offset == null)
+                return null;
+            return "load " + base + " " + offset + " @" + memory;
+        }
+
+        public String visit(PhiTAC phi) {
+            StringBuilder s = new StringBuilder("phi ").append(block.label);
+            for (int i = 0; i < phi.args.size(); ++i) {
+                String x = key(phi.args.get(i));
+                if (x == null)
+                    return null;
+                s.append(' ').append(phi.preds.get(i)).append(':').append(x);
+            }
+            return s.toString();
+        }
+
+        protected String otherwise(ThreeAddressCode tac) {
+            return null;
+        }
+    };
+}
@@ -0,0 +1,558 @@
+package optimization;
+
+import intermediate.*;
+import frame.Frame;
+import symbol.Symbol;
+import java.util.*;
+import util.Graph;
+
+// One function of the IR as a graph of basic blocks, for the passes that
+// work on three address code. split() cuts the code list of the IR into
+// functions: a code belongs to the frame of its TAC and a label to the TAC
+// after it, and a function's code, with its nested functions taken out,
+// runs straight since Semant jumps over the nested ones. join() lays the
+// functions out again one after the other, main first, and rebuilds the
+// calling graph from the calls the passes have left.
+//
+// Every block starts with a label, so phi arguments can name their
+// predecessor. A block without goto, return or exit at its end falls
+// through to the next block of the list.
+public class IRFunction {
+    public static class Block {
+        public Label label;
+        public ArrayList<ThreeAddressCode> codes = new ArrayList<ThreeAddressCode>();
+        public ArrayList<Block> pred = new ArrayList<Block>(), succ = new ArrayList<Block>();
+
+        // position in reverse postorder, the immediate dominator and the
+        // blocks it immediately dominates, and where a walk of the
+        // dominator tree enters and leaves it; set by rebuild()
+        public int order;
+        public Block idom;
+        public ArrayList<Block> children = new ArrayList<Block>();
+        public int pre, post;
+
+        Block(Label label) {
+            this.label = label;
+        }
+
+        public ThreeAddressCode last() {
+            return codes.isEmpty() ? null : codes.get(codes.size() - 1);
+        }
+
+        public String toString() {
+            return label.toString();
+        }
+    }
+
+    public Frame frame;
+    public ArrayList<Block> blocks = new ArrayList<Block>();
+    // the blocks in reverse postorder, entry first
+    public ArrayList<Block> order = new ArrayList<Block>();
+    private LinkedHashMap<Label, Block> labels = new LinkedHashMap<Label, Block>();
+
+    IRFunction(Frame frame) {
+        this.frame = frame;
+    }
+
+    public Block entry() {
+        return blocks.get(0);
+    }
+
+    public Block block(Label label) {
+        return labels.get(label);
+    }
+
+    public static ArrayList<IRFunction> split(IR ir) {
+        LinkedHashMap<Frame, ArrayList<IntermediateCode>> codes = new LinkedHashMap<Frame, ArrayList<IntermediateCode>>();
+        codes.put(ir.globalFrame, new ArrayList<IntermediateCode>());
+        for (Frame f: ir.funcFrames)
+            codes.put(f, new ArrayList<IntermediateCode>());
+
+        ArrayList<Label> pending = new ArrayList<Label>();
+        for (IntermediateCode ic: ir.codes) {
+            if (ic.label != null)
+                pending.add(ic.label);
+            if (ic.tac != null) {
+                ArrayList<IntermediateCode> list = codes.get(ic.tac.frame);
+                for (Label l: pending)
+                    list.add(new IntermediateCode(l));
+                pending.clear();
+                list.add(new IntermediateCode(null, ic.tac.clone()));
+            }
+        }
+
+        ArrayList<IRFunction> functions = new ArrayList<IRFunction>();
+        for (Map.Entry<Frame, ArrayList<IntermediateCode>> e: codes.entrySet()) {
+            if (e.getValue().isEmpty())
+                continue;
+            IRFunction f = new IRFunction(e.getKey());
+            f.build(e.getValue());
+            functions.add(f);
+        }
+        return functions;
+    }
+
+    public static void join(IR ir, List<IRFunction> functions) {
+        IntermediateCodeList codes = new IntermediateCodeList();
+        for (IRFunction f: functions) {
+            for (Block b: f.blocks) {
+                codes.add(b.label);
+                for (ThreeAddressCode tac: b.codes)
+                    codes.add(tac);
+            }
+        }
+        ir.codes = codes;
+
+        LinkedHashMap<Label, Frame> frames = new LinkedHashMap<Label, Frame>();
+        for (IRFunction f: functions)
+            frames.put(f.frame.place, f.frame);
+        ir.callingGraph = new Graph<Frame>();
+        for (IRFunction f: functions) {
+            ir.callingGraph.addNode(f.frame);
+            for (Block b: f.blocks)
+                for (ThreeAddressCode tac: b.codes)
+                    if (tac instanceof CallTAC)
+                        ir.callingGraph.addEdge(f.frame, frames.get(((CallTAC) tac).place));
+        }
+    }
+
+    private void build(ArrayList<IntermediateCode> codes) {
+        // consecutive labels name the same block
+        LinkedHashMap<Label, Label> alias = new LinkedHashMap<Label, Label>();
+        Block b = null;
+        for (IntermediateCode ic: codes) {
+            if (ic.label != null) {
+                if (b != null && b.codes.isEmpty()) {
+                    alias.put(ic.label, b.label);
+                    continue;
+                }
+                b = new Block(ic.label);
+                blocks.add(b);
+            } else {
+                if (b == null || endsBlock(b.last())) {
+                    b = new Block(Label.newLabel());
+                    blocks.add(b);
+                }
+                b.codes.add(ic.tac);
+            }
+        }
+
+        // jumps back to the entry go to a block of their own, so the entry
+        // has no predecessors and keeps the label calls go to
+        Label entryLabel = blocks.get(0).label;
+        boolean loops = false;
+        for (Block x: blocks)
+            for (ThreeAddressCode tac: x.codes) {
+                Label l = target(tac);
+                if (l != null && (l == entryLabel || alias.get(l) == entryLabel))
+                    loops = true;
+            }
+        if (loops) {
+            Block first = blocks.get(0);
+            first.label = Label.newLabel();
+            blocks.add(0, new Block(entryLabel));
+            for (Map.Entry<Label, Label> e: alias.entrySet())
+                if (e.getValue() == entryLabel)
+                    e.setValue(first.label);
+            alias.put(entryLabel, first.label);
+        }
+
+        for (Block x: blocks)
+            for (ThreeAddressCode tac: x.codes) {
+                Label l = target(tac);
+                if (l != null && alias.containsKey(l))
+                    setTarget(tac, alias.get(l));
+            }
+        rebuild();
+    }
+
+    // a block ends after any jump
+    static boolean endsBlock(ThreeAddressCode tac) {
+        return tac instanceof GotoTAC || tac instanceof BranchTAC || isTerminator(tac);
+    }
+
+    // true if control never continues to the next code
+    static boolean isTerminator(ThreeAddressCode tac) {
+        return tac instanceof GotoTAC || tac instanceof ReturnTAC
+            || tac instanceof CallExternTAC && ((CallExternTAC) tac).place == Symbol.symbol("exit");
+    }
+
+    private static final TACVisitor<Boolean> calls = new DefaultTACVisitor<Boolean>() {
+        public Boolean visit(CallTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(CallExternTAC tac) {
+            return true;
+        }
+
+        protected Boolean otherwise(ThreeAddressCode tac) {
+            return false;
+        }
+    };
+
+    // true for a call of a Tiger or an external function
+    public static boolean isCall(ThreeAddressCode tac) {
+        return tac.accept(calls);
+    }
+
+    private static final TACVisitor<Boolean> computes = new DefaultTACVisitor<Boolean>() {
+        public Boolean visit(PhiTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(MoveTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(BinOpTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(UniOpTAC tac) {
+            return true;
+        }
+
+        protected Boolean otherwise(ThreeAddressCode tac) {
+            return false;
+        }
+    };
+
+    // true if tac only computes its destination from its operands
+    public static boolean isPure(ThreeAddressCode tac) {
+        return tac.accept(computes);
+    }
+
+    static Label target(ThreeAddressCode tac) {
+        if (tac instanceof GotoTAC)
+            return ((GotoTAC) tac).place;
+        else if (tac instanceof BranchTAC)
+            return ((BranchTAC) tac).place;
+        else
+            return null;
+    }
+
+    static void setTarget(ThreeAddressCode tac, Label l) {
+        if (tac instanceof GotoTAC)
+            ((GotoTAC) tac).place = l;
+        else
+            ((BranchTAC) tac).place = l;
+    }
+
+    // Recomputes edges, drops the blocks the entry cannot reach and the
+    // phi arguments of edges that are gone, and recomputes the dominator
+    // tree
+    public void rebuild() {
+        labels.clear();
+        for (Block b: blocks) {
+            labels.put(b.label, b);
+            b.pred.clear();
+            b.succ.clear();
+        }
+        for (int i = 0; i < blocks.size(); ++i) {
+            Block b = blocks.get(i);
+            ThreeAddressCode last = b.last();
+            Label l = target(last);
+            if (l != null)
+                addEdge(b, labels.get(l));
+            if (!isTerminator(last) && i + 1 < blocks.size())
+                addEdge(b, blocks.get(i + 1));
+        }
+
+        // reverse postorder by an iterative depth first search
+        order.clear();
+        LinkedHashSet<Block> visited = new LinkedHashSet<Block>();
+        ArrayList<Block> postorder = new ArrayList<Block>();
+        ArrayDeque<Block> stack = new ArrayDeque<Block>();
+        ArrayDeque<Iterator<Block>> iters = new ArrayDeque<Iterator<Block>>();
+        visited.add(entry());
+        stack.push(entry());
+        iters.push(entry().succ.iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Block> it = iters.peek();
+            if (it.hasNext()) {
+                Block s = it.next();
+                if (visited.add(s)) {
+                    stack.push(s);
+                    iters.push(s.succ.iterator());
+                }
+            } else {
+                postorder.add(stack.pop());
+                iters.pop();
+            }
+        }
+        for (int i = postorder.size() - 1; i >= 0; --i)
+            order.add(postorder.get(i));
+
+        if (visited.size() < blocks.size()) {
+            for (Iterator<Block> it = blocks.iterator(); it.hasNext(); ) {
+                Block b = it.next();
+                if (visited.contains(b))
+                    continue;
+                it.remove();
+                labels.remove(b.label);
+                for (Block s: b.succ)
+                    s.pred.remove(b);
+            }
+        }
+
+        // phi arguments of edges that are gone
+        for (Block b: blocks)
+            for (ThreeAddressCode tac: b.codes) {
+                if (!(tac instanceof PhiTAC))
+                    break;
+                PhiTAC phi = (PhiTAC) tac;
+                for (int i = phi.preds.size() - 1; i >= 0; --i)
+                    if (!b.pred.contains(labels.get(phi.preds.get(i))))
+                        phi.removeArg(phi.preds.get(i));
+            }
+        computeDominators();
+    }
+
+    private void addEdge(Block from, Block to) {
+        if (!from.succ.contains(to)) {
+            from.succ.add(to);
+            to.pred.add(from);
+        }
+    }
+
+    // Cooper, Harvey and Kennedy over the reverse postorder
+    private void computeDominators() {
+        for (int i = 0; i < order.size(); ++i) {
+            Block b = order.get(i);
+            b.order = i;
+            b.idom = null;
+            b.children.clear();
+        }
+        Block entry = entry();
+        entry.idom = entry;
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (int i = 1; i < order.size(); ++i) {
+                Block b = order.get(i), d = null;
+                for (Block p: b.pred) {
+                    if (p.idom == null)
+                        continue;
+                    d = d == null ? p : intersect(d, p);
+                }
+                if (d != b.idom) {
+                    b.idom = d;
+                    change = true;
+                }
+            }
+        }
+        for (int i = 1; i < order.size(); ++i)
+            order.get(i).idom.children.add(order.get(i));
+
+        // a dominates b when a's walk encloses b's
+        int clock = 0;
+        ArrayDeque<Block> stack = new ArrayDeque<Block>();
+        ArrayDeque<Iterator<Block>> iters = new ArrayDeque<Iterator<Block>>();
+        entry.pre = clock++;
+        stack.push(entry);
+        iters.push(entry.children.iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Block> it = iters.peek();
+            if (it.hasNext()) {
+                Block c = it.next();
+                c.pre = clock++;
+                stack.push(c);
+                iters.push(c.children.iterator());
+            } else {
+                stack.pop().post = clock++;
+                iters.pop();
+            }
+        }
+    }
+
+    private static Block intersect(Block a, Block b) {
+        while (a != b) {
+            while (a.order > b.order)
+                a = a.idom;
+            while (b.order > a.order)
+                b = b.idom;
+        }
+        return a;
+    }
+
+    public boolean dominates(Block a, Block b) {
+        return a.pre <= b.pre && b.post <= a.post;
+    }
+
+    // Puts a new empty block on the edge from -> to and returns it.
+    public Block splitEdge(Block from, Block to) {
+        ArrayList<Block[]> edges = new ArrayList<Block[]>();
+        edges.add(new Block[] {from, to});
+        return splitEdges(edges).get(0);
+    }
+
+    // Puts a new empty block on every edge from -> to and returns them in
+    // the order of the edges. On a fallthrough edge the block goes between
+    // the two; otherwise it jumps to to and goes to the end of the function,
+    // which always ends in return or exit. The blocks are laid out and the
+    // function is rebuilt once for all the edges.
+    public ArrayList<Block> splitEdges(List<Block[]> edges) {
+        LinkedHashMap<Block, Block> next = new LinkedHashMap<Block, Block>();
+        for (int i = 0; i + 1 < blocks.size(); ++i)
+            next.put(blocks.get(i), blocks.get(i + 1));
+
+        ArrayList<Block> split = new ArrayList<Block>();
+        LinkedHashMap<Block, Block> after = new LinkedHashMap<Block, Block>();
+        ArrayList<Block> atEnd = new ArrayList<Block>();
+        for (Block[] edge: edges) {
+            Block from = edge[0], to = edge[1];
+            Block n = new Block(Label.newLabel());
+            ThreeAddressCode last = from.last();
+            if (!isTerminator(last) && next.get(from) == to)
+                after.put(from, n);
+            else {
+                n.codes.add(new GotoTAC(frame, to.label));
+                atEnd.add(n);
+            }
+            if (target(last) == to.label)
+                setTarget(last, n.label);
+
+            for (ThreeAddressCode tac: to.codes)
+                if (tac instanceof PhiTAC) {
+                    PhiTAC phi = (PhiTAC) tac;
+                    phi.setArg(n.label, phi.arg(from.label));
+                    phi.removeArg(from.label);
+                }
+            split.add(n);
+        }
+
+        ArrayList<Block> laid = new ArrayList<Block>();
+        for (Block b: blocks) {
+            laid.add(b);
+            if (after.containsKey(b))
+                laid.add(after.get(b));
+        }
+        laid.addAll(atEnd);
+        blocks.clear();
+        blocks.addAll(laid);
+        rebuild();
+        return split;
+    }
+
+    public int size() {
+        int n = 0;
+        for (Block b: blocks)
+            n += b.codes.size();
+        return n;
+    }
+
+    // -- operands
+
+    // the temps tac reads, in operand order
+    public static void uses(ThreeAddressCode tac, Collection<Temp> out) {
+        if (tac instanceof CallTAC) {
+            for (Access a: ((CallTAC) tac).params)
+                uses(a, out);
+        } else if (tac instanceof CallExternTAC) {
+            CallExternTAC c = (CallExternTAC) tac;
+            uses(c.param1, out);
+            uses(c.param2, out);
+            uses(c.param3, out);
+        } else if (tac instanceof PhiTAC) {
+            for (Access a: ((PhiTAC) tac).args)
+                uses(a, out);
+        } else {
+            uses(tac.op1, out);
+            uses(tac.op2, out);
+        }
+        if (tac.dst instanceof MemAccess)
+            uses(tac.dst, out);
+    }
+
+    private static void uses(Access a, Collection<Temp> out) {
+        if (a instanceof Temp)
+            out.add((Temp) a);
+        else if (a instanceof MemAccess) {
+            uses(((MemAccess) a).base, out);
+            uses(((MemAccess) a).offset, out);
+        }
+    }
+
+    // the temp tac writes, if any
+    public static Temp def(ThreeAddressCode tac) {
+        if (tac instanceof CallTAC)
+            return ((CallTAC) tac).actualReturn;
+        else if (tac.dst instanceof Temp)
+            return (Temp) tac.dst;
+        else
+            return null;
+    }
+
+    public static void setDef(ThreeAddressCode tac, Temp t) {
+        if (tac instanceof CallTAC)
+            ((CallTAC) tac).actualReturn = t;
+        else
+            tac.dst = t;
+    }
+
+    // replacement for the temps a pass rewrites; returns the access to use
+    // instead of t, or t itself
+    public interface Renamer {
+        Access rename(Temp t);
+    }
+
+    // Rewrites the temps tac reads, except phi arguments which belong to
+    // the predecessor blocks. Accesses are shared between codes, so
+    // memory accesses are copied rather than changed.
+    public static void renameUses(ThreeAddressCode tac, Renamer r) {
+        if (tac instanceof CallTAC) {
+            ArrayList<Access> params = ((CallTAC) tac).params;
+            for (int i = 0; i < params.size(); ++i)
+                params.set(i, rename(params.get(i), r));
+        } else if (tac instanceof CallExternTAC) {
+            CallExternTAC c = (CallExternTAC) tac;
+            c.param1 = rename(c.param1, r);
+            c.param2 = rename(c.param2, r);
+            c.param3 = rename(c.param3, r);
+        } else if (!(tac instanceof PhiTAC)) {
+            tac.op1 = rename(tac.op1, r);
+            tac.op2 = rename(tac.op2, r);
+        }
+        if (tac.dst instanceof MemAccess)
+            tac.dst = rename(tac.dst, r);
+    }
+
+    // Rewrites every temp tac reads, phi arguments included
+    public static void renameAll(ThreeAddressCode tac, final Renamer r) {
+        tac.accept(new DefaultTACVisitor<Void>() {
+            public Void visit(PhiTAC phi) {
+                for (int i = 0; i < phi.args.size(); ++i)
+                    phi.args.set(i, rename(phi.args.get(i), r));
+                return null;
+            }
+
+            protected Void otherwise(ThreeAddressCode tac) {
+                renameUses(tac, r);
+                return null;
+            }
+        });
+    }
+
+    static Access rename(Access a, Renamer r) {
+        if (a instanceof Temp)
+            return r.rename((Temp) a);
+        else if (a instanceof MemAccess) {
+            MemAccess m = (MemAccess) a;
+            Access base = rename(m.base, r), offset = rename(m.offset, r);
+            if (base != m.base || offset != m.offset)
+                return new MemAccess((SimpleAccess) base, (SimpleAccess) offset);
+        }
+        return a;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Block b: blocks) {
+            s.append(b.label).append(':').append('\n');
+            for (ThreeAddressCode tac: b.codes)
+                s.append('\t').append(tac).append('\n');
+        }
+        return s.toString();
+    }
+}
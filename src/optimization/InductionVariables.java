@@ -0,0 +1,580 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Strength reduction of induction variables over the functions of an IR in
+// SSA form, innermost loops first.
+//
+// A basic induction variable is a phi in a loop header that gets a value
+// from before the loop and itself plus a constant on the back edge: the
+// counter of a for loop. A product of one with an invariant becomes a
+// variable of its own, stepped by an add next to the counter's. Where such
+// a product is the offset of a memory access with an invariant base, the
+// base and offset become one pointer stepped the same way, and the access
+// reads through it. Counters with no other use than their own step and
+// the exit test get the test rewritten to compare the pointer with the
+// address of the limit, after which the counter is dead and deleted.
+//
+// Shifts are cheaper than the adds that replace them, so a product by a
+// power of two is only reduced where that saves the address add or the
+// counter. A loop is only handled with one back edge and one edge into it.
+public class InductionVariables {
+    IR ir;
+    SSA ssa;
+    IRFunction fn;
+
+    LinkedHashMap<Temp, ThreeAddressCode> defOf = new LinkedHashMap<Temp, ThreeAddressCode>();
+    LinkedHashMap<Temp, Block> defBlock = new LinkedHashMap<Temp, Block>();
+    LinkedHashMap<Temp, ArrayList<ThreeAddressCode>> users = new LinkedHashMap<Temp, ArrayList<ThreeAddressCode>>();
+
+    // the loop being reduced, its only block before it and the codes to
+    // put at the end of that block
+    LinkedHashSet<Block> body;
+    Block pre, latch;
+    boolean writesMemory;
+    ArrayList<ThreeAddressCode> head = new ArrayList<ThreeAddressCode>();
+    LinkedHashMap<Temp, Boolean> invariant = new LinkedHashMap<Temp, Boolean>();
+
+    // a basic induction variable: phi := phi(pre: init, latch: next),
+    // next := phi + step
+    static class Basic {
+        Temp phi, next;
+        Access init;
+        int step;
+        ThreeAddressCode update;
+        Block updateBlock;
+    }
+
+    // factor * basic + base, base null for none
+    static class Reduced {
+        Basic iv;
+        Access factor, step;
+        Temp base;
+        Temp phi, next;
+    }
+
+    InductionVariables(IR ir, SSA ssa, IRFunction fn) {
+        this.ir = ir;
+        this.ssa = ssa;
+        this.fn = fn;
+    }
+
+    // returns true if any function changed
+    public static boolean optimize(IR ir, SSA ssa, List<IRFunction> functions) {
+        boolean changed = false;
+        for (IRFunction f: functions)
+            changed |= new InductionVariables(ir, ssa, f).run();
+        return changed;
+    }
+
+    boolean run() {
+        ArrayList<Block> headers = new ArrayList<Block>();
+        for (Block b: fn.order)
+            for (Block p: b.pred)
+                if (fn.dominates(b, p) && !headers.contains(b))
+                    headers.add(b);
+
+        // inner loops come later in reverse postorder
+        boolean changed = false;
+        for (int i = headers.size() - 1; i >= 0; --i)
+            changed |= loop(headers.get(i));
+        if (changed)
+            sweep();
+        return changed;
+    }
+
+    private void scan() {
+        defOf.clear();
+        defBlock.clear();
+        users.clear();
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes) {
+                Temp d = IRFunction.def(tac);
+                if (d != null) {
+                    defOf.put(d, tac);
+                    defBlock.put(d, b);
+                }
+                ArrayList<Temp> used = new ArrayList<Temp>();
+                IRFunction.uses(tac, used);
+                for (Temp t: used) {
+                    ArrayList<ThreeAddressCode> u = users.get(t);
+                    if (u == null) {
+                        u = new ArrayList<ThreeAddressCode>();
+                        users.put(t, u);
+                    }
+                    if (!u.contains(tac))
+                        u.add(tac);
+                }
+            }
+    }
+
+    private ArrayList<ThreeAddressCode> usersOf(Temp t) {
+        ArrayList<ThreeAddressCode> u = users.get(t);
+        return u == null ? new ArrayList<ThreeAddressCode>() : u;
+    }
+
+    private boolean loop(Block h) {
+        latch = pre = null;
+        for (Block p: h.pred)
+            if (fn.dominates(h, p)) {
+                if (latch != null)
+                    return false;
+                latch = p;
+            } else {
+                if (pre != null)
+                    return false;
+                pre = p;
+            }
+        if (latch == null || pre == null)
+            return false;
+
+        scan();
+        body = new LinkedHashSet<Block>();
+        body.add(h);
+        ArrayDeque<Block> work = new ArrayDeque<Block>();
+        if (body.add(latch))
+            work.add(latch);
+        while (!work.isEmpty())
+            for (Block p: work.poll().pred)
+                if (body.add(p))
+                    work.add(p);
+        writesMemory = false;
+        for (Block b: body)
+            for (ThreeAddressCode tac: b.codes)
+                writesMemory |= tac.dst instanceof MemAccess || IRFunction.isCall(tac);
+        invariant.clear();
+        head.clear();
+
+        ArrayList<Basic> basics = new ArrayList<Basic>();
+        for (ThreeAddressCode tac: h.codes) {
+            if (!(tac instanceof PhiTAC))
+                break;
+            Basic iv = basic(h, (PhiTAC) tac);
+            if (iv != null)
+                basics.add(iv);
+        }
+
+        // the products to reduce, and whether each basic variable goes
+        LinkedHashMap<ThreeAddressCode, Basic> products = new LinkedHashMap<ThreeAddressCode, Basic>();
+        LinkedHashMap<Basic, ThreeAddressCode> tests = new LinkedHashMap<Basic, ThreeAddressCode>();
+        for (Basic iv: basics) {
+            ThreeAddressCode test = null;
+            boolean others = false, pointer = false;
+            ArrayList<ThreeAddressCode> mine = new ArrayList<ThreeAddressCode>();
+            ArrayList<ThreeAddressCode> all = new ArrayList<ThreeAddressCode>(usersOf(iv.phi));
+            all.addAll(usersOf(iv.next));
+            for (ThreeAddressCode tac: all) {
+                if (tac == iv.update || tac instanceof PhiTAC && tac.dst == iv.phi)
+                    continue;
+                Access factor = factor(tac, iv);
+                if (factor != null) {
+                    mine.add(tac);
+                    pointer |= constant(factor) != null && constant(factor) > 0 && addressesOnly((Temp) tac.dst);
+                } else if (test == null && isTest(tac, iv))
+                    test = tac;
+                else
+                    others = true;
+            }
+            boolean eliminate = test != null && pointer && !others;
+            if (eliminate)
+                tests.put(iv, test);
+            for (ThreeAddressCode tac: mine) {
+                Integer c = constant(factor(tac, iv));
+                if (eliminate || addressesOnly((Temp) tac.dst) || c == null || Integer.bitCount(c) > 1)
+                    products.put(tac, iv);
+            }
+        }
+        if (products.isEmpty())
+            return false;
+
+        // a block to put the start values in
+        if (pre.succ.size() > 1) {
+            pre = fn.splitEdge(pre, h);
+            scan();
+        }
+
+        LinkedHashMap<String, Reduced> reduced = new LinkedHashMap<String, Reduced>();
+        LinkedHashMap<Temp, Reduced> reducedOf = new LinkedHashMap<Temp, Reduced>();
+        final LinkedHashMap<Temp, Temp> replace = new LinkedHashMap<Temp, Temp>();
+        for (Map.Entry<ThreeAddressCode, Basic> e: products.entrySet()) {
+            ThreeAddressCode tac = e.getKey();
+            Basic iv = e.getValue();
+            Access factor = factor(tac, iv);
+            String k = iv.phi + " * " + key(factor);
+            Reduced r = reduced.get(k);
+            if (r == null) {
+                r = reduce(h, iv, factor, null);
+                reduced.put(k, r);
+                reducedOf.put(r.phi, r);
+                reducedOf.put(r.next, r);
+            }
+            boolean ofNext = tac.op1 == iv.next || tac.op2 == iv.next;
+            replace.put((Temp) tac.dst, ofNext ? r.next : r.phi);
+            defBlock.get(tac.dst).codes.remove(tac);
+        }
+        IRFunction.Renamer renamer = new IRFunction.Renamer() {
+            public Access rename(Temp t) {
+                Temp r = replace.get(t);
+                return r == null ? t : r;
+            }
+        };
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                IRFunction.renameAll(tac, renamer);
+
+        // the accesses through an invariant base
+        LinkedHashMap<String, Reduced> pointers = new LinkedHashMap<String, Reduced>();
+        for (Block b: body)
+            for (ThreeAddressCode tac: new ArrayList<ThreeAddressCode>(b.codes)) {
+                if (tac.op1 instanceof MemAccess)
+                    tac.op1 = pointer((MemAccess) tac.op1, h, reducedOf, pointers);
+                if (tac.op2 instanceof MemAccess)
+                    tac.op2 = pointer((MemAccess) tac.op2, h, reducedOf, pointers);
+                if (tac.dst instanceof MemAccess)
+                    tac.dst = pointer((MemAccess) tac.dst, h, reducedOf, pointers);
+            }
+
+        // the exit tests of the counters that go
+        for (Map.Entry<Basic, ThreeAddressCode> e: tests.entrySet()) {
+            Basic iv = e.getKey();
+            ThreeAddressCode test = e.getValue();
+            Reduced p = null;
+            for (Reduced r: pointers.values())
+                if (r.iv == iv && constant(r.factor) != null && constant(r.factor) > 0)
+                    p = r;
+            if (p == null)
+                continue;
+            boolean first = test.op1 == iv.phi || test.op1 == iv.next;
+            Access counter = first ? test.op1 : test.op2, limit = first ? test.op2 : test.op1;
+            Temp at = counter == iv.phi ? p.phi : p.next;
+            Access end = plus(p.base, times(limit, p.factor));
+            test.op1 = first ? at : end;
+            test.op2 = first ? end : at;
+        }
+
+        int at = pre.last() instanceof GotoTAC ? pre.codes.size() - 1 : pre.codes.size();
+        pre.codes.addAll(at, head);
+        return true;
+    }
+
+    // the basic induction variable a header phi defines, if it is one
+    private Basic basic(Block h, PhiTAC phi) {
+        Temp x = (Temp) phi.dst;
+        Access next = phi.arg(latch.label), init = phi.arg(pre.label);
+        if (ssa.isFixed(x) || !(next instanceof Temp) || init == null)
+            return null;
+        ThreeAddressCode update = defOf.get(next);
+        if (!(update instanceof BinOpTAC) || !body.contains(defBlock.get(next)))
+            return null;
+        BinOpTAC.BinOp op = ((BinOpTAC) update).op;
+        Integer step = null;
+        if (op == BinOpTAC.BinOp.ADD && update.op1 == x)
+            step = constant(update.op2);
+        else if (op == BinOpTAC.BinOp.ADD && update.op2 == x)
+            step = constant(update.op1);
+        else if (op == BinOpTAC.BinOp.SUB && update.op1 == x && constant(update.op2) != null)
+            step = -constant(update.op2);
+        if (step == null)
+            return null;
+
+        Basic iv = new Basic();
+        iv.phi = x;
+        iv.next = (Temp) next;
+        iv.init = init;
+        iv.step = step;
+        iv.update = update;
+        iv.updateBlock = defBlock.get(next);
+        return iv;
+    }
+
+    // the invariant a code in the loop multiplies the variable by, if it
+    // is such a product
+    private Access factor(ThreeAddressCode tac, Basic iv) {
+        if (!(tac instanceof BinOpTAC) || ((BinOpTAC) tac).op != BinOpTAC.BinOp.MUL
+                || !(tac.dst instanceof Temp) || ssa.isFixed((Temp) tac.dst)
+                || !body.contains(defBlock.get(tac.dst)))
+            return null;
+        Access x = tac.op1, c = tac.op2;
+        if (x != iv.phi && x != iv.next) {
+            x = tac.op2;
+            c = tac.op1;
+        }
+        if (x != iv.phi && x != iv.next || c == iv.phi || c == iv.next || !isInvariant(c))
+            return null;
+        return c;
+    }
+
+    // a branch or a comparison in the loop between the variable and an
+    // invariant
+    private boolean isTest(ThreeAddressCode tac, Basic iv) {
+        if (!tac.accept(compares) || !body.contains(blockOf(tac)))
+            return false;
+        if (tac.op1 == iv.phi || tac.op1 == iv.next)
+            return tac.op2 != iv.phi && tac.op2 != iv.next && isInvariant(tac.op2);
+        else
+            return isInvariant(tac.op1);
+    }
+
+    private static final TACVisitor<Boolean> compares = new DefaultTACVisitor<Boolean>() {
+        public Boolean visit(BranchTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(BinOpTAC tac) {
+            return isComparison(tac.op);
+        }
+
+        protected Boolean otherwise(ThreeAddressCode tac) {
+            return false;
+        }
+    };
+
+    private static boolean isComparison(BinOpTAC.BinOp op) {
+        return op != BinOpTAC.BinOp.ADD && op != BinOpTAC.BinOp.SUB && op != BinOpTAC.BinOp.MUL
+            && op != BinOpTAC.BinOp.DIV;
+    }
+
+    private Block blockOf(ThreeAddressCode tac) {
+        for (Block b: body)
+            if (b.codes.contains(tac))
+                return b;
+        return null;
+    }
+
+    // true if every use of t is as the offset of a memory access in the
+    // loop from an invariant base
+    private boolean addressesOnly(Temp t) {
+        for (ThreeAddressCode tac: usersOf(t)) {
+            if (!body.contains(blockOf(tac)))
+                return false;
+            ArrayList<Temp> used = new ArrayList<Temp>();
+            IRFunction.uses(tac, used);
+            int n = 0;
+            for (Temp u: used)
+                if (u == t)
+                    ++n;
+            if (isAddressOf(tac.op1, t))
+                --n;
+            if (isAddressOf(tac.op2, t))
+                --n;
+            if (isAddressOf(tac.dst, t))
+                --n;
+            if (n > 0)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isAddressOf(Access a, Temp offset) {
+        if (!(a instanceof MemAccess))
+            return false;
+        MemAccess m = (MemAccess) a;
+        return m.offset == offset && m.base != offset && isInvariant(m.base)
+            || m.base == offset && m.offset != offset && isInvariant(m.offset);
+    }
+
+    // A new variable factor * iv + base: its phi goes in the header and its
+    // step next to that of iv
+    private Reduced reduce(Block h, Basic iv, Access factor, Temp base) {
+        Reduced r = new Reduced();
+        r.iv = iv;
+        r.factor = factor;
+        r.base = base;
+        r.phi = fn.frame.addLocal();
+        r.next = fn.frame.addLocal();
+        r.step = times(new ConstAccess(iv.step), factor);
+
+        PhiTAC phi = new PhiTAC(fn.frame, r.phi);
+        phi.addArg(pre.label, base == null ? times(iv.init, factor) : plus(base, times(iv.init, factor)));
+        phi.addArg(latch.label, r.next);
+        h.codes.add(0, phi);
+        int at = iv.updateBlock.codes.indexOf(iv.update) + 1;
+        iv.updateBlock.codes.add(at, new BinOpTAC(fn.frame, BinOpTAC.BinOp.ADD, r.phi, r.step, r.next));
+        return r;
+    }
+
+    // the access through a pointer for a base and a reduced offset
+    private Access pointer(MemAccess m, Block h, LinkedHashMap<Temp, Reduced> reducedOf, LinkedHashMap<String, Reduced> pointers) {
+        Access base = m.base, offset = m.offset;
+        if (!reducedOf.containsKey(offset)) {
+            base = m.offset;
+            offset = m.base;
+        }
+        Reduced r = reducedOf.get(offset);
+        if (r == null || r.base != null || !(base instanceof Temp) || !isInvariant(base))
+            return m;
+        hoist((Temp) base);
+
+        String k = r.phi + " + " + base;
+        Reduced p = pointers.get(k);
+        if (p == null) {
+            p = reduce(h, r.iv, r.factor, (Temp) base);
+            pointers.put(k, p);
+        }
+        return new MemAccess(offset == r.phi ? p.phi : p.next, new ConstAccess(0));
+    }
+
+    // -- invariants
+
+    private static String key(Access a) {
+        return a instanceof ConstAccess ? "#" + ((ConstAccess) a).value : a.toString();
+    }
+
+    // the value of a constant or of a temp set to one, null for anything
+    // else
+    private Integer constant(Access a) {
+        ThreeAddressCode def = defOf.get(a);
+        if (def instanceof MoveTAC && def.op1 instanceof ConstAccess)
+            a = def.op1;
+        if (a instanceof UnknownConstAccess)
+            return a == ir.wordLength ? Integer.valueOf(((ConstAccess) a).value) : null;
+        else if (a instanceof ConstAccess)
+            return ((ConstAccess) a).value;
+        else
+            return null;
+    }
+
+    // true if a has one value all through the loop, perhaps computed in
+    // it by codes that can move before it: pure ones in blocks every
+    // iteration runs, loads only if the loop writes no memory
+    private boolean isInvariant(Access a) {
+        if (a instanceof ConstAccess)
+            return constant(a) != null;
+        if (!(a instanceof Temp))
+            return false;
+        Temp t = (Temp) a;
+        if (ssa.isFixed(t))
+            return false;
+        Block b = defBlock.get(t);
+        if (b == null || !body.contains(b))
+            return true;
+        Boolean known = invariant.get(t);
+        if (known != null)
+            return known;
+
+        invariant.put(t, false);
+        ThreeAddressCode tac = defOf.get(t);
+        boolean is = fn.dominates(b, latch) && tac.accept(movable);
+        if (is) {
+            ArrayList<Temp> used = new ArrayList<Temp>();
+            IRFunction.uses(tac, used);
+            for (Temp u: used)
+                is &= isInvariant(u);
+            is &= !(tac.op1 instanceof ConstAccess) || constant(tac.op1) != null;
+            is &= !(tac.op2 instanceof ConstAccess) || constant(tac.op2) != null;
+        }
+        invariant.put(t, is);
+        return is;
+    }
+
+    // the codes that compute the same value anywhere in the loop, given
+    // the same operands
+    private final TACVisitor<Boolean> movable = new DefaultTACVisitor<Boolean>() {
+        public Boolean visit(BinOpTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(UniOpTAC tac) {
+            return true;
+        }
+
+        public Boolean visit(MoveTAC tac) {
+            return !(tac.op1 instanceof MemAccess) || !writesMemory;
+        }
+
+        protected Boolean otherwise(ThreeAddressCode tac) {
+            return false;
+        }
+    };
+
+    // moves the codes computing an invariant before the loop
+    private void hoist(Temp t) {
+        Block b = defBlock.get(t);
+        if (b == null || !body.contains(b))
+            return;
+        ThreeAddressCode tac = defOf.get(t);
+        ArrayList<Temp> used = new ArrayList<Temp>();
+        IRFunction.uses(tac, used);
+        for (Temp u: used)
+            hoist(u);
+        b.codes.remove(tac);
+        head.add(tac);
+        defBlock.put(t, pre);
+    }
+
+    // x * y and x + y, folded where they are constants; the codes for the
+    // others go before the loop
+    private Access times(Access x, Access y) {
+        Integer a = constant(x), b = constant(y);
+        if (a != null && b != null)
+            return new ConstAccess(a * b);
+        if (a != null && a == 1 || b != null && b == 0)
+            return y;
+        if (b != null && b == 1 || a != null && a == 0)
+            return x;
+        if (x instanceof Temp)
+            hoist((Temp) x);
+        if (y instanceof Temp)
+            hoist((Temp) y);
+        Temp t = fn.frame.addLocal();
+        head.add(new BinOpTAC(fn.frame, BinOpTAC.BinOp.MUL, x, y, t));
+        return t;
+    }
+
+    private Access plus(Access x, Access y) {
+        Integer a = constant(x), b = constant(y);
+        if (a != null && b != null)
+            return new ConstAccess(a + b);
+        if (a != null && a == 0)
+            return y;
+        if (b != null && b == 0)
+            return x;
+        if (x instanceof Temp)
+            hoist((Temp) x);
+        if (y instanceof Temp)
+            hoist((Temp) y);
+        Temp t = fn.frame.addLocal();
+        head.add(new BinOpTAC(fn.frame, BinOpTAC.BinOp.ADD, x, y, t));
+        return t;
+    }
+
+    // deletes the pure codes whose values nothing needs, such as the
+    // counters that only stepped themselves
+    private void sweep() {
+        scan();
+        LinkedHashSet<Temp> live = new LinkedHashSet<Temp>();
+        ArrayDeque<Temp> work = new ArrayDeque<Temp>();
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                if (!isPure(tac)) {
+                    ArrayList<Temp> used = new ArrayList<Temp>();
+                    IRFunction.uses(tac, used);
+                    for (Temp t: used)
+                        if (live.add(t))
+                            work.add(t);
+                }
+        while (!work.isEmpty()) {
+            ThreeAddressCode tac = defOf.get(work.poll());
+            if (tac == null || !isPure(tac))
+                continue;
+            ArrayList<Temp> used = new ArrayList<Temp>();
+            IRFunction.uses(tac, used);
+            for (Temp t: used)
+                if (live.add(t))
+                    work.add(t);
+        }
+        for (Block b: fn.blocks)
+            for (Iterator<ThreeAddressCode> it = b.codes.iterator(); it.hasNext(); ) {
+                ThreeAddressCode tac = it.next();
+                if (isPure(tac) && !live.contains(tac.dst))
+                    it.remove();
+            }
+    }
+
+    // codes with no effect but their temp
+    private boolean isPure(ThreeAddressCode tac) {
+        return IRFunction.isPure(tac) && tac.dst instanceof Temp && !ssa.isFixed((Temp) tac.dst);
+    }
+}
@@ -0,0 +1,387 @@
+package optimization;
+
+import intermediate.*;
+import frame.Frame;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Inlining of calls over the functions of an IR out of SSA form. The
+// functions are visited bottom-up over the call graph, so a callee has
+// taken in its own callees before it is weighed, and only the calls a
+// function has when its turn comes are considered.
+//
+// A call is inlined when the callee's code, less what the call costs and
+// a bonus for each constant argument, is within a limit: a small one,
+// doubled for each loop around the call, or a large one when the call is
+// the callee's only one, as the callee goes away after. Besides, each
+// function may only grow to twice its size and the program by half, but
+// for the only calls, which move code rather than copy it; what a call
+// takes counts as growth only where it is more than the call saves.
+//
+// A recursive callee is inlined one level deep at hot calls, those in a
+// loop and its own recursive ones; the calls in its copy stay calls.
+//
+// main is not inlined, and neither is a function whose temps are read
+// through the display by the functions nested in it, which would lose
+// them. A copy's temps of the callee are new locals of the caller; those
+// of the enclosing functions keep being reached through the display, or
+// in the frame when the caller is the function they belong to. Functions
+// main no longer reaches are deleted.
+public class Inliner {
+    // what a call costs besides its arguments, the bonus of a constant
+    // argument, the limits of a call, an only call and a recursive call,
+    // the most loops that double the limit, the most code any function
+    // may have and what every function may grow by in any case
+    static final int CALL_COST = 6, CONST_ARG = 4, SMALL = 12, ONCE = 400, RECURSIVE = 40,
+                     MAX_DEPTH = 3, MAX_SIZE = 1500, SLACK = 100;
+
+    IR ir;
+    List<IRFunction> functions;
+    LinkedHashMap<Label, IRFunction> byLabel = new LinkedHashMap<Label, IRFunction>();
+    // the number of calls to each function in the program
+    LinkedHashMap<IRFunction, Integer> sites = new LinkedHashMap<IRFunction, Integer>();
+    // the recursive functions, the code they had before any inlining and
+    // the calls that go round a cycle
+    LinkedHashSet<IRFunction> recursive = new LinkedHashSet<IRFunction>();
+    LinkedHashMap<IRFunction, List<Block>> original = new LinkedHashMap<IRFunction, List<Block>>();
+    LinkedHashSet<CallTAC> cyclic = new LinkedHashSet<CallTAC>();
+    // the functions each function calls directly, found again once the
+    // calls have been inlined, and the frames whose temps other functions
+    // reach through the display; inlining only adds those temps to
+    // functions nested in a frame some function already reads
+    LinkedHashMap<IRFunction, LinkedHashSet<IRFunction>> callees =
+        new LinkedHashMap<IRFunction, LinkedHashSet<IRFunction>>();
+    LinkedHashSet<Frame> displayed = new LinkedHashSet<Frame>();
+    int programSize, programLimit;
+
+    Inliner(IR ir, List<IRFunction> functions) {
+        this.ir = ir;
+        this.functions = functions;
+    }
+
+    // returns true if any call was inlined; functions loses the ones that
+    // are no longer called
+    public static boolean optimize(IR ir, List<IRFunction> functions) {
+        return new Inliner(ir, functions).run();
+    }
+
+    boolean run() {
+        for (IRFunction f: functions) {
+            byLabel.put(f.frame.place, f);
+            sites.put(f, 0);
+            programSize += f.size();
+        }
+        programLimit = programSize + programSize / 2 + SLACK;
+        for (IRFunction f: functions)
+            for (CallTAC call: calls(f.blocks)) {
+                IRFunction g = byLabel.get(call.place);
+                if (g != null)
+                    sites.put(g, sites.get(g) + 1);
+            }
+        findCallees();
+        ArrayList<Temp> temps = new ArrayList<Temp>();
+        for (IRFunction f: functions) {
+            temps.clear();
+            for (Block b: f.blocks)
+                for (ThreeAddressCode tac: b.codes) {
+                    IRFunction.uses(tac, temps);
+                    Temp d = IRFunction.def(tac);
+                    if (d != null)
+                        temps.add(d);
+                }
+            for (Temp t: temps)
+                if (t.frame != f.frame)
+                    displayed.add(t.frame);
+        }
+
+        LinkedHashMap<IRFunction, LinkedHashSet<IRFunction>> reach =
+            new LinkedHashMap<IRFunction, LinkedHashSet<IRFunction>>();
+        for (IRFunction f: functions)
+            reach.put(f, reach(f));
+        for (IRFunction f: functions) {
+            if (reach.get(f).contains(f)) {
+                recursive.add(f);
+                original.put(f, copy(f.blocks));
+            }
+            for (CallTAC call: calls(f.blocks)) {
+                IRFunction g = byLabel.get(call.place);
+                if (g != null && reach.get(g).contains(f))
+                    cyclic.add(call);
+            }
+        }
+
+        boolean changed = false;
+        for (IRFunction f: bottomUp())
+            changed |= inlineCalls(f);
+        if (changed)
+            removeDead();
+        return changed;
+    }
+
+    // -- the call graph
+
+    // the calls of a list of blocks
+    private static ArrayList<CallTAC> calls(List<Block> blocks) {
+        ArrayList<CallTAC> calls = new ArrayList<CallTAC>();
+        for (Block b: blocks)
+            for (ThreeAddressCode tac: b.codes)
+                if (tac instanceof CallTAC)
+                    calls.add((CallTAC) tac);
+        return calls;
+    }
+
+    private void findCallees() {
+        callees.clear();
+        for (IRFunction f: functions) {
+            LinkedHashSet<IRFunction> direct = new LinkedHashSet<IRFunction>();
+            for (CallTAC call: calls(f.blocks)) {
+                IRFunction g = byLabel.get(call.place);
+                if (g != null)
+                    direct.add(g);
+            }
+            callees.put(f, direct);
+        }
+    }
+
+    // the functions f calls, directly or not
+    private LinkedHashSet<IRFunction> reach(IRFunction f) {
+        LinkedHashSet<IRFunction> reach = new LinkedHashSet<IRFunction>();
+        ArrayDeque<IRFunction> work = new ArrayDeque<IRFunction>();
+        work.add(f);
+        while (!work.isEmpty())
+            for (IRFunction g: callees.get(work.poll()))
+                if (reach.add(g))
+                    work.add(g);
+        return reach;
+    }
+
+    // the functions in postorder of a depth first search from main, the
+    // ones it does not reach last
+    private ArrayList<IRFunction> bottomUp() {
+        ArrayList<IRFunction> order = new ArrayList<IRFunction>();
+        LinkedHashSet<IRFunction> visited = new LinkedHashSet<IRFunction>();
+        for (IRFunction root: functions) {
+            if (!visited.add(root))
+                continue;
+            ArrayDeque<IRFunction> stack = new ArrayDeque<IRFunction>();
+            ArrayDeque<Iterator<CallTAC>> iters = new ArrayDeque<Iterator<CallTAC>>();
+            stack.push(root);
+            iters.push(calls(root.blocks).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<CallTAC> it = iters.peek();
+                if (it.hasNext()) {
+                    IRFunction g = byLabel.get(it.next().place);
+                    if (g != null && visited.add(g)) {
+                        stack.push(g);
+                        iters.push(calls(g.blocks).iterator());
+                    }
+                } else {
+                    order.add(stack.pop());
+                    iters.pop();
+                }
+            }
+        }
+        return order;
+    }
+
+    // -- the cost model
+
+    // The recursive callees come after the others, so their copies have
+    // the others inlined, and the copy of f is taken in between.
+    private boolean inlineCalls(IRFunction f) {
+        LinkedHashMap<Block, Integer> depth = loopDepth(f);
+        LinkedHashMap<CallTAC, Integer> calls = new LinkedHashMap<CallTAC, Integer>();
+        for (Block b: f.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                if (tac instanceof CallTAC)
+                    calls.put((CallTAC) tac, depth.get(b));
+
+        int limit = Math.max(2 * f.size(), f.size() + SLACK);
+        boolean changed = false;
+        for (int pass = 0; pass < 2; ++pass) {
+            if (pass == 1 && recursive.contains(f))
+                original.put(f, copy(f.blocks));
+            for (Map.Entry<CallTAC, Integer> e: calls.entrySet()) {
+                CallTAC call = e.getKey();
+                IRFunction g = byLabel.get(call.place);
+                if (g == null || recursive.contains(g) != (pass == 1) || !canInline(g, call))
+                    continue;
+                if (consider(f, call, g, e.getValue(), limit))
+                    changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // inlines g at call if the model says so
+    private boolean consider(IRFunction f, CallTAC call, IRFunction g, int loops, int limit) {
+        boolean rec = recursive.contains(g), once = !rec && sites.get(g) == 1;
+        List<Block> body = rec ? original.get(g) : g.blocks;
+        int size = 0;
+        for (Block b: body)
+            size += b.codes.size();
+
+        int cost = size - CALL_COST - call.params.size();
+        for (Access a: call.params)
+            if (a instanceof ConstAccess && !(a instanceof UnknownConstAccess))
+                cost -= CONST_ARG;
+        if (rec) {
+            if (loops == 0 && !cyclic.contains(call) || cost > RECURSIVE)
+                return false;
+        } else if (cost > (once ? ONCE : SMALL << Math.min(loops, MAX_DEPTH)))
+            return false;
+
+        int growth = Math.max(cost, 0);
+        if (f.size() + growth > MAX_SIZE)
+            return false;
+        if (!once && (f.size() + growth > limit || programSize + growth > programLimit))
+            return false;
+
+        inline(f, call, g, body);
+        programSize += growth;
+        return true;
+    }
+
+    // whether g can be inlined at call
+    private boolean canInline(IRFunction g, CallTAC call) {
+        return g.frame != ir.globalFrame && call.params.size() == g.frame.params.size()
+            && !displayed.contains(g.frame);
+    }
+
+    // the number of loops each block is in
+    private static LinkedHashMap<Block, Integer> loopDepth(IRFunction fn) {
+        LinkedHashMap<Block, LinkedHashSet<Block>> loops = new LinkedHashMap<Block, LinkedHashSet<Block>>();
+        for (Block b: fn.blocks)
+            for (Block h: b.succ)
+                if (fn.dominates(h, b)) {
+                    LinkedHashSet<Block> body = loops.get(h);
+                    if (body == null) {
+                        body = new LinkedHashSet<Block>();
+                        body.add(h);
+                        loops.put(h, body);
+                    }
+                    ArrayDeque<Block> work = new ArrayDeque<Block>();
+                    if (body.add(b))
+                        work.add(b);
+                    while (!work.isEmpty())
+                        for (Block p: work.poll().pred)
+                            if (body.add(p))
+                                work.add(p);
+                }
+        LinkedHashMap<Block, Integer> depth = new LinkedHashMap<Block, Integer>();
+        for (Block b: fn.blocks)
+            depth.put(b, 0);
+        for (LinkedHashSet<Block> body: loops.values())
+            for (Block b: body)
+                depth.put(b, depth.get(b) + 1);
+        return depth;
+    }
+
+    // -- inlining
+
+    // the codes of blocks, copied
+    private static List<Block> copy(List<Block> blocks) {
+        ArrayList<Block> copy = new ArrayList<Block>();
+        for (Block b: blocks) {
+            Block n = new Block(b.label);
+            for (ThreeAddressCode tac: b.codes)
+                n.codes.add(tac.clone());
+            copy.add(n);
+        }
+        return copy;
+    }
+
+    // Replaces call in f by a copy of body, the code of g. The block of the
+    // call is cut after it, the arguments are moved to the copies of the
+    // parameters and the returns jump to the rest of the block, which first
+    // takes the return value.
+    private void inline(IRFunction f, CallTAC call, final IRFunction g, List<Block> body) {
+        Block b = null;
+        for (Block x: f.blocks)
+            if (x.codes.contains(call))
+                b = x;
+        final Frame frame = f.frame;
+        final LinkedHashMap<Temp, Temp> temps = new LinkedHashMap<Temp, Temp>();
+        final IRFunction.Renamer renamer = new IRFunction.Renamer() {
+            public Access rename(Temp t) {
+                if (t.frame != g.frame)
+                    return t;
+                Temp n = temps.get(t);
+                if (n == null) {
+                    n = frame.addLocal();
+                    temps.put(t, n);
+                }
+                return n;
+            }
+        };
+
+        int at = b.codes.indexOf(call);
+        final Block rest = new Block(Label.newLabel());
+        if (call.actualReturn != null && g.frame.returnValue != null)
+            rest.codes.add(new MoveTAC(frame, renamer.rename(g.frame.returnValue), call.actualReturn));
+        rest.codes.addAll(b.codes.subList(at + 1, b.codes.size()));
+        b.codes.subList(at, b.codes.size()).clear();
+        for (int i = 0; i < call.params.size(); ++i)
+            b.codes.add(new MoveTAC(frame, call.params.get(i), (Temp) renamer.rename(g.frame.params.get(i))));
+
+        final LinkedHashMap<Label, Label> labels = new LinkedHashMap<Label, Label>();
+        for (Block x: body)
+            labels.put(x.label, Label.newLabel());
+        // a return goes on to the rest, anything else is copied into f
+        TACVisitor<ThreeAddressCode> copy = new DefaultTACVisitor<ThreeAddressCode>() {
+            public ThreeAddressCode visit(ReturnTAC tac) {
+                return new GotoTAC(frame, rest.label);
+            }
+
+            protected ThreeAddressCode otherwise(ThreeAddressCode tac) {
+                ThreeAddressCode t = tac.clone();
+                t.frame = frame;
+                IRFunction.renameUses(t, renamer);
+                Temp d = IRFunction.def(t);
+                if (d != null)
+                    IRFunction.setDef(t, (Temp) renamer.rename(d));
+                Label target = IRFunction.target(t);
+                if (target != null && labels.containsKey(target))
+                    IRFunction.setTarget(t, labels.get(target));
+                return t;
+            }
+        };
+        ArrayList<Block> blocks = new ArrayList<Block>();
+        for (Block x: body) {
+            Block n = new Block(labels.get(x.label));
+            for (ThreeAddressCode tac: x.codes)
+                n.codes.add(tac.accept(copy));
+            blocks.add(n);
+        }
+        // the last return falls through to the rest
+        Block last = blocks.get(blocks.size() - 1);
+        if (last.last() instanceof GotoTAC && ((GotoTAC) last.last()).place == rest.label)
+            last.codes.remove(last.codes.size() - 1);
+        blocks.add(rest);
+
+        f.blocks.addAll(f.blocks.indexOf(b) + 1, blocks);
+        f.rebuild();
+
+        sites.put(g, sites.get(g) - 1);
+        for (CallTAC c: calls(blocks)) {
+            IRFunction h = byLabel.get(c.place);
+            if (h != null)
+                sites.put(h, sites.get(h) + 1);
+        }
+    }
+
+    // Deletes the functions main does not reach; IRFunction.join()
+    // rebuilds the calling graph from the calls left.
+    private void removeDead() {
+        findCallees();
+        LinkedHashSet<IRFunction> live = reach(functions.get(0));
+        live.add(functions.get(0));
+        for (Iterator<IRFunction> it = functions.iterator(); it.hasNext(); ) {
+            IRFunction f = it.next();
+            if (!live.contains(f)) {
+                it.remove();
+                ir.funcFrames.remove(f.frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Lazy code motion (Knoop, Ruething and Steffen, in the edge form of
+// Drechsler and Stadel) over the functions of an IR out of SSA form.
+//
+// An expression is an operator and its operands, compared by name. From
+// the blocks that compute and kill each expression come availability and
+// anticipability; an expression is placed on the edges where it is
+// anticipated but not available, then pushed down as far as it goes
+// without missing a computation that would become redundant. Those
+// computations read a temp of the expression, which the placed code and
+// the last computation of every block that reaches them write. Nothing is
+// computed on a path that did not compute it before, and no temp lives
+// longer than the latest placement needs.
+//
+// This covers loop invariants of loops that run at least once as well as
+// computations redundant on some paths only. Loads are expressions too,
+// killed by every store and call; a call also kills the expressions of
+// fixed temps (see SSA), which other functions may write.
+public class LazyCodeMotion {
+    SSA ssa;
+    IRFunction fn;
+
+    // the expressions in order of appearance, with a code computing each
+    ArrayList<ThreeAddressCode> expressions = new ArrayList<ThreeAddressCode>();
+    LinkedHashMap<String, Integer> index = new LinkedHashMap<String, Integer>();
+    // the expressions reading each temp, the loads and those reading a
+    // fixed temp
+    LinkedHashMap<Temp, BitSet> readers = new LinkedHashMap<Temp, BitSet>();
+    BitSet loads = new BitSet(), readsFixed = new BitSet();
+
+    int n;
+    LinkedHashMap<Block, Integer> id = new LinkedHashMap<Block, Integer>();
+    BitSet[] ue, de, kill;
+
+    LazyCodeMotion(SSA ssa, IRFunction fn) {
+        this.ssa = ssa;
+        this.fn = fn;
+    }
+
+    // returns true if any function changed
+    public static boolean optimize(SSA ssa, List<IRFunction> functions) {
+        boolean changed = false;
+        for (IRFunction f: functions)
+            changed |= new LazyCodeMotion(ssa, f).run();
+        return changed;
+    }
+
+    // the expression tac computes into a temp, if any
+    private static String key(ThreeAddressCode tac) {
+        return tac.dst instanceof Temp ? tac.accept(keys) : null;
+    }
+
+    private static final TACVisitor<String> keys = new DefaultTACVisitor<String>() {
+        public String visit(BinOpTAC tac) {
+            return isSimple(tac.op1) && isSimple(tac.op2) ? tac.op + " " + tac.op1 + " " + tac.op2 : null;
+        }
+
+        public String visit(UniOpTAC tac) {
+            return isSimple(tac.op1) ? tac.op + " " + tac.op1 : null;
+        }
+
+        public String visit(MoveTAC tac) {
+            return tac.op1 instanceof MemAccess ? "load " + tac.op1 : null;
+        }
+
+        protected String otherwise(ThreeAddressCode tac) {
+            return null;
+        }
+    };
+
+    private static boolean isSimple(Access a) {
+        return a instanceof Temp || a instanceof ConstAccess;
+    }
+
+    private int expression(ThreeAddressCode tac) {
+        Integer e = index.get(key(tac));
+        return e == null ? -1 : e;
+    }
+
+    private void number(ThreeAddressCode tac) {
+        String k = key(tac);
+        if (k == null || index.containsKey(k))
+            return;
+        int e = expressions.size();
+        index.put(k, e);
+        expressions.add(tac);
+
+        ArrayList<Temp> read = new ArrayList<Temp>();
+        IRFunction.uses(tac, read);
+        for (Temp t: read) {
+            BitSet r = readers.get(t);
+            if (r == null) {
+                r = new BitSet();
+                readers.put(t, r);
+            }
+            r.set(e);
+            if (ssa.isFixed(t))
+                readsFixed.set(e);
+        }
+        if (tac instanceof MoveTAC)
+            loads.set(e);
+    }
+
+    // the expressions tac kills
+    private BitSet kills(ThreeAddressCode tac) {
+        BitSet k = new BitSet();
+        Temp t = IRFunction.def(tac);
+        if (t != null && readers.containsKey(t))
+            k.or(readers.get(t));
+        if (tac.dst instanceof MemAccess || IRFunction.isCall(tac))
+            k.or(loads);
+        if (tac instanceof CallTAC)
+            k.or(readsFixed);
+        return k;
+    }
+
+    boolean run() {
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                number(tac);
+        int m = expressions.size();
+        if (m == 0)
+            return false;
+
+        n = fn.blocks.size();
+        for (int i = 0; i < n; ++i)
+            id.put(fn.blocks.get(i), i);
+        localSets();
+
+        // available at the end of a block
+        BitSet[] availOut = new BitSet[n];
+        for (int i = 0; i < n; ++i) {
+            availOut[i] = new BitSet();
+            availOut[i].set(0, m);
+        }
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (Block b: fn.order) {
+                int i = id.get(b);
+                BitSet in = meet(b.pred, availOut, m);
+                in.andNot(kill[i]);
+                in.or(de[i]);
+                if (!in.equals(availOut[i])) {
+                    availOut[i] = in;
+                    change = true;
+                }
+            }
+        }
+
+        // anticipated at the start of a block; a block that never gets
+        // to a return anticipates nothing, so that nothing is computed
+        // on the way into an endless loop
+        BitSet[] antIn = new BitSet[n];
+        LinkedHashSet<Block> ends = reachReturn();
+        for (int i = 0; i < n; ++i) {
+            antIn[i] = new BitSet();
+            if (ends.contains(fn.blocks.get(i)))
+                antIn[i].set(0, m);
+        }
+        BitSet[] antOut = new BitSet[n];
+        change = true;
+        while (change) {
+            change = false;
+            for (int k = fn.order.size() - 1; k >= 0; --k) {
+                Block b = fn.order.get(k);
+                int i = id.get(b);
+                if (!ends.contains(b))
+                    continue;
+                antOut[i] = meet(b.succ, antIn, m);
+                BitSet in = (BitSet) antOut[i].clone();
+                in.andNot(kill[i]);
+                in.or(ue[i]);
+                if (!in.equals(antIn[i])) {
+                    antIn[i] = in;
+                    change = true;
+                }
+            }
+        }
+        for (int i = 0; i < n; ++i)
+            if (antOut[i] == null)
+                antOut[i] = new BitSet();
+
+        // earliest placement on every edge; nothing moves up into the
+        // entry block, so its edges take whatever they anticipate
+        LinkedHashMap<Block, LinkedHashMap<Block, BitSet>> earliest = new LinkedHashMap<Block, LinkedHashMap<Block, BitSet>>();
+        for (Block b: fn.blocks) {
+            int i = id.get(b);
+            LinkedHashMap<Block, BitSet> out = new LinkedHashMap<Block, BitSet>();
+            BitSet notAnt = new BitSet();
+            notAnt.set(0, m);
+            if (b != fn.entry()) {
+                notAnt.andNot(antOut[i]);
+                notAnt.or(kill[i]);
+            }
+            for (Block s: b.succ) {
+                BitSet e = (BitSet) antIn[id.get(s)].clone();
+                e.andNot(availOut[i]);
+                e.and(notAnt);
+                out.put(s, e);
+            }
+            earliest.put(b, out);
+        }
+
+        // pushed down while no computation of the block needs it
+        BitSet[] laterIn = new BitSet[n];
+        for (int i = 0; i < n; ++i) {
+            laterIn[i] = new BitSet();
+            if (fn.blocks.get(i) != fn.entry())
+                laterIn[i].set(0, m);
+        }
+        change = true;
+        while (change) {
+            change = false;
+            for (Block b: fn.order) {
+                if (b == fn.entry())
+                    continue;
+                BitSet in = new BitSet();
+                in.set(0, m);
+                for (Block p: b.pred)
+                    in.and(later(p, b, earliest, laterIn));
+                if (!in.equals(laterIn[id.get(b)])) {
+                    laterIn[id.get(b)] = in;
+                    change = true;
+                }
+            }
+        }
+
+        LinkedHashMap<Block, LinkedHashMap<Block, BitSet>> insert = new LinkedHashMap<Block, LinkedHashMap<Block, BitSet>>();
+        boolean any = false;
+        for (Block b: fn.blocks) {
+            LinkedHashMap<Block, BitSet> out = new LinkedHashMap<Block, BitSet>();
+            for (Block s: b.succ) {
+                BitSet e = later(b, s, earliest, laterIn);
+                e.andNot(laterIn[id.get(s)]);
+                out.put(s, e);
+                any |= !e.isEmpty();
+            }
+            insert.put(b, out);
+        }
+        BitSet[] delete = new BitSet[n];
+        for (Block b: fn.blocks) {
+            int i = id.get(b);
+            delete[i] = (BitSet) ue[i].clone();
+            if (b == fn.entry())
+                delete[i].clear();
+            else
+                delete[i].andNot(laterIn[i]);
+            any |= !delete[i].isEmpty();
+        }
+        if (!any)
+            return false;
+
+        // where the temps of the expressions are read: the temp must
+        // be written at the end of the blocks it is live out of
+        BitSet[] liveIn = new BitSet[n], liveOut = new BitSet[n];
+        for (int i = 0; i < n; ++i) {
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+        change = true;
+        while (change) {
+            change = false;
+            for (int k = fn.order.size() - 1; k >= 0; --k) {
+                Block b = fn.order.get(k);
+                int i = id.get(b);
+                BitSet out = new BitSet();
+                for (Block s: b.succ) {
+                    BitSet l = (BitSet) liveIn[id.get(s)].clone();
+                    l.andNot(insert.get(b).get(s));
+                    out.or(l);
+                }
+                liveOut[i] = out;
+                BitSet in = (BitSet) out.clone();
+                in.andNot(de[i]);
+                in.or(delete[i]);
+                if (!in.equals(liveIn[i])) {
+                    liveIn[i] = in;
+                    change = true;
+                }
+            }
+        }
+
+        rewrite(insert, delete, liveOut);
+        return true;
+    }
+
+    private void localSets() {
+        ue = new BitSet[n];
+        de = new BitSet[n];
+        kill = new BitSet[n];
+        for (int i = 0; i < n; ++i) {
+            ArrayList<ThreeAddressCode> codes = fn.blocks.get(i).codes;
+            ue[i] = new BitSet();
+            kill[i] = new BitSet();
+            for (ThreeAddressCode tac: codes) {
+                int e = expression(tac);
+                if (e >= 0 && !kill[i].get(e))
+                    ue[i].set(e);
+                kill[i].or(kills(tac));
+            }
+            de[i] = new BitSet();
+            BitSet killed = new BitSet();
+            for (int k = codes.size() - 1; k >= 0; --k) {
+                killed.or(kills(codes.get(k)));
+                int e = expression(codes.get(k));
+                if (e >= 0 && !killed.get(e))
+                    de[i].set(e);
+            }
+        }
+    }
+
+    // the intersection of the sets of some blocks, empty for none
+    private BitSet meet(List<Block> blocks, BitSet[] sets, int m) {
+        BitSet s = new BitSet();
+        if (blocks.isEmpty())
+            return s;
+        s.set(0, m);
+        for (Block b: blocks)
+            s.and(sets[id.get(b)]);
+        return s;
+    }
+
+    private BitSet later(Block from, Block to, LinkedHashMap<Block, LinkedHashMap<Block, BitSet>> earliest, BitSet[] laterIn) {
+        BitSet l = (BitSet) laterIn[id.get(from)].clone();
+        l.andNot(ue[id.get(from)]);
+        l.or(earliest.get(from).get(to));
+        return l;
+    }
+
+    private LinkedHashSet<Block> reachReturn() {
+        LinkedHashSet<Block> reach = new LinkedHashSet<Block>();
+        ArrayDeque<Block> work = new ArrayDeque<Block>();
+        for (Block b: fn.blocks)
+            if (b.succ.isEmpty()) {
+                reach.add(b);
+                work.add(b);
+            }
+        while (!work.isEmpty())
+            for (Block p: work.poll().pred)
+                if (reach.add(p))
+                    work.add(p);
+        return reach;
+    }
+
+    private void rewrite(LinkedHashMap<Block, LinkedHashMap<Block, BitSet>> insert, BitSet[] delete, BitSet[] liveOut) {
+        LinkedHashMap<Integer, Temp> temps = new LinkedHashMap<Integer, Temp>();
+
+        for (Block b: fn.blocks) {
+            int i = id.get(b);
+            ArrayList<ThreeAddressCode> codes = b.codes;
+
+            // the first computation of a deleted expression reads its temp
+            BitSet killed = new BitSet();
+            LinkedHashMap<ThreeAddressCode, Integer> read = new LinkedHashMap<ThreeAddressCode, Integer>();
+            for (int k = 0; k < codes.size(); ++k) {
+                ThreeAddressCode tac = codes.get(k);
+                int e = expression(tac);
+                if (e >= 0 && delete[i].get(e) && !killed.get(e)) {
+                    MoveTAC copy = new MoveTAC(tac.frame, temp(e, temps), (Temp) tac.dst);
+                    codes.set(k, copy);
+                    read.put(copy, e);
+                    killed.set(e);
+                }
+                killed.or(kills(tac));
+            }
+
+            // and the last one writes it if it is read later
+            killed.clear();
+            for (int k = codes.size() - 1; k >= 0; --k) {
+                ThreeAddressCode tac = codes.get(k);
+                killed.or(kills(tac));
+                Integer r = read.get(tac);
+                int e = r != null ? r : expression(tac);
+                if (e < 0 || killed.get(e))
+                    continue;
+                killed.set(e);
+                if (r != null || !liveOut[i].get(e))
+                    continue;
+                Temp h = temp(e, temps);
+                ThreeAddressCode compute = tac.clone();
+                compute.dst = h;
+                codes.set(k, compute);
+                codes.add(k + 1, new MoveTAC(tac.frame, h, (Temp) tac.dst));
+            }
+        }
+
+        // the placements, on edges split where neither end has the edge
+        // to itself
+        ArrayList<Block[]> edges = new ArrayList<Block[]>();
+        for (Block b: fn.blocks)
+            for (Block s: b.succ)
+                if (!insert.get(b).get(s).isEmpty())
+                    edges.add(new Block[] {b, s});
+        // the critical edges are split all at once, which keeps the number
+        // of successors and predecessors of the others
+        ArrayList<Block[]> critical = new ArrayList<Block[]>();
+        for (Block[] edge: edges)
+            if (edge[0].succ.size() > 1 && edge[1].pred.size() > 1)
+                critical.add(edge);
+        ArrayList<Block> split = fn.splitEdges(critical);
+        LinkedHashMap<Block[], Block> splitOf = new LinkedHashMap<Block[], Block>();
+        for (int i = 0; i < split.size(); ++i)
+            splitOf.put(critical.get(i), split.get(i));
+
+        for (Block[] edge: edges) {
+            BitSet set = insert.get(edge[0]).get(edge[1]);
+            ArrayList<ThreeAddressCode> place;
+            int at;
+            if (splitOf.containsKey(edge)) {
+                place = splitOf.get(edge).codes;
+                at = 0;
+            } else if (edge[0].succ.size() == 1) {
+                place = edge[0].codes;
+                ThreeAddressCode last = edge[0].last();
+                at = last instanceof GotoTAC || last instanceof BranchTAC ? place.size() - 1 : place.size();
+            } else {
+                place = edge[1].codes;
+                at = 0;
+            }
+            for (int e = set.nextSetBit(0); e >= 0; e = set.nextSetBit(e + 1)) {
+                ThreeAddressCode compute = expressions.get(e).clone();
+                compute.dst = temp(e, temps);
+                place.add(at++, compute);
+            }
+        }
+    }
+
+    private Temp temp(int e, LinkedHashMap<Integer, Temp> temps) {
+        Temp t = temps.get(e);
+        if (t == null) {
+            t = fn.frame.addLocal();
+            temps.put(e, t);
+        }
+        return t;
+    }
+}
@@ -5,10 +5,13 @@ import intermediate.Temp;
 import intermediate.Label;
 import flow.FlowGraph;
 import flow.DominatingSet;
+import flow.LoopInfo;
+import flow.AnalysisManager;
 import flow.BasicBlock;
 import flow.FlowGraphGenerator;
 import flow.InstructionRewriter;
 import arch.InstructionList;
+import frame.Frame;
 import java.util.*;
 
 public class LoopInvariantCodeMotion {
@@ -27,34 +30,73 @@ public class LoopInvariantCodeMotion {
         if (ba == null || bb == null)
             return false;
         if (ba != bb)
-            return dom.get(ba).contains(bb);
+            return dom.dominates(ba, bb);
         else
             return ba.before(a, b);
     }
 
     private Set<BasicBlock> reachBlocks(FlowGraph flow, BasicBlock head) {
-        Set<BasicBlock> reach = new HashSet<BasicBlock>();
+        Set<BasicBlock> reach = new LinkedHashSet<BasicBlock>();
         BasicBlock current = head;
         while (!reach.contains(current)) {
             reach.add(current);
-            if (flow.succ(current).size() != 1)
+            if (flow.succ(current).size() != 1 || endsInCall(current))
                 break;
             current = new ArrayList<BasicBlock>(flow.succ(current)).get(0);
         };
         return reach;
     }
 
+    private boolean endsInCall(BasicBlock b) {
+        return !b.isInsEmpty() && b.getLast().isCall();
+    }
+
+    // the natural loop of the back edge tail -> head
+    private Set<BasicBlock> loopBlocks(FlowGraph flow, BasicBlock head, BasicBlock tail) {
+        Set<BasicBlock> body = new LinkedHashSet<BasicBlock>();
+        body.add(head);
+        Deque<BasicBlock> work = new ArrayDeque<BasicBlock>();
+        if (body.add(tail))
+            work.add(tail);
+        while (!work.isEmpty())
+            for (BasicBlock p: flow.pred(work.poll()))
+                if (body.add(p))
+                    work.add(p);
+        return body;
+    }
+
+    // Uses and definitions are collected over every block head dominates,
+    // which is where a hoisted definition may be read, but an operand only
+    // varies if the loop itself writes it: a loop head with no guard in
+    // front of it dominates the rest of the enclosing loop too.
+    //
+    // The flow graph goes on from a call into the callee, so the loop of a
+    // call takes in the callee's code too. Its uses and definitions count,
+    // but only instructions of the loop's own frame that run before the
+    // first call are hoisted: callee code must stay where its frame is in
+    // place. A call that recurses into the loop's frame keeps what was
+    // hoisted across it with the other temps it saves. A back edge that is
+    // the call itself is no loop of one frame and is left alone.
     private InstructionList processLoop(FlowGraph flow, BasicBlock head, BasicBlock tail, DominatingSet dom) {
-        Map<Temp, List<Instruction>> definitions = new HashMap<Temp, List<Instruction>>();
-        Map<Instruction, BasicBlock> instructionFrom = new HashMap<Instruction, BasicBlock>();
-        Map<Temp, Set<Instruction>> useList = new HashMap<Temp, Set<Instruction>>();
-        Set<Temp> invariants = new HashSet<Temp>();
+        if (head.isInsEmpty() || endsInCall(tail))
+            return null;
+        Frame frame = head.iterator().next().frame;
+        Set<BasicBlock> body = loopBlocks(flow, head, tail);
+        Set<BasicBlock> scanned = new LinkedHashSet<BasicBlock>(dom.get(head));
+        scanned.addAll(body);
+        Set<Temp> varying = new LinkedHashSet<Temp>();
+        Map<Temp, List<Instruction>> definitions = new LinkedHashMap<Temp, List<Instruction>>();
+        Map<Instruction, BasicBlock> instructionFrom = new LinkedHashMap<Instruction, BasicBlock>();
+        Map<Temp, Set<Instruction>> useList = new LinkedHashMap<Temp, Set<Instruction>>();
+        Set<Temp> invariants = new LinkedHashSet<Temp>();
         List<Instruction> invariantIns = new ArrayList<Instruction>();
         List<Label> oldPlace = head.labels;
 
-        for (BasicBlock b: dom.get(head)) {
+        for (BasicBlock b: scanned) {
             for (Instruction i: b) {
                 instructionFrom.put(i, b);
+                if (body.contains(b))
+                    varying.addAll(i.def());
                 for (Temp t: i.def()) {
                     if (!definitions.containsKey(t))
                         definitions.put(t, new ArrayList<Instruction>());
@@ -62,13 +104,13 @@ public class LoopInvariantCodeMotion {
                 }
                 for (Temp t: i.useList()) {
                     if (!useList.containsKey(t))
-                        useList.put(t, new HashSet<Instruction>());
+                        useList.put(t, new LinkedHashSet<Instruction>());
                     useList.get(t).add(i);
                 }
             }
         }
 
-        Set<BasicBlock> enumBlocks = new HashSet<BasicBlock>(dom.get(head));
+        Set<BasicBlock> enumBlocks = new LinkedHashSet<BasicBlock>(dom.get(head));
         enumBlocks.retainAll(reachBlocks(flow, head));
         boolean change = false;
         boolean motion = false;
@@ -77,10 +119,10 @@ public class LoopInvariantCodeMotion {
             for (BasicBlock b: enumBlocks) {
                 for (Instruction i: b) {
                     if (!i.isJump() && !i.isLoad() && !i.isStore()
-                            && !i.hasSideEffects()) {
+                            && !i.hasSideEffects() && i.frame == frame) {
 
                         boolean fail = false;
-                        Set<Instruction> defPlace = new HashSet<Instruction>();
+                        Set<Instruction> defPlace = new LinkedHashSet<Instruction>();
                         for (Temp t: i.def()) {
                             defPlace.addAll(definitions.get(t));
                             if (useList.containsKey(t)) {
@@ -98,7 +140,7 @@ public class LoopInvariantCodeMotion {
                             continue;
 
                         for (Temp t: i.useList()) {
-                            if (definitions.containsKey(t) && !invariants.contains(t)) {
+                            if (varying.contains(t) && !invariants.contains(t)) {
                                 fail = true;
                                 break;
                             }
@@ -134,29 +176,31 @@ public class LoopInvariantCodeMotion {
     }
 
     public InstructionList optimize(InstructionList list) {
+        return optimize(list, new AnalysisManager(fg));
+    }
+
+    // Every hoist rewrites the list, so the analyses are rebuilt and the
+    // search starts over; loops where nothing moves leave them cached.
+    public InstructionList optimize(InstructionList list, AnalysisManager analyses) {
         boolean change = false;
 
         do {
             change = false;
 
-            FlowGraph flow = fg.build(list);
-            DominatingSet dom = new DominatingSet(flow);
-
-            for (BasicBlock head: flow.nodes()) {
-                for (BasicBlock tail: dom.get(head)) {
-                    if (!tail.isInsEmpty() && tail.getLast().isRedirectable()
-                            && flow.isEdge(tail, head)) {
+            FlowGraph flow = analyses.flow(list);
+            DominatingSet dom = analyses.dominators(list);
 
-                        InstructionList result = processLoop(flow, head, tail, dom);
-                        if (result != null) {
-                            change = true;
-                            list = result;
-                            break;
-                        }
+            for (LoopInfo.Loop loop: analyses.loops(list)) {
+                BasicBlock tail = loop.tail;
+                if (!tail.isInsEmpty() && tail.getLast().isRedirectable()) {
+                    InstructionList result = processLoop(flow, loop.head, tail, dom);
+                    if (result != null) {
+                        change = true;
+                        list = result;
+                        analyses.update(list, AnalysisManager.NONE);
+                        break;
                     }
                 }
-                if (change)
-                    break;
             }
         } while (change);
 
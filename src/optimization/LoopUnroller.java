@@ -0,0 +1,552 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Loop rotation and unrolling over the functions of an IR out of SSA form.
+// Only loops laid out as one run of blocks from the header to the only
+// latch are touched, which is what Semant makes of for and while.
+//
+// A while loop tests at the top and jumps back at the bottom. When the
+// test is small, a copy of it replaces the jump back, so an iteration
+// takes one jump less; the header is left as the test before the first
+// iteration.
+//
+// An innermost counted loop ends in a branch back on a variable stepped
+// once per iteration by a constant against an invariant. When both ends
+// are constants and the loop runs a few times over little code it is
+// unrolled completely, calls and all, which makes the variable a constant
+// in every copy; this is what Semant used to do for for loops. Otherwise
+// k copies of the body go before it with the tests between them deleted,
+// behind a test that k more iterations will run; the loop itself stays for
+// the remainder. k is 4 for small bodies and 2 for larger ones, and less
+// where the loop already uses many temps, since the copies keep their
+// values live across more code. Loops with calls are not, and partial
+// unrolling stops once the function has grown by half its size. Pointers
+// stepped between the copies are stepped once, the copies reading at
+// larger offsets.
+public class LoopUnroller {
+    // the largest header to copy, the largest bodies for each factor, the
+    // most iterations and code a complete unrolling may make, the most
+    // temps a loop may use to be unrolled by 4 and at all and the least
+    // growth allowed to any function
+    static final int ROTATE_SIZE = 4, SMALL_BODY = 10, LARGE_BODY = 24, FULL_TRIPS = 16,
+                     FULL_SIZE = 512, FEW_TEMPS = 12, MANY_TEMPS = 20, GROWTH = 64;
+
+    IRFunction fn;
+    // the headers rotated or unrolled, or made by unrolling
+    LinkedHashSet<Label> done = new LinkedHashSet<Label>();
+    // the code unrolling may still add to the function
+    int budget;
+
+    LoopUnroller(IRFunction fn) {
+        this.fn = fn;
+    }
+
+    // returns true if any function changed
+    public static boolean optimize(List<IRFunction> functions) {
+        boolean changed = false;
+        for (IRFunction f: functions)
+            changed |= new LoopUnroller(f).run();
+        return changed;
+    }
+
+    boolean run() {
+        boolean changed = false;
+        for (Block h = next(); h != null; h = next())
+            changed |= rotate(h);
+        done.clear();
+        int size = 0;
+        for (Block b: fn.blocks)
+            size += b.codes.size();
+        budget = Math.max(GROWTH, size / 2);
+        for (Block h = next(); h != null; h = next())
+            changed |= unroll(h);
+        return changed;
+    }
+
+    // a loop header not done yet, which it is added to
+    private Block next() {
+        for (Block b: fn.order)
+            for (Block p: b.pred)
+                if (fn.dominates(b, p) && done.add(b.label))
+                    return b;
+        return null;
+    }
+
+    // the blocks of the loop at h in layout order, null if it does not
+    // have one latch and one block before it or is not laid out in one
+    // run from h to the latch
+    private List<Block> loop(Block h) {
+        Block latch = null, pre = null;
+        for (Block p: h.pred)
+            if (fn.dominates(h, p)) {
+                if (latch != null)
+                    return null;
+                latch = p;
+            } else {
+                if (pre != null)
+                    return null;
+                pre = p;
+            }
+        if (latch == null || pre == null)
+            return null;
+
+        LinkedHashSet<Block> body = new LinkedHashSet<Block>();
+        body.add(h);
+        ArrayDeque<Block> work = new ArrayDeque<Block>();
+        if (body.add(latch))
+            work.add(latch);
+        while (!work.isEmpty())
+            for (Block p: work.poll().pred)
+                if (body.add(p))
+                    work.add(p);
+        int from = fn.blocks.indexOf(h), to = fn.blocks.indexOf(latch);
+        if (to < from || to - from + 1 != body.size())
+            return null;
+        List<Block> blocks = fn.blocks.subList(from, to + 1);
+        if (!body.containsAll(blocks))
+            return null;
+        return new ArrayList<Block>(blocks);
+    }
+
+    private Block pre(Block h) {
+        for (Block p: h.pred)
+            if (!fn.dominates(h, p))
+                return p;
+        return null;
+    }
+
+    // -- rotation
+
+    private boolean rotate(Block h) {
+        List<Block> loop = loop(h);
+        if (loop == null || loop.size() < 2 || h.codes.size() > ROTATE_SIZE)
+            return false;
+        Block first = loop.get(1), latch = loop.get(loop.size() - 1);
+        if (!(h.last() instanceof BranchTAC) || !(latch.last() instanceof GotoTAC))
+            return false;
+        BranchTAC exit = (BranchTAC) h.last();
+        Block out = fn.block(exit.place);
+        if (loop.contains(out))
+            return false;
+        for (ThreeAddressCode tac: h.codes)
+            if (IRFunction.isCall(tac))
+                return false;
+
+        // the test again at the bottom, branching back while it fails; a
+        // comparison only the test reads goes into the branch
+        ArrayList<ThreeAddressCode> test = new ArrayList<ThreeAddressCode>();
+        for (ThreeAddressCode tac: h.codes.subList(0, h.codes.size() - 1))
+            test.add(tac.clone());
+        BranchTAC back = new BranchTAC(exit.frame, negate(exit.type), exit.op1, exit.op2, first.label);
+        if (!test.isEmpty() && isComparisonFor(test.get(test.size() - 1), exit)) {
+            BinOpTAC compare = (BinOpTAC) test.remove(test.size() - 1);
+            BranchTAC.BranchType type = branchType(compare.op);
+            if (exit.type == BranchTAC.BranchType.NEQ)
+                type = negate(type);
+            back = new BranchTAC(exit.frame, type, compare.op1, compare.op2, first.label);
+        }
+        latch.codes.remove(latch.codes.size() - 1);
+        latch.codes.addAll(test);
+        latch.codes.add(back);
+
+        Block leave = new Block(Label.newLabel());
+        leave.codes.add(new GotoTAC(exit.frame, out.label));
+        fn.blocks.add(fn.blocks.indexOf(latch) + 1, leave);
+        fn.rebuild();
+        return true;
+    }
+
+    // true if tac computes t OP x into the temp exit compares with 0, and
+    // nothing else reads it
+    private boolean isComparisonFor(ThreeAddressCode tac, BranchTAC exit) {
+        if (!(tac instanceof BinOpTAC) || branchType(((BinOpTAC) tac).op) == null || tac.dst != exit.op1
+                || !(exit.op2 instanceof ConstAccess) || ((ConstAccess) exit.op2).value != 0
+                || exit.op2 instanceof UnknownConstAccess
+                || exit.type != BranchTAC.BranchType.EQ && exit.type != BranchTAC.BranchType.NEQ)
+            return false;
+        int uses = 0;
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode c: b.codes) {
+                ArrayList<Temp> used = new ArrayList<Temp>();
+                IRFunction.uses(c, used);
+                for (Temp t: used)
+                    if (t == tac.dst)
+                        ++uses;
+            }
+        return uses == 1;
+    }
+
+    private static BranchTAC.BranchType branchType(BinOpTAC.BinOp op) {
+        switch (op) {
+            case EQ:
+                return BranchTAC.BranchType.EQ;
+            case NEQ:
+                return BranchTAC.BranchType.NEQ;
+            case LT:
+                return BranchTAC.BranchType.LT;
+            case LEQ:
+                return BranchTAC.BranchType.LEQ;
+            case GT:
+                return BranchTAC.BranchType.GT;
+            case GEQ:
+                return BranchTAC.BranchType.GEQ;
+            default:
+                return null;
+        }
+    }
+
+    static BranchTAC.BranchType negate(BranchTAC.BranchType type) {
+        switch (type) {
+            case EQ:
+                return BranchTAC.BranchType.NEQ;
+            case NEQ:
+                return BranchTAC.BranchType.EQ;
+            case LT:
+                return BranchTAC.BranchType.GEQ;
+            case LEQ:
+                return BranchTAC.BranchType.GT;
+            case GT:
+                return BranchTAC.BranchType.LEQ;
+            default: /* GEQ */
+                return BranchTAC.BranchType.LT;
+        }
+    }
+
+    // the same comparison with the operands swapped
+    static BranchTAC.BranchType swap(BranchTAC.BranchType type) {
+        switch (type) {
+            case LT:
+                return BranchTAC.BranchType.GT;
+            case LEQ:
+                return BranchTAC.BranchType.GEQ;
+            case GT:
+                return BranchTAC.BranchType.LT;
+            case GEQ:
+                return BranchTAC.BranchType.LEQ;
+            default:
+                return type;
+        }
+    }
+
+    // -- unrolling
+
+    private boolean unroll(Block h) {
+        List<Block> loop = loop(h);
+        if (loop == null)
+            return false;
+        Block latch = loop.get(loop.size() - 1), pre = pre(h);
+        int at = fn.blocks.indexOf(latch) + 1;
+        if (!(latch.last() instanceof BranchTAC) || ((BranchTAC) latch.last()).place != h.label
+                || at == fn.blocks.size())
+            return false;
+
+        // innermost
+        int size = 0;
+        boolean calls = false;
+        LinkedHashSet<Temp> temps = new LinkedHashSet<Temp>();
+        LinkedHashMap<Temp, ThreeAddressCode> defs = new LinkedHashMap<Temp, ThreeAddressCode>();
+        LinkedHashSet<Temp> redefined = new LinkedHashSet<Temp>();
+        for (int i = 0; i < loop.size(); ++i)
+            for (ThreeAddressCode tac: loop.get(i).codes) {
+                calls |= IRFunction.isCall(tac);
+                Label target = IRFunction.target(tac);
+                if (target != null && loop.contains(fn.block(target)) && loop.indexOf(fn.block(target)) <= i
+                        && tac != latch.last())
+                    return false;
+                ++size;
+                IRFunction.uses(tac, temps);
+                Temp d = IRFunction.def(tac);
+                if (d != null) {
+                    temps.add(d);
+                    if (defs.put(d, tac) != null)
+                        redefined.add(d);
+                }
+            }
+
+        // the test: branch back while v T n, v stepped by c
+        BranchTAC test = (BranchTAC) latch.last();
+        BranchTAC.BranchType type = test.type;
+        Access v = test.op1, n = test.op2;
+        if (!(v instanceof Temp) || !defs.containsKey(v)) {
+            v = test.op2;
+            n = test.op1;
+            type = swap(type);
+        }
+        if (!(v instanceof Temp) || redefined.contains(v) || n instanceof Temp && defs.containsKey(n)
+                || !(n instanceof Temp || isConstant(n)))
+            return false;
+        Integer c = step((Temp) v, defs.get(v));
+        if (c == null || c == 0)
+            return false;
+        if (c > 0 ? type != BranchTAC.BranchType.NEQ && type != BranchTAC.BranchType.LT
+                    && type != BranchTAC.BranchType.LEQ
+                : type != BranchTAC.BranchType.NEQ && type != BranchTAC.BranchType.GT
+                    && type != BranchTAC.BranchType.GEQ)
+            return false;
+
+        int trips = trips(pre, (Temp) v, c, type, n);
+        if (trips > 0 && trips * size <= FULL_SIZE) {
+            budget -= (trips - 1) * size;
+            unrollFully(loop, pre, trips);
+            return true;
+        }
+
+        if (calls)
+            return false;
+        int k = size <= SMALL_BODY ? 4 : size <= LARGE_BODY ? 2 : 1;
+        if (temps.size() > MANY_TEMPS)
+            k = 1;
+        else if (temps.size() > FEW_TEMPS)
+            k = Math.min(k, 2);
+        while (k >= 2 && k * size > budget)
+            k /= 2;
+        if (k < 2)
+            return false;
+        budget -= k * size;
+        unrollBy(loop, pre, k, (Temp) v, c, type, n);
+        return true;
+    }
+
+    private static boolean isConstant(Access a) {
+        return a instanceof ConstAccess && !(a instanceof UnknownConstAccess);
+    }
+
+    // the constant v := v + c steps v by, if it is one
+    private static Integer step(Temp v, ThreeAddressCode tac) {
+        if (!(tac instanceof BinOpTAC))
+            return null;
+        BinOpTAC.BinOp op = ((BinOpTAC) tac).op;
+        if (op == BinOpTAC.BinOp.ADD && tac.op1 == v && isConstant(tac.op2))
+            return ((ConstAccess) tac.op2).value;
+        else if (op == BinOpTAC.BinOp.ADD && tac.op2 == v && isConstant(tac.op1))
+            return ((ConstAccess) tac.op1).value;
+        else if (op == BinOpTAC.BinOp.SUB && tac.op1 == v && isConstant(tac.op2))
+            return -((ConstAccess) tac.op2).value;
+        else
+            return null;
+    }
+
+    // the number of iterations when v starts at a constant set in the block
+    // before the loop and n is one too, 0 if not known
+    private int trips(Block pre, Temp v, int c, BranchTAC.BranchType type, Access n) {
+        if (!isConstant(n))
+            return 0;
+        Integer start = null;
+        for (ThreeAddressCode tac: pre.codes)
+            if (IRFunction.def(tac) == v)
+                start = tac instanceof MoveTAC && isConstant(tac.op1) ? Integer.valueOf(((ConstAccess) tac.op1).value) : null;
+        if (start == null)
+            return 0;
+        int x = start, limit = ((ConstAccess) n).value;
+        for (int trips = 1; trips <= FULL_TRIPS; ++trips) {
+            x += c;
+            if (!holds(type, x, limit))
+                return trips;
+        }
+        return 0;
+    }
+
+    private static boolean holds(BranchTAC.BranchType type, int x, int y) {
+        switch (type) {
+            case EQ:
+                return x == y;
+            case NEQ:
+                return x != y;
+            case LT:
+                return x < y;
+            case LEQ:
+                return x <= y;
+            case GT:
+                return x > y;
+            default: /* GEQ */
+                return x >= y;
+        }
+    }
+
+    // A copy of the loop blocks under new labels. Jumps between them go
+    // to the copies, including the one back to the header.
+    private ArrayList<Block> copy(List<Block> loop) {
+        LinkedHashMap<Label, Label> labels = new LinkedHashMap<Label, Label>();
+        for (Block b: loop)
+            labels.put(b.label, Label.newLabel());
+        ArrayList<Block> copy = new ArrayList<Block>();
+        for (Block b: loop) {
+            Block n = new Block(labels.get(b.label));
+            for (ThreeAddressCode tac: b.codes) {
+                ThreeAddressCode t = tac.clone();
+                Label target = IRFunction.target(t);
+                if (target != null && labels.containsKey(target))
+                    IRFunction.setTarget(t, labels.get(target));
+                n.codes.add(t);
+            }
+            copy.add(n);
+        }
+        return copy;
+    }
+
+    // the copies run one into the next, their tests deleted
+    private ArrayList<Block> copies(List<Block> loop, int k) {
+        ArrayList<ArrayList<Block>> copies = new ArrayList<ArrayList<Block>>();
+        for (int i = 0; i < k; ++i) {
+            ArrayList<Block> copy = copy(loop);
+            Block latch = copy.get(copy.size() - 1);
+            latch.codes.remove(latch.codes.size() - 1);
+            copies.add(copy);
+        }
+        fold(loop, copies);
+        ArrayList<Block> blocks = new ArrayList<Block>();
+        for (ArrayList<Block> copy: copies)
+            blocks.addAll(copy);
+        return blocks;
+    }
+
+    // A temp u stepped by u := u + c in the latch and otherwise only read
+    // as the base of memory accesses at constant offsets, or by the test,
+    // need not be stepped between the copies: copy j reaches j * c further
+    // from u and the last one steps it by k * c. Not done when the loop has
+    // an exit before the test, where u would be short.
+    private void fold(List<Block> loop, ArrayList<ArrayList<Block>> copies) {
+        Block latch = loop.get(loop.size() - 1);
+        ThreeAddressCode test = latch.last();
+        LinkedHashMap<Temp, Integer> defs = new LinkedHashMap<Temp, Integer>(), uses = new LinkedHashMap<Temp, Integer>();
+        for (Block b: loop)
+            for (ThreeAddressCode tac: b.codes) {
+                Label target = IRFunction.target(tac);
+                if (tac != test && target != null && !loop.contains(fn.block(target)))
+                    return;
+                Temp d = IRFunction.def(tac);
+                if (d != null)
+                    defs.put(d, defs.containsKey(d) ? defs.get(d) + 1 : 1);
+                ArrayList<Temp> used = new ArrayList<Temp>();
+                IRFunction.uses(tac, used);
+                for (Temp t: used)
+                    uses.put(t, uses.containsKey(t) ? uses.get(t) + 1 : 1);
+                // the reads allowed count back down
+                for (Access a: new Access[] {tac.dst, tac.op1, tac.op2})
+                    if (a instanceof MemAccess && isConstant(((MemAccess) a).offset))
+                        down(uses, ((MemAccess) a).base);
+                if (tac == test) {
+                    down(uses, tac.op1);
+                    down(uses, tac.op2);
+                }
+            }
+
+        // the temps to fold and where their steps are in the latch
+        LinkedHashMap<Temp, Integer> steps = new LinkedHashMap<Temp, Integer>(), at = new LinkedHashMap<Temp, Integer>();
+        for (int x = 0; x < latch.codes.size() - 1; ++x) {
+            ThreeAddressCode tac = latch.codes.get(x);
+            Temp u = IRFunction.def(tac);
+            Integer c = u == null ? null : step(u, tac);
+            if (c != null && defs.get(u) == 1 && uses.get(u) == 1) {
+                steps.put(u, c);
+                at.put(u, x);
+            }
+        }
+        if (steps.isEmpty())
+            return;
+
+        int k = copies.size();
+        for (int j = 0; j < k; ++j) {
+            ArrayList<Block> copy = copies.get(j);
+            Block last = copy.get(copy.size() - 1);
+            LinkedHashSet<ThreeAddressCode> deleted = new LinkedHashSet<ThreeAddressCode>();
+            for (int i = 0; i < copy.size(); ++i) {
+                Block b = copy.get(i);
+                for (int x = 0; x < b.codes.size(); ++x) {
+                    ThreeAddressCode tac = b.codes.get(x);
+                    Temp d = IRFunction.def(tac);
+                    if (b == last && steps.containsKey(d) && at.get(d) == x) {
+                        if (j < k - 1)
+                            deleted.add(tac);
+                        else
+                            b.codes.set(x, new BinOpTAC(tac.frame, BinOpTAC.BinOp.ADD, d,
+                                    new ConstAccess(k * steps.get(d)), d));
+                        continue;
+                    }
+                    tac.dst = moved(tac.dst, steps, at, b == last ? x : -1, j, k);
+                    tac.op1 = moved(tac.op1, steps, at, b == last ? x : -1, j, k);
+                    tac.op2 = moved(tac.op2, steps, at, b == last ? x : -1, j, k);
+                }
+            }
+            last.codes.removeAll(deleted);
+        }
+    }
+
+    private static void down(LinkedHashMap<Temp, Integer> uses, Access a) {
+        if (a instanceof Temp && uses.containsKey(a))
+            uses.put((Temp) a, uses.get(a) - 1);
+    }
+
+    // a memory access off a folded temp in copy j, at x in the latch or
+    // before it if x is -1
+    private static Access moved(Access a, LinkedHashMap<Temp, Integer> steps, LinkedHashMap<Temp, Integer> at,
+                                int x, int j, int k) {
+        if (!(a instanceof MemAccess) || !steps.containsKey(((MemAccess) a).base))
+            return a;
+        MemAccess m = (MemAccess) a;
+        Temp u = (Temp) m.base;
+        int c = steps.get(u), ahead = x < 0 || x < at.get(u) ? j * c : j == k - 1 ? 0 : (j + 1) * c;
+        return new MemAccess(u, new ConstAccess(((ConstAccess) m.offset).value + ahead));
+    }
+
+    // jumps from the block before the loop to its new first block
+    private void enter(Block pre, Block h, Block first) {
+        ThreeAddressCode last = pre.last();
+        if (IRFunction.target(last) == h.label)
+            IRFunction.setTarget(last, first.label);
+    }
+
+    private void unrollFully(List<Block> loop, Block pre, int trips) {
+        Block h = loop.get(0);
+        ArrayList<Block> blocks = copies(loop, trips);
+        int at = fn.blocks.indexOf(h);
+        fn.blocks.removeAll(loop);
+        fn.blocks.addAll(at, blocks);
+        enter(pre, h, blocks.get(0));
+        fn.rebuild();
+    }
+
+    // k copies behind a test that k iterations will run, before the loop
+    private void unrollBy(List<Block> loop, Block pre, int k, Temp v, int c, BranchTAC.BranchType type, Access n) {
+        Block h = loop.get(0), latch = loop.get(loop.size() - 1);
+        Block out = fn.blocks.get(fn.blocks.indexOf(latch) + 1);
+        ThreeAddressCode test = latch.last();
+
+        // k iterations run while v + (k - 1) * c still passes the test,
+        // that is while v is short of n - (k - 1) * c
+        ArrayList<Block> blocks = new ArrayList<Block>();
+        Access bound;
+        if (isConstant(n))
+            bound = new ConstAccess(((ConstAccess) n).value - (k - 1) * c);
+        else {
+            Temp t = fn.frame.addLocal();
+            Block start = new Block(Label.newLabel());
+            start.codes.add(new BinOpTAC(test.frame, BinOpTAC.BinOp.SUB, n, new ConstAccess((k - 1) * c), t));
+            blocks.add(start);
+            bound = t;
+        }
+        BranchTAC.BranchType fits = type == BranchTAC.BranchType.NEQ
+            ? (c > 0 ? BranchTAC.BranchType.LT : BranchTAC.BranchType.GT) : type;
+        Block check = new Block(Label.newLabel());
+        done.add(check.label);
+        check.codes.add(new BranchTAC(test.frame, negate(fits), v, bound, h.label));
+        blocks.add(check);
+
+        ArrayList<Block> unrolled = copies(loop, k);
+        Block last = unrolled.get(unrolled.size() - 1);
+        BranchTAC back = (BranchTAC) test.clone();
+        back.place = check.label;
+        last.codes.add(back);
+        blocks.addAll(unrolled);
+        Block leave = new Block(Label.newLabel());
+        leave.codes.add(new GotoTAC(test.frame, out.label));
+        blocks.add(leave);
+
+        fn.blocks.addAll(fn.blocks.indexOf(h), blocks);
+        enter(pre, h, blocks.get(0));
+        fn.rebuild();
+    }
+}
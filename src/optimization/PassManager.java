@@ -0,0 +1,145 @@
+package optimization;
+
+import java.util.*;
+
+// Ordered pipeline of named optimization passes, with the time and change
+// statistics of every pass that has run. The IR passes work on the three
+// address code and the others on the MIPS instruction list;
+// mips32.Optimizer runs both, all IR passes first. A pass may appear more
+// than once.
+public class PassManager {
+    public static final String INLINE = "inline", PEEPHOLE = "peephole", JUMP_ZIP = "jump-zip",
+           BB_OPT = "bb-opt", LICM = "licm", DCE = "dce", SSA = "ssa", SCCP = "sccp",
+           GVN = "gvn", LCM = "lcm", IV = "iv", UNROLL = "unroll", TAIL = "tail";
+
+    static final List<String> known = Arrays.asList(INLINE, PEEPHOLE, JUMP_ZIP, BB_OPT, LICM, DCE, SSA, SCCP, GVN, LCM, IV, UNROLL, TAIL);
+
+    // the passes over the three address code and those of them that run
+    // in SSA form; "ssa" does nothing itself and only forces the
+    // translation
+    static final List<String> irPasses = Arrays.asList(INLINE, SSA, SCCP, GVN, LCM, IV, UNROLL, TAIL);
+    static final List<String> ssaPasses = Arrays.asList(SSA, SCCP, GVN, IV);
+
+    public static class Stats {
+        public String name;
+        public int runs, changed;
+        public long nanos;
+        public long sizeBefore, sizeAfter;
+
+        Stats(String name) {
+            this.name = name;
+        }
+    }
+
+    private ArrayList<String> pipeline = new ArrayList<String>();
+    private LinkedHashMap<String, Stats> stats = new LinkedHashMap<String, Stats>();
+    private LinkedHashMap<String, int[]> analyses = new LinkedHashMap<String, int[]>();
+
+    // pipeline is a comma separated list of pass names
+    public PassManager(String pipeline) {
+        for (String name: pipeline.split(",")) {
+            name = name.trim();
+            if (name.length() == 0)
+                continue;
+            if (!known.contains(name))
+                throw new IllegalArgumentException("Unknown pass \"" + name + "\"");
+            this.pipeline.add(name);
+        }
+    }
+
+    // O0: nothing, O1: the cheap local passes on the instruction list, with
+    // no SSA pass, O2: everything, Os: everything except inlining and
+    // unrolling, which grow the code. "tail" only turns a function's calls
+    // to itself into jumps; without the inliner to fold one function into
+    // another, mutual recursion at -Os still makes a full call each time
+    public static PassManager level(String level) {
+        if (level.equals("0"))
+            return new PassManager("");
+        else if (level.equals("1"))
+            return new PassManager("peephole,jump-zip,bb-opt,dce");
+        else if (level.equals("2"))
+            return new PassManager("tail,inline,tail,sccp,gvn,lcm,gvn,iv,unroll,sccp,gvn,peephole,jump-zip,bb-opt,licm,bb-opt,dce");
+        else if (level.equals("s"))
+            return new PassManager("tail,sccp,gvn,lcm,gvn,iv,peephole,jump-zip,bb-opt,licm,bb-opt,dce");
+        else
+            throw new IllegalArgumentException("Unknown optimization level -O" + level);
+    }
+
+    public static PassManager defaults() {
+        return level("2");
+    }
+
+    public List<String> pipeline() {
+        return pipeline;
+    }
+
+    public boolean contains(String name) {
+        return pipeline.contains(name);
+    }
+
+    public static boolean isIRPass(String name) {
+        return irPasses.contains(name);
+    }
+
+    public static boolean needsSSA(String name) {
+        return ssaPasses.contains(name);
+    }
+
+    // sizes are in whatever unit the pass works on, or -1 when unknown
+    public void record(String name, long nanos, long sizeBefore, long sizeAfter, boolean changed) {
+        Stats s = stats.get(name);
+        if (s == null) {
+            s = new Stats(name);
+            stats.put(name, s);
+        }
+        ++s.runs;
+        if (changed)
+            ++s.changed;
+        s.nanos += nanos;
+        s.sizeBefore += sizeBefore;
+        s.sizeAfter += sizeAfter;
+    }
+
+    // how often an analysis was built and how often a cached one was reused
+    public void recordAnalysis(String name, int computed, int reused) {
+        int[] a = analyses.get(name);
+        if (a == null) {
+            a = new int[2];
+            analyses.put(name, a);
+        }
+        a[0] += computed;
+        a[1] += reused;
+    }
+
+    public Collection<Stats> stats() {
+        return stats.values();
+    }
+
+    public List<String> report() {
+        ArrayList<String> lines = new ArrayList<String>();
+        lines.add(String.format("%-10s %5s %8s %10s  %s", "pass", "runs", "changed", "time(ms)", "size"));
+        long total = 0;
+        for (Stats s: stats.values()) {
+            String size = s.sizeBefore < 0 ? "-" : s.sizeBefore + " -> " + s.sizeAfter;
+            lines.add(String.format("%-10s %5d %8d %10.2f  %s", s.name, s.runs, s.changed, s.nanos / 1e6, size));
+            total += s.nanos;
+        }
+        lines.add(String.format("%-10s %5s %8s %10.2f", "total", "", "", total / 1e6));
+        if (!analyses.isEmpty()) {
+            lines.add(String.format("%-10s %8s %8s", "analysis", "built", "reused"));
+            for (Map.Entry<String, int[]> e: analyses.entrySet())
+                lines.add(String.format("%-10s %8d %8d", e.getKey(), e.getValue()[0], e.getValue()[1]));
+        }
+        return lines;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (String name: pipeline) {
+            if (s.length() > 0)
+                s.append(',');
+            s.append(name);
+        }
+        return s.toString();
+    }
+}
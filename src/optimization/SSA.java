@@ -0,0 +1,525 @@
+package optimization;
+
+import intermediate.*;
+import frame.Frame;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Static single assignment form for the functions of an IR.
+//
+// construct() renames every temp a function owns so that it has one
+// definition, with phi functions where definitions meet. Phis go on the
+// iterated dominance frontier of the definitions, and only where the temp
+// is live. Temps another function reads or writes through the display,
+// return values and the displays themselves keep their names: their
+// definitions are not all visible in one function.
+//
+// destruct() replaces the phis by copies at the end of the predecessors,
+// splitting the critical edges first, and orders each group of parallel
+// copies so no copy overwrites the source of another. A phi's arguments
+// that never interfere with it are renamed to one temp first, as the
+// register allocator does not coalesce copies.
+public class SSA {
+    private LinkedHashSet<Temp> fixed = new LinkedHashSet<Temp>();
+
+    // the variable each version renames
+    private LinkedHashMap<Temp, Temp> original = new LinkedHashMap<Temp, Temp>();
+
+    public SSA(IR ir, List<IRFunction> functions) {
+        fixed.addAll(ir.displays);
+        for (IRFunction f: functions) {
+            if (f.frame.returnValue != null)
+                fixed.add(f.frame.returnValue);
+            ArrayList<Temp> temps = new ArrayList<Temp>();
+            for (Block b: f.blocks)
+                for (ThreeAddressCode tac: b.codes) {
+                    IRFunction.uses(tac, temps);
+                    Temp d = IRFunction.def(tac);
+                    if (d != null)
+                        temps.add(d);
+                }
+            for (Temp t: temps)
+                if (t.frame != f.frame)
+                    fixed.add(t);
+        }
+    }
+
+    public Temp original(Temp t) {
+        Temp o = original.get(t);
+        return o == null ? t : o;
+    }
+
+    // true for the temps construct() made, which have one definition
+    public boolean isVersion(Temp t) {
+        return original.containsKey(t);
+    }
+
+    // true for the temps that keep their names; in SSA form every other
+    // temp of a function holds one value, a version or a parameter
+    public boolean isFixed(Temp t) {
+        return fixed.contains(t);
+    }
+
+    public void construct(IRFunction fn) {
+        // number the temps to rename
+        LinkedHashMap<Temp, Integer> index = new LinkedHashMap<Temp, Integer>();
+        ArrayList<Temp> vars = new ArrayList<Temp>();
+        ArrayList<Temp> temps = new ArrayList<Temp>();
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes) {
+                IRFunction.uses(tac, temps);
+                Temp d = IRFunction.def(tac);
+                if (d != null)
+                    temps.add(d);
+            }
+        for (Temp t: temps)
+            if (!fixed.contains(t) && !index.containsKey(t)) {
+                index.put(t, vars.size());
+                vars.add(t);
+            }
+        if (vars.isEmpty())
+            return;
+
+        int n = fn.blocks.size();
+        LinkedHashMap<Block, Integer> id = new LinkedHashMap<Block, Integer>();
+        for (int i = 0; i < n; ++i)
+            id.put(fn.blocks.get(i), i);
+
+        // upward exposed uses and definitions of every block
+        BitSet[] use = new BitSet[n], def = new BitSet[n];
+        for (int i = 0; i < n; ++i) {
+            use[i] = new BitSet();
+            def[i] = new BitSet();
+            for (ThreeAddressCode tac: fn.blocks.get(i).codes) {
+                temps.clear();
+                IRFunction.uses(tac, temps);
+                for (Temp t: temps) {
+                    Integer v = index.get(t);
+                    if (v != null && !def[i].get(v))
+                        use[i].set(v);
+                }
+                Integer v = index.get(IRFunction.def(tac));
+                if (v != null)
+                    def[i].set(v);
+            }
+        }
+
+        // live-in sets, iterating in postorder
+        BitSet[] in = new BitSet[n];
+        for (int i = 0; i < n; ++i)
+            in[i] = (BitSet) use[i].clone();
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (int k = fn.order.size() - 1; k >= 0; --k) {
+                Block b = fn.order.get(k);
+                int i = id.get(b);
+                BitSet live = new BitSet();
+                for (Block s: b.succ)
+                    live.or(in[id.get(s)]);
+                live.andNot(def[i]);
+                live.or(use[i]);
+                if (!live.equals(in[i])) {
+                    in[i] = live;
+                    change = true;
+                }
+            }
+        }
+
+        // dominance frontiers
+        ArrayList<LinkedHashSet<Block>> frontier = new ArrayList<LinkedHashSet<Block>>();
+        for (int i = 0; i < n; ++i)
+            frontier.add(new LinkedHashSet<Block>());
+        for (Block b: fn.blocks) {
+            if (b.pred.size() < 2)
+                continue;
+            for (Block p: b.pred)
+                for (Block r = p; r != b.idom; r = r.idom)
+                    frontier.get(id.get(r)).add(b);
+        }
+
+        // phis on the iterated frontier of the definitions
+        final LinkedHashMap<PhiTAC, Temp> phiVar = new LinkedHashMap<PhiTAC, Temp>();
+        for (int v = 0; v < vars.size(); ++v) {
+            ArrayDeque<Block> work = new ArrayDeque<Block>();
+            for (int i = 0; i < n; ++i)
+                if (def[i].get(v))
+                    work.add(fn.blocks.get(i));
+            LinkedHashSet<Block> placed = new LinkedHashSet<Block>();
+            while (!work.isEmpty()) {
+                Block b = work.poll();
+                for (Block f: frontier.get(id.get(b))) {
+                    if (!in[id.get(f)].get(v) || !placed.add(f))
+                        continue;
+                    PhiTAC phi = new PhiTAC(fn.frame, vars.get(v));
+                    f.codes.add(0, phi);
+                    phiVar.put(phi, vars.get(v));
+                    if (!def[id.get(f)].get(v))
+                        work.add(f);
+                }
+            }
+        }
+
+        // rename along the dominator tree; a temp without a reaching
+        // definition, a parameter for one, keeps its own name
+        final ArrayList<ArrayDeque<Temp>> stacks = new ArrayList<ArrayDeque<Temp>>();
+        for (int v = 0; v < vars.size(); ++v)
+            stacks.add(new ArrayDeque<Temp>());
+        final LinkedHashMap<Temp, Integer> fIndex = index;
+        final IRFunction.Renamer top = new IRFunction.Renamer() {
+            public Access rename(Temp t) {
+                Integer v = fIndex.get(t);
+                if (v == null || stacks.get(v).isEmpty())
+                    return t;
+                return stacks.get(v).peek();
+            }
+        };
+        // renames what a code reads and returns the variable it defines; a
+        // phi reads along its edges, which the predecessors rename
+        TACVisitor<Temp> renameCode = new DefaultTACVisitor<Temp>() {
+            public Temp visit(PhiTAC tac) {
+                return phiVar.get(tac);
+            }
+
+            protected Temp otherwise(ThreeAddressCode tac) {
+                IRFunction.renameUses(tac, top);
+                return IRFunction.def(tac);
+            }
+        };
+
+        ArrayDeque<Block> walk = new ArrayDeque<Block>();
+        ArrayDeque<ArrayList<Integer>> pushed = new ArrayDeque<ArrayList<Integer>>();
+        LinkedHashSet<Block> done = new LinkedHashSet<Block>();
+        walk.push(fn.entry());
+        while (!walk.isEmpty()) {
+            Block b = walk.peek();
+            if (done.contains(b)) {
+                walk.pop();
+                for (int v: pushed.pop())
+                    stacks.get(v).pop();
+                continue;
+            }
+            done.add(b);
+
+            ArrayList<Integer> defined = new ArrayList<Integer>();
+            for (ThreeAddressCode tac: b.codes) {
+                Temp var = tac.accept(renameCode);
+                Integer v = index.get(var);
+                if (v == null)
+                    continue;
+                Temp version = fn.frame.addLocal();
+                original.put(version, var);
+                IRFunction.setDef(tac, version);
+                stacks.get(v).push(version);
+                defined.add(v);
+            }
+            for (Block s: b.succ)
+                for (ThreeAddressCode tac: s.codes)
+                    if (tac instanceof PhiTAC)
+                        ((PhiTAC) tac).setArg(b.label, top.rename(phiVar.get(tac)));
+            pushed.push(defined);
+            for (int i = b.children.size() - 1; i >= 0; --i)
+                walk.push(b.children.get(i));
+        }
+    }
+
+    public void destruct(IRFunction fn) {
+        // a block with phis gets a block of its own on every edge from a
+        // predecessor that also goes elsewhere
+        ArrayList<Block[]> edges = new ArrayList<Block[]>();
+        for (Block b: fn.blocks) {
+            if (b.codes.isEmpty() || !(b.codes.get(0) instanceof PhiTAC))
+                continue;
+            for (Block p: b.pred)
+                if (p.succ.size() > 1 || p.last() instanceof BranchTAC)
+                    edges.add(new Block[] {p, b});
+        }
+        LinkedHashMap<Block, Block> splits = new LinkedHashMap<Block, Block>();
+        ArrayList<Block> split = fn.splitEdges(edges);
+        for (int i = 0; i < split.size(); ++i)
+            splits.put(split.get(i), edges.get(i)[1]);
+
+        final LinkedHashMap<Temp, Temp> name = coalesce(fn);
+        IRFunction.Renamer renamer = new IRFunction.Renamer() {
+            public Access rename(Temp t) {
+                Temp n = name.get(t);
+                return n == null ? t : n;
+            }
+        };
+
+        for (Block b: fn.blocks) {
+            ArrayList<PhiTAC> phis = new ArrayList<PhiTAC>();
+            for (ThreeAddressCode tac: b.codes)
+                if (tac instanceof PhiTAC)
+                    phis.add((PhiTAC) tac);
+            b.codes.subList(0, phis.size()).clear();
+            for (Block p: b.pred) {
+                if (phis.isEmpty())
+                    break;
+                ArrayList<Temp> dst = new ArrayList<Temp>();
+                ArrayList<Access> src = new ArrayList<Access>();
+                for (PhiTAC phi: phis) {
+                    dst.add((Temp) IRFunction.rename(phi.dst, renamer));
+                    src.add(IRFunction.rename(phi.arg(p.label), renamer));
+                }
+                int at = p.last() instanceof GotoTAC ? p.codes.size() - 1 : p.codes.size();
+                p.codes.addAll(at, sequentialize(fn.frame, dst, src));
+            }
+        }
+
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes) {
+                IRFunction.renameUses(tac, renamer);
+                Temp d = IRFunction.def(tac);
+                if (d != null && name.containsKey(d))
+                    IRFunction.setDef(tac, name.get(d));
+            }
+
+        // the edges that got no copies go straight again
+        boolean removed = false;
+        for (Map.Entry<Block, Block> e: splits.entrySet()) {
+            Block n = e.getKey(), to = e.getValue();
+            if (n.codes.size() > (n.last() instanceof GotoTAC ? 1 : 0))
+                continue;
+            Block from = n.pred.get(0);
+            if (IRFunction.target(from.last()) == n.label)
+                IRFunction.setTarget(from.last(), to.label);
+            fn.blocks.remove(n);
+            removed = true;
+        }
+        if (removed)
+            fn.rebuild();
+    }
+
+    // Gives temps one name where their values never meet, so most of the
+    // copies out of SSA form copy a temp to itself: first a phi and its
+    // arguments, then every version and the temp it renames, which undoes
+    // the renaming where no pass made the versions overlap. Returns the new
+    // name of every renamed temp.
+    private LinkedHashMap<Temp, Temp> coalesce(IRFunction fn) {
+        Coalescer c = new Coalescer(fn);
+        for (Block b: fn.blocks)
+            for (ThreeAddressCode tac: b.codes)
+                if (tac instanceof PhiTAC)
+                    for (Access a: ((PhiTAC) tac).args)
+                        if (a instanceof Temp)
+                            c.merge((Temp) tac.dst, (Temp) a);
+        for (Temp t: new ArrayList<Temp>(c.defBlock.keySet()))
+            if (original.containsKey(t))
+                c.merge(t, original.get(t));
+
+        // a temp that comes into the function must keep its name
+        LinkedHashMap<Temp, Temp> name = new LinkedHashMap<Temp, Temp>();
+        for (ArrayList<Temp> members: new LinkedHashSet<ArrayList<Temp>>(c.classOf.values())) {
+            Temp rep = c.incoming(members);
+            if (rep == null)
+                rep = members.get(0);
+            for (Temp t: members)
+                if (t != rep)
+                    name.put(t, rep);
+        }
+        return name;
+    }
+
+    // Classes of temps that can share a name. Two values interfere if one
+    // is live where the other is defined, which only needs checking when
+    // the definition of the one dominates that of the other. A class is
+    // kept in the order of a walk of the dominator tree, so the members
+    // whose definitions dominate a temp's are the ones above it on a
+    // stack; two classes without interference inside them interfere only
+    // if some temp interferes with the nearest member of the other class
+    // above it (Budimlic et al.).
+    private static class Coalescer {
+        IRFunction fn;
+        // where every temp is defined: its block and position; the temps
+        // that come into the function are not in these and go before the
+        // entry's codes
+        LinkedHashMap<Temp, Block> defBlock = new LinkedHashMap<Temp, Block>();
+        LinkedHashMap<Temp, Integer> defAt = new LinkedHashMap<Temp, Integer>();
+        LinkedHashMap<Block, LinkedHashSet<Temp>> liveOut;
+        // the position of the last code of each block that reads a temp,
+        // phis left out
+        LinkedHashMap<Block, LinkedHashMap<Temp, Integer>> lastUse = new LinkedHashMap<Block, LinkedHashMap<Temp, Integer>>();
+        LinkedHashMap<Temp, ArrayList<Temp>> classOf = new LinkedHashMap<Temp, ArrayList<Temp>>();
+
+        Coalescer(IRFunction fn) {
+            this.fn = fn;
+            ArrayList<Temp> used = new ArrayList<Temp>();
+            for (Block b: fn.blocks) {
+                LinkedHashMap<Temp, Integer> last = new LinkedHashMap<Temp, Integer>();
+                for (int i = 0; i < b.codes.size(); ++i) {
+                    ThreeAddressCode tac = b.codes.get(i);
+                    if (!(tac instanceof PhiTAC)) {
+                        used.clear();
+                        IRFunction.uses(tac, used);
+                        for (Temp t: used)
+                            last.put(t, i);
+                    }
+                    Temp d = IRFunction.def(tac);
+                    if (d != null) {
+                        defBlock.put(d, b);
+                        defAt.put(d, i);
+                    }
+                }
+                lastUse.put(b, last);
+            }
+            liveOut = liveOut(fn);
+        }
+
+        ArrayList<Temp> members(Temp t) {
+            ArrayList<Temp> c = classOf.get(t);
+            if (c == null) {
+                c = new ArrayList<Temp>();
+                c.add(t);
+                classOf.put(t, c);
+            }
+            return c;
+        }
+
+        // a class has at most one such temp, and it goes first
+        Temp incoming(ArrayList<Temp> c) {
+            return defBlock.containsKey(c.get(0)) ? null : c.get(0);
+        }
+
+        Block block(Temp t) {
+            Block b = defBlock.get(t);
+            return b == null ? fn.entry() : b;
+        }
+
+        int at(Temp t) {
+            Integer i = defAt.get(t);
+            return i == null ? -1 : i;
+        }
+
+        // true if a is defined before b in the walk of the dominator tree
+        boolean before(Temp a, Temp b) {
+            Block ba = block(a), bb = block(b);
+            return ba == bb ? at(a) < at(b) : ba.pre < bb.pre;
+        }
+
+        boolean dominates(Temp a, Temp b) {
+            Block ba = block(a), bb = block(b);
+            return ba == bb ? at(a) <= at(b) : fn.dominates(ba, bb);
+        }
+
+        void merge(Temp a, Temp b) {
+            ArrayList<Temp> x = members(a), y = members(b);
+            if (x == y || incoming(x) != null && incoming(y) != null)
+                return;
+            ArrayList<Temp> merged = new ArrayList<Temp>(x.size() + y.size());
+            ArrayDeque<Temp> above = new ArrayDeque<Temp>();
+            for (int i = 0, j = 0; i < x.size() || j < y.size(); ) {
+                Temp t = j == y.size() || i < x.size() && before(x.get(i), y.get(j)) ? x.get(i++) : y.get(j++);
+                while (!above.isEmpty() && !dominates(above.peek(), t))
+                    above.pop();
+                if (!above.isEmpty() && classOf.get(above.peek()) != classOf.get(t) && interfere(above.peek(), t))
+                    return;
+                above.push(t);
+                merged.add(t);
+            }
+            x.clear();
+            x.addAll(merged);
+            for (Temp t: y)
+                classOf.put(t, x);
+        }
+
+        // whether a, whose definition dominates b's, is live once b is
+        // defined
+        boolean interfere(Temp a, Temp b) {
+            Block bb = block(b);
+            int ib = at(b);
+            if (block(a) == bb && at(a) == ib || liveOut.get(bb).contains(a))
+                return true;
+            Integer last = lastUse.get(bb).get(a);
+            return last != null && last > ib;
+        }
+    }
+
+    // the temps live at the end of every block; a phi argument is live at
+    // the end of its predecessor only
+    private static LinkedHashMap<Block, LinkedHashSet<Temp>> liveOut(IRFunction fn) {
+        LinkedHashMap<Block, LinkedHashSet<Temp>> use = new LinkedHashMap<Block, LinkedHashSet<Temp>>(),
+            def = new LinkedHashMap<Block, LinkedHashSet<Temp>>(), in = new LinkedHashMap<Block, LinkedHashSet<Temp>>(),
+            out = new LinkedHashMap<Block, LinkedHashSet<Temp>>();
+        ArrayList<Temp> temps = new ArrayList<Temp>();
+        for (Block b: fn.blocks) {
+            LinkedHashSet<Temp> u = new LinkedHashSet<Temp>(), d = new LinkedHashSet<Temp>();
+            for (ThreeAddressCode tac: b.codes) {
+                if (!(tac instanceof PhiTAC)) {
+                    temps.clear();
+                    IRFunction.uses(tac, temps);
+                    for (Temp t: temps)
+                        if (!d.contains(t))
+                            u.add(t);
+                }
+                Temp t = IRFunction.def(tac);
+                if (t != null)
+                    d.add(t);
+            }
+            use.put(b, u);
+            def.put(b, d);
+            in.put(b, new LinkedHashSet<Temp>(u));
+            out.put(b, new LinkedHashSet<Temp>());
+        }
+
+        boolean change = true;
+        while (change) {
+            change = false;
+            for (int k = fn.order.size() - 1; k >= 0; --k) {
+                Block b = fn.order.get(k);
+                LinkedHashSet<Temp> o = new LinkedHashSet<Temp>();
+                for (Block s: b.succ) {
+                    o.addAll(in.get(s));
+                    for (ThreeAddressCode tac: s.codes)
+                        if (tac instanceof PhiTAC) {
+                            Access a = ((PhiTAC) tac).arg(b.label);
+                            if (a instanceof Temp)
+                                o.add((Temp) a);
+                        }
+                }
+                if (o.equals(out.get(b)))
+                    continue;
+                out.put(b, o);
+                LinkedHashSet<Temp> i = new LinkedHashSet<Temp>(o);
+                i.removeAll(def.get(b));
+                i.addAll(use.get(b));
+                in.put(b, i);
+                change = true;
+            }
+        }
+        return out;
+    }
+
+    // Orders the parallel copies dst[i] := src[i]. A copy may go once no
+    // other pending copy reads its destination; when only cycles are left,
+    // one destination is saved to a new temp and its readers use that.
+    static ArrayList<ThreeAddressCode> sequentialize(Frame frame, List<Temp> dst, List<Access> src) {
+        ArrayList<Temp> d = new ArrayList<Temp>();
+        ArrayList<Access> s = new ArrayList<Access>();
+        for (int i = 0; i < dst.size(); ++i)
+            if (src.get(i) != dst.get(i)) {
+                d.add(dst.get(i));
+                s.add(src.get(i));
+            }
+
+        ArrayList<ThreeAddressCode> codes = new ArrayList<ThreeAddressCode>();
+        while (!d.isEmpty()) {
+            int ready = -1;
+            for (int i = 0; i < d.size() && ready == -1; ++i)
+                if (!s.contains(d.get(i)))
+                    ready = i;
+            if (ready != -1) {
+                codes.add(new MoveTAC(frame, s.get(ready), d.get(ready)));
+                d.remove(ready);
+                s.remove(ready);
+            } else {
+                Temp t = frame.addLocal();
+                codes.add(new MoveTAC(frame, d.get(0), t));
+                for (int i = 0; i < s.size(); ++i)
+                    if (s.get(i) == d.get(0))
+                        s.set(i, t);
+            }
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,156 @@
+package optimization;
+
+import intermediate.*;
+import java.util.*;
+import optimization.IRFunction.Block;
+
+// Tail recursion elimination over the functions of an IR out of SSA form.
+// A call of a function to itself is in tail position when what follows it
+// up to the return only copies its result on to the return value, through
+// gotos and copies between the function's own temps, which are all dead
+// once it returns. Such a call reuses the frame it is in: the arguments
+// are moved to the parameters and the call becomes a jump back to the
+// start of the body, so the recursion runs as a loop.
+//
+// The arguments are evaluated before any parameter changes, through new
+// locals where they read a parameter that is about to be overwritten.
+// The jumps go to a block of their own after the entry, which keeps the
+// label calls go to and no predecessors.
+//
+// Calls to other functions keep the full call sequence, as the caller's
+// side of it reads the frame size, return value and display of the
+// function it called; a tail call between functions that call each other
+// turns into a self call once the inliner has put one of them into the
+// other, and goes away here when this runs after it.
+public class TailRecursion {
+    IRFunction fn;
+    // the start of the body the tail calls jump to
+    Block head;
+    // the temps that hold the result of the call isTail follows
+    LinkedHashSet<Temp> result = new LinkedHashSet<Temp>();
+
+    TailRecursion(IRFunction fn) {
+        this.fn = fn;
+    }
+
+    // returns true if any call was turned into a jump
+    public static boolean optimize(List<IRFunction> functions) {
+        boolean changed = false;
+        for (IRFunction f: functions)
+            changed |= new TailRecursion(f).run();
+        return changed;
+    }
+
+    boolean run() {
+        // every call is weighed before any is replaced, which changes the
+        // blocks another may return through
+        ArrayList<Block> blocks = new ArrayList<Block>();
+        ArrayList<Integer> at = new ArrayList<Integer>();
+        for (Block b: fn.blocks)
+            for (int i = 0; i < b.codes.size(); ++i) {
+                ThreeAddressCode tac = b.codes.get(i);
+                if (tac instanceof CallTAC && ((CallTAC) tac).place == fn.frame.place
+                        && isTail(b, i)) {
+                    blocks.add(b);
+                    at.add(i);
+                    break;
+                }
+            }
+        if (blocks.isEmpty())
+            return false;
+
+        Block entry = fn.entry();
+        head = new Block(Label.newLabel());
+        head.codes.addAll(entry.codes);
+        entry.codes.clear();
+        fn.blocks.add(1, head);
+        for (int k = 0; k < blocks.size(); ++k)
+            replace(blocks.get(k) == entry ? head : blocks.get(k), at.get(k));
+        fn.rebuild();
+        return true;
+    }
+
+    // true if the call at b.codes[i] only has its result returned after it
+    boolean isTail(Block b, int i) {
+        CallTAC call = (CallTAC) b.codes.get(i);
+        result.clear();
+        if (call.actualReturn != null)
+            result.add(call.actualReturn);
+
+        LinkedHashSet<Block> seen = new LinkedHashSet<Block>();
+        seen.add(b);
+        int at = i + 1;
+        while (true) {
+            for (; at < b.codes.size(); ++at) {
+                Boolean tail = b.codes.get(at).accept(follow);
+                if (tail != null)
+                    return tail;
+            }
+            if (b.succ.size() != 1)
+                return false;
+            b = b.succ.get(0);
+            if (!seen.add(b))
+                return false;
+            at = 0;
+        }
+    }
+
+    // follows the result through one code after the call: true or false
+    // once it is returned or lost, null while it may still be returned
+    private final TACVisitor<Boolean> follow = new DefaultTACVisitor<Boolean>() {
+        public Boolean visit(ReturnTAC tac) {
+            return fn.frame.returnValue == null || result.contains(fn.frame.returnValue);
+        }
+
+        public Boolean visit(GotoTAC tac) {
+            return null;
+        }
+
+        public Boolean visit(MoveTAC tac) {
+            if (!(tac.dst instanceof Temp) || ((Temp) tac.dst).frame != fn.frame || tac.op1 instanceof MemAccess)
+                return false;
+            if (result.contains(tac.op1))
+                result.add((Temp) tac.dst);
+            else
+                result.remove(tac.dst);
+            return null;
+        }
+
+        protected Boolean otherwise(ThreeAddressCode tac) {
+            return false;
+        }
+    };
+
+    // replaces the call at b.codes[i] and what follows it in b by the moves
+    // of the arguments and a jump to the head
+    void replace(Block b, int i) {
+        CallTAC call = (CallTAC) b.codes.get(i);
+        ArrayList<Temp> params = fn.frame.params;
+        while (b.codes.size() > i)
+            b.codes.remove(b.codes.size() - 1);
+
+        LinkedHashSet<Temp> changed = new LinkedHashSet<Temp>();
+        for (int k = 0; k < params.size(); ++k)
+            if (call.params.get(k) != params.get(k))
+                changed.add(params.get(k));
+
+        ArrayList<ThreeAddressCode> moves = new ArrayList<ThreeAddressCode>();
+        for (int k = 0; k < params.size(); ++k) {
+            Access arg = call.params.get(k);
+            Temp p = params.get(k);
+            if (arg == p)
+                continue;
+            ArrayList<Temp> reads = new ArrayList<Temp>();
+            IRFunction.uses(new MoveTAC(fn.frame, arg, p), reads);
+            reads.retainAll(changed);
+            if (!reads.isEmpty()) {
+                Temp t = fn.frame.addLocal();
+                b.codes.add(new MoveTAC(fn.frame, arg, t));
+                arg = t;
+            }
+            moves.add(new MoveTAC(fn.frame, arg, p));
+        }
+        b.codes.addAll(moves);
+        b.codes.add(new GotoTAC(fn.frame, head.label));
+    }
+}
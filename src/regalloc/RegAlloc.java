@@ -6,7 +6,7 @@ import intermediate.Temp;
 
 public class RegAlloc {
     Map<Temp, Register> map = null;
-    Set<Temp> spills = new HashSet<Temp>();
+    Set<Temp> spills = new LinkedHashSet<Temp>();
     Set<Temp> candidates = null;
     Graph<Temp> g;
     ArrayList<Register> regs;
@@ -14,7 +14,7 @@ public class RegAlloc {
     public RegAlloc(Graph<Temp> interfereGraph, ArrayList<Register> regs,
             Map<Temp, Register> preAlloc, Set<Temp> spillCandidates) {
         if (preAlloc == null)
-            map = new HashMap<Temp, Register>();
+            map = new LinkedHashMap<Temp, Register>();
         else
             map = preAlloc;
         candidates = spillCandidates;
@@ -47,11 +47,11 @@ public class RegAlloc {
             finish = false;
             if (candidates.contains(t)) {
                 any = t;
-                anyNeighbour = new HashSet<Temp>(g.succ(t));
+                anyNeighbour = new LinkedHashSet<Temp>(g.succ(t));
             }
             if (g.inDegree(t) < k) {
                 kick = t;
-                neighbour = new HashSet<Temp>(g.succ(t));
+                neighbour = new LinkedHashSet<Temp>(g.succ(t));
                 break;
             }
         }
@@ -71,7 +71,7 @@ public class RegAlloc {
         if (!color())
             return false;
 
-        Set<Register> colorCandidates = new HashSet<Register>(regs);
+        Set<Register> colorCandidates = new LinkedHashSet<Register>(regs);
         for (Temp t: neighbour) {
             if (map.containsKey(t)) {
                 colorCandidates.remove(map.get(t));
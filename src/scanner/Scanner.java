@@ -292,9 +292,19 @@ public class Scanner implements java_cup.runtime.Scanner {
   private boolean zzEOFDone;
 
   /* user code: */
-    StringBuffer string = new StringBuffer();
+    StringBuilder string = new StringBuilder();
     int comment_level;
 
+    /**
+     * Creates a scanner over a fully decoded source file. The whole file
+     * becomes the input buffer, so it is never refilled from a reader.
+     */
+    public Scanner(SourceFile source) {
+        this(new java.io.StringReader(""));
+        zzBuffer = source.buffer();
+        zzEndRead = source.length();
+    }
+
     private Symbol symbol(int type) {
         return new Symbol(type, yyline, yycolumn);
     }
@@ -782,7 +792,7 @@ public class Scanner implements java_cup.runtime.Scanner {
           }
         case 85: break;
         case 3: 
-          { return symbol(sym.IDENTIFIER, yytext());
+          { return symbol(sym.IDENTIFIER, symbol.Symbol.symbol(zzBuffer, zzStartRead, yylength()));
           }
         case 86: break;
         case 28: 
@@ -903,7 +913,7 @@ public class Scanner implements java_cup.runtime.Scanner {
           }
         case 113: break;
         case 25: 
-          { string.append( yytext() );
+          { string.append(zzBuffer, zzStartRead, yylength());
           }
         case 114: break;
         case 10: 
@@ -0,0 +1,82 @@
+package scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// A whole source file decoded once from UTF-8 into a char array.
+// Large files are memory-mapped, small ones are read with a single bulk
+// read. The array is handed to the Scanner as its input buffer, so the
+// scanner never goes through a Reader.
+public class SourceFile {
+    private static final int MAP_THRESHOLD = 1 << 16;
+
+    private char[] chars;
+    private int offset;
+    private int length;
+
+    private SourceFile(char[] chars, int offset, int length) {
+        this.chars = chars;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static SourceFile load(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size >= Integer.MAX_VALUE)
+                throw new IOException(path + ": source file too large");
+
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD)
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0)
+                    ;
+                bytes.flip();
+            }
+            return decode(bytes, (int) size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static SourceFile decode(ByteBuffer bytes, int size) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // UTF-8 never decodes to more chars than it has bytes
+        char[] chars = new char[size + 1];
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.decode(bytes, out, true);
+        decoder.flush(out);
+
+        int start = 0;
+        if (out.position() > 0 && chars[0] == '\uFEFF')
+            start = 1;
+        return new SourceFile(chars, start, out.position() - start);
+    }
+
+    // The scanner takes ownership of this array and may move text around
+    // in it once the input has been consumed.
+    char[] buffer() {
+        if (offset != 0) {
+            System.arraycopy(chars, offset, chars, 0, length);
+            offset = 0;
+        }
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+}
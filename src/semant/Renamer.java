@@ -0,0 +1,348 @@
+package semant;
+
+import symbol.Symbol;
+import symbol.Table;
+import java.util.*;
+import absyn.*;
+
+// Gives every variable, function and type of a program a name of its own,
+// so Semant never sees two declarations under one symbol. nameMap maps the
+// new names back to the source ones for error messages.
+class Renamer {
+    Map<Symbol, Symbol> nameMap = null;
+    Table<Symbol> vt = null, tt = null;
+
+    public void rename(absyn.Expr expr, Map<Symbol, Symbol> nameMap) {
+        this.nameMap = nameMap;
+        vt = new Table<Symbol>();
+        tt = new Table<Symbol>();
+
+        nameMap.put(Symbol.symbol("main"), Symbol.symbol("main"));
+        rename(expr);
+    }
+
+    private ExprVisitor<Void> renamer = new ExprVisitor<Void>() {
+        public Void visit(ArrayExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(AssignmentExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(BreakExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(CallExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(ForExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(IfExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(IntExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(LetExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(LValueExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(NegationExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(NilExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(OpExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(RecordExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(SeqExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(StringExpr expr) {
+            rename(expr);
+            return null;
+        }
+
+        public Void visit(WhileExpr expr) {
+            rename(expr);
+            return null;
+        }
+    };
+
+    private void rename(absyn.Expr expr) {
+        if (expr != null)
+            expr.accept(renamer);
+    }
+
+    private void rename(absyn.ArrayExpr expr) {
+        Symbol t = tt.get(expr.type);
+        if (t != null)
+            expr.type = t;
+        rename(expr.size);
+        rename(expr.init);
+    }
+
+    private void rename(absyn.AssignmentExpr expr) {
+        renameLValue(expr.lvalue);
+        rename(expr.e);
+    }
+
+    private void rename(absyn.BreakExpr expr) {
+        /* do nothing */
+    }
+
+    private void rename(absyn.CallExpr expr) {
+        Symbol t = vt.get(expr.func);
+        if (t != null) {
+            expr.func = t;
+        }
+
+        ExprList p = expr.args;
+        while (p != null) {
+            rename(p.expr);
+            p = p.next;
+        }
+    }
+
+    private void rename(absyn.ForExpr expr) {
+        rename(expr.begin);
+        rename(expr.end);
+
+        vt.beginScope();
+        vt.put(expr.var, newSymbol());
+        nameMap.put(vt.get(expr.var), expr.var);
+        expr.var = vt.get(expr.var);
+        rename(expr.body);
+        vt.endScope();
+    }
+
+    private void rename(absyn.IfExpr expr) {
+        rename(expr.condition);
+        rename(expr.thenClause);
+        if (expr.elseClause != null)
+            rename(expr.elseClause);
+    }
+
+    private void rename(absyn.IntExpr expr) {
+        /* do nothing */
+    }
+
+    private void rename(absyn.LetExpr expr) {
+        vt.beginScope();
+        tt.beginScope();
+        renameDeclList(expr.decls);
+        renameExprList(expr.exprs);
+        tt.endScope();
+        vt.endScope();
+    }
+
+    private void rename(absyn.LValueExpr expr) {
+        renameLValue(expr.lvalue);
+    }
+
+    private void rename(absyn.NegationExpr expr) {
+        rename(expr.value);
+    }
+
+    private void rename(absyn.NilExpr expr) {
+        /* do nothing */
+    }
+
+    private void rename(absyn.OpExpr expr) {
+        rename(expr.left);
+        rename(expr.right);
+    }
+
+    private void rename(absyn.RecordExpr expr) {
+        Symbol t = tt.get(expr.type);
+        if (t != null)
+            expr.type = t;
+
+        FieldList p = expr.fields;
+        while (p != null) {
+            rename(p.value);
+            p = p.next;
+        }
+    }
+
+    private void rename(absyn.SeqExpr expr) {
+        renameExprList(expr.exprList);
+    }
+
+    private void rename(absyn.StringExpr expr) {
+        /* do nothing */
+    }
+
+    private void rename(absyn.WhileExpr expr) {
+        rename(expr.condition);
+        rename(expr.body);
+    }
+
+    private void renameExprList(absyn.ExprList expr) {
+        while (expr != null) {
+            rename(expr.expr);
+            expr = expr.next;
+        }
+    }
+
+    private void renameDeclList(absyn.DeclList expr) {
+        if (expr == null)
+            return;
+
+        if (expr.decl instanceof VarDecl) {
+            VarDecl vd = (VarDecl) expr.decl;
+            
+            if (vd.type != null) {
+                Symbol t = tt.get(vd.type);
+                if (t != null)
+                    vd.type = t;
+            }
+
+            rename(vd.value);
+            vt.put(vd.id, newSymbol());
+            nameMap.put(vt.get(vd.id), vd.id);
+            vd.id = vt.get(vd.id);
+
+            renameDeclList(expr.next);
+        } else if (expr.decl instanceof TypeDecl) {
+            DeclList p = expr;
+            
+            for (p = expr; p != null && p.decl instanceof TypeDecl; p = p.next) {
+                TypeDecl td = (TypeDecl) p.decl;
+                tt.put(td.name, newSymbol());
+                nameMap.put(tt.get(td.name), td.name);
+                td.name = tt.get(td.name);
+            }
+            for (p = expr; p != null && p.decl instanceof TypeDecl; p = p.next) {
+                TypeDecl td = (TypeDecl) p.decl;
+                renameType(td.type);
+            }
+
+            renameDeclList(p);
+        } else {
+            DeclList p = expr;
+
+            for (p = expr; p != null && p.decl instanceof FuncDecl; p = p.next) {
+                FuncDecl fd = (FuncDecl) p.decl;
+                vt.put(fd.name, newSymbol());
+                nameMap.put(vt.get(fd.name), fd.name);
+                fd.name = vt.get(fd.name);
+
+                if (fd.type != null) {
+                    Symbol t = tt.get(fd.type);
+                    if (t != null)
+                        fd.type = t;
+                }
+
+                renameTypeFields(fd.params);
+            }
+            for (p = expr; p != null && p.decl instanceof FuncDecl; p = p.next) {
+                FuncDecl fd = (FuncDecl) p.decl;
+
+                vt.beginScope();
+                TypeFields tf = fd.params;
+                while (tf != null) {
+                    vt.put(tf.head.name, newSymbol());
+                    nameMap.put(vt.get(tf.head.name), tf.head.name);
+                    tf.head.name = vt.get(tf.head.name);
+
+                    tf = tf.next;
+                }
+                rename(fd.body);
+                vt.endScope();
+            }
+
+            renameDeclList(p);
+        } 
+    }
+
+    private void renameTypeFields(TypeFields tf) {
+        while (tf != null) {
+            Symbol t = tt.get(tf.head.type);
+            if (t != null)
+                tf.head.type = t;
+
+            tf = tf.next;
+        }
+    }
+
+    private void renameType(Type type) {
+        if (type instanceof NameType) {
+            NameType nt = (NameType) type;
+            Symbol t = tt.get(nt.name);
+            if (t != null)
+                nt.name = t;
+        } else if (type instanceof ArrayType) {
+            ArrayType at = (ArrayType) type;
+            Symbol t = tt.get(at.base);
+            if (t != null)
+                at.base = t;
+        } else {
+            RecordType rt = (RecordType) type;
+            renameTypeFields(rt.fields);
+        }
+    }
+
+    private LValueVisitor<Void> lvalueRenamer = new LValueVisitor<Void>() {
+        public Void visit(VarLValue vl) {
+            Symbol t = vt.get(vl.name);
+            if (t != null)
+                vl.name = t;
+            return null;
+        }
+
+        public Void visit(FieldLValue fl) {
+            renameLValue(fl.lvalue);
+            return null;
+        }
+
+        public Void visit(SubscriptLValue sl) {
+            renameLValue(sl.lvalue);
+            rename(sl.expr);
+            return null;
+        }
+    };
+
+    private void renameLValue(LValue lvalue) {
+        lvalue.accept(lvalueRenamer);
+    }
+
+    int newNameCount = 0;
+    Symbol newSymbol() {
+        return Symbol.symbol("_s" + new Integer(newNameCount++).toString());
+    }
+}
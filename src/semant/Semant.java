@@ -6,8 +6,8 @@ import absyn.*;
 import java.util.*;
 import intermediate.*;
 import frame.*;
-import optimization.InlineOptimizer;
 import util.Graph;
+import type.Int;
 
 public class Semant {
     private Table<Entry> vt;
@@ -25,67 +25,67 @@ public class Semant {
     }
 
     private void initTypes() {
-        tt.put(sym("int"), new type.Int());
-        tt.put(sym("string"), new type.String());
+        tt.put(sym("int"), Int.INT);
+        tt.put(sym("string"), type.String.STRING);
     }
 
     private void initFunctions() {
         // function print(s : string)
         vt.put(sym("print"), new FuncEntry(
-                    new type.Record(sym("s"), new type.String(), null),
-                    new type.Void(), null, true));
+                    new type.Record(sym("s"), type.String.STRING, null),
+                    type.Void.VOID, null, true));
 
         // function printi(i : int)
         vt.put(sym("printi"), new FuncEntry(
-                    new type.Record(sym("i"), new type.Int(), null),
-                    new type.Void(), null, true));
+                    new type.Record(sym("i"), Int.INT, null),
+                    type.Void.VOID, null, true));
 
         // function flush()
         vt.put(sym("flush"), new FuncEntry(
-                    null, new type.Void(), null, true));
+                    null, type.Void.VOID, null, true));
 
         // function getchar() : string
         vt.put(sym("getchar"), new FuncEntry(
-                    null, new type.String(), null, true));
+                    null, type.String.STRING, null, true));
 
         // function ord(s: string) : int
         vt.put(sym("ord"), new FuncEntry(
-                    new type.Record(sym("s"), new type.String(), null),
-                    new type.Int(), null, true));
+                    new type.Record(sym("s"), type.String.STRING, null),
+                    Int.INT, null, true));
 
         // function chr(i: int) : string
         vt.put(sym("chr"), new FuncEntry(
-                    new type.Record(sym("i"), new type.Int(), null),
-                    new type.String(), null, true));
+                    new type.Record(sym("i"), Int.INT, null),
+                    type.String.STRING, null, true));
 
         // function size(s: string) : int
         vt.put(sym("size"), new FuncEntry(
-                    new type.Record(sym("s"), new type.String(), null),
-                    new type.Int(), null, true));
+                    new type.Record(sym("s"), type.String.STRING, null),
+                    Int.INT, null, true));
 
         // function substring(s : string, first: int, n: int) : string
         vt.put(sym("substring"), new FuncEntry(
-                    new type.Record(sym("s"), new type.String(),
-                        new type.Record(sym("first"), new type.Int(),
-                            new type.Record(sym("n"), new type.Int(), null)
+                    new type.Record(sym("s"), type.String.STRING,
+                        new type.Record(sym("first"), Int.INT,
+                            new type.Record(sym("n"), Int.INT, null)
                             )
-                        ), new type.String(), null, true));
+                        ), type.String.STRING, null, true));
         
         // function concat(s1: string, s2: string) : string
         vt.put(sym("concat"), new FuncEntry(
-                    new type.Record(sym("s1"), new type.String(),
-                        new type.Record(sym("s2"), new type.String(), null)
-                        ), new type.String(), null, true));
+                    new type.Record(sym("s1"), type.String.STRING,
+                        new type.Record(sym("s2"), type.String.STRING, null)
+                        ), type.String.STRING, null, true));
 
         // function not(i: int): int
         vt.put(sym("not"), new FuncEntry(
-                    new type.Record(sym("i"), new type.Int(), null),
-                    new type.Int(), null, true));
+                    new type.Record(sym("i"), Int.INT, null),
+                    Int.INT, null, true));
 
         // function exit(i: int)
         vt.put(sym("exit"), new FuncEntry(
-                    new type.Record(sym("i"), new type.Int(), null),
-                    new type.Void(), null, true));
+                    new type.Record(sym("i"), Int.INT, null),
+                    type.Void.VOID, null, true));
     }
 
     public Semant(Notifier notifier) {
@@ -100,9 +100,8 @@ public class Semant {
     }
 
     public IR translate(absyn.Expr expr) {
-        InlineOptimizer opt = new InlineOptimizer();
-        symbolName = new HashMap<Symbol, Symbol>();
-        expr = opt.optimize(expr, symbolName);
+        symbolName = new LinkedHashMap<Symbol, Symbol>();
+        new Renamer().rename(expr, symbolName);
 
         Frame globalFrame = new Frame(Label.newLabel("main"), null, true);
         ir = new IR(globalFrame);
@@ -139,41 +138,76 @@ public class Semant {
             return (SimpleAccess)access;
     }
 
+    private ExprVisitor<TranslateResult> exprTranslator = new ExprVisitor<TranslateResult>() {
+        public TranslateResult visit(ArrayExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(AssignmentExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(BreakExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(CallExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(ForExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(IfExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(IntExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(LetExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(LValueExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(NegationExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(NilExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(OpExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(RecordExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(SeqExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(StringExpr expr) {
+            return transExpr(expr);
+        }
+
+        public TranslateResult visit(WhileExpr expr) {
+            return transExpr(expr);
+        }
+    };
+
     private TranslateResult transExpr(absyn.Expr expr) {
-        if (expr instanceof ArrayExpr)
-            return transExpr((ArrayExpr) expr);
-        else if (expr instanceof AssignmentExpr)
-            return transExpr((AssignmentExpr) expr);
-        else if (expr instanceof BreakExpr)
-            return transExpr((BreakExpr) expr);
-        else if (expr instanceof CallExpr)
-            return transExpr((CallExpr) expr);
-        else if (expr instanceof ForExpr)
-            return transExpr((ForExpr) expr);
-        else if (expr instanceof IfExpr)
-            return transExpr((IfExpr) expr);
-        else if (expr instanceof IntExpr)
-            return transExpr((IntExpr) expr);
-        else if (expr instanceof LetExpr)
-            return transExpr((LetExpr) expr);
-        else if (expr instanceof LValueExpr)
-            return transExpr((LValueExpr) expr);
-        else if (expr instanceof NegationExpr)
-            return transExpr((NegationExpr) expr);
-        else if (expr instanceof NilExpr)
-            return transExpr((NilExpr) expr);
-        else if (expr instanceof OpExpr)
-            return transExpr((OpExpr) expr);
-        else if (expr instanceof RecordExpr)
-            return transExpr((RecordExpr) expr);
-        else if (expr instanceof SeqExpr)
-            return transExpr((SeqExpr) expr);
-        else if (expr instanceof StringExpr)
-            return transExpr((StringExpr) expr);
-        else if (expr instanceof WhileExpr)
-            return transExpr((WhileExpr) expr);
-        else
-            return new TranslateResult(new IntermediateCodeList(), new type.Int(), 0);
+        if (expr == null)
+            return new TranslateResult(new IntermediateCodeList(), Int.INT);
+        return expr.accept(exprTranslator);
     }
 
     private TranslateResult transExpr(ArrayExpr expr) {
@@ -183,17 +217,17 @@ public class Semant {
 
             notifier.error("Undefined type: " + origName(expr.type.toString())
                     + "; int array assumed.", expr.pos);
-            return new TranslateResult(new IntermediateCodeList(), new type.Array(new type.Int()), 0);
+            return new TranslateResult(new IntermediateCodeList(), new type.Array(Int.INT));
 
         } else if (!(ta instanceof type.Array)) {
 
             notifier.error(origName(t.toString()) + " is not an array type; int array assumed.");
-            return new TranslateResult(new IntermediateCodeList(), new type.Array(new type.Int()), 0);
+            return new TranslateResult(new IntermediateCodeList(), new type.Array(Int.INT));
 
         } else {
 
             TranslateResult size = transExpr(expr.size);
-            checkType(new type.Int(), size.type, expr.size.pos);
+            checkType(Int.INT, size.type, expr.size.pos);
             TranslateResult init = transExpr(expr.init);
             checkType(((type.Array)ta).base, init.type, expr.init.pos);
 
@@ -237,7 +271,7 @@ public class Semant {
                 codes.add(l2);
             }
 
-            return new TranslateResult(codes, t, tres, null, size.loopCount + init.loopCount);
+            return new TranslateResult(codes, t, tres, null);
         }
     }
 
@@ -252,7 +286,7 @@ public class Semant {
             codes.addAll(r.codes);
             codes.add(new MoveTAC(currentFrame.peek(), r.place, (AssignableAccess) l.place));
         }
-        return new TranslateResult(codes, new type.Void(), r.loopCount);
+        return new TranslateResult(codes, type.Void.VOID);
     }
 
     private TranslateResult transExpr(BreakExpr expr) {
@@ -260,7 +294,7 @@ public class Semant {
             notifier.error("Invalid break", expr.pos);
         IntermediateCodeList codes = new IntermediateCodeList();
         codes.add(new GotoTAC(currentFrame.peek(), breakStack.peek()));
-        return new TranslateResult(codes, new type.Void(), 0);
+        return new TranslateResult(codes, type.Void.VOID);
     }
 
     private TranslateResult transExpr(CallExpr expr) {
@@ -268,12 +302,12 @@ public class Semant {
         if (e == null) {
             notifier.error("Undefined function " + origName(expr.func.toString())
                     + "; assumed return VOID", expr.pos);
-            return new TranslateResult(null, new type.Void(), 0);
+            return new TranslateResult(null, type.Void.VOID);
         }
         if (e instanceof VarEntry) {
             notifier.error(origName(expr.func.toString()) +
                     " is not a function; assumed return VOID", expr.pos);
-            return new TranslateResult(null, new type.Void(), 0);
+            return new TranslateResult(null, type.Void.VOID);
         }
 
         FuncEntry func = (FuncEntry)e;
@@ -288,12 +322,10 @@ public class Semant {
         IntermediateCodeList codes = new IntermediateCodeList(),
                              codesParam = new IntermediateCodeList();
         ArrayList<Access> actuals = new ArrayList<Access>();
-        int loopCount = 0;
         ThreeAddressCode call = func.isExtern ? null : new CallTAC(currentFrame.peek(), func.frame.place, ret);
         while (p != null && !p.isEmpty() && q != null) {
             TranslateResult tq = transExpr(q.expr);
             checkType(p.type, tq.type, q.expr.pos);
-            loopCount += tq.loopCount;
 
             actuals.add(tq.place);
             if (!notifier.hasError())
@@ -338,73 +370,49 @@ public class Semant {
         if ((p != null && !p.isEmpty()) || q != null)
             notifier.error("Function param number mismatch", expr.pos);
 
-        return new TranslateResult(codes, func.result, ret, null, loopCount);
+        return new TranslateResult(codes, func.result, ret, null);
     }
 
     private TranslateResult transExpr(ForExpr expr) {
         TranslateResult br = transExpr(expr.begin),
                         er = transExpr(expr.end);
-        checkType(new type.Int(), br.type, expr.begin.pos);
-        checkType(new type.Int(), er.type, expr.end.pos);
+        checkType(Int.INT, br.type, expr.begin.pos);
+        checkType(Int.INT, er.type, expr.end.pos);
 
 
         Temp inductionVar = currentFrame.peek().addLocal();
         Label endLoop = Label.newLabel();
 
         vt.beginScope();
-        vt.put(expr.var, new VarEntry(new type.Int(), false, inductionVar));
+        vt.put(expr.var, new VarEntry(Int.INT, false, inductionVar));
         breakStack.push(endLoop);
         TranslateResult result = transExpr(expr.body);
         breakStack.pop();
-        checkType(new type.Void(), result.type, expr.body.pos);
+        checkType(type.Void.VOID, result.type, expr.body.pos);
         vt.endScope();
 
-        boolean unroll = false;
-        int loopCount = result.loopCount;
-        if (br.c != null && er.c != null) {
-            int l = er.c.intValue() - br.c.intValue() + 1;
-            if (l >= 0 && l <= 15 && loopCount == 0) {
-                unroll = true;
-                if (loopCount == 0)
-                    loopCount = l;
-                else
-                    loopCount *= l;
-            }
-        }
-
         IntermediateCodeList codes = new IntermediateCodeList();
         if (!notifier.hasError()) {
-            if (unroll) {
-
-                for (int i = br.c.intValue(); i <= er.c.intValue(); ++i) {
-                    codes.add(new MoveTAC(currentFrame.peek(), new ConstAccess(i), inductionVar));
-                    codes.addAll(result.codes.duplicate());
-                }
-                codes.add(endLoop);
-
-            } else {
-                codes.addAll(br.codes);
-                codes.addAll(er.codes);
-                codes.add(new MoveTAC(currentFrame.peek(), br.place, inductionVar));
-                codes.add(new BranchTAC(currentFrame.peek(), BranchTAC.BranchType.GT, inductionVar, er.place, endLoop));
-                Temp temp = currentFrame.peek().addLocal();
-                codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.ADD, er.place, new ConstAccess(1), temp));
-                Label beginLoop = Label.newLabel();
-                codes.add(beginLoop);
-                codes.addAll(result.codes);
-                codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.ADD, inductionVar, new ConstAccess(1), inductionVar));
-                codes.add(new BranchTAC(currentFrame.peek(), BranchTAC.BranchType.NEQ, inductionVar, temp, beginLoop));
-                codes.add(endLoop);
-
-            }
+            codes.addAll(br.codes);
+            codes.addAll(er.codes);
+            codes.add(new MoveTAC(currentFrame.peek(), br.place, inductionVar));
+            codes.add(new BranchTAC(currentFrame.peek(), BranchTAC.BranchType.GT, inductionVar, er.place, endLoop));
+            Temp temp = currentFrame.peek().addLocal();
+            codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.ADD, er.place, new ConstAccess(1), temp));
+            Label beginLoop = Label.newLabel();
+            codes.add(beginLoop);
+            codes.addAll(result.codes);
+            codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.ADD, inductionVar, new ConstAccess(1), inductionVar));
+            codes.add(new BranchTAC(currentFrame.peek(), BranchTAC.BranchType.NEQ, inductionVar, temp, beginLoop));
+            codes.add(endLoop);
         }
 
-        return new TranslateResult(codes, new type.Void(), loopCount);
+        return new TranslateResult(codes, type.Void.VOID);
     }
 
     private TranslateResult transExpr(IfExpr expr) {
         TranslateResult cr = transExpr(expr.condition);
-        checkType(new type.Int(), cr.type, expr.condition.pos);
+        checkType(Int.INT, cr.type, expr.condition.pos);
         if (expr.elseClause != null) {
             TranslateResult thenr = transExpr(expr.thenClause);
             TranslateResult elser = transExpr(expr.elseClause);
@@ -432,11 +440,11 @@ public class Semant {
                 codes.add(endIf);
             }
 
-            return new TranslateResult(codes, thenr.type, place, null, cr.loopCount + thenr.loopCount + elser.loopCount);
+            return new TranslateResult(codes, thenr.type, place, null);
 
         } else {
             TranslateResult thenr = transExpr(expr.thenClause);
-            checkType(new type.Void(), thenr.type, expr.thenClause.pos);
+            checkType(type.Void.VOID, thenr.type, expr.thenClause.pos);
 
             IntermediateCodeList codes = new IntermediateCodeList();
             Label endIf = Label.newLabel();
@@ -447,13 +455,13 @@ public class Semant {
                 codes.add(endIf);
             }
 
-            return new TranslateResult(codes, new type.Void(), cr.loopCount + thenr.loopCount);
+            return new TranslateResult(codes, type.Void.VOID);
         }
     }
 
     private TranslateResult transExpr(IntExpr expr) {
-        return new TranslateResult(new IntermediateCodeList(), new type.Int(),
-                new ConstAccess(expr.value), new Integer(expr.value), 0);
+        return new TranslateResult(new IntermediateCodeList(), Int.INT,
+                new ConstAccess(expr.value), new Integer(expr.value));
     }
 
     private TranslateResult transExpr(LetExpr expr) {
@@ -470,7 +478,7 @@ public class Semant {
             codes.addAll(rd.codes);
             codes.addAll(re.codes);
         }
-        return new TranslateResult(codes, re.type, re.place, re.c, rd.loopCount + re.loopCount);
+        return new TranslateResult(codes, re.type, re.place, re.c);
     }
 
     private TranslateResult transExpr(LValueExpr expr) {
@@ -479,7 +487,7 @@ public class Semant {
 
     private TranslateResult transExpr(NegationExpr expr) {
         TranslateResult te = transExpr(expr.value);
-        checkType(new type.Int(), te.type, expr.value.pos);
+        checkType(Int.INT, te.type, expr.value.pos);
 
         IntermediateCodeList codes = new IntermediateCodeList();
         Temp place = currentFrame.peek().addLocal();
@@ -488,13 +496,13 @@ public class Semant {
             codes.add(new UniOpTAC(currentFrame.peek(), UniOpTAC.UniOp.NEG, te.place, place));
         }
 
-        return new TranslateResult(codes, new type.Int(), place,
-                te.c == null ? null : new Integer(-te.c.intValue()), te.loopCount);
+        return new TranslateResult(codes, Int.INT, place,
+                te.c == null ? null : new Integer(-te.c.intValue()));
     }
 
     private TranslateResult transExpr(NilExpr expr) {
-        return new TranslateResult(new IntermediateCodeList(), new type.Nil(),
-                new ConstAccess(0), null, 0);
+        return new TranslateResult(new IntermediateCodeList(), type.Nil.NIL,
+                new ConstAccess(0), null);
     }
 
     private TranslateResult transExpr(OpExpr expr) {
@@ -573,8 +581,8 @@ public class Semant {
         Temp place = currentFrame.peek().addLocal();
 
         if (la instanceof type.Int || ra instanceof type.Int) {
-            checkType(new type.Int(), la, expr.left.pos);
-            checkType(new type.Int(), ra, expr.right.pos);
+            checkType(Int.INT, la, expr.left.pos);
+            checkType(Int.INT, ra, expr.right.pos);
 
             if (!notifier.hasError()) {
                 if (expr.op == OpExpr.Op.AND) {
@@ -614,8 +622,8 @@ public class Semant {
             if (expr.op == OpExpr.Op.EQ || expr.op == OpExpr.Op.NEQ
                     || expr.op == OpExpr.Op.LT || expr.op == OpExpr.Op.LEQ
                     || expr.op == OpExpr.Op.GT || expr.op == OpExpr.Op.GEQ) {
-                checkType(new type.String(), la, expr.left.pos);
-                checkType(new type.String(), ra, expr.right.pos);
+                checkType(type.String.STRING, la, expr.left.pos);
+                checkType(type.String.STRING, ra, expr.right.pos);
 
                 if (!notifier.hasError()) {
                     codes.addAll(lr.codes);
@@ -669,17 +677,17 @@ public class Semant {
         } else
             notifier.error("Invalid comparation between " + origName(ltype.toString())
                     + " and " + origName(rtype.toString()), expr.pos);
-        return new TranslateResult(codes, new type.Int(), place, c, lr.loopCount + rr.loopCount);
+        return new TranslateResult(codes, Int.INT, place, c);
     }
 
     private TranslateResult transExpr(RecordExpr expr) {
         type.Type type = tt.get(expr.type);
         if (type == null) {
             notifier.error(origName(expr.type.toString()) + " undefined; empty RECORD assumed", expr.pos);
-            return new TranslateResult(new IntermediateCodeList(), new type.Record(null, null, null), 0);
+            return new TranslateResult(new IntermediateCodeList(), new type.Record(null, null, null));
         } else if (!(type.actual() instanceof type.Record)) {
             notifier.error(origName(type.toString()) + " is not a record; empty RECORD assumed", expr.pos);
-            return new TranslateResult(new IntermediateCodeList(), new type.Record(null, null, null), 0);
+            return new TranslateResult(new IntermediateCodeList(), new type.Record(null, null, null));
         } else {
             type.Record p = (type.Record) type.actual();
             FieldList q = expr.fields;
@@ -694,14 +702,12 @@ public class Semant {
             }
 
             int offset = 0;
-            int loopCount = 0;
             while ((p != null && !p.isEmpty()) && q != null) {
                 if (p.field != q.name)
                     notifier.error("Field name mismatch: " + p.field.toString() + " expected but"
                            + q.name.toString() + " found", q.pos);
                 TranslateResult qr = transExpr(q.value);
                 checkType(p.type, qr.type, q.value.pos);
-                loopCount += qr.loopCount;
 
                 if (!notifier.hasError()) {
                     codes.addAll(qr.codes);
@@ -716,7 +722,7 @@ public class Semant {
             if ((p != null && !p.isEmpty()) || q != null)
                 notifier.error("Field number mismatch", expr.fields.pos);
 
-            return new TranslateResult(codes, type, place, null, loopCount);
+            return new TranslateResult(codes, type, place, null);
         }
     }
 
@@ -726,7 +732,7 @@ public class Semant {
 
     private TranslateResult transExpr(StringExpr expr) {
         return new TranslateResult(new IntermediateCodeList(),
-                new type.String(), ir.stringTable.get(expr.value), null, 0);
+                type.String.STRING, ir.stringTable.get(expr.value), null);
     }
 
     private TranslateResult transExpr(WhileExpr expr) {
@@ -737,8 +743,8 @@ public class Semant {
         breakStack.push(endWhile);
         TranslateResult br = transExpr(expr.body);
         breakStack.pop();
-        checkType(new type.Int(), cr.type, expr.condition.pos);
-        checkType(new type.Void(), br.type, expr.body.pos);
+        checkType(Int.INT, cr.type, expr.condition.pos);
+        checkType(type.Void.VOID, br.type, expr.body.pos);
 
         IntermediateCodeList codes = new IntermediateCodeList();
         if (!notifier.hasError()) {
@@ -751,32 +757,30 @@ public class Semant {
             codes.add(endWhile);
         }
 
-        return new TranslateResult(codes, new type.Void(), cr.loopCount + br.loopCount);
+        return new TranslateResult(codes, type.Void.VOID);
     }
 
     private TranslateResult transExprList(ExprList expr) {
-        type.Type retType = new type.Void();
+        type.Type retType = type.Void.VOID;
         IntermediateCodeList codes = new IntermediateCodeList();
         Access place = null;
         Integer c = null;
-        int loopCount = 0;
         while (expr != null) {
             TranslateResult r = transExpr(expr.expr);
             retType = r.type;
             c = r.c;
-            loopCount += r.loopCount;
             if (!notifier.hasError()) {
                 codes.addAll(r.codes);
                 place = r.place;
             }
             expr = expr.next;
         }
-        return new TranslateResult(codes, retType, place, c, loopCount);
+        return new TranslateResult(codes, retType, place, c);
     }
 
     private TranslateResult transDeclList(DeclList expr) {
         if (expr == null)
-            return new TranslateResult(new IntermediateCodeList(), null, 0);
+            return new TranslateResult(new IntermediateCodeList(), null);
 
         IntermediateCodeList codes = new IntermediateCodeList();
         if (expr.decl instanceof VarDecl) {
@@ -807,7 +811,7 @@ public class Semant {
                 if (a instanceof type.Nil || a instanceof type.Void) {
                     notifier.error("Invalid initialize type: " + origName(type.toString())
                             + "; INT assumed");
-                    type = new type.Int();
+                    type = Int.INT;
                 }
                 vt.put(vd.id, new VarEntry(type, t, ir.c));
 
@@ -818,12 +822,12 @@ public class Semant {
             }
 
             codes.addAll(transDeclList(expr.next).codes);
-            return new TranslateResult(codes, null, 0);
+            return new TranslateResult(codes, null);
 
         } else if (expr.decl instanceof TypeDecl) {
 
             DeclList p = expr;
-            HashSet<Symbol> set = new HashSet<Symbol>();
+            HashSet<Symbol> set = new LinkedHashSet<Symbol>();
             for (p = expr; p != null && p.decl instanceof TypeDecl; p = p.next) {
                 TypeDecl td = (TypeDecl) p.decl;
 
@@ -842,26 +846,29 @@ public class Semant {
                 if (((type.Name) tt.get(td.name)).isLoop()) {
                     notifier.error("Type declaration loop found on " + origName(td.name.toString())
                             + "; INT assumed", td.pos);
-                    ((type.Name) tt.get(td.name)).bind(new type.Int());
+                    ((type.Name) tt.get(td.name)).bind(Int.INT);
                 }
             }
+            // the group is complete, so every name now has its final type
+            for (p = expr; p != null && p.decl instanceof TypeDecl; p = p.next)
+                ((type.Name) tt.get(((TypeDecl) p.decl).name)).resolve();
 
             return transDeclList(p);
 
         } else /*if (expr.decl instanceof FuncDecl)*/ {
 
             DeclList p = expr;
-            HashSet<Symbol> set = new HashSet<Symbol>();
+            HashSet<Symbol> set = new LinkedHashSet<Symbol>();
             for (p = expr; p != null && p.decl instanceof FuncDecl; p = p.next) {
                 FuncDecl fd = (FuncDecl) p.decl;
 
                 if (set.add(fd.name)) {
-                    type.Type result = new type.Void();
+                    type.Type result = type.Void.VOID;
                     if (fd.type != null)
                         result = tt.get(fd.type);
                     if (result == null) {
                         notifier.error(origName(fd.type.toString()) + " undefined; assumed INT", fd.pos);
-                        result = new type.Int();
+                        result = Int.INT;
                     }
 
                     if (ir.displays.size() < currentFrame.size())
@@ -926,7 +933,7 @@ public class Semant {
             codes.addFirst(new GotoTAC(currentFrame.peek(), skip));
             codes.add(skip);
             codes.addAll(transDeclList(p).codes);
-            return new TranslateResult(codes, null, 0);
+            return new TranslateResult(codes, null);
 
         }
     }
@@ -943,7 +950,7 @@ public class Semant {
                 if (fieldType == null) {
                     notifier.error("Undefined type " + origName(fields.head.type.toString())
                             + "; INT assumed", fields.head.pos);
-                    fieldType = new type.Int();
+                    fieldType = Int.INT;
                 }
                 type.Record temp = new type.Record(fields.head.name, fieldType, null);
                 if (last != null) {
@@ -966,7 +973,7 @@ public class Semant {
             if (t == null) {
                 notifier.error("Undefined type " + origName(nt.name.toString())
                         + "; INT assumed", nt.pos);
-                t = new type.Int();
+                t = Int.INT;
             }
             return t;
         } else if (type instanceof ArrayType) {
@@ -975,7 +982,7 @@ public class Semant {
             if (t == null) {
                 notifier.error("Undefined type " + origName(at.base.toString())
                         + "; INT assumed", at.pos);
-                t = new type.Int();
+                t = Int.INT;
             }
             return new type.Array(t);
         } else /*if (type instanceof RecordType)*/ {
@@ -985,98 +992,117 @@ public class Semant {
        }
     }
 
-    private TranslateResult transLValue(LValue lvalue, boolean assignment) {
-        if (lvalue instanceof VarLValue) {
-
-            VarLValue vl = (VarLValue) lvalue;
-            Entry entry = vt.get(vl.name);
-            type.Type type = null;
-            Access place = null;
-            Integer c = null;
-            if (entry == null) {
-                notifier.error("Undefined variable " + origName(vl.name.toString())
-                        + "; type INT assumed", vl.pos);
-                type = new type.Int();
-            } else if (entry instanceof FuncEntry) {
-                notifier.error(origName(vl.name.toString()) + " is a function, not a variable; type INT assumed", vl.pos);
-                type = new type.Int();
-            } else {
-                type = ((VarEntry) entry).type;
-                place = ((VarEntry) entry).place;
-                if (assignment && !((VarEntry) entry).assignable)
-                    notifier.error(origName(vl.name.toString()) + " cannot be assigned here", vl.pos);
-                if (assignment)
-                    ((VarEntry) entry).c = null;
-                else
-                    c = ((VarEntry) entry).c;
-            }
-            return new TranslateResult(new IntermediateCodeList(), type, place, c, 0);
+    private class LValueTranslator implements LValueVisitor<TranslateResult> {
+        boolean assignment;
 
-        } else if (lvalue instanceof FieldLValue) {
+        LValueTranslator(boolean assignment) {
+            this.assignment = assignment;
+        }
 
-            FieldLValue fl = (FieldLValue) lvalue;
-            TranslateResult tr = transLValue(fl.lvalue, assignment);
-            type.Type type = tr.type, ta = type.actual(), ret = null;
+        public TranslateResult visit(VarLValue lvalue) {
+            return transLValue(lvalue, assignment);
+        }
 
-            Access place = null;
-            IntermediateCodeList codes = new IntermediateCodeList();
-            if (!notifier.hasError())
-                codes.addAll(tr.codes);
-
-            if (ta instanceof type.Record) {
-                type.Record temp = (type.Record) ta;
-                ret = temp.findField(fl.id);
-                if (ret == null) {
-                    notifier.error(origName(type.toString()) + " do not have field " + fl.id
-                            + "; type INT assumed", fl.pos);
-                    ret = new type.Int();
-                } else {
+        public TranslateResult visit(FieldLValue lvalue) {
+            return transLValue(lvalue, assignment);
+        }
 
-                    if (!notifier.hasError()) {
-                        int offset = temp.fieldIndex(fl.id);
-                        Temp to = currentFrame.peek().addLocal();
-                        codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.MUL, new ConstAccess(offset), ir.wordLength, to));
-                        SimpleAccess sa = convertToSimpleAccess(tr.place, codes);
-                        place = new MemAccess(sa, to);
-                    }
+        public TranslateResult visit(SubscriptLValue lvalue) {
+            return transLValue(lvalue, assignment);
+        }
+    }
 
-                }
-            } else {
-                notifier.error(origName(type.toString()) + " is not a RECORD; type INT assumed", fl.pos);
-                ret = new type.Int();
-            }
-            return new TranslateResult(codes, ret, place, null, tr.loopCount);
+    private LValueTranslator lvalueReader = new LValueTranslator(false),
+            lvalueWriter = new LValueTranslator(true);
 
-        } else /*if (lvalue instanceof SubscriptLValue)*/ {
-            
-            SubscriptLValue sl = (SubscriptLValue) lvalue;
-            TranslateResult tr = transLValue(sl.lvalue, assignment);
-            type.Type type = tr.type, ta = type.actual(), ret = null;
+    private TranslateResult transLValue(LValue lvalue, boolean assignment) {
+        return lvalue.accept(assignment ? lvalueWriter : lvalueReader);
+    }
 
-            Access place = null;
-            IntermediateCodeList codes = new IntermediateCodeList();
+    private TranslateResult transLValue(VarLValue vl, boolean assignment) {
+        Entry entry = vt.get(vl.name);
+        type.Type type = null;
+        Access place = null;
+        Integer c = null;
+        if (entry == null) {
+            notifier.error("Undefined variable " + origName(vl.name.toString())
+                    + "; type INT assumed", vl.pos);
+            type = Int.INT;
+        } else if (entry instanceof FuncEntry) {
+            notifier.error(origName(vl.name.toString()) + " is a function, not a variable; type INT assumed", vl.pos);
+            type = Int.INT;
+        } else {
+            type = ((VarEntry) entry).type;
+            place = ((VarEntry) entry).place;
+            if (assignment && !((VarEntry) entry).assignable)
+                notifier.error(origName(vl.name.toString()) + " cannot be assigned here", vl.pos);
+            if (assignment)
+                ((VarEntry) entry).c = null;
+            else
+                c = ((VarEntry) entry).c;
+        }
+        return new TranslateResult(new IntermediateCodeList(), type, place, c);
+    }
+
+    private TranslateResult transLValue(FieldLValue fl, boolean assignment) {
+        TranslateResult tr = transLValue(fl.lvalue, assignment);
+        type.Type type = tr.type, ta = type.actual(), ret = null;
 
-            if (!(ta instanceof type.Array)) {
-                notifier.error(origName(type.toString()) + " is not an ARRAY", sl.pos);
-                ret = new type.Int();
+        Access place = null;
+        IntermediateCodeList codes = new IntermediateCodeList();
+        if (!notifier.hasError())
+            codes.addAll(tr.codes);
+
+        if (ta instanceof type.Record) {
+            type.Record temp = (type.Record) ta;
+            ret = temp.findField(fl.id);
+            if (ret == null) {
+                notifier.error(origName(type.toString()) + " do not have field " + fl.id
+                        + "; type INT assumed", fl.pos);
+                ret = Int.INT;
             } else {
-                ret = ((type.Array) ta).base;
-            }
-            TranslateResult tr2 = transExpr(sl.expr);
-            checkType(new type.Int(), tr2.type, sl.expr.pos);
 
-            if (!notifier.hasError()) {
-                codes.addAll(tr.codes);
-                codes.addAll(tr2.codes);
-                SimpleAccess sa = convertToSimpleAccess(tr.place, codes);
-                Temp to = currentFrame.peek().addLocal();
-                codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.MUL, tr2.place, ir.wordLength, to));
-                place = new MemAccess(sa, to);
+                if (!notifier.hasError()) {
+                    int offset = temp.fieldIndex(fl.id);
+                    Temp to = currentFrame.peek().addLocal();
+                    codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.MUL, new ConstAccess(offset), ir.wordLength, to));
+                    SimpleAccess sa = convertToSimpleAccess(tr.place, codes);
+                    place = new MemAccess(sa, to);
+                }
+
             }
+        } else {
+            notifier.error(origName(type.toString()) + " is not a RECORD; type INT assumed", fl.pos);
+            ret = Int.INT;
+        }
+        return new TranslateResult(codes, ret, place, null);
+    }
+
+    private TranslateResult transLValue(SubscriptLValue sl, boolean assignment) {
+        TranslateResult tr = transLValue(sl.lvalue, assignment);
+        type.Type type = tr.type, ta = type.actual(), ret = null;
 
-            return new TranslateResult(codes, ret, place, null, tr.loopCount + tr2.loopCount);
+        Access place = null;
+        IntermediateCodeList codes = new IntermediateCodeList();
 
-        } 
+        if (!(ta instanceof type.Array)) {
+            notifier.error(origName(type.toString()) + " is not an ARRAY", sl.pos);
+            ret = Int.INT;
+        } else {
+            ret = ((type.Array) ta).base;
+        }
+        TranslateResult tr2 = transExpr(sl.expr);
+        checkType(Int.INT, tr2.type, sl.expr.pos);
+
+        if (!notifier.hasError()) {
+            codes.addAll(tr.codes);
+            codes.addAll(tr2.codes);
+            SimpleAccess sa = convertToSimpleAccess(tr.place, codes);
+            Temp to = currentFrame.peek().addLocal();
+            codes.add(new BinOpTAC(currentFrame.peek(), BinOpTAC.BinOp.MUL, tr2.place, ir.wordLength, to));
+            place = new MemAccess(sa, to);
+        }
+
+        return new TranslateResult(codes, ret, place, null);
     }
 }
-
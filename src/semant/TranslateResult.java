@@ -8,18 +8,16 @@ class TranslateResult {
     Access place;
     
     Integer c;
-    int loopCount = 0;
 
-    public TranslateResult(IntermediateCodeList ic, type.Type type, Access place, Integer c, int loopCount) {
+    public TranslateResult(IntermediateCodeList ic, type.Type type, Access place, Integer c) {
         this.codes = ic;
         this.type = type;
         this.place = place;
         this.c = c;
-        this.loopCount = loopCount;
     }
 
-    public TranslateResult(IntermediateCodeList ic, type.Type type, int loopCount) {
-        this(ic, type, null, null, loopCount);
+    public TranslateResult(IntermediateCodeList ic, type.Type type) {
+        this(ic, type, null, null);
     }
 }
 
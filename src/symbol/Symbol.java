@@ -1,28 +1,80 @@
 package symbol;
 
-import java.util.*;
+import java.nio.CharBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Symbol {
     private String name;
-    private static HashMap<String, Symbol> map = new HashMap<String, Symbol>();
+    private int id;
+
+    // Keys compare by content, so a lookup can wrap the scanner's buffer
+    // without copying it into a String first.
+    private static final class Key {
+        final CharSequence chars;
+        final int hash;
+
+        Key(CharSequence chars) {
+            this.chars = chars;
+            int h = 0;
+            for (int i = 0; i < chars.length(); ++i)
+                h = 31 * h + chars.charAt(i);
+            this.hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            if (k.hash != hash || k.chars.length() != chars.length())
+                return false;
+            for (int i = 0; i < chars.length(); ++i)
+                if (k.chars.charAt(i) != chars.charAt(i))
+                    return false;
+            return true;
+        }
+    }
+
+    private static final ConcurrentHashMap<Key, Symbol> map = new ConcurrentHashMap<Key, Symbol>();
+    private static final AtomicInteger count = new AtomicInteger(0);
 
     private Symbol(String name) {
         this.name = name;
+        this.id = count.getAndIncrement();
     }
 
     public String toString() {
         return name;
     }
 
+    // dense and stable for the lifetime of the process; usable as an array index
+    public int id() {
+        return id;
+    }
+
+    public static int count() {
+        return count.get();
+    }
 
     public static Symbol symbol(String name) {
-        String u = name.intern();
-        Symbol s = map.get(u);
-        if (s == null) {
-            s = new Symbol(u);
-            map.put(u, s);
-        }
-        return s;
+        return intern(new Key(name));
     }
-}
 
+    public static Symbol symbol(char[] buffer, int offset, int length) {
+        return intern(new Key(CharBuffer.wrap(buffer, offset, length)));
+    }
+
+    private static Symbol intern(Key key) {
+        Symbol s = map.get(key);
+        if (s != null)
+            return s;
+
+        // only the winning thread creates the symbol, which keeps ids dense
+        final String name = key.chars.toString();
+        return map.computeIfAbsent(new Key(name), k -> new Symbol(name));
+    }
+}
@@ -2,77 +2,62 @@ package symbol;
 
 import java.util.*;
 
-class SingleTable<T> {
-    private SingleTable<T> parent;
-    private HashMap<Symbol, T> table = new HashMap<Symbol, T>();
-    private boolean mark;
-
-    public SingleTable(SingleTable<T> parent, boolean mark) {
-        this.parent = parent;
-        this.mark = mark;
-    }
-
-    public void put(Symbol symbol, T value) {
-        table.put(symbol, value);
-    }
-
-    public T get(Symbol symbol) {
-        T v = table.get(symbol);
-        if (v != null)
-            return v;
-        else if (parent != null)
-            return parent.get(symbol);
-        else
-            return null;
-    }
-
-    public boolean isForeign(Symbol symbol, int state) {
-        if (table.get(symbol) != null)
-            return state == 1;
-        if (parent == null)
-            return false;
-        if (state == 0 && mark == true)
-            state = 1;
-        return parent.isForeign(symbol, state);
-    }
-
-    public HashSet<Symbol> getLocals() {
-        HashSet<Symbol> locals = new HashSet<Symbol>();
-        for (Symbol s: table.keySet())
-            locals.add(s);
-        if (mark || parent == null)
-            return locals;
-        else {
-            locals.addAll(parent.getLocals());
-            return locals;
-        }
-    }
-
-    public SingleTable<T> getParent() {
-        return parent;
+class Binding<T> {
+    T value;
+    int depth;
+    Binding<T> next;
+
+    public Binding(T value, int depth, Binding<T> next) {
+        this.value = value;
+        this.depth = depth;
+        this.next = next;
     }
 }
 
+// One hash table from symbols to binding stacks. Every put is recorded in
+// an undo log; endScope pops the bindings added since the matching
+// beginScope, so get, put and endScope do not depend on the nesting depth.
 public class Table<T> {
-    SingleTable<T> head = new SingleTable<T>(null, false);
-    
+    private HashMap<Symbol, Binding<T>> table = new HashMap<Symbol, Binding<T>>();
+    private ArrayList<Symbol> log = new ArrayList<Symbol>();
+
+    // log position where each open scope begins
+    private int[] scopeStart = new int[16];
+    // depths of the marked scopes that are still open, innermost last
+    private int[] marks = new int[16];
+    private int depth = 0, markCount = 0;
+
     public Table() {
     }
 
     public void put(Symbol symbol, T value) {
-        head.put(symbol, value);
+        table.put(symbol, new Binding<T>(value, depth, table.get(symbol)));
+        log.add(symbol);
     }
 
     public T get(Symbol symbol) {
-        return head.get(symbol);
+        Binding<T> b = table.get(symbol);
+        if (b == null)
+            return null;
+        else
+            return b.value;
     }
 
+    // true if the visible binding of symbol lies outside the innermost
+    // marked scope
     public boolean isForeign(Symbol symbol) {
-        return head.isForeign(symbol, 0);
+        Binding<T> b = table.get(symbol);
+        if (b == null || markCount == 0)
+            return false;
+        return b.depth < marks[markCount - 1];
     }
 
+    // symbols bound in the scopes up to and including the innermost marked one
     public HashSet<Symbol> getLocals() {
-        return head.getLocals();
+        int from = 0;
+        if (markCount > 0)
+            from = scopeStart[marks[markCount - 1] - 1];
+        return new HashSet<Symbol>(log.subList(from, log.size()));
     }
 
     public void beginScope() {
@@ -80,13 +65,31 @@ public class Table<T> {
     }
 
     public void beginScope(boolean mark) {
-        SingleTable<T> t = new SingleTable<T>(head, mark);
-        head = t;
+        if (depth == scopeStart.length)
+            scopeStart = Arrays.copyOf(scopeStart, depth * 2);
+        scopeStart[depth++] = log.size();
+        if (mark) {
+            if (markCount == marks.length)
+                marks = Arrays.copyOf(marks, markCount * 2);
+            marks[markCount++] = depth;
+        }
     }
 
     public void endScope() {
-        if (head.getParent() != null)
-            head = head.getParent();
+        if (depth == 0)
+            return;
+
+        int start = scopeStart[depth - 1];
+        for (int i = log.size() - 1; i >= start; --i) {
+            Symbol s = log.remove(i);
+            Binding<T> b = table.get(s);
+            if (b.next == null)
+                table.remove(s);
+            else
+                table.put(s, b.next);
+        }
+        if (markCount > 0 && marks[markCount - 1] == depth)
+            --markCount;
+        --depth;
     }
 }
-
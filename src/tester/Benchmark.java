@@ -0,0 +1,170 @@
+package tester;
+
+import absyn.*;
+import parser.*;
+import scanner.Scanner;
+import scanner.SourceFile;
+import notifier.*;
+import semant.Semant;
+import optimization.PassManager;
+import intermediate.*;
+import mips32.*;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.*;
+
+// Compiles every .tig file of a directory and compares the code quality
+// with DIR/baseline.txt. All metrics are lower-is-better; one that grows by
+// more than the threshold (2% by default) fails the run, and so does a
+// program whose output differs from the one checked in as DIR/NAME.out.
+//
+//   java tester.Benchmark [--update] [--threshold=PCT] [-Ox | --passes=...] DIR
+//
+// --update writes the current numbers as the new baseline.
+public class Benchmark {
+    static final String[] metrics = {
+        "instructions", "moves", "spills", "spill-rounds", "frame-size", "max-frame", "executed"
+    };
+
+    static final long LIMIT = 200000000L;
+
+    public static void main(String[] args) throws Exception {
+        boolean update = false;
+        double threshold = 2;
+        PassManager passes = PassManager.defaults();
+        String dir = null;
+        for (String arg: args) {
+            if (arg.equals("--update"))
+                update = true;
+            else if (arg.startsWith("--threshold="))
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            else if (arg.startsWith("-O"))
+                passes = PassManager.level(arg.substring(2));
+            else if (arg.startsWith("--passes="))
+                passes = new PassManager(arg.substring("--passes=".length()));
+            else
+                dir = arg;
+        }
+        if (dir == null) {
+            System.out.println("Missing directory");
+            System.exit(1);
+        }
+
+        File[] files = new File(dir).listFiles(new FilenameFilter() {
+            public boolean accept(File d, String name) {
+                return name.endsWith(".tig");
+            }
+        });
+        if (files == null) {
+            System.out.println(dir + " is not a directory");
+            System.exit(1);
+        }
+        Arrays.sort(files);
+
+        boolean failed = false;
+        LinkedHashMap<String, Long> current = new LinkedHashMap<String, Long>();
+        for (File f: files) {
+            String name = f.getName().substring(0, f.getName().length() - 4);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            long[] values = measure(f.getPath(), new PassManager(passes.toString()), output);
+            if (values == null) {
+                System.out.println(name + ": compile failed");
+                failed = true;
+                continue;
+            }
+            File expected = new File(dir, name + ".out");
+            if (!expected.exists()) {
+                System.out.println(name + ": missing " + expected.getPath());
+                failed = true;
+            } else if (!Arrays.equals(output.toByteArray(), readAll(expected))) {
+                System.out.println(name + ": output differs from " + expected.getPath());
+                failed = true;
+            }
+            for (int i = 0; i < metrics.length; ++i)
+                current.put(name + " " + metrics[i], values[i]);
+        }
+
+        File baselineFile = new File(dir, "baseline.txt");
+        if (update) {
+            PrintWriter out = new PrintWriter(new FileWriter(baselineFile));
+            out.println("# program metric value, written by tester.Benchmark --update");
+            for (Map.Entry<String, Long> e: current.entrySet())
+                out.println(e.getKey() + " " + e.getValue());
+            out.close();
+            System.out.println("wrote " + baselineFile.getPath());
+            System.exit(failed ? 1 : 0);
+        }
+
+        Map<String, Long> baseline = readBaseline(baselineFile);
+        System.out.println(String.format("%-28s %12s %12s %8s", "metric", "baseline", "now", "change"));
+        for (Map.Entry<String, Long> e: current.entrySet()) {
+            Long base = baseline.get(e.getKey());
+            long now = e.getValue();
+            String change = "new", mark = "";
+            if (base != null) {
+                change = base == 0 ? (now == 0 ? "0.0%" : "+inf") : String.format("%+.1f%%", 100.0 * (now - base) / base);
+                if (now > base + base * threshold / 100) {
+                    mark = "  REGRESSION";
+                    failed = true;
+                }
+            }
+            System.out.println(String.format("%-28s %12s %12d %8s%s", e.getKey(),
+                base == null ? "-" : base.toString(), now, change, mark));
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    static Map<String, Long> readBaseline(File file) throws IOException {
+        LinkedHashMap<String, Long> baseline = new LinkedHashMap<String, Long>();
+        if (!file.exists())
+            return baseline;
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#"))
+                continue;
+            int i = line.lastIndexOf(' ');
+            baseline.put(line.substring(0, i), Long.valueOf(line.substring(i + 1)));
+        }
+        in.close();
+        return baseline;
+    }
+
+    static byte[] readAll(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0)
+            bytes.write(buffer, 0, n);
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    // the metrics of one program in the order of metrics[], or null; what
+    // the program prints goes to output
+    static long[] measure(String source, PassManager passes, OutputStream output) throws Exception {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        Notifier notifier = new Notifier(new PrintStream(messages));
+        Parser parser = new Parser(new Scanner(SourceFile.load(source)), notifier);
+        Object absyn = parser.parse().value;
+        if (notifier.hasError())
+            return null;
+        IR ir = new Semant(notifier).translate((Expr) absyn);
+        if (notifier.hasError())
+            return null;
+        CodeGen cg = new CodeGen(notifier, ir, new Optimizer(passes));
+        if (notifier.hasError() || !cg.generate(Channels.newChannel(new ByteArrayOutputStream())))
+            return null;
+
+        Simulator sim = cg.simulator();
+        sim.setLimit(LIMIT);
+        sim.run(new ByteArrayInputStream(new byte[0]), output);
+
+        CodeGen.Stats s = cg.stats();
+        return new long[] {
+            s.instructions, s.moves, s.spills, s.spillRounds, s.frameSize, s.maxFrameSize, sim.instructions()
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package tester;
+
+import cache.*;
+import java.nio.file.*;
+
+public class CompileCacheTester {
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("tigc-cache");
+        Path src = dir.resolve("a.tig"), out = dir.resolve("a.s");
+        CompileCache cache = new CompileCache(dir.resolve("cache"), 100);
+
+        // a SHA-256 of the classes this runs from
+        String version = CompileCache.compilerVersion();
+        System.out.println(version.length() + " " + version.equals(CompileCache.compilerVersion()));
+
+        Files.write(src, "printi(1)".getBytes("UTF-8"));
+        String k1 = cache.key(src, "");
+        System.out.println(k1.equals(cache.key(src, "")));
+        System.out.println(k1.equals(cache.key(src, "-O1 ")));
+
+        System.out.println(cache.fetch(k1, out));
+        Files.write(out, new byte[60]);
+        cache.store(k1, out);
+        Files.delete(out);
+        System.out.println(cache.fetch(k1, out) + " " + Files.size(out));
+
+        // the second entry pushes the cache over its limit, evicting the first
+        Files.write(src, "printi(2)".getBytes("UTF-8"));
+        String k2 = cache.key(src, "");
+        Files.write(out, new byte[50]);
+        cache.store(k2, out);
+        System.out.println(cache.fetch(k1, out) + " " + cache.fetch(k2, out));
+
+        CompileCache.Stats stats = cache.stats();
+        System.out.println(stats.hits + " " + stats.misses + " " + stats.stores + " "
+            + stats.evictions + " " + stats.entries + " " + stats.size);
+    }
+}
@@ -0,0 +1,35 @@
+package tester;
+
+import flow.*;
+import java.util.*;
+
+public class DominatingSetTester {
+    public static void main(String[] args) {
+        // 0 -> 1 -> 2 -> 3, 1 -> 3, 3 -> 1 (loop), 4 -> 3 (4 is unreachable)
+        FlowGraph g = new FlowGraph();
+        BasicBlock[] b = new BasicBlock[5];
+        for (int i = 0; i < b.length; ++i) {
+            b[i] = new BasicBlock();
+            g.add(b[i], i == 0);
+        }
+        g.addEdge(b[0], b[1], true);
+        g.addEdge(b[1], b[2], true);
+        g.addEdge(b[2], b[3], true);
+        g.addEdge(b[1], b[3], false);
+        g.addEdge(b[3], b[1], false);
+        g.addEdge(b[4], b[3], false);
+
+        List<BasicBlock> order = Arrays.asList(b);
+        DominatingSet dom = new DominatingSet(g);
+        for (int i = 0; i < b.length; ++i) {
+            String s = i + ":";
+            for (BasicBlock x: dom.get(b[i]))
+                s += " " + order.indexOf(x);
+            System.out.println(s);
+        }
+        System.out.println(order.indexOf(dom.idom(b[3])) + " " + dom.dominates(b[2], b[3]));
+
+        for (LoopInfo.Loop loop: new LoopInfo(g, dom))
+            System.out.println(order.indexOf(loop.tail) + " -> " + order.indexOf(loop.head));
+    }
+}
@@ -6,6 +6,7 @@ import scanner.*;
 import notifier.*;
 import semant.Semant;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import intermediate.*;
 import mips32.*;
 
@@ -28,15 +29,15 @@ public class Final {
 
         Notifier notifier = new Notifier(System.out);
 
-        FileReader reader = null;
+        SourceFile sourceFile = null;
         try {
-            reader = new FileReader(source);
-        } catch (FileNotFoundException e) {
+            sourceFile = SourceFile.load(source);
+        } catch (IOException e) {
             notifier.error(e.getMessage());
             System.exit(1);
         }
 
-        Parser parser = new Parser(new Scanner(reader), notifier);
+        Parser parser = new Parser(new Scanner(sourceFile), notifier);
         try {
             Object absyn = parser.parse().value;
             if (!notifier.hasError()) {
@@ -47,9 +48,9 @@ public class Final {
                     CodeGen cg = new CodeGen(notifier, ir, opt);
 
                     if (!notifier.hasError()) {
-                        BufferedWriter writer = new BufferedWriter(new FileWriter(removeExtensionName(source) + ".s"));
-                        cg.generate(writer);
-                        writer.close();
+                        FileChannel channel = new FileOutputStream(removeExtensionName(source) + ".s").getChannel();
+                        cg.generate(channel);
+                        channel.close();
                     }
                 }
             }
@@ -18,10 +18,10 @@ public class Mid {
 
         Notifier notifier = new Notifier(System.out);
 
-        FileReader reader = null;
+        SourceFile sourceFile = null;
         try {
-            reader = new FileReader(source);
-        } catch (FileNotFoundException e) {
+            sourceFile = SourceFile.load(source);
+        } catch (IOException e) {
             notifier.error(e.getMessage());
             System.exit(1);
         }
@@ -35,7 +35,7 @@ public class Mid {
         }
 
         Printer printer = new Printer();
-        Parser parser = new Parser(new Scanner(reader), notifier);
+        Parser parser = new Parser(new Scanner(sourceFile), notifier);
         try {
             Object absyn = parser.parse().value;
             if (!notifier.hasError()) {
@@ -14,10 +14,10 @@ public class ParserTester {
             String source = "progs/test" + new Integer(i).toString() + ".tig";
             System.out.print("Testing " + source + ": ");
 
-            FileReader reader = null;
+            SourceFile sourceFile = null;
             try {
-                reader = new FileReader(source);
-            } catch (FileNotFoundException e) {
+                sourceFile = SourceFile.load(source);
+            } catch (IOException e) {
                 notifier.error(e.getMessage());
                 continue;
             }
@@ -31,7 +31,7 @@ public class ParserTester {
             }
 
             Printer printer = new Printer();
-            Parser parser = new Parser(new Scanner(reader), notifier);
+            Parser parser = new Parser(new Scanner(sourceFile), notifier);
             try {
                 Absyn absyn = (Absyn)parser.parse().value;
                 if (!notifier.hasError()) {
@@ -0,0 +1,99 @@
+package tester;
+
+import absyn.*;
+import parser.*;
+import scanner.Scanner;
+import scanner.SourceFile;
+import notifier.*;
+import semant.Semant;
+import optimization.ConstantPropagation;
+import optimization.GlobalValueNumbering;
+import optimization.InductionVariables;
+import optimization.Inliner;
+import optimization.IRFunction;
+import optimization.LazyCodeMotion;
+import optimization.LoopUnroller;
+import optimization.TailRecursion;
+import optimization.PassManager;
+import optimization.SSA;
+import intermediate.IR;
+import java.io.*;
+import java.util.*;
+
+// Prints every function of a program as blocks, in SSA form, after the IR
+// passes given as --passes=sccp,gvn,... and out of SSA form; passes that
+// do not run in SSA form, like lcm, get the functions out of it
+public class SSATester {
+    public static void main(String[] args) throws Exception {
+        PassManager pm = new PassManager("");
+        int file = 0;
+        if (args.length > 0 && args[0].startsWith("--passes="))
+            pm = new PassManager(args[file++].substring("--passes=".length()));
+        List<String> passes = pm.pipeline();
+        if (args.length == file) {
+            System.out.println("Missing filepath");
+            System.exit(1);
+        }
+
+        Notifier notifier = new Notifier(System.out);
+        Parser parser = new Parser(new Scanner(SourceFile.load(args[file])), notifier);
+        Object absyn = parser.parse().value;
+        if (notifier.hasError())
+            System.exit(1);
+        IR ir = new Semant(notifier).translate((Expr) absyn);
+        if (notifier.hasError())
+            System.exit(1);
+
+        // CodeGen binds the word length before the IR passes
+        ir.wordLength.bind(4);
+        ArrayList<IRFunction> functions = IRFunction.split(ir);
+        SSA ssa = new SSA(ir, functions);
+        HashMap<IRFunction, String> before = new HashMap<IRFunction, String>(),
+            inSSA = new HashMap<IRFunction, String>();
+        for (IRFunction f: functions) {
+            before.put(f, f.toString());
+            ssa.construct(f);
+            inSSA.put(f, f.toString());
+        }
+        boolean isSSA = true;
+        for (String name: passes) {
+            if (PassManager.needsSSA(name) != isSSA) {
+                isSSA = !isSSA;
+                for (IRFunction f: functions)
+                    if (isSSA)
+                        ssa.construct(f);
+                    else
+                        ssa.destruct(f);
+            }
+            if (name.equals(PassManager.INLINE))
+                Inliner.optimize(ir, functions);
+            else if (name.equals(PassManager.SCCP))
+                ConstantPropagation.optimize(ir, ssa, functions);
+            else if (name.equals(PassManager.GVN))
+                GlobalValueNumbering.optimize(ssa, functions);
+            else if (name.equals(PassManager.LCM))
+                LazyCodeMotion.optimize(ssa, functions);
+            else if (name.equals(PassManager.IV))
+                InductionVariables.optimize(ir, ssa, functions);
+            else if (name.equals(PassManager.UNROLL))
+                LoopUnroller.optimize(functions);
+            else if (name.equals(PassManager.TAIL))
+                TailRecursion.optimize(functions);
+        }
+        for (IRFunction f: functions) {
+            System.out.println("FUNCTION " + f.frame.place + ":");
+            System.out.print(before.get(f));
+            System.out.println("SSA:");
+            System.out.print(inSSA.get(f));
+            if (!passes.isEmpty()) {
+                System.out.println("OPTIMIZED:");
+                System.out.print(f);
+            }
+            if (isSSA)
+                ssa.destruct(f);
+            System.out.println("AFTER:");
+            System.out.print(f);
+            System.out.println();
+        }
+    }
+}
@@ -40,10 +40,10 @@ public class SemantTester {
             Notifier notifier = new Notifier(System.err);
             System.out.print("Testing " + source + ": ");
 
-            FileReader reader = null;
+            SourceFile sourceFile = null;
             try {
-                reader = new FileReader(source);
-            } catch (FileNotFoundException e) {
+                sourceFile = SourceFile.load(source);
+            } catch (IOException e) {
                 notifier.error(e.getMessage());
                 continue;
             }
@@ -57,7 +57,7 @@ public class SemantTester {
             }*/
 
 //            Printer printer = new Printer();
-            Parser parser = new Parser(new Scanner(reader), notifier);
+            Parser parser = new Parser(new Scanner(sourceFile), notifier);
             try {
                 Absyn absyn = (Absyn)parser.parse().value;
                 if (!notifier.hasError()) {
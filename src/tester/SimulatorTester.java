@@ -0,0 +1,87 @@
+package tester;
+
+import mips32.Simulator;
+import java.io.*;
+
+public class SimulatorTester {
+    static final String program =
+        "\t.text\n" +
+        "main:\n" +
+        "\tli $t0, 0\n" +
+        "\tli $t1, 10\n" +
+        "loop:\taddi $t0, $t0, 1\n" +
+        "\tblt $t0, $t1, loop\n" +
+        "\tmove $a0, $t0\n" +
+        "\tli $v0, 1\n" +
+        "\tsyscall\n" +
+        "\tla $a0, msg\n" +
+        "\tli $v0, 4\n" +
+        "\tsyscall\n" +
+        "\tli $a0, 8\n" +
+        "\tli $v0, 9\n" +
+        "\tsyscall\n" +
+        "\tsw $t1, 4($v0)\n" +
+        "\tlw $a0, 4($v0)\n" +
+        "\tjal twice\n" +
+        "\tli $v0, 1\n" +
+        "\tsyscall\n" +
+        "\tli $v0, 10\n" +
+        "\tsyscall\n" +
+        "twice:\n" +
+        "\tadd $a0, $a0, $a0\n" +
+        "\tbeqz $a0, twice\n" +
+        "\tjr $ra\n" +
+        "\n" +
+        "\t.data 0x10000000\n" +
+        "\t.align 2\n" +
+        "msg:\n" +
+        "\t.asciiz \" \\\"x\\\"\\n\"\n";
+
+    public static void main(String[] args) throws Exception {
+        // with arguments, runs the given .s files on stdin
+        if (args.length > 0) {
+            for (String file: args) {
+                InputStream in = new FileInputStream(file);
+                Simulator sim = Simulator.load(in);
+                in.close();
+                sim.run(System.in, System.out);
+                for (String line: sim.report())
+                    System.out.println(line);
+            }
+            return;
+        }
+
+        Simulator sim = Simulator.load(new ByteArrayInputStream(program.getBytes("ISO-8859-1")));
+        sim.run(System.in, System.out);
+        System.out.println();
+        System.out.println(sim.exited() + " " + sim.instructions() + " " + sim.loads() + " " + sim.stores()
+            + " " + sim.branches() + " " + sim.takenBranches() + " " + sim.calls());
+        System.out.println(sim.labelCounts());
+
+        try {
+            sim = Simulator.load(new ByteArrayInputStream("main: j main\n".getBytes("ISO-8859-1")));
+            sim.setLimit(100);
+            sim.run(System.in, System.out);
+        } catch (Simulator.Fault e) {
+            System.out.println(e.getMessage());
+        }
+
+        // addu wraps around, add traps
+        try {
+            sim = Simulator.load(new ByteArrayInputStream(("main: li $t0, 2147483647\n" +
+                "\taddu $a0, $t0, $t0\n\tli $v0, 1\n\tsyscall\n" +
+                "\tadd $a0, $t0, $t0\n").getBytes("ISO-8859-1")));
+            sim.run(System.in, System.out);
+        } catch (Simulator.Fault e) {
+            System.out.println();
+            System.out.println(e.getMessage());
+        }
+
+        // a quote inside a string must be escaped
+        try {
+            Simulator.load(new ByteArrayInputStream("\t.data\ns: .asciiz \"a\"b\"\n".getBytes("ISO-8859-1")));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -23,6 +23,18 @@ public class SymbolTableTester {
         t.endScope();
         System.out.println(t.get(Symbol.symbol("efg")));
         System.out.println(t.get(Symbol.symbol("new")));
+
+        t.beginScope(true);
+        t.put(Symbol.symbol("param"), Integer.valueOf(7));
+        t.beginScope();
+        t.put(Symbol.symbol("local"), Integer.valueOf(8));
+        System.out.println(t.isForeign(Symbol.symbol("efg")));
+        System.out.println(t.isForeign(Symbol.symbol("param")));
+        System.out.println(t.isForeign(Symbol.symbol("local")));
+        System.out.println(t.getLocals().size());
+        t.endScope();
+        t.endScope();
+        System.out.println(t.get(Symbol.symbol("param")));
     }
 }
 
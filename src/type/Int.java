@@ -1,7 +1,9 @@
 package type;
 
 public class Int extends Type {
-    public Int() {
+    public static final Int INT = new Int();
+
+    private Int() {
     }
 
     public boolean fits(Type type) {
@@ -6,51 +6,59 @@ public class Name extends Type {
     private Symbol name;
     private Type binding = null;
 
+    // the actual type, fixed by resolve() once the declaration group
+    // this name belongs to has been bound
+    private Type resolved = null;
+
     public Name(Symbol name) {
         this.name = name;
     }
 
-    public boolean isLoop() {
-        Type b = binding;
-        binding = null;
-        
-        boolean ret;
-        if (b == null)
-            ret = true;
-        else if (b instanceof Name)
-            ret = ((Name)b).isLoop();
-        else
-            ret = false;
+    // the first type on the binding chain that is not a name, or null if
+    // the chain ends in an unbound name or runs in a circle
+    private Type walk() {
+        Type slow = this, fast = this;
+        while (true) {
+            for (int i = 0; i < 2; ++i) {
+                fast = ((Name) fast).binding;
+                if (!(fast instanceof Name))
+                    return fast;
+            }
+            slow = ((Name) slow).binding;
+            if (slow == fast)
+                return null;
+        }
+    }
 
-        binding = b;
-        return ret;
+    public boolean isLoop() {
+        if (resolved != null)
+            return resolved == this;
+        return walk() == null;
     }
 
     public Type actual() {
-        if (isLoop())
-            return this;
-        else
-            return binding.actual();
+        if (resolved != null)
+            return resolved;
+        Type a = walk();
+        return a == null ? this : a;
     }
 
     public void bind(Type binding) {
         this.binding = binding;
+        resolved = null;
+    }
+
+    public void resolve() {
+        resolved = null;
+        resolved = actual();
     }
 
     public boolean fits(Type type) {
-        if (binding == null)
-            return false;
-        else {
-            Type a = binding.actual();
-            if (a instanceof Name)
-                return false;
-            else
-                return a.fits(type);
-        }
+        Type a = actual();
+        return !(a instanceof Name) && a.fits(type);
     }
 
     public java.lang.String toString() {
         return name.toString();
     }
 }
-
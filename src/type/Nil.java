@@ -1,7 +1,9 @@
 package type;
 
 public class Nil extends Type {
-    public Nil() {
+    public static final Nil NIL = new Nil();
+
+    private Nil() {
     }
 
     public boolean fits(Type type) {
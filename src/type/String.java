@@ -1,7 +1,9 @@
 package type;
 
 public class String extends Type {
-    public String() {
+    public static final String STRING = new String();
+
+    private String() {
     }
 
     public boolean fits(Type type) {
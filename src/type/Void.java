@@ -1,7 +1,9 @@
 package type;
 
 public class Void extends Type {
-    public Void() {
+    public static final Void VOID = new Void();
+
+    private Void() {
     }
 
     public boolean fits(Type type) {